@@ -0,0 +1,30 @@
+#!/bin/sh
+# Builds the fast-startup variant: AOT-processed classes (mvn -Paot) on a plain class path of jars, plus an AppCDS
+# archive of every class loaded during a training start. The training run stops right after the context is
+# refreshed (spring.context.exit=onRefresh), so it needs the same database settings as a normal start.
+#
+#   ./cds.sh [extra application args]     e.g. ./cds.sh --spring.datasource.url=jdbc:mysql://db:3306/gis
+#   cd target/cds && ./run.sh [args]      starts with the archive; JDK 17+ on the same JVM build as the training
+set -e
+cd "$(dirname "$0")"
+
+mvn -B -q -Paot -DskipTests package dependency:copy-dependencies \
+    -DincludeScope=runtime -DoutputDirectory=target/cds/lib
+
+# CDS only archives classes loaded from jar files, so run the plain (non-repackaged) jar next to its dependencies
+cp target/*.jar.original target/cds/app.jar
+cd target/cds
+CP="app.jar:$(ls lib/*.jar | sort | tr '\n' ':')"
+JAVA_OPTS="-Dspring.aot.enabled=true -Dspring.config.name=Application"
+
+java -XX:ArchiveClassesAtExit=app.jsa -Dspring.context.exit=onRefresh $JAVA_OPTS -cp "$CP" \
+    com.project.gis.Application --spring.profiles.active=fast-startup "$@"
+
+cat > run.sh <<EOF
+#!/bin/sh
+cd "\$(dirname "\$0")"
+exec java -XX:SharedArchiveFile=app.jsa $JAVA_OPTS -cp "$CP" com.project.gis.Application \\
+    --spring.profiles.active=fast-startup "\$@"
+EOF
+chmod +x run.sh
+echo "AppCDS archive: target/cds/app.jsa, start with target/cds/run.sh"
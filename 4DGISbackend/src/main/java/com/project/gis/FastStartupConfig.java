@@ -0,0 +1,46 @@
+package com.project.gis;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * fast-startup 配置（spring.main.lazy-initialization=true）下仍需在启动时创建的 bean：
+ * 数据源 / JPA（迁移与 schema 校验要在就绪前完成，首个请求不该承担）、安全过滤链，
+ * 以及带 {@code @Scheduled} / {@code @EventListener} 方法的 bean —— 懒加载时它们的定时任务不会注册，启动预热也不会发生。
+ * 其余 bean（各业务 controller / service 等）在第一次被用到时才创建。
+ */
+@Configuration(proxyBeanMethods = false)
+public class FastStartupConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerInfrastructure() {
+        return LazyInitializationExcludeFilter.forBeanTypes(DataSource.class, EntityManagerFactory.class,
+                SecurityFilterChain.class);
+    }
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerBackgroundWork() {
+        return (beanName, definition, beanType) -> hasBackgroundWork(beanType);
+    }
+
+    private static boolean hasBackgroundWork(Class<?> beanType) {
+        if (!beanType.getName().startsWith("com.project.gis.")) {
+            return false;
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        ReflectionUtils.doWithMethods(beanType, m -> found.set(true),
+                m -> AnnotatedElementUtils.hasAnnotation(m, Scheduled.class)
+                        || AnnotatedElementUtils.hasAnnotation(m, EventListener.class));
+        return found.get();
+    }
+}
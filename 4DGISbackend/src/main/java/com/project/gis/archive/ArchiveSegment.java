@@ -0,0 +1,463 @@
+package com.project.gis.archive;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.GeoCell;
+import com.project.gis.spatial.Wkt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 归档段：一批已过期标记点的不可变列式文件。
+ * <p>
+ * 文件结构：定长头部（magic、版本、行数，以及 id / 有效期 / 经纬度的 min-max 统计）+ 14 列（每列：原始长度、压缩长度、
+ * Deflate 压缩后的内容）+ 整个文件的 CRC32。行按 id 排序；整数列存相邻行的差值（zigzag 变长编码），
+ * 浮点列存原始 8 字节，字符串列为长度 + UTF-8。
+ * <p>
+ * 打开时只读头部，查询先用统计信息裁剪，命中时才解压整段；解压结果以软引用缓存，内存紧张时由 GC 回收。
+ * 按 id 查找只读取并解压 id 列（同样软引用缓存），找到了才解压整段：归档按结束时间分段，各段的 id 范围互相重叠，
+ * 一次查找会落到很多段上。只读 id 列时不校验 CRC，校验留给解压整段时。
+ */
+final class ArchiveSegment {
+    private static final int MAGIC = 0x4D415243;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 3 * 4 + 4 * 8 + 4 * 8;
+    private static final int COLUMNS = 14;
+
+    final Path file;
+    final int rows;
+    final long minId;
+    final long maxId;
+    final long minStart;
+    final long maxEnd;
+    final double minLon;
+    final double minLat;
+    final double maxLon;
+    final double maxLat;
+    private volatile SoftReference<Rows> decoded = new SoftReference<>(null);
+    private volatile SoftReference<long[]> ids = new SoftReference<>(null);
+
+    private ArchiveSegment(Path file, ByteBuffer header) throws IOException {
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            throw new IOException("not an archive segment of version " + FORMAT_VERSION + ": " + file);
+        }
+        this.file = file;
+        this.rows = header.getInt();
+        this.minId = header.getLong();
+        this.maxId = header.getLong();
+        this.minStart = header.getLong();
+        this.maxEnd = header.getLong();
+        this.minLon = header.getDouble();
+        this.minLat = header.getDouble();
+        this.maxLon = header.getDouble();
+        this.maxLat = header.getDouble();
+    }
+
+    /**
+     * Reads the header only.
+     */
+    static ArchiveSegment open(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && ch.read(header) >= 0) {
+                // keep reading
+            }
+            if (header.hasRemaining()) {
+                throw new IOException("truncated archive segment: " + file);
+            }
+            return new ArchiveSegment(file, header.flip());
+        }
+    }
+
+    /**
+     * Writes the markers (all with a location, start and end time) to {@code file} through a temporary file, so a
+     * segment is either complete or absent.
+     */
+    static ArchiveSegment write(Path file, List<JpaMarker> markers) throws IOException {
+        List<JpaMarker> sorted = new ArrayList<>(markers);
+        sorted.sort(Comparator.comparing(JpaMarker::getId));
+        int n = sorted.size();
+        Rows r = new Rows(n);
+        for (int i = 0; i < n; i++) {
+            JpaMarker m = sorted.get(i);
+            double[] p = Wkt.parsePoint(m.getLocation());
+            r.id[i] = m.getId();
+            r.lon[i] = p[0];
+            r.lat[i] = p[1];
+            r.alt[i] = m.getAltitude() == null ? Double.NaN : m.getAltitude();
+            r.start[i] = millis(m.getStartTime());
+            r.end[i] = millis(m.getEndTime());
+            r.type[i] = m.getMarkerTypeId();
+            r.owner[i] = m.getOwnerId();
+            r.creator[i] = m.getCreatorId();
+            r.created[i] = millis(m.getCreatedAt());
+            r.updated[i] = millis(m.getUpdatedAt());
+            r.title[i] = m.getTitle();
+            r.description[i] = m.getDescription();
+            r.visibility[i] = m.getVisibility();
+        }
+        byte[][] columns = {
+                longs(r.id), doubles(r.lon), doubles(r.lat), doubles(r.alt), longs(r.start), longs(r.end),
+                longs(r.type), longs(r.owner), longs(r.creator), longs(r.created), longs(r.updated),
+                strings(r.title), strings(r.description), strings(r.visibility) };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(n)
+                .putLong(n == 0 ? 0 : r.id[0]).putLong(n == 0 ? 0 : r.id[n - 1])
+                .putLong(Arrays.stream(r.start).min().orElse(0)).putLong(Arrays.stream(r.end).max().orElse(0))
+                .putDouble(Arrays.stream(r.lon).min().orElse(0)).putDouble(Arrays.stream(r.lat).min().orElse(0))
+                .putDouble(Arrays.stream(r.lon).max().orElse(0)).putDouble(Arrays.stream(r.lat).max().orElse(0));
+        out.write(header.array());
+        for (byte[] raw : columns) {
+            byte[] packed = deflate(raw);
+            out.write(ByteBuffer.allocate(8).putInt(raw.length).putInt(packed.length).array());
+            out.write(packed);
+        }
+        CRC32 crc = new CRC32();
+        byte[] body = out.toByteArray();
+        crc.update(body);
+        out.write(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(out.toByteArray());
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+        ArchiveSegment segment = open(file);
+        segment.decoded = new SoftReference<>(r);
+        return segment;
+    }
+
+    long sizeBytes() throws IOException {
+        return Files.size(file);
+    }
+
+    /**
+     * Whether any row can lie in the box and overlap [from, to); false means the segment need not be read.
+     */
+    boolean mayMatch(BoundingBox box, long from, long to) {
+        if (rows == 0 || minStart >= to || maxEnd <= from) {
+            return false;
+        }
+        if (box == null) {
+            return true;
+        }
+        for (BoundingBox b : box.split()) {
+            if (b.minLon() <= maxLon && b.maxLon() >= minLon && b.minLat() <= maxLat && b.maxLat() >= minLat) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the rows inside the box (null = anywhere) whose lifetime overlaps [from, to) and that pass {@code pre}
+     * and {@code filter}; only rows passing the column tests are turned into entities.
+     */
+    void scan(BoundingBox box, long from, long to, MarkerArchive.RowFilter pre, Predicate<JpaMarker> filter,
+              List<JpaMarker> out) throws IOException {
+        Rows r = rows();
+        for (int i = 0; i < rows; i++) {
+            if (r.start[i] >= to || r.end[i] <= from || (box != null && !box.contains(r.lon[i], r.lat[i]))
+                    || !pre.test(r.type[i], r.owner[i], r.creator[i], r.visibility[i])) {
+                continue;
+            }
+            JpaMarker m = r.marker(i);
+            if (filter.test(m)) {
+                out.add(m);
+            }
+        }
+    }
+
+    /**
+     * Like {@link #scan} but hands only id and position of the matching rows to {@code sink}, building nothing.
+     */
+    void points(BoundingBox box, long from, long to, MarkerArchive.RowFilter pre, MarkerArchive.PointSink sink)
+            throws IOException {
+        Rows r = rows();
+        for (int i = 0; i < rows; i++) {
+            if (r.start[i] < to && r.end[i] > from && (box == null || box.contains(r.lon[i], r.lat[i]))
+                    && pre.test(r.type[i], r.owner[i], r.creator[i], r.visibility[i])) {
+                sink.accept(r.id[i], r.lon[i], r.lat[i]);
+            }
+        }
+    }
+
+    JpaMarker get(long id) throws IOException {
+        if (id < minId || id > maxId) {
+            return null;
+        }
+        int i = Arrays.binarySearch(ids(), id);
+        return i < 0 ? null : rows().marker(i);
+    }
+
+    /**
+     * The sorted id column, from the decoded rows if they are still cached, otherwise read on its own.
+     */
+    private long[] ids() throws IOException {
+        Rows r = decoded.get();
+        if (r != null) {
+            return r.id;
+        }
+        long[] id = ids.get();
+        if (id != null) {
+            return id;
+        }
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer lengths = readFully(ch, HEADER_BYTES, 8);
+            int rawLength = lengths.getInt();
+            int packedLength = lengths.getInt();
+            byte[] packed = readFully(ch, HEADER_BYTES + 8, packedLength).array();
+            id = new long[rows];
+            readLongs(inflate(packed, 0, packedLength, rawLength), id);
+        }
+        ids = new SoftReference<>(id);
+        return id;
+    }
+
+    private ByteBuffer readFully(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) {
+                throw new IOException("truncated archive segment: " + file);
+            }
+        }
+        return buf.flip();
+    }
+
+    private Rows rows() throws IOException {
+        Rows r = decoded.get();
+        if (r != null) {
+            return r;
+        }
+        byte[] data = Files.readAllBytes(file);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        if (data.length < HEADER_BYTES + 4 || (int) crc.getValue() != ByteBuffer.wrap(data, data.length - 4, 4).getInt()) {
+            throw new IOException("corrupt archive segment: " + file);
+        }
+        ByteBuffer in = ByteBuffer.wrap(data, HEADER_BYTES, data.length - HEADER_BYTES - 4);
+        byte[][] columns = new byte[COLUMNS][];
+        for (int c = 0; c < COLUMNS; c++) {
+            int rawLength = in.getInt();
+            int packedLength = in.getInt();
+            columns[c] = inflate(data, in.position(), packedLength, rawLength);
+            in.position(in.position() + packedLength);
+        }
+        r = new Rows(rows);
+        readLongs(columns[0], r.id);
+        readDoubles(columns[1], r.lon);
+        readDoubles(columns[2], r.lat);
+        readDoubles(columns[3], r.alt);
+        readLongs(columns[4], r.start);
+        readLongs(columns[5], r.end);
+        readLongs(columns[6], r.type);
+        readLongs(columns[7], r.owner);
+        readLongs(columns[8], r.creator);
+        readLongs(columns[9], r.created);
+        readLongs(columns[10], r.updated);
+        readStrings(columns[11], r.title);
+        readStrings(columns[12], r.description);
+        readStrings(columns[13], r.visibility);
+        decoded = new SoftReference<>(r);
+        return r;
+    }
+
+    private static long millis(OffsetDateTime t) {
+        return t.toInstant().toEpochMilli();
+    }
+
+    private static OffsetDateTime time(long millis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    // ---- column encodings ----
+
+    private static byte[] longs(long[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(values.length * 2);
+        long prev = 0;
+        for (long v : values) {
+            long delta = v - prev;
+            writeVarint(out, (delta << 1) ^ (delta >> 63));
+            prev = v;
+        }
+        return out.toByteArray();
+    }
+
+    private static void readLongs(byte[] data, long[] out) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        long prev = 0;
+        for (int i = 0; i < out.length; i++) {
+            long zz = readVarint(in);
+            prev += (zz >>> 1) ^ -(zz & 1);
+            out[i] = prev;
+        }
+    }
+
+    private static byte[] doubles(double[] values) {
+        ByteBuffer out = ByteBuffer.allocate(values.length * 8);
+        for (double v : values) {
+            out.putDouble(v);
+        }
+        return out.array();
+    }
+
+    private static void readDoubles(byte[] data, double[] out) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = in.getDouble();
+        }
+    }
+
+    private static byte[] strings(String[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String s : values) {
+            if (s == null) {
+                writeVarint(out, 0);
+                continue;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, b.length + 1L);
+            out.write(b, 0, b.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void readStrings(byte[] data, String[] out) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        for (int i = 0; i < out.length; i++) {
+            int len = (int) readVarint(in) - 1;
+            if (len < 0) {
+                continue;
+            }
+            out[i] = new String(data, in.position(), len, StandardCharsets.UTF_8);
+            in.position(in.position() + len);
+        }
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                n += inflater.inflate(raw, n, rawLength - n);
+            }
+            if (n != rawLength) {
+                throw new IOException("corrupt column in archive segment");
+            }
+            return raw;
+        } catch (DataFormatException ex) {
+            throw new IOException("corrupt column in archive segment", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Decoded columns of one segment.
+     */
+    private static final class Rows {
+        final long[] id, start, end, type, owner, creator, created, updated;
+        final double[] lon, lat, alt;
+        final String[] title, description, visibility;
+
+        Rows(int n) {
+            id = new long[n];
+            start = new long[n];
+            end = new long[n];
+            type = new long[n];
+            owner = new long[n];
+            creator = new long[n];
+            created = new long[n];
+            updated = new long[n];
+            lon = new double[n];
+            lat = new double[n];
+            alt = new double[n];
+            title = new String[n];
+            description = new String[n];
+            visibility = new String[n];
+        }
+
+        JpaMarker marker(int i) {
+            JpaMarker m = new JpaMarker();
+            m.setId(id[i]);
+            m.setTitle(title[i]);
+            m.setDescription(description[i]);
+            m.setLocation(Wkt.point(lon[i], lat[i]));
+            m.setCellId(GeoCell.encode(lon[i], lat[i]));
+            m.setAltitude(Double.isNaN(alt[i]) ? null : alt[i]);
+            m.setStartTime(time(start[i]));
+            m.setEndTime(time(end[i]));
+            m.setMarkerTypeId(type[i]);
+            m.setOwnerId(owner[i]);
+            m.setCreatorId(creator[i]);
+            m.setVisibility(visibility[i]);
+            m.setCreatedAt(time(created[i]));
+            m.setUpdatedAt(time(updated[i]));
+            return m;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.project.gis.archive;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.spatial.BoundingBox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * 冷数据归档：过期标记点的列式归档段（{@link ArchiveSegment}），存放在 app.archive.dir 下的 seg-&lt;序号&gt;.col 文件中。
+ * <p>
+ * 段一经写入不再修改。查询按各段头部的时间 / 经纬度统计裁剪，只解压可能命中的段；查询当前或近期时间窗时
+ * 所有段都会被裁掉。删除已归档的标记点只在同目录的 tombstones 文件里追加它的 id（每个 8 字节），查询和按 id 读取时跳过。
+ * 多节点部署时该目录应放在共享存储上：其它节点收到归档或删除产生的变更通知后重新扫描目录。
+ * <p>
+ * 指标：archive.segments、archive.rows、archive.segments.scanned / archive.segments.pruned（查询读取 / 跳过的段数）。
+ */
+@Component
+public class MarkerArchive {
+    private static final Logger log = LoggerFactory.getLogger(MarkerArchive.class);
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".col";
+    private static final String TOMBSTONES = "tombstones";
+
+    private final Path dir;
+    private final Counter scanned;
+    private final Counter pruned;
+    private final Set<Path> known = new HashSet<>();
+    // copy-on-write, in file order
+    private volatile List<ArchiveSegment> segments = List.of();
+    private long nextSequence = 1;
+    // ids deleted after they were archived, copy-on-write
+    private volatile Set<Long> deleted = Set.of();
+    // bytes of the tombstone file already read
+    private long tombstoneBytes;
+    // bumped whenever segments or tombstones are added
+    private final AtomicLong version = new AtomicLong();
+
+    public MarkerArchive(@Value("${app.archive.dir:data/archive}") String dir, MeterRegistry meterRegistry) {
+        this.dir = Paths.get(dir);
+        this.scanned = Counter.builder("archive.segments.scanned").register(meterRegistry);
+        this.pruned = Counter.builder("archive.segments.pruned").register(meterRegistry);
+        Gauge.builder("archive.segments", this, a -> a.segments.size()).register(meterRegistry);
+        Gauge.builder("archive.rows", this, a -> a.segments.stream().mapToLong(s -> s.rows).sum())
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        refresh();
+        log.info("Marker archive opened at {} with {} segments", dir.toAbsolutePath(), segments.size());
+    }
+
+    /**
+     * Picks up segments and tombstones written since the last scan, e.g. by another node sharing the directory.
+     */
+    public synchronized void refresh() {
+        readTombstones();
+        List<ArchiveSegment> added = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path p : ds) {
+                nextSequence = Math.max(nextSequence, sequenceOf(p) + 1);
+                if (known.contains(p)) {
+                    continue;
+                }
+                try {
+                    added.add(ArchiveSegment.open(p));
+                    known.add(p);
+                } catch (IOException ex) {
+                    log.warn("Skipping unreadable archive segment {}", p, ex);
+                }
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to scan archive directory {}", dir, ex);
+        }
+        if (!added.isEmpty()) {
+            List<ArchiveSegment> all = new ArrayList<>(segments);
+            all.addAll(added);
+            all.sort((a, b) -> Long.compare(sequenceOf(a.file), sequenceOf(b.file)));
+            segments = List.copyOf(all);
+            version.incrementAndGet();
+        }
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Changes whenever the archived markers do, so results computed from them can be cached against it.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Id and position of the archived markers {@link #find} would return for {@code pre} alone, without building
+     * entities.
+     */
+    public void points(BoundingBox box, long from, long to, RowFilter pre, PointSink sink) {
+        Set<Long> gone = deleted;
+        PointSink live = gone.isEmpty() ? sink : (id, lon, lat) -> {
+            if (!gone.contains(id)) {
+                sink.accept(id, lon, lat);
+            }
+        };
+        for (ArchiveSegment s : segments) {
+            if (!s.mayMatch(box, from, to)) {
+                pruned.increment();
+                continue;
+            }
+            scanned.increment();
+            try {
+                s.points(box, from, to, pre, live);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+
+    /**
+     * Archived markers inside the box (null = anywhere) whose lifetime overlaps [from, to) and that pass
+     * {@code pre}, tested on the stored columns before the entity is built, and then {@code filter}.
+     */
+    public List<JpaMarker> find(BoundingBox box, long from, long to, RowFilter pre, Predicate<JpaMarker> filter) {
+        List<JpaMarker> out = new ArrayList<>();
+        for (ArchiveSegment s : segments) {
+            if (!s.mayMatch(box, from, to)) {
+                pruned.increment();
+                continue;
+            }
+            scanned.increment();
+            try {
+                s.scan(box, from, to, pre, filter, out);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        Set<Long> gone = deleted;
+        if (!gone.isEmpty()) {
+            out.removeIf(m -> gone.contains(m.getId()));
+        }
+        return out;
+    }
+
+    /**
+     * False when no segment can hold a marker inside the box whose lifetime overlaps [from, to), so a query with
+     * that window would not read the archive at all.
+     */
+    public boolean mayMatch(BoundingBox box, long from, long to) {
+        for (ArchiveSegment s : segments) {
+            if (s.mayMatch(box, from, to)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Optional<JpaMarker> get(long id) {
+        if (deleted.contains(id)) {
+            return Optional.empty();
+        }
+        for (ArchiveSegment s : segments) {
+            try {
+                JpaMarker m = s.get(id);
+                if (m != null) {
+                    return Optional.of(m);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Writes one new segment; the markers are visible to queries once this returns.
+     */
+    public synchronized void write(List<JpaMarker> markers) throws IOException {
+        Path file = dir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        ArchiveSegment s = ArchiveSegment.write(file, markers);
+        known.add(file);
+        List<ArchiveSegment> all = new ArrayList<>(segments);
+        all.add(s);
+        segments = List.copyOf(all);
+        version.incrementAndGet();
+        log.info("Archived {} markers to {} ({} bytes)", s.rows, file.getFileName(), s.sizeBytes());
+    }
+
+    /**
+     * Deletes an archived marker: its id is appended to the tombstone file, so it disappears from {@link #find}
+     * and {@link #get} here at once and on other nodes after their next {@link #refresh}.
+     */
+    public synchronized void delete(long id) throws IOException {
+        readTombstones();
+        if (deleted.contains(id)) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(dir.resolve(TOMBSTONES), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buf = ByteBuffer.allocate(8).putLong(id).flip();
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        readTombstones();
+    }
+
+    private void readTombstones() {
+        Path file = dir.resolve(TOMBSTONES);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            // whole ids only, another node may be halfway through appending one
+            long end = ch.size() - ch.size() % 8;
+            if (end <= tombstoneBytes) {
+                return;
+            }
+            ByteBuffer buf = ByteBuffer.allocate((int) (end - tombstoneBytes));
+            while (buf.hasRemaining() && ch.read(buf, tombstoneBytes + buf.position()) >= 0) {
+                // keep reading
+            }
+            Set<Long> all = new HashSet<>(deleted);
+            for (buf.flip(); buf.remaining() >= 8; ) {
+                all.add(buf.getLong());
+            }
+            deleted = Set.copyOf(all);
+            tombstoneBytes = end;
+            version.incrementAndGet();
+        } catch (NoSuchFileException ex) {
+            // nothing deleted yet
+        } catch (IOException ex) {
+            log.warn("Failed to read archive tombstones {}", file, ex);
+        }
+    }
+
+    /**
+     * Row test on the stored columns of an archived marker, run before the entity is built.
+     */
+    @FunctionalInterface
+    public interface RowFilter {
+        boolean test(long typeId, long ownerId, long creatorId, String visibility);
+    }
+
+    /**
+     * Receives the archived markers of {@link #points}.
+     */
+    @FunctionalInterface
+    public interface PointSink {
+        void accept(long id, double lon, double lat);
+    }
+
+    private static long sequenceOf(Path p) {
+        String n = p.getFileName().toString();
+        try {
+            return Long.parseLong(n.substring(SEGMENT_PREFIX.length(), n.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.project.gis.archive;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.index.MarkerIndex;
+import com.project.gis.shard.MarkerStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 冷热分层：定期把结束时间早于 horizon 的标记点从 markers 表搬进归档段（{@link MarkerArchive}）。
+ * <p>
+ * 每批先写归档段、再删热表行并记入 change_log，中途失败时标记点会同时出现在两边（查询时以热表为准），
+ * 下一轮发现它已在归档中就只删热表行。标签、附件、协作者等按 id 关联的数据保持不动。
+ * 多节点部署时只应在一个节点上开启（app.archive.enabled）。
+ */
+@Component
+public class TieringJob {
+    private static final Logger log = LoggerFactory.getLogger(TieringJob.class);
+
+    private final MarkerArchive archive;
+    private final MarkerIndex markerIndex;
+    private final MarkerStore markerStore;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration horizon;
+    private final int segmentRows;
+
+    public TieringJob(MarkerArchive archive, MarkerIndex markerIndex, MarkerStore markerStore,
+                      TransactionTemplate transactionTemplate,
+                      @Value("${app.archive.enabled:false}") boolean enabled,
+                      @Value("${app.archive.horizon:P30D}") Duration horizon,
+                      @Value("${app.archive.segment-rows:100000}") int segmentRows) {
+        this.archive = archive;
+        this.markerIndex = markerIndex;
+        this.markerStore = markerStore;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.horizon = horizon;
+        this.segmentRows = Math.max(1, segmentRows);
+    }
+
+    @Scheduled(initialDelayString = "${app.archive.interval:PT1H}", fixedDelayString = "${app.archive.interval:PT1H}")
+    public void run() {
+        if (!enabled || !markerIndex.isLoaded()) {
+            return;
+        }
+        try {
+            int moved = archiveExpired();
+            if (moved > 0) {
+                log.info("Moved {} expired markers to the archive", moved);
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.error("Archiving expired markers failed, will retry on the next run", ex);
+        }
+    }
+
+    /**
+     * @return number of markers taken out of the hot table
+     */
+    public int archiveExpired() throws IOException {
+        long cutoff = System.currentTimeMillis() - horizon.toMillis();
+        int moved = 0;
+        while (true) {
+            List<Long> ids = markerIndex.endedBy(cutoff, segmentRows);
+            if (ids.isEmpty()) {
+                return moved;
+            }
+            List<JpaMarker> expired = new ArrayList<>(ids.size());
+            List<JpaMarker> fresh = new ArrayList<>(ids.size());
+            Set<Long> gone = new HashSet<>(ids);
+            for (JpaMarker m : markerStore.findAllById(ids)) {
+                // the index can lag behind an update that extended the marker
+                if (m.getEndTime() == null || m.getEndTime().toInstant().toEpochMilli() > cutoff) {
+                    markerIndex.put(m);
+                    gone.remove(m.getId());
+                    continue;
+                }
+                expired.add(m);
+                if (archive.get(m.getId()).isEmpty()) {
+                    fresh.add(m);
+                }
+            }
+            if (!fresh.isEmpty()) {
+                archive.write(fresh);
+            }
+            transactionTemplate.executeWithoutResult(s -> {
+                for (JpaMarker m : expired) {
+                    markerStore.deleteById(m.getId());
+                }
+            });
+            // ids the store no longer has are dropped from the index as well, so the loop always advances
+            gone.forEach(markerIndex::remove);
+            moved += expired.size();
+            if (ids.size() < segmentRows) {
+                return moved;
+            }
+        }
+    }
+}
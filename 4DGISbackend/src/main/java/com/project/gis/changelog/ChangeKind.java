@@ -0,0 +1,19 @@
+package com.project.gis.changelog;
+
+/**
+ * 变更日志里的实体类别，entity_id 的含义随类别而定
+ */
+public enum ChangeKind {
+    /** markers row created / updated / deleted; entity_id = marker id */
+    MARKER,
+    /** tag set of a marker changed; entity_id = marker id */
+    MARKER_TAGS,
+    /** tag created; entity_id = tag id */
+    TAG,
+    /** user created or changed; entity_id = user id */
+    USER,
+    /** friendships / friend requests of a user changed; entity_id = user id */
+    FRIENDSHIP,
+    /** geofence created or deleted; entity_id = geofence id */
+    GEOFENCE
+}
@@ -0,0 +1,39 @@
+package com.project.gis.changelog;
+
+import com.project.gis.entity.JpaChangeLogEntry;
+import com.project.gis.repository.ChangeLogRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.UUID;
+
+/**
+ * 追加变更日志。必须在写业务数据的同一事务里调用：事务回滚时日志也不会留下，其它节点不会为没发生的修改失效缓存；
+ * 提交后日志一定存在，不会漏掉。
+ */
+@Component
+public class ChangeLog {
+    private final ChangeLogRepository repository;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    public ChangeLog(ChangeLogRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * @throws org.springframework.transaction.IllegalTransactionStateException when called outside a transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(ChangeKind kind, long entityId) {
+        JpaChangeLogEntry e = new JpaChangeLogEntry();
+        e.setKind(kind.name());
+        e.setEntityId(entityId);
+        e.setOrigin(nodeId);
+        repository.save(e);
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+}
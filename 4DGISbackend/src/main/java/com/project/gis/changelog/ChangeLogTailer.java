@@ -0,0 +1,168 @@
+package com.project.gis.changelog;
+
+import com.project.gis.entity.JpaChangeLogEntry;
+import com.project.gis.repository.ChangeLogRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按高水位轮询 change_log，把其它节点的变更作为 {@link RemoteChangeEvent} 在本节点发布。
+ * <p>
+ * 自增 id 的分配顺序和提交顺序不一定一致：id 较小的事务可能晚于较大的提交。所以水位越过的空缺 id 会被记下来，
+ * 在 gap-timeout 内每轮重查一次，补上迟到的提交；超时仍不存在的（回滚或 auto_increment 步长造成）直接放弃。
+ * 水位从启动时的最大 id 开始：更早的修改已经包含在启动时加载的缓存里。
+ * <p>
+ * 指标：changelog.lag（秒，距离上一次读到日志末尾过了多久，即本节点缓存最多落后多少）、
+ * changelog.propagation（变更提交到本节点应用的耗时）、changelog.applied、changelog.gaps。
+ */
+@Component
+public class ChangeLogTailer {
+    private static final Logger log = LoggerFactory.getLogger(ChangeLogTailer.class);
+    private static final int MAX_TRACKED_GAPS = 10_000;
+
+    private final ChangeLogRepository repository;
+    private final ApplicationEventPublisher publisher;
+    private final String nodeId;
+    // read-write so that it runs on the primary even when read-only transactions go to a replica
+    private final TransactionTemplate tx;
+    private final int batchSize;
+    private final long gapTimeoutMs;
+    private final Duration retention;
+    private final Timer propagation;
+    private final Counter applied;
+
+    // only touched by the scheduler thread
+    private long watermark;
+    private final Map<Long, Long> gaps = new HashMap<>();
+    private long nextPruneAt;
+    private volatile long caughtUpAt = System.currentTimeMillis();
+    private volatile boolean started;
+
+    public ChangeLogTailer(ChangeLogRepository repository, ChangeLog changeLog, ApplicationEventPublisher publisher,
+                           PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                           @Value("${app.change-log.batch-size:500}") int batchSize,
+                           @Value("${app.change-log.gap-timeout-ms:10000}") long gapTimeoutMs,
+                           @Value("${app.change-log.retention:PT1H}") Duration retention) {
+        this.repository = repository;
+        this.publisher = publisher;
+        this.nodeId = changeLog.nodeId();
+        this.tx = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.gapTimeoutMs = gapTimeoutMs;
+        this.retention = retention;
+        this.watermark = repository.maxId();
+        this.propagation = Timer.builder("changelog.propagation").register(meterRegistry);
+        this.applied = Counter.builder("changelog.applied").register(meterRegistry);
+        Gauge.builder("changelog.lag", this, t -> (System.currentTimeMillis() - t.caughtUpAt) / 1000.0)
+                .baseUnit("seconds").register(meterRegistry);
+        Gauge.builder("changelog.gaps", gaps, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Runs after the other startup listeners, so remote changes are never applied underneath the initial cache loads
+     * (the watermark was taken before them, nothing is skipped).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void start() {
+        started = true;
+    }
+
+    @Scheduled(fixedDelayString = "${app.change-log.poll-ms:500}")
+    public void poll() {
+        if (!started) {
+            return;
+        }
+        try {
+            List<JpaChangeLogEntry> entries = tx.execute(s -> read());
+            for (JpaChangeLogEntry e : entries) {
+                apply(e);
+            }
+            prune();
+        } catch (RuntimeException ex) {
+            log.warn("Change log poll failed, local caches may be stale until the next one", ex);
+        }
+    }
+
+    /**
+     * Late commits that fill earlier gaps, then the next batch past the watermark.
+     */
+    private List<JpaChangeLogEntry> read() {
+        long now = System.currentTimeMillis();
+        List<JpaChangeLogEntry> out = new ArrayList<>();
+        if (!gaps.isEmpty()) {
+            for (JpaChangeLogEntry e : repository.findAllById(new ArrayList<>(gaps.keySet()))) {
+                gaps.remove(e.getId());
+                out.add(e);
+            }
+            gaps.values().removeIf(seenAt -> now - seenAt > gapTimeoutMs);
+        }
+        List<JpaChangeLogEntry> batch = repository.findByIdGreaterThanOrderByIdAsc(watermark,
+                PageRequest.of(0, batchSize));
+        for (JpaChangeLogEntry e : batch) {
+            for (long missing = watermark + 1; missing < e.getId() && gaps.size() < MAX_TRACKED_GAPS; missing++) {
+                gaps.put(missing, now);
+            }
+            watermark = e.getId();
+            out.add(e);
+        }
+        if (batch.size() < batchSize) {
+            caughtUpAt = now;
+        }
+        return out;
+    }
+
+    private void apply(JpaChangeLogEntry e) {
+        if (nodeId.equals(e.getOrigin())) {
+            return;
+        }
+        ChangeKind kind;
+        try {
+            kind = ChangeKind.valueOf(e.getKind());
+        } catch (IllegalArgumentException ex) {
+            // written by a newer version during a rolling deploy
+            return;
+        }
+        try {
+            publisher.publishEvent(new RemoteChangeEvent(kind, e.getEntityId()));
+        } catch (RuntimeException ex) {
+            log.error("Failed to apply change {} {} from another node", kind, e.getEntityId(), ex);
+        }
+        applied.increment();
+        propagation.record(Duration.between(e.getCreatedAt(), OffsetDateTime.now()).abs());
+    }
+
+    private void prune() {
+        long now = System.currentTimeMillis();
+        if (now < nextPruneAt) {
+            return;
+        }
+        nextPruneAt = now + Math.max(60_000, retention.toMillis() / 10);
+        Integer removed = tx.execute(s -> repository.deleteOlderThan(OffsetDateTime.now().minus(retention)));
+        if (removed != null && removed > 0) {
+            log.debug("Pruned {} change log entries", removed);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.gis.changelog;
+
+/**
+ * 其它节点提交的一条变更，由 ChangeLogTailer 在本节点发布；持有进程内缓存的服务订阅它来失效或重新加载对应条目
+ */
+public record RemoteChangeEvent(ChangeKind kind, long entityId) {
+}
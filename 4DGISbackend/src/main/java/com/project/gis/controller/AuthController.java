@@ -12,6 +12,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/auth")
@@ -43,34 +45,43 @@ public class AuthController {
         }
     }
 
+    /**
+     * 用户名 / 邮箱 / 手机号一次查询解析；BCrypt 校验在独立的有界线程池上异步执行，不占用 Tomcat 请求线程，
+     * 线程池排满时直接返回 503。
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@RequestBody LoginRequest req) {
-        String identity = req.getIdentity();
-        JpaUser found = userService.findByUsername(identity).orElse(null);
+    public CompletableFuture<ResponseEntity<?>> login(@RequestBody LoginRequest req) {
+        JpaUser found = userService.findByIdentity(req.getIdentity()).orElse(null);
         if (found == null) {
-            found = userService.findByEmail(identity).orElse(null);
+            return CompletableFuture.completedFuture(invalidCredentials());
         }
-        if (found == null) {
-            found = userService.findByPhone(identity).orElse(null);
-        }
-        if (found == null) {
-            com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
-                    .of(com.project.gis.error.ErrorCode.INVALID_CREDENTIALS, "用户名或密码错误");
-            return ResponseEntity.status(401).body(er);
-        }
-        if (!userService.checkPassword(found, req.getPassword())) {
+        CompletableFuture<Boolean> verified;
+        try {
+            verified = userService.checkPasswordAsync(found, req.getPassword());
+        } catch (RejectedExecutionException ex) {
             com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
-                    .of(com.project.gis.error.ErrorCode.INVALID_CREDENTIALS, "用户名或密码错误");
-            return ResponseEntity.status(401).body(er);
+                    .of(com.project.gis.error.ErrorCode.SERVICE_UNAVAILABLE, "登录繁忙，请稍后重试");
+            return CompletableFuture.completedFuture(ResponseEntity.status(503).header("Retry-After", "1").body(er));
         }
-        String token = jwtService.generateToken(String.valueOf(found.getId()));
-        LoginResponse resp = new LoginResponse();
-        resp.setExpiresIn(jwtService.getExpirationSeconds());
-        resp.setToken(token);
-        User u = new User();
-        u.setUserId(String.valueOf(found.getId()));
-        u.setUsername(found.getUsername());
-        resp.setUser(u);
-        return ResponseEntity.ok(resp);
+        return verified.thenApply(ok -> {
+            if (!ok) {
+                return invalidCredentials();
+            }
+            String token = jwtService.generateToken(String.valueOf(found.getId()));
+            LoginResponse resp = new LoginResponse();
+            resp.setExpiresIn(jwtService.getExpirationSeconds());
+            resp.setToken(token);
+            User u = new User();
+            u.setUserId(String.valueOf(found.getId()));
+            u.setUsername(found.getUsername());
+            resp.setUser(u);
+            return ResponseEntity.ok(resp);
+        });
+    }
+
+    private static ResponseEntity<?> invalidCredentials() {
+        com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
+                .of(com.project.gis.error.ErrorCode.INVALID_CREDENTIALS, "用户名或密码错误");
+        return ResponseEntity.status(401).body(er);
     }
 }
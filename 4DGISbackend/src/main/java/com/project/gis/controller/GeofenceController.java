@@ -0,0 +1,130 @@
+package com.project.gis.controller;
+
+import com.project.gis.dto.GeofenceCreateRequest;
+import com.project.gis.dto.GeofenceEventResponse;
+import com.project.gis.dto.GeofenceResponse;
+import com.project.gis.entity.JpaGeofence;
+import com.project.gis.geofence.GeofenceService;
+import com.project.gis.spatial.GeoJson;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.locationtech.jts.io.WKTWriter;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/geofences")
+public class GeofenceController {
+    private static final int MAX_FENCE_VERTICES = 100_000;
+    private static final int MAX_EVENTS_PER_PAGE = 1000;
+
+    private final GeofenceService geofenceService;
+
+    public GeofenceController(GeofenceService geofenceService) {
+        this.geofenceService = geofenceService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody GeofenceCreateRequest req) {
+        Long userId = currentUserId();
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        if (req.getName() == null || req.getName().isBlank()
+                || (req.getTimeStart() != null && req.getTimeEnd() != null && !req.getTimeEnd().isAfter(req.getTimeStart())))
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "围栏参数无效"));
+        JpaGeofence f = new JpaGeofence();
+        try {
+            Geometry region = GeoJson.toPolygonal(req.getGeometry(), MAX_FENCE_VERTICES);
+            f.setGeometry(new WKTWriter().write(region));
+            if (req.getType() != null && !req.getType().isBlank())
+                f.setMarkerTypeId(Long.parseLong(req.getType().trim()));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(com.project.gis.dto.ErrorResponse
+                    .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "围栏参数无效: " + ex.getMessage()));
+        }
+        f.setOwnerId(userId);
+        f.setName(req.getName());
+        f.setActiveFrom(req.getTimeStart());
+        f.setActiveUntil(req.getTimeEnd());
+        return ResponseEntity.status(201).body(toResponse(geofenceService.create(f)));
+    }
+
+    @GetMapping
+    public ResponseEntity<?> list() {
+        Long userId = currentUserId();
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        return ResponseEntity.ok(geofenceService.listByOwner(userId).stream().map(this::toResponse).toList());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> delete(@PathVariable Long id) {
+        Long userId = currentUserId();
+        JpaGeofence existing = geofenceService.get(id).orElse(null);
+        if (existing == null)
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "围栏未找到"));
+        if (!existing.getOwnerId().equals(userId))
+            return ResponseEntity.status(403)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.FORBIDDEN, "没有权限删除此围栏"));
+        geofenceService.delete(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Events for the caller's fences, oldest first; poll with the last seen id as {@code after}.
+     */
+    @GetMapping("/events")
+    public ResponseEntity<?> events(@RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit) {
+        Long userId = currentUserId();
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        if (limit < 1 || limit > MAX_EVENTS_PER_PAGE)
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效"));
+        List<GeofenceEventResponse> out = geofenceService.events(userId, after, limit).stream().map(e -> {
+            GeofenceEventResponse r = new GeofenceEventResponse();
+            r.setId(String.valueOf(e.getId()));
+            r.setGeofenceId(String.valueOf(e.getGeofenceId()));
+            r.setMarkerId(String.valueOf(e.getMarkerId()));
+            r.setLongitude(e.getLongitude());
+            r.setLatitude(e.getLatitude());
+            r.setOccurredAt(e.getOccurredAt());
+            return r;
+        }).toList();
+        return ResponseEntity.ok(out);
+    }
+
+    private Long currentUserId() {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        if (a != null && a.getPrincipal() instanceof String)
+            return Long.parseLong((String) a.getPrincipal());
+        return null;
+    }
+
+    private GeofenceResponse toResponse(JpaGeofence f) {
+        GeofenceResponse r = new GeofenceResponse();
+        r.setId(String.valueOf(f.getId()));
+        r.setName(f.getName());
+        try {
+            r.setGeometry(GeoJson.write(new WKTReader(GeoJson.FACTORY).read(f.getGeometry())));
+        } catch (ParseException ex) {
+            r.setGeometry(null);
+        }
+        r.setType(f.getMarkerTypeId() == null ? null : String.valueOf(f.getMarkerTypeId()));
+        r.setTimeStart(f.getActiveFrom());
+        r.setTimeEnd(f.getActiveUntil());
+        r.setCreatedAt(f.getCreatedAt());
+        return r;
+    }
+}
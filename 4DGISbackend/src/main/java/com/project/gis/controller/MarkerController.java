@@ -1,19 +1,55 @@
 package com.project.gis.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.project.gis.dto.MarkerCreateRequest;
 import com.project.gis.dto.MarkerCreateResponse;
+import com.project.gis.dto.MarkerIngestResponse;
+import com.project.gis.dto.MarkerNearbyResponse;
+import com.project.gis.dto.MarkerRevisionResponse;
+import com.project.gis.dto.MarkerTagsRequest;
+import com.project.gis.dto.MarkersGetRequest;
+import com.project.gis.dto.MarkersGetResponse;
+import com.project.gis.dto.MarkersRegionQueryRequest;
+import com.project.gis.dto.TagCountResponse;
+import com.project.gis.dto.TrackAppendRequest;
+import com.project.gis.dto.TrackAppendResponse;
+import com.project.gis.dto.TrackGetResponse;
+import com.project.gis.dto.TrackPoint;
 import com.project.gis.entity.JpaMarker;
+import com.project.gis.entity.JpaTag;
+import com.project.gis.entity.Marker;
 import com.project.gis.entity.MarkerType;
 import com.project.gis.entity.CreatedBy;
+import com.project.gis.history.MarkerRevision;
+import com.project.gis.index.MarkerIndex;
+import com.project.gis.ingest.IngestService;
+import com.project.gis.service.FacetService;
+import com.project.gis.service.HeatmapService;
 import com.project.gis.service.MarkerService;
+import com.project.gis.service.QueryCoalescer;
+import com.project.gis.service.TagService;
 import com.project.gis.service.UserService;
+import com.project.gis.shard.MarkerRow;
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.GeoJson;
+import com.project.gis.spatial.Wkt;
+import com.project.gis.trajectory.TrackSample;
+import com.project.gis.trajectory.TrackSamples;
+import com.project.gis.trajectory.TrajectoryService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.locationtech.jts.geom.Geometry;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
@@ -24,13 +60,33 @@ import java.time.format.DateTimeFormatter;
 public class MarkerController {
     private final MarkerService markerService;
     private final UserService userService;
+    private final TrajectoryService trajectoryService;
+    private final HeatmapService heatmapService;
+    private final IngestService ingestService;
+    private final TagService tagService;
+    private final FacetService facetService;
+    private final ObjectMapper objectMapper;
+    private final QueryCoalescer queryCoalescer;
 
-    public MarkerController(MarkerService markerService, UserService userService) {
+    public MarkerController(MarkerService markerService, UserService userService,
+            TrajectoryService trajectoryService, HeatmapService heatmapService, IngestService ingestService,
+            TagService tagService, FacetService facetService, ObjectMapper objectMapper,
+            QueryCoalescer queryCoalescer) {
         this.markerService = markerService;
         this.userService = userService;
+        this.trajectoryService = trajectoryService;
+        this.heatmapService = heatmapService;
+        this.ingestService = ingestService;
+        this.tagService = tagService;
+        this.facetService = facetService;
+        this.objectMapper = objectMapper;
+        this.queryCoalescer = queryCoalescer;
     }
 
     private static final DateTimeFormatter DTF = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_REGION_VERTICES = 100_000;
+    // rows read per transaction when writing a page
+    private static final int WRITE_CHUNK_ROWS = 1000;
 
     private OffsetDateTime parseToOffset(String s) {
         if (s == null)
@@ -87,36 +143,37 @@ public class MarkerController {
                     .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "经纬度未提供");
             return ResponseEntity.badRequest().body(er);
         }
-        if (Double.isNaN(lon) || Double.isInfinite(lon) || Double.isNaN(lat) || Double.isInfinite(lat)) {
+        if (!Double.isFinite(lon) || !Double.isFinite(lat)) {
             com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
                     .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "经纬度无效");
             return ResponseEntity.badRequest().body(er);
         }
+        if (!finiteOrAbsent(req.getAltitude())) {
+            com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
+                    .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "高度无效");
+            return ResponseEntity.badRequest().body(er);
+        }
         if (lon < -180.0 || lon > 180.0 || lat < -90.0 || lat > 90.0) {
             com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
                     .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "经纬度超出范围");
             return ResponseEntity.badRequest().body(er);
         }
-        m.setLocation(String.format("POINT(%f %f)", req.getLongitude(), req.getLatitude()));
+        m.setLocation(Wkt.point(req.getLongitude(), req.getLatitude()));
         try {
-            JpaMarker saved = markerService.create(m);
-            MarkerCreateResponse resp = new MarkerCreateResponse();
-            resp.setId(String.valueOf(saved.getId()));
-            resp.setTitle(saved.getTitle());
-            resp.setDescription(saved.getDescription());
-            resp.setAltitude(saved.getAltitude());
-            resp.setTimeStart(saved.getStartTime());
-            resp.setTimeEnd(saved.getEndTime());
-            try {
-                resp.setVisibility(com.project.gis.dto.Visibility.forValue(saved.getVisibility()));
-            } catch (java.io.IOException ex) {
-                resp.setVisibility(com.project.gis.dto.Visibility.PRIVATE);
+            if (ingestService.isEnabled()) {
+                long ingestId = ingestService.submit(m);
+                if (ingestId < 0) {
+                    com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
+                            .of(com.project.gis.error.ErrorCode.SERVICE_UNAVAILABLE, "写入繁忙，请稍后重试");
+                    return ResponseEntity.status(503).header("Retry-After", "1").body(er);
+                }
+                MarkerIngestResponse resp = new MarkerIngestResponse();
+                resp.setIngestId(String.valueOf(ingestId));
+                resp.setStatus(IngestService.Status.PENDING.name());
+                return ResponseEntity.accepted().body(resp);
             }
-            CreatedBy cb = new CreatedBy();
-            cb.setUserId(String.valueOf(saved.getCreatorId()));
-            cb.setUsername(null);
-            resp.setCreatedBy(cb);
-            return ResponseEntity.ok(resp);
+            JpaMarker saved = markerService.create(m);
+            return ResponseEntity.ok(toResponse(saved));
         } catch (org.springframework.dao.DataIntegrityViolationException ex) {
             com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
                     .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "数据验证失败");
@@ -130,67 +187,539 @@ public class MarkerController {
 
     @GetMapping("/{id}")
     public ResponseEntity<?> get(@PathVariable Long id) {
-        return markerService.get(id).map(m -> {
-            MarkerCreateResponse resp = new MarkerCreateResponse();
-            resp.setId(String.valueOf(m.getId()));
-            resp.setTitle(m.getTitle());
-            resp.setDescription(m.getDescription());
-            resp.setAltitude(m.getAltitude());
-            resp.setTimeStart(m.getStartTime());
-            resp.setTimeEnd(m.getEndTime());
-            try {
-                resp.setVisibility(com.project.gis.dto.Visibility.forValue(m.getVisibility()));
-            } catch (java.io.IOException ex) {
-                resp.setVisibility(com.project.gis.dto.Visibility.PRIVATE);
-            }
-            return ResponseEntity.ok(resp);
-        }).orElse(ResponseEntity.notFound().build());
+        return markerService.lookup(id).<ResponseEntity<?>>map(m -> ResponseEntity.ok(toResponse(m)))
+                .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * The caller's markers, streamed row by row (same JSON as MarkerCreateResponse).
+     */
     @GetMapping
-    public ResponseEntity<List<MarkerCreateResponse>> listByOwner() {
+    public void listByOwner(HttpServletResponse response) throws IOException {
         Authentication a = SecurityContextHolder.getContext().getAuthentication();
         Long userId = null;
         if (a != null && a.getPrincipal() instanceof String) {
             userId = Long.parseLong((String) a.getPrincipal());
         }
         if (userId == null) {
-            com.project.gis.dto.ErrorResponse er = com.project.gis.dto.ErrorResponse
-                    .of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证");
-            return ResponseEntity.status(401).body(java.util.Collections.emptyList());
-        }
-        List<JpaMarker> l = markerService.listByOwner(userId);
-        List<MarkerCreateResponse> out = l.stream().map(m -> {
-            MarkerCreateResponse r = new MarkerCreateResponse();
-            r.setId(String.valueOf(m.getId()));
-            r.setTitle(m.getTitle());
-            r.setDescription(m.getDescription());
-            r.setAltitude(m.getAltitude());
-            r.setTimeStart(m.getStartTime());
-            r.setTimeEnd(m.getEndTime());
-            try {
-                r.setVisibility(com.project.gis.dto.Visibility.forValue(m.getVisibility()));
-            } catch (java.io.IOException ex) {
-                r.setVisibility(com.project.gis.dto.Visibility.PRIVATE);
+            writeError(response, 401, java.util.Collections.emptyList());
+            return;
+        }
+        List<MarkerRow> rows = markerService.rowsByOwner(userId);
+        MarkerJsonWriter.stream(objectMapper, response, w -> {
+            w.generator().writeStartArray();
+            for (MarkerRow row : rows) {
+                w.write(row);
             }
-            return r;
-        }).collect(Collectors.toList());
+            w.generator().writeEndArray();
+        });
+    }
+
+    @GetMapping("/query")
+    public void query(MarkersGetRequest req, HttpServletResponse response) throws IOException {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null) {
+            writeError(response, 401,
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+            return;
+        }
+        MarkerService.Page page;
+        try {
+            page = queryCoalescer.query(req, userId);
+        } catch (IllegalArgumentException ex) {
+            writeError(response, 400, com.project.gis.dto.ErrorResponse
+                    .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效: " + ex.getMessage()));
+            return;
+        }
+        writePage(page, response);
+    }
+
+    @PostMapping("/query")
+    public void queryRegion(@RequestBody MarkersRegionQueryRequest req, HttpServletResponse response)
+            throws IOException {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null) {
+            writeError(response, 401,
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+            return;
+        }
+        MarkerService.Page page;
+        try {
+            Geometry region = GeoJson.toPolygonal(req.getGeometry(), MAX_REGION_VERTICES);
+            page = markerService.queryWithin(region, req, userId);
+        } catch (IllegalArgumentException ex) {
+            writeError(response, 400, com.project.gis.dto.ErrorResponse
+                    .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效: " + ex.getMessage()));
+            return;
+        }
+        writePage(page, response);
+    }
+
+    /**
+     * Writes the page as MarkersGetResponse JSON ({"data": [...], "total": n}) to the response. The rows are read
+     * {@link #WRITE_CHUNK_ROWS} at a time, each chunk {@link MarkerService#materialize materialized} in its own
+     * short read-only transaction, so the pooled connection is back in the pool before the chunk goes into the
+     * socket: a slow client holds memory for one chunk, never a connection. A failure part-way through aborts the
+     * response (see {@link MarkerJsonWriter}).
+     */
+    private void writePage(MarkerService.Page page, HttpServletResponse response) throws IOException {
+        MarkerJsonWriter.stream(objectMapper, response, w -> {
+            w.generator().writeStartObject();
+            w.generator().writeArrayFieldStart("data");
+            for (MarkerService.Page chunk : page.chunks(WRITE_CHUNK_ROWS)) {
+                for (MarkerRow row : markerService.materialize(chunk).rows()) {
+                    w.write(row);
+                }
+            }
+            w.generator().writeEndArray();
+            w.generator().writeNumberField("total", page.total());
+            w.generator().writeEndObject();
+        });
+    }
+
+    /**
+     * Error responses of the streaming handlers, which write the response themselves.
+     */
+    private void writeError(HttpServletResponse response, int status, Object body) throws IOException {
+        response.setStatus(status);
+        response.setContentType(org.springframework.http.MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), body);
+    }
+
+    @GetMapping("/ingest/{ingestId}")
+    public ResponseEntity<?> ingestStatus(@PathVariable long ingestId) {
+        IngestService.Result r = ingestService.status(ingestId);
+        if (r == null)
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "写入请求未找到"));
+        MarkerIngestResponse resp = new MarkerIngestResponse();
+        resp.setIngestId(String.valueOf(ingestId));
+        resp.setStatus(r.status().name());
+        resp.setMarkerId(r.markerId() == null ? null : String.valueOf(r.markerId()));
+        return ResponseEntity.ok(resp);
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<?> nearby(@RequestParam double lat, @RequestParam double lon,
+            @RequestParam(required = false) Double alt,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(required = false) String at,
+            @RequestParam(defaultValue = "1.0") double altWeight) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        if (!Double.isFinite(lon) || !Double.isFinite(lat) || !finiteOrAbsent(alt) || !Double.isFinite(altWeight)
+                || lon < -180.0 || lon > 180.0 || lat < -90.0 || lat > 90.0 || k < 1 || k > 100 || altWeight < 0)
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效"));
+        OffsetDateTime t = at == null ? OffsetDateTime.now(ZoneOffset.UTC) : parseToOffset(at);
+        if (t == null)
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "时间格式无效"));
+        List<MarkerIndex.Neighbour> found = markerService.nearby(lon, lat, alt, altWeight, k,
+                t.toInstant().toEpochMilli(), userId);
+        Map<Long, JpaMarker> byId = markerService
+                .listByIds(found.stream().map(n -> n.marker().id()).toList()).stream()
+                .collect(Collectors.toMap(JpaMarker::getId, Function.identity()));
+        List<MarkerNearbyResponse> out = new ArrayList<>(found.size());
+        for (MarkerIndex.Neighbour n : found) {
+            JpaMarker m = byId.get(n.marker().id());
+            if (m == null)
+                continue;
+            MarkerNearbyResponse r = new MarkerNearbyResponse();
+            r.setMarker(toMarker(m));
+            r.setDistance(n.distance());
+            out.add(r);
+        }
         return ResponseEntity.ok(out);
     }
 
-    @PutMapping("/{id}")
-    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody MarkerCreateRequest req) {
+    @GetMapping("/history")
+    public ResponseEntity<?> history(@RequestParam String asOf,
+            @RequestParam(required = false) String bbox,
+            @RequestParam(required = false) String at) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        OffsetDateTime asOfTime = parseToOffset(asOf);
+        OffsetDateTime atTime = at == null ? null : parseToOffset(at);
+        BoundingBox box = bbox == null ? null : BoundingBox.parse(bbox);
+        if (asOfTime == null || (at != null && atTime == null) || (bbox != null && box == null))
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效"));
+        List<MarkerRevision> l = markerService.asOf(asOfTime.toInstant().toEpochMilli(), box,
+                atTime == null ? null : atTime.toInstant().toEpochMilli(), userId);
+        MarkersGetResponse resp = new MarkersGetResponse();
+        resp.setData(l.stream().map(this::toMarker).toArray(Marker[]::new));
+        resp.setTotal((long) l.size());
+        return ResponseEntity.ok(resp);
+    }
+
+    @GetMapping("/heatmap")
+    public ResponseEntity<?> heatmap(@RequestParam String bbox, @RequestParam int zoom,
+            @RequestParam(required = false) String timeStart,
+            @RequestParam(required = false) String timeEnd,
+            @RequestParam(required = false) Long type) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        BoundingBox box = BoundingBox.parse(bbox);
+        OffsetDateTime start = timeStart == null ? null : parseToOffset(timeStart);
+        OffsetDateTime end = timeEnd == null ? null : parseToOffset(timeEnd);
+        if (box == null || zoom < 0 || (timeStart != null && start == null) || (timeEnd != null && end == null))
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效"));
+        try {
+            return ResponseEntity.ok(heatmapService.heatmap(box, zoom,
+                    start == null ? Long.MIN_VALUE : start.toInstant().toEpochMilli(),
+                    end == null ? Long.MAX_VALUE : end.toInstant().toEpochMilli() + 1, type, userId));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "视口相对缩放级别过大"));
+        }
+    }
+
+    @GetMapping("/{id}/revisions")
+    public ResponseEntity<?> revisions(@PathVariable Long id) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        List<MarkerRevision> l = markerService.revisions(id, userId);
+        if (l.isEmpty())
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
+        List<MarkerRevisionResponse> out = l.stream().map(r -> {
+            MarkerRevisionResponse resp = new MarkerRevisionResponse();
+            resp.setRevision(r.revision());
+            resp.setOp(r.op().name());
+            resp.setRecordedAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(r.recordedAt()), ZoneOffset.UTC));
+            resp.setMarker(r.op() == MarkerRevision.Op.DELETE ? null : toMarker(r));
+            return resp;
+        }).toList();
+        return ResponseEntity.ok(out);
+    }
+
+    private Marker toMarker(MarkerRevision rev) {
+        Marker r = new Marker();
+        r.setId(String.valueOf(rev.markerId()));
+        r.setTitle(rev.title());
+        r.setDescription(rev.description());
+        r.setAltitude(Double.isNaN(rev.altitude()) ? null : rev.altitude());
+        r.setLongitude(rev.lon());
+        r.setLatitude(rev.lat());
+        r.setTimeStart(OffsetDateTime.ofInstant(Instant.ofEpochMilli(rev.startMillis()), ZoneOffset.UTC));
+        r.setTimeEnd(rev.endMillis() == Long.MAX_VALUE ? null
+                : OffsetDateTime.ofInstant(Instant.ofEpochMilli(rev.endMillis()), ZoneOffset.UTC));
+        r.setUpdatedAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(rev.recordedAt()), ZoneOffset.UTC));
+        MarkerType t = new MarkerType();
+        t.setTypeId(String.valueOf(rev.typeId()));
+        r.setType(t);
+        CreatedBy cb = new CreatedBy();
+        cb.setUserId(String.valueOf(rev.creatorId()));
+        r.setCreatedBy(cb);
+        r.setVisibility(com.project.gis.dto.Visibility.of(rev.visibility()));
+        return r;
+    }
+
+    private Marker toMarker(JpaMarker m) {
+        Marker r = new Marker();
+        r.setId(String.valueOf(m.getId()));
+        r.setTitle(m.getTitle());
+        r.setDescription(m.getDescription());
+        r.setAltitude(m.getAltitude());
+        double[] p = Wkt.parsePoint(m.getLocation());
+        if (p != null) {
+            r.setLongitude(p[0]);
+            r.setLatitude(p[1]);
+        }
+        r.setTimeStart(m.getStartTime());
+        r.setTimeEnd(m.getEndTime());
+        r.setCreatedAt(m.getCreatedAt());
+        r.setUpdatedAt(m.getUpdatedAt());
+        MarkerType t = new MarkerType();
+        t.setTypeId(String.valueOf(m.getMarkerTypeId()));
+        r.setType(t);
+        CreatedBy cb = new CreatedBy();
+        cb.setUserId(String.valueOf(m.getCreatorId()));
+        r.setCreatedBy(cb);
+        r.setVisibility(com.project.gis.dto.Visibility.of(m.getVisibility()));
+        return r;
+    }
+
+    private MarkerCreateResponse toResponse(JpaMarker m) {
+        Marker src = toMarker(m);
+        MarkerCreateResponse r = new MarkerCreateResponse();
+        r.setId(src.getId());
+        r.setTitle(src.getTitle());
+        r.setDescription(src.getDescription());
+        r.setAltitude(src.getAltitude());
+        r.setLongitude(src.getLongitude());
+        r.setLatitude(src.getLatitude());
+        r.setTimeStart(src.getTimeStart());
+        r.setTimeEnd(src.getTimeEnd());
+        r.setCreatedAt(src.getCreatedAt());
+        r.setUpdatedAt(src.getUpdatedAt());
+        r.setType(src.getType());
+        r.setCreatedBy(src.getCreatedBy());
+        r.setVisibility(src.getVisibility());
+        return r;
+    }
+
+    @PostMapping("/{id}/track")
+    public ResponseEntity<?> appendTrack(@PathVariable Long id, @RequestBody TrackAppendRequest req) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        JpaMarker existing = markerService.getForUpdate(id).orElse(null);
+        if (existing == null)
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
+        if (!userId.equals(existing.getOwnerId()))
+            return ResponseEntity.status(403)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.FORBIDDEN, "没有权限修改此标注"));
+        if (req == null || req.getPoints() == null)
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "缺少轨迹点"));
+        TrackSamples samples = new TrackSamples(req.getPoints().size());
+        for (TrackPoint p : req.getPoints()) {
+            if (p == null || p.getTime() == null || p.getLongitude() == null || p.getLatitude() == null
+                    || !Double.isFinite(p.getLongitude()) || !Double.isFinite(p.getLatitude())
+                    || !finiteOrAbsent(p.getAltitude())
+                    || p.getLongitude() < -180.0 || p.getLongitude() > 180.0
+                    || p.getLatitude() < -90.0 || p.getLatitude() > 90.0)
+                continue;
+            samples.add(p.getTime().toInstant().toEpochMilli(), p.getLongitude(), p.getLatitude(),
+                    p.getAltitude() == null ? Double.NaN : p.getAltitude());
+        }
+        int accepted = trajectoryService.append(id, samples);
+        TrackAppendResponse resp = new TrackAppendResponse();
+        resp.setAccepted(accepted);
+        resp.setRejected(req.getPoints().size() - accepted);
+        return ResponseEntity.accepted().body(resp);
+    }
+
+    @GetMapping("/{id}/track")
+    public ResponseEntity<?> track(@PathVariable Long id, @RequestParam String from, @RequestParam String to,
+            @RequestParam(required = false) Integer zoom) {
         Authentication a = SecurityContextHolder.getContext().getAuthentication();
         Long userId = null;
         if (a != null && a.getPrincipal() instanceof String)
             userId = Long.parseLong((String) a.getPrincipal());
         JpaMarker existing = markerService.get(id).orElse(null);
+        if (existing == null || !visibleTo(existing, userId))
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
+        OffsetDateTime f = parseToOffset(from), t = parseToOffset(to);
+        if (f == null || t == null || f.isAfter(t) || (zoom != null && zoom < 0))
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效"));
+        long fromMillis = f.toInstant().toEpochMilli(), toMillis = t.toInstant().toEpochMilli();
+        TrackSamples s = zoom == null ? trajectoryService.slice(id, fromMillis, toMillis)
+                : trajectoryService.simplifiedSlice(id, fromMillis, toMillis, zoom);
+        List<TrackPoint> points = new ArrayList<>(s.size());
+        for (int i = 0; i < s.size(); i++)
+            points.add(toTrackPoint(new TrackSample(s.time(i), s.lon(i), s.lat(i), s.alt(i))));
+        TrackGetResponse resp = new TrackGetResponse();
+        resp.setMarkerId(String.valueOf(id));
+        resp.setPoints(points);
+        resp.setTotal(points.size());
+        return ResponseEntity.ok(resp);
+    }
+
+    @GetMapping("/{id}/position")
+    public ResponseEntity<?> position(@PathVariable Long id, @RequestParam String at) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        JpaMarker existing = markerService.get(id).orElse(null);
+        if (existing == null || !visibleTo(existing, userId))
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
+        OffsetDateTime t = parseToOffset(at);
+        if (t == null)
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "时间格式无效"));
+        return trajectoryService.positionAt(id, t.toInstant().toEpochMilli())
+                .<ResponseEntity<?>>map(p -> ResponseEntity.ok(toTrackPoint(p)))
+                .orElse(ResponseEntity.status(404)
+                        .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "该时刻没有轨迹")));
+    }
+
+    @GetMapping("/{id}/tags")
+    public ResponseEntity<?> tags(@PathVariable Long id) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        JpaMarker existing = markerService.get(id).orElse(null);
+        if (existing == null || !visibleTo(existing, userId))
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
+        return ResponseEntity.ok(tagService.tagsOf(id).stream().map(TagController::toResponse).toList());
+    }
+
+    @PostMapping("/{id}/tags")
+    public ResponseEntity<?> addTags(@PathVariable Long id, @RequestBody MarkerTagsRequest req) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        JpaMarker existing = markerService.getForUpdate(id).orElse(null);
+        if (existing == null)
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
+        if (userId == null || !existing.getOwnerId().equals(userId))
+            return ResponseEntity.status(403)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.FORBIDDEN, "没有权限修改此标注"));
+        if (req.getTagIds() == null || req.getTagIds().isEmpty())
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "标签不能为空"));
+        try {
+            tagService.addTags(id, req.getTagIds().stream().map(t -> Long.parseLong(t.trim())).toList());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "标签无效"));
+        }
+        return ResponseEntity.ok(tagService.tagsOf(id).stream().map(TagController::toResponse).toList());
+    }
+
+    @DeleteMapping("/{id}/tags/{tagId}")
+    public ResponseEntity<?> removeTag(@PathVariable Long id, @PathVariable Long tagId) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        JpaMarker existing = markerService.getForUpdate(id).orElse(null);
         if (existing == null)
             return ResponseEntity.status(404)
                     .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
         if (userId == null || !existing.getOwnerId().equals(userId))
             return ResponseEntity.status(403)
                     .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.FORBIDDEN, "没有权限修改此标注"));
+        tagService.removeTag(id, tagId);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Counts by type, visibility, owner, tag and start-time bucket over the markers matching the query filters.
+     */
+    @GetMapping("/facets")
+    public ResponseEntity<?> facets(MarkersGetRequest req, @RequestParam(required = false) String interval) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        try {
+            return ResponseEntity.ok(facetService.facets(req, userId, interval));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(com.project.gis.dto.ErrorResponse
+                    .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效: " + ex.getMessage()));
+        }
+    }
+
+    /**
+     * How many of the markers matching the query filters carry each tag, most frequent first.
+     */
+    @GetMapping("/facets/tags")
+    public ResponseEntity<?> tagFacets(MarkersGetRequest req) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        Map<Long, Integer> counts;
+        try {
+            counts = markerService.tagCounts(req, userId);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(com.project.gis.dto.ErrorResponse
+                    .of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "查询参数无效: " + ex.getMessage()));
+        }
+        Map<Long, String> names = tagService.getTags(counts.keySet()).stream()
+                .collect(Collectors.toMap(JpaTag::getId, JpaTag::getTagName));
+        List<TagCountResponse> out = counts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                .map(e -> {
+                    TagCountResponse r = new TagCountResponse();
+                    r.setTagId(String.valueOf(e.getKey()));
+                    r.setName(names.get(e.getKey()));
+                    r.setCount(e.getValue());
+                    return r;
+                }).toList();
+        return ResponseEntity.ok(out);
+    }
+
+    // NaN passes every range comparison, so numbers from requests are checked with this first
+    private static boolean finiteOrAbsent(Double v) {
+        return v == null || Double.isFinite(v);
+    }
+
+    private static boolean visibleTo(JpaMarker m, Long userId) {
+        return "public".equals(m.getVisibility())
+                || (userId != null && (userId.equals(m.getOwnerId()) || userId.equals(m.getCreatorId())));
+    }
+
+    private static TrackPoint toTrackPoint(TrackSample s) {
+        TrackPoint p = new TrackPoint();
+        p.setTime(OffsetDateTime.ofInstant(Instant.ofEpochMilli(s.time()), ZoneOffset.UTC));
+        p.setLongitude(s.lon());
+        p.setLatitude(s.lat());
+        p.setAltitude(Double.isNaN(s.alt()) ? null : s.alt());
+        return p;
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<?> update(@PathVariable Long id, @RequestBody MarkerCreateRequest req) {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = null;
+        if (a != null && a.getPrincipal() instanceof String)
+            userId = Long.parseLong((String) a.getPrincipal());
+        JpaMarker existing = markerService.getForUpdate(id).orElse(null);
+        JpaMarker archived = existing == null ? markerService.archived(id).orElse(null) : null;
+        if (existing == null && archived == null)
+            return ResponseEntity.status(404)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
+        if (userId == null || !(existing != null ? existing : archived).getOwnerId().equals(userId))
+            return ResponseEntity.status(403)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.FORBIDDEN, "没有权限修改此标注"));
+        // archived markers are read-only; they can still be deleted
+        if (existing == null)
+            return ResponseEntity.status(409)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.ARCHIVED, "标注已归档，不能修改，只能删除"));
+        Double lon = req.getLongitude();
+        Double lat = req.getLatitude();
+        if (!finiteOrAbsent(lon) || !finiteOrAbsent(lat) || !finiteOrAbsent(req.getAltitude())
+                || (lon != null && (lon < -180.0 || lon > 180.0)) || (lat != null && (lat < -90.0 || lat > 90.0)))
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "经纬度或高度无效"));
         if (req.getTitle() != null)
             existing.setTitle(req.getTitle());
         if (req.getDescription() != null)
@@ -209,25 +738,11 @@ public class MarkerController {
         }
         existing.setVisibility(req.getVisibility() == null ? existing.getVisibility() : req.getVisibility().toValue());
         // update location only when values are provided
-        Double lon = req.getLongitude();
-        Double lat = req.getLatitude();
         if (lon != null && lat != null) {
-            existing.setLocation(String.format("POINT(%f %f)", lon, lat));
+            existing.setLocation(Wkt.point(lon, lat));
         }
         JpaMarker saved = markerService.create(existing);
-        MarkerCreateResponse resp = new MarkerCreateResponse();
-        resp.setId(String.valueOf(saved.getId()));
-        resp.setTitle(saved.getTitle());
-        resp.setDescription(saved.getDescription());
-        resp.setAltitude(saved.getAltitude());
-        resp.setTimeStart(saved.getStartTime());
-        resp.setTimeEnd(saved.getEndTime());
-        try {
-            resp.setVisibility(com.project.gis.dto.Visibility.forValue(saved.getVisibility()));
-        } catch (java.io.IOException ex) {
-            resp.setVisibility(com.project.gis.dto.Visibility.PRIVATE);
-        }
-        return ResponseEntity.ok(resp);
+        return ResponseEntity.ok(toResponse(saved));
     }
 
     @DeleteMapping("/{id}")
@@ -236,7 +751,8 @@ public class MarkerController {
         Long userId = null;
         if (a != null && a.getPrincipal() instanceof String)
             userId = Long.parseLong((String) a.getPrincipal());
-        JpaMarker existing = markerService.get(id).orElse(null);
+        // archived markers can be deleted too
+        JpaMarker existing = markerService.getForUpdate(id).or(() -> markerService.archived(id)).orElse(null);
         if (existing == null)
             return ResponseEntity.status(404)
                     .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.NOT_FOUND, "标注未找到"));
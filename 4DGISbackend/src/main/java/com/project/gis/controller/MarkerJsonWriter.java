@@ -0,0 +1,97 @@
+package com.project.gis.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.gis.dto.Visibility;
+import com.project.gis.shard.MarkerRow;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 把 {@link MarkerRow} 逐行直接写进响应流，输出与 Jackson 序列化 {@link com.project.gis.entity.Marker} 相同的 JSON，
+ * 中间不构造实体或 DTO。时间按 Spring Boot 默认的 Jackson 设置输出（ISO 8601，换算到 UTC），
+ * 不经过 ObjectMapper，改了 spring.jackson 的日期设置时需要同步这里。
+ * <p>
+ * 文档只在正常写完后才收尾。中途失败时不补全括号、不关闭输出流，异常原样抛出：响应还没提交时容器返回 500；
+ * 已经提交时 Tomcat 直接断开连接，客户端看到的是不完整的响应，而不是一个被截断却格式正确的 200。
+ */
+final class MarkerJsonWriter {
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final JsonGenerator g;
+
+    private MarkerJsonWriter(JsonGenerator g) {
+        this.g = g;
+    }
+
+    /**
+     * The JSON written by a {@link #stream} call.
+     */
+    @FunctionalInterface
+    interface Body {
+        void write(MarkerJsonWriter w) throws IOException;
+    }
+
+    /**
+     * Writes {@code body} as the JSON response, with the generator settings of {@code mapper}. The document is
+     * closed only when {@code body} returns; if it throws, the generator is dropped unflushed and the exception
+     * propagates, so that the container fails the response instead of ending it as valid JSON.
+     */
+    static void stream(ObjectMapper mapper, HttpServletResponse response, Body body) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        // large lists: fewer, bigger socket writes than the container's 8 KB default
+        response.setBufferSize(BUFFER_BYTES);
+        JsonGenerator g = mapper.getFactory().createGenerator(response.getOutputStream());
+        body.write(new MarkerJsonWriter(g));
+        g.close();
+    }
+
+    JsonGenerator generator() {
+        return g;
+    }
+
+    void write(MarkerRow r) throws IOException {
+        g.writeStartObject();
+        g.writeFieldName("altitude");
+        if (r.altitude() == null) {
+            g.writeNull();
+        } else {
+            g.writeNumber(r.altitude());
+        }
+        writeTime("createdAt", r.createdAt());
+        g.writeObjectFieldStart("createdBy");
+        g.writeStringField("userId", String.valueOf(r.creatorId()));
+        g.writeNullField("username");
+        g.writeEndObject();
+        g.writeStringField("description", r.description());
+        g.writeStringField("id", String.valueOf(r.id()));
+        g.writeNumberField("latitude", r.lat());
+        g.writeNumberField("longitude", r.lon());
+        writeTime("timeEnd", r.endTime());
+        writeTime("timeStart", r.startTime());
+        g.writeStringField("title", r.title());
+        g.writeObjectFieldStart("type");
+        g.writeNullField("color");
+        g.writeNullField("icon");
+        g.writeNullField("name");
+        g.writeStringField("typeId", String.valueOf(r.typeId()));
+        g.writeEndObject();
+        writeTime("updatedAt", r.updatedAt());
+        g.writeStringField("visibility", Visibility.of(r.visibility()).name());
+        g.writeEndObject();
+    }
+
+    private void writeTime(String field, OffsetDateTime t) throws IOException {
+        g.writeFieldName(field);
+        if (t == null) {
+            g.writeNull();
+        } else {
+            g.writeString(DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(t.withOffsetSameInstant(ZoneOffset.UTC)));
+        }
+    }
+}
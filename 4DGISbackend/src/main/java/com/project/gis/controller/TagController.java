@@ -0,0 +1,54 @@
+package com.project.gis.controller;
+
+import com.project.gis.dto.TagCreateRequest;
+import com.project.gis.dto.TagResponse;
+import com.project.gis.entity.JpaTag;
+import com.project.gis.service.TagService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/tags")
+public class TagController {
+    private static final int MAX_TAG_NAME_LENGTH = 50;
+
+    private final TagService tagService;
+
+    public TagController(TagService tagService) {
+        this.tagService = tagService;
+    }
+
+    @GetMapping
+    public ResponseEntity<?> list() {
+        return ResponseEntity.ok(tagService.listTags().stream().map(TagController::toResponse).toList());
+    }
+
+    @PostMapping
+    public ResponseEntity<?> create(@RequestBody TagCreateRequest req) {
+        Long userId = currentUserId();
+        if (userId == null)
+            return ResponseEntity.status(401)
+                    .body(com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.UNAUTHENTICATED, "未认证"));
+        String name = req.getName() == null ? null : req.getName().trim();
+        if (name == null || name.isEmpty() || name.length() > MAX_TAG_NAME_LENGTH)
+            return ResponseEntity.badRequest().body(
+                    com.project.gis.dto.ErrorResponse.of(com.project.gis.error.ErrorCode.VALIDATION_ERROR, "标签名称无效"));
+        return ResponseEntity.status(201).body(toResponse(tagService.create(name, userId)));
+    }
+
+    static TagResponse toResponse(JpaTag t) {
+        TagResponse r = new TagResponse();
+        r.setId(String.valueOf(t.getId()));
+        r.setName(t.getTagName());
+        return r;
+    }
+
+    private Long currentUserId() {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        if (a != null && a.getPrincipal() instanceof String)
+            return Long.parseLong((String) a.getPrincipal());
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.project.gis.datasource;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读副本配置（app.datasource.replicas.*）
+ */
+@Data
+@ConfigurationProperties(prefix = "app.datasource.replicas")
+public class ReplicaProperties {
+    private boolean enabled;
+    private List<Node> nodes = new ArrayList<>();
+    /**
+     * 允许的最大复制延迟（秒），超过后该副本暂不接收读请求
+     */
+    private long maxLagSeconds = 5;
+    private long checkIntervalMs = 5000;
+    /**
+     * 获取副本连接的超时时间，副本宕机时读请求最多等这么久就回退到主库
+     */
+    private long connectionTimeoutMs = 3000;
+    /**
+     * 查询复制延迟的 SQL，例如 MySQL 的 SHOW REPLICA STATUS；为空时只检查连通性
+     */
+    private String lagQuery;
+    /**
+     * lagQuery 结果中表示延迟秒数的列，值为 NULL 视为复制中断
+     */
+    private String lagColumn = "Seconds_Behind_Source";
+
+    @Data
+    public static class Node {
+        private String name;
+        private String url;
+        /**
+         * 为空时沿用主库的用户名 / 密码
+         */
+        private String username;
+        private String password;
+    }
+}
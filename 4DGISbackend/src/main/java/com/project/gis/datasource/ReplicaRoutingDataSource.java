@@ -0,0 +1,56 @@
+package com.project.gis.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 只读事务走副本、其余走主库的路由数据源。
+ * <p>
+ * 必须包在 LazyConnectionDataSourceProxy 里使用：事务管理器在标记只读之前就会请求连接，
+ * 延迟到第一条 SQL 才取真实连接，路由时才能看到只读标记。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY = "primary";
+
+    private final ReplicaSelector selector;
+
+    public ReplicaRoutingDataSource(ReplicaSelector selector) {
+        this.selector = selector;
+        Map<Object, Object> targets = new HashMap<>(selector.replicas());
+        targets.put(PRIMARY, selector.primary());
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(selector.primary());
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            String replica = selector.pick();
+            if (replica != null) {
+                return replica;
+            }
+        }
+        return PRIMARY;
+    }
+
+    /**
+     * A replica that cannot hand out a connection is taken out of rotation and the read goes to the primary.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (!PRIMARY.equals(key)) {
+            try {
+                return selector.replica((String) key).getConnection();
+            } catch (SQLException ex) {
+                selector.markDown((String) key, ex);
+            }
+        }
+        return selector.primary().getConnection();
+    }
+}
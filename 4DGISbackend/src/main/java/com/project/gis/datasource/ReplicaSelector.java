@@ -0,0 +1,134 @@
+package com.project.gis.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 维护各只读副本的健康状态并为只读事务挑选副本。
+ * <p>
+ * 定时检查每个副本能否连接以及复制延迟；只有可连接且延迟不超过 {@code max-lag-seconds} 的副本参与轮询，
+ * 一个都没有时读请求回退到主库。
+ */
+public class ReplicaSelector implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSelector.class);
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final ReplicaProperties props;
+    private final Set<String> down = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile List<String> healthy = List.of();
+
+    public ReplicaSelector(DataSource primary, Map<String, DataSource> replicas, ReplicaProperties props) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.props = props;
+        checkReplicas();
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public DataSource replica(String name) {
+        return replicas.get(name);
+    }
+
+    public Map<String, DataSource> replicas() {
+        return replicas;
+    }
+
+    /**
+     * @return a healthy replica in round-robin order, or null when reads have to go to the primary
+     */
+    public String pick() {
+        List<String> h = healthy;
+        if (h.isEmpty()) {
+            return null;
+        }
+        return h.get(Math.floorMod(next.getAndIncrement(), h.size()));
+    }
+
+    /**
+     * Takes a replica out of rotation until the next successful check, e.g. after a failed connection attempt.
+     */
+    public void markDown(String name, Exception cause) {
+        if (down.add(name)) {
+            log.warn("Replica {} marked down, reads fall back to other replicas or the primary", name, cause);
+        }
+        healthy = healthy.stream().filter(n -> !n.equals(name)).toList();
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.check-interval-ms:5000}")
+    public void checkReplicas() {
+        List<String> up = new ArrayList<>(replicas.size());
+        replicas.forEach((name, ds) -> {
+            String problem = probe(ds);
+            if (problem == null) {
+                up.add(name);
+                if (down.remove(name)) {
+                    log.info("Replica {} is back in rotation", name);
+                }
+            } else if (down.add(name)) {
+                log.warn("Replica {} taken out of rotation: {}", name, problem);
+            }
+        });
+        healthy = List.copyOf(up);
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, DataSource> replica : replicas.entrySet()) {
+            close(replica.getKey(), replica.getValue());
+        }
+        close("primary", primary);
+    }
+
+    private static void close(String name, DataSource ds) {
+        if (ds instanceof Closeable c) {
+            try {
+                c.close();
+            } catch (IOException ex) {
+                log.warn("Failed to close data source {}", name, ex);
+            }
+        }
+    }
+
+    /**
+     * @return null when the replica may serve reads, otherwise why not
+     */
+    private String probe(DataSource ds) {
+        try (Connection c = ds.getConnection()) {
+            if (props.getLagQuery() == null || props.getLagQuery().isBlank()) {
+                return c.isValid(2) ? null : "connection not valid";
+            }
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery(props.getLagQuery())) {
+                if (!rs.next()) {
+                    return "not replicating";
+                }
+                long lag = rs.getLong(props.getLagColumn());
+                if (rs.wasNull()) {
+                    return "replication stopped";
+                }
+                return lag <= props.getMaxLagSeconds() ? null : "lagging " + lag + "s";
+            }
+        } catch (SQLException ex) {
+            return ex.getMessage();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.project.gis.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 开启 app.datasource.replicas.enabled 后，用主库（spring.datasource）+ 只读副本组成的路由数据源替换默认数据源。
+ * {@code @Transactional(readOnly = true)} 的方法读副本，其余读写都走主库。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replicas.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class RoutingDataSourceConfig {
+
+    @Bean
+    public ReplicaSelector replicaSelector(DataSourceProperties primaryProperties, ReplicaProperties props) {
+        HikariDataSource primary = primaryProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (ReplicaProperties.Node node : props.getNodes()) {
+            HikariDataSource ds = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(node.getUrl())
+                    .username(node.getUsername() != null ? node.getUsername() : primaryProperties.determineUsername())
+                    .password(node.getPassword() != null ? node.getPassword() : primaryProperties.determinePassword())
+                    .build();
+            ds.setPoolName("replica-" + node.getName());
+            ds.setReadOnly(true);
+            ds.setConnectionTimeout(props.getConnectionTimeoutMs());
+            // don't fail startup when a replica is down, the health check handles it
+            ds.setInitializationFailTimeout(-1);
+            replicas.put(node.getName(), ds);
+        }
+        return new ReplicaSelector(primary, replicas, props);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaSelector selector) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(selector);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
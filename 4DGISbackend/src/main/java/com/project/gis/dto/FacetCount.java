@@ -0,0 +1,17 @@
+package com.project.gis.dto;
+
+/**
+ * FacetCount
+ */
+@lombok.Data
+public class FacetCount {
+    /**
+     * 分面取值：类型 / 所有者 / 标签 ID，或可见性 public / private / shared
+     */
+    private String value;
+    /**
+     * 显示名称（类型名、用户名、标签名），未知时为空
+     */
+    private String label;
+    private Long count;
+}
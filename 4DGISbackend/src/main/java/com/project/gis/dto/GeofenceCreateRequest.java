@@ -0,0 +1,29 @@
+package com.project.gis.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.OffsetDateTime;
+
+/**
+ * GeofenceCreateRequest
+ */
+@lombok.Data
+public class GeofenceCreateRequest {
+    private String name;
+    /**
+     * GeoJSON Polygon / MultiPolygon（或包着它们的 Feature）
+     */
+    private JsonNode geometry;
+    /**
+     * 监视的标记类型 ID，为空时监视所有类型
+     */
+    private String type;
+    /**
+     * 围栏生效时间，为空表示立即生效
+     */
+    private OffsetDateTime timeStart;
+    /**
+     * 围栏失效时间，为空表示长期有效
+     */
+    private OffsetDateTime timeEnd;
+}
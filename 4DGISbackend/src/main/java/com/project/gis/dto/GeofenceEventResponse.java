@@ -0,0 +1,19 @@
+package com.project.gis.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * GeofenceEventResponse
+ */
+@lombok.Data
+public class GeofenceEventResponse {
+    /**
+     * 事件 ID，单调递增，可作为下次拉取的 after 参数
+     */
+    private String id;
+    private String geofenceId;
+    private String markerId;
+    private double longitude;
+    private double latitude;
+    private OffsetDateTime occurredAt;
+}
@@ -0,0 +1,19 @@
+package com.project.gis.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.OffsetDateTime;
+
+/**
+ * GeofenceResponse
+ */
+@lombok.Data
+public class GeofenceResponse {
+    private String id;
+    private String name;
+    private JsonNode geometry;
+    private String type;
+    private OffsetDateTime timeStart;
+    private OffsetDateTime timeEnd;
+    private OffsetDateTime createdAt;
+}
@@ -0,0 +1,28 @@
+package com.project.gis.dto;
+
+/**
+ * HeatmapResponse
+ */
+@lombok.Data
+public class HeatmapResponse {
+    /**
+     * 网格西南角经度（视口按网格对齐后的起点，跨日界线时 maxLon 可能超过 180）
+     */
+    private double minLon;
+    /**
+     * 网格西南角纬度
+     */
+    private double minLat;
+    /**
+     * 单元格边长（度）
+     */
+    private double cellSize;
+    private int cols;
+    private int rows;
+    /**
+     * 各单元格内的标记点数量，按行存放，第 0 行在最南侧
+     */
+    private int[] counts;
+    private int max;
+    private long total;
+}
@@ -0,0 +1,38 @@
+package com.project.gis.dto;
+
+import java.util.List;
+
+/**
+ * MarkerFacetsResponse
+ */
+@lombok.Data
+public class MarkerFacetsResponse {
+    /**
+     * 符合筛选条件的标记总数
+     */
+    private Long total;
+    /**
+     * 按标记类型计数，数量降序
+     */
+    private List<FacetCount> types;
+    /**
+     * 按可见性计数
+     */
+    private List<FacetCount> visibility;
+    /**
+     * 按所有者计数，数量降序，只返回前 50 个
+     */
+    private List<FacetCount> owners;
+    /**
+     * 按标签计数，数量降序
+     */
+    private List<FacetCount> tags;
+    /**
+     * 时间分桶粒度：hour / day / week
+     */
+    private String interval;
+    /**
+     * 按开始时间分桶计数，时间升序，只包含非空桶
+     */
+    private List<TimeBucketCount> timeBuckets;
+}
@@ -0,0 +1,20 @@
+package com.project.gis.dto;
+
+/**
+ * MarkerIngestResponse
+ */
+@lombok.Data
+public class MarkerIngestResponse {
+    /**
+     * 写入缓冲中的请求编号，用于查询落库状态
+     */
+    private String ingestId;
+    /**
+     * PENDING / COMMITTED / FAILED
+     */
+    private String status;
+    /**
+     * 落库后的标记点 ID，未落库时为空
+     */
+    private String markerId;
+}
@@ -0,0 +1,15 @@
+package com.project.gis.dto;
+
+import com.project.gis.entity.Marker;
+
+/**
+ * MarkerNearbyResponse
+ */
+@lombok.Data
+public class MarkerNearbyResponse {
+    private Marker marker;
+    /**
+     * 与查询点的距离（米），带高度权重时为三维距离
+     */
+    private double distance;
+}
@@ -0,0 +1,28 @@
+package com.project.gis.dto;
+
+import com.project.gis.entity.Marker;
+
+import java.time.OffsetDateTime;
+
+/**
+ * MarkerRevisionResponse
+ */
+@lombok.Data
+public class MarkerRevisionResponse {
+    /**
+     * 修订序号
+     */
+    private long revision;
+    /**
+     * 变更类型：CREATE / UPDATE / DELETE
+     */
+    private String op;
+    /**
+     * 记录时间
+     */
+    private OffsetDateTime recordedAt;
+    /**
+     * 该修订之后的标记状态，DELETE 时为空
+     */
+    private Marker marker;
+}
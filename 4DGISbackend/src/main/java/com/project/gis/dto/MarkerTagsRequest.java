@@ -0,0 +1,14 @@
+package com.project.gis.dto;
+
+import java.util.List;
+
+/**
+ * MarkerTagsRequest
+ */
+@lombok.Data
+public class MarkerTagsRequest {
+    /**
+     * 要添加到标记上的标签 ID
+     */
+    private List<String> tagIds;
+}
@@ -1,5 +1,7 @@
 package com.project.gis.dto;
 
+import org.springframework.format.annotation.DateTimeFormat;
+
 import java.time.OffsetDateTime;
 
 /**
@@ -11,6 +13,10 @@ public class MarkersGetRequest {
      * 关键词搜索（匹配标题、描述）
      */
     private String keyword;
+    /**
+     * 视口范围：minLon,minLat,maxLon,maxLat
+     */
+    private String bbox;
     /**
      * 最大高度（米）
      */
@@ -22,13 +28,36 @@ public class MarkersGetRequest {
     /**
      * ISO 8601 格式，筛选时间范围结束点。
      */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
     private OffsetDateTime timeEnd;
     /**
      * ISO 8601 格式，筛选时间范围开始点。
      */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
     private OffsetDateTime timeStart;
     /**
      * 标记类型 ID
      */
     private String type;
+    /**
+     * ISO 8601 格式，快照时刻：只返回该时刻处于有效期内的标记（时间轴拖动）。
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private OffsetDateTime at;
+    /**
+     * 标签 ID，逗号分隔
+     */
+    private String tags;
+    /**
+     * 多个标签的组合方式：all（同时带有全部标签，默认）或 any（带有任一标签）
+     */
+    private String tagMode;
+    /**
+     * 分页：跳过前多少条（按 id 升序），默认 0
+     */
+    private Integer offset;
+    /**
+     * 分页：最多返回多少条，不传则返回全部
+     */
+    private Integer limit;
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.project.gis.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * MarkersRegionQueryRequest
+ */
+@lombok.Data
+@lombok.EqualsAndHashCode(callSuper = true)
+public class MarkersRegionQueryRequest extends MarkersGetRequest {
+    /**
+     * GeoJSON Polygon / MultiPolygon（或包着它们的 Feature），坐标为 WGS 84 [经度, 纬度]
+     */
+    private JsonNode geometry;
+}
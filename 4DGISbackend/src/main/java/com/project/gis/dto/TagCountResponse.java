@@ -0,0 +1,14 @@
+package com.project.gis.dto;
+
+/**
+ * TagCountResponse
+ */
+@lombok.Data
+public class TagCountResponse {
+    private String tagId;
+    private String name;
+    /**
+     * 查询结果中带有该标签的标记数量
+     */
+    private Integer count;
+}
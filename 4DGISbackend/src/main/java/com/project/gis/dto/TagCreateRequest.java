@@ -0,0 +1,12 @@
+package com.project.gis.dto;
+
+/**
+ * TagCreateRequest
+ */
+@lombok.Data
+public class TagCreateRequest {
+    /**
+     * 标签名称，如“超市”、“停车场”；已存在时返回现有标签
+     */
+    private String name;
+}
@@ -0,0 +1,10 @@
+package com.project.gis.dto;
+
+/**
+ * TagResponse
+ */
+@lombok.Data
+public class TagResponse {
+    private String id;
+    private String name;
+}
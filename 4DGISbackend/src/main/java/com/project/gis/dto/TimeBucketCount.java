@@ -0,0 +1,18 @@
+package com.project.gis.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * TimeBucketCount
+ */
+@lombok.Data
+public class TimeBucketCount {
+    /**
+     * 桶的起始时刻（UTC 对齐，周从周一开始）
+     */
+    private OffsetDateTime start;
+    /**
+     * 开始时间落在该桶内的标记数量
+     */
+    private Long count;
+}
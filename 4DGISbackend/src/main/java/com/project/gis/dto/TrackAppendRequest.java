@@ -0,0 +1,14 @@
+package com.project.gis.dto;
+
+import java.util.List;
+
+/**
+ * TrackAppendRequest
+ */
+@lombok.Data
+public class TrackAppendRequest {
+    /**
+     * 轨迹采样，可乱序
+     */
+    private List<TrackPoint> points;
+}
@@ -0,0 +1,16 @@
+package com.project.gis.dto;
+
+/**
+ * TrackAppendResponse
+ */
+@lombok.Data
+public class TrackAppendResponse {
+    /**
+     * 已接收的采样数
+     */
+    private int accepted;
+    /**
+     * 被丢弃的采样数（字段无效或早于已落库的轨迹）
+     */
+    private int rejected;
+}
@@ -0,0 +1,13 @@
+package com.project.gis.dto;
+
+import java.util.List;
+
+/**
+ * TrackGetResponse
+ */
+@lombok.Data
+public class TrackGetResponse {
+    private String markerId;
+    private List<TrackPoint> points;
+    private int total;
+}
@@ -0,0 +1,26 @@
+package com.project.gis.dto;
+
+import java.time.OffsetDateTime;
+
+/**
+ * TrackPoint
+ */
+@lombok.Data
+public class TrackPoint {
+    /**
+     * 采样时间
+     */
+    private OffsetDateTime time;
+    /**
+     * 经度
+     */
+    private Double longitude;
+    /**
+     * 纬度
+     */
+    private Double latitude;
+    /**
+     * 高度
+     */
+    private Double altitude;
+}
@@ -21,6 +21,15 @@ public enum Visibility {
         }
     }
 
+    /**
+     * Like {@link #forValue(String)}, but unknown or missing values map to PRIVATE instead of failing.
+     */
+    public static Visibility of(String value) {
+        if ("public".equals(value)) return PUBLIC;
+        if ("shared".equals(value)) return SHARED;
+        return PRIVATE;
+    }
+
     public static Visibility forValue(String value) throws IOException {
         if ("private".equals(value)) return PRIVATE;
         if ("public".equals(value)) return PUBLIC;
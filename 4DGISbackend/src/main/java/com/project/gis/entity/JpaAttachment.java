@@ -5,7 +5,7 @@ import lombok.Data;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "attachments")
+@Table(name = "attachments", indexes = {@Index(name = "idx_marker_id", columnList = "marker_id")})
 @Data
 public class JpaAttachment {
     @Id
@@ -0,0 +1,36 @@
+package com.project.gis.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.OffsetDateTime;
+
+/**
+ * 变更日志（多节点缓存失效总线），写操作在同一事务里追加一条，各节点按 id 顺序拉取
+ */
+@Entity
+@Table(name = "change_log", indexes = {@Index(name = "idx_change_log_created", columnList = "created_at")})
+@Data
+public class JpaChangeLogEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ChangeKind name
+    @Column(nullable = false, length = 32)
+    private String kind;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    // node that made the change; it has already applied it and skips the entry
+    @Column(nullable = false, length = 64)
+    private String origin;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        this.createdAt = OffsetDateTime.now();
+    }
+}
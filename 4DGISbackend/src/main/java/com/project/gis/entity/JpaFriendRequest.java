@@ -5,7 +5,8 @@ import lombok.Data;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "friend_requests", uniqueConstraints = {@UniqueConstraint(columnNames = {"requester_id","recipient_id"})})
+@Table(name = "friend_requests", uniqueConstraints = {@UniqueConstraint(columnNames = {"requester_id","recipient_id"})},
+        indexes = {@Index(name = "idx_friend_request_recipient", columnList = "recipient_id")})
 @Data
 public class JpaFriendRequest {
     @Id
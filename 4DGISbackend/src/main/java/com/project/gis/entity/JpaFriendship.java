@@ -5,7 +5,7 @@ import lombok.Data;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "friendships")
+@Table(name = "friendships", indexes = {@Index(name = "idx_friendship_user2", columnList = "user2_id,user1_id")})
 @Data
 public class JpaFriendship {
     @EmbeddedId
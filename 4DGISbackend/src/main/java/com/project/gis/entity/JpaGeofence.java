@@ -0,0 +1,46 @@
+package com.project.gis.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.OffsetDateTime;
+
+/**
+ * 用户定义的地理围栏：指定类型的标记点在有效时间内出现在 / 移入区域时产生事件
+ */
+@Entity
+@Table(name = "geofences", indexes = {@Index(name = "idx_geofence_owner", columnList = "owner_id")})
+@Data
+public class JpaGeofence {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(nullable = false)
+    private String name;
+
+    // WKT POLYGON / MULTIPOLYGON
+    @Lob
+    @Column(nullable = false, columnDefinition = "MEDIUMTEXT")
+    private String geometry;
+
+    // null watches every type
+    @Column(name = "marker_type_id")
+    private Long markerTypeId;
+
+    @Column(name = "active_from")
+    private OffsetDateTime activeFrom;
+
+    @Column(name = "active_until")
+    private OffsetDateTime activeUntil;
+
+    @Column(name = "created_at", nullable = false)
+    private OffsetDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        this.createdAt = OffsetDateTime.now();
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.gis.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.OffsetDateTime;
+
+/**
+ * 围栏触发记录（标记点进入围栏）
+ */
+@Entity
+@Table(name = "geofence_events", indexes = {@Index(name = "idx_geofence_event_owner", columnList = "owner_id,id"),
+        @Index(name = "idx_geofence_event_fence", columnList = "geofence_id")})
+@Data
+public class JpaGeofenceEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "geofence_id", nullable = false)
+    private Long geofenceId;
+
+    // owner of the fence, i.e. who gets notified
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    @Column(name = "marker_id", nullable = false)
+    private Long markerId;
+
+    @Column(nullable = false)
+    private Double longitude;
+
+    @Column(nullable = false)
+    private Double latitude;
+
+    @Column(name = "occurred_at", nullable = false)
+    private OffsetDateTime occurredAt;
+}
@@ -1,11 +1,13 @@
 package com.project.gis.entity;
 
+import com.project.gis.spatial.GeoCell;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "markers")
+@Table(name = "markers", indexes = {@Index(name = "idx_cell_id", columnList = "cell_id"),
+        @Index(name = "idx_owner_id", columnList = "owner_id")})
 @Data
 public class JpaMarker {
     @Id
@@ -22,6 +24,10 @@ public class JpaMarker {
     @Column(name = "location", columnDefinition = "text", nullable = false)
     private String location;
 
+    // Z-order key of location (see GeoCell), recomputed whenever the marker is created or moved
+    @Column(name = "cell_id")
+    private Long cellId;
+
     @Column
     private Double altitude;
 
@@ -53,10 +59,12 @@ public class JpaMarker {
     public void prePersist() {
         this.createdAt = OffsetDateTime.now();
         this.updatedAt = this.createdAt;
+        this.cellId = GeoCell.of(this.location);
     }
 
     @PreUpdate
     public void preUpdate() {
         this.updatedAt = OffsetDateTime.now();
+        this.cellId = GeoCell.of(this.location);
     }
 }
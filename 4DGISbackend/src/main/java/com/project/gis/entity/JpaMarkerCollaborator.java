@@ -5,7 +5,7 @@ import lombok.Data;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "marker_collaborators")
+@Table(name = "marker_collaborators", indexes = {@Index(name = "idx_collaborator_user", columnList = "user_id")})
 @Data
 public class JpaMarkerCollaborator {
     @EmbeddedId
@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
-@Table(name = "marker_tags")
+@Table(name = "marker_tags", indexes = {@Index(name = "idx_marker_tag_tag", columnList = "tag_id")})
 @Data
 public class JpaMarkerTag {
     @EmbeddedId
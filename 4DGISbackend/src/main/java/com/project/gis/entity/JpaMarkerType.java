@@ -2,11 +2,15 @@ package com.project.gis.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.OffsetDateTime;
 
 @Entity
 @Table(name = "marker_types")
 @Data
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "marker-types")
 public class JpaMarkerType {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
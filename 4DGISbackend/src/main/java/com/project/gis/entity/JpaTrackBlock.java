@@ -0,0 +1,33 @@
+package com.project.gis.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * 标记点轨迹的一个压缩块（列式编码的采样序列，见 TrackBlockCodec）
+ */
+@Entity
+@Table(name = "marker_track_blocks", indexes = {@Index(name = "idx_track_marker_time", columnList = "marker_id,start_time")})
+@Data
+public class JpaTrackBlock {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "marker_id", nullable = false)
+    private Long markerId;
+
+    // epoch millis of the first and last sample in the block
+    @Column(name = "start_time", nullable = false)
+    private Long startTime;
+
+    @Column(name = "end_time", nullable = false)
+    private Long endTime;
+
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    @Lob
+    @Column(name = "data", nullable = false, length = 16777215)
+    private byte[] data;
+}
@@ -11,5 +11,8 @@ public enum ErrorCode {
   FORBIDDEN,
   NOT_FOUND,
   INTERNAL_ERROR,
-  ALREADY_FRIENDS
+  ALREADY_FRIENDS,
+  SERVICE_UNAVAILABLE,
+  TOO_MANY_REQUESTS,
+  ARCHIVED
 }
@@ -0,0 +1,70 @@
+package com.project.gis.geofence;
+
+import com.project.gis.spatial.GeoJson;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 围栏的不可变空间索引：STR 打包的 R 树按外包框粗筛，再用预处理几何精确判断。
+ * 构建后只读，可被多个线程同时查询；围栏变化时由 {@link GeofenceService} 整体重建并替换。
+ */
+final class FenceIndex {
+    static final FenceIndex EMPTY = new FenceIndex(List.of());
+
+    private final STRtree tree;
+    private final int size;
+
+    FenceIndex(Collection<Fence> fences) {
+        STRtree t = new STRtree();
+        for (Fence f : fences) {
+            t.insert(f.region().getGeometry().getEnvelopeInternal(), f);
+        }
+        t.build();
+        this.tree = t;
+        this.size = fences.size();
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Fences whose region covers the point, boundary included.
+     */
+    @SuppressWarnings("unchecked")
+    List<Fence> covering(double lon, double lat) {
+        if (size == 0) {
+            return List.of();
+        }
+        List<Fence> hits = tree.query(new Envelope(lon, lon, lat, lat));
+        if (hits.isEmpty()) {
+            return hits;
+        }
+        Point p = GeoJson.FACTORY.createPoint(new Coordinate(lon, lat));
+        List<Fence> out = new ArrayList<>(hits.size());
+        for (Fence f : hits) {
+            if (f.region().covers(p)) {
+                out.add(f);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param typeId 0 for any type
+     * @param from   inclusive, {@link Long#MIN_VALUE} when open
+     * @param until  exclusive, {@link Long#MAX_VALUE} when open
+     */
+    record Fence(long id, long ownerId, long typeId, long from, long until, PreparedGeometry region) {
+        boolean activeAt(long millis) {
+            return from <= millis && millis < until;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.project.gis.geofence;
+
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.changelog.RemoteChangeEvent;
+import com.project.gis.entity.JpaGeofence;
+import com.project.gis.entity.JpaGeofenceEvent;
+import com.project.gis.index.IndexedMarker;
+import com.project.gis.repository.GeofenceEventRepository;
+import com.project.gis.repository.GeofenceRepository;
+import com.project.gis.spatial.GeoJson;
+import jakarta.annotation.PreDestroy;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 地理围栏。
+ * <p>
+ * 标记点写入只把 (旧位置, 新位置) 放进有界队列就返回；单个后台线程成批取出，在内存围栏索引上判断是否进入了某个围栏，
+ * 触发记录批量落库后再发布 {@link GeofenceTriggeredEvent}。队列满时丢弃并计数，不会拖慢写入。
+ * 围栏本身很少变化，每次增删提交后整体重建索引并原子替换（copy-on-write），查询侧无需加锁；增删同时写入变更日志，
+ * 其它节点收到 GEOFENCE 变更后同样重建。
+ */
+@Service
+public class GeofenceService {
+    private static final Logger log = LoggerFactory.getLogger(GeofenceService.class);
+
+    private final GeofenceRepository fenceRepository;
+    private final GeofenceEventRepository eventRepository;
+    private final ApplicationEventPublisher publisher;
+    private final ChangeLog changeLog;
+    private final BlockingQueue<Change> queue;
+    private final int batchSize;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "geofence-evaluator");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile FenceIndex index = FenceIndex.EMPTY;
+
+    public GeofenceService(GeofenceRepository fenceRepository, GeofenceEventRepository eventRepository,
+                           ApplicationEventPublisher publisher, ChangeLog changeLog,
+                           @Value("${app.geofence.queue-capacity:65536}") int queueCapacity,
+                           @Value("${app.geofence.batch-size:512}") int batchSize) {
+        this.fenceRepository = fenceRepository;
+        this.eventRepository = eventRepository;
+        this.publisher = publisher;
+        this.changeLog = changeLog;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuild();
+        worker.submit(this::run);
+    }
+
+    @PreDestroy
+    public void stop() {
+        worker.shutdownNow();
+    }
+
+    @Transactional
+    public JpaGeofence create(JpaGeofence fence) {
+        JpaGeofence saved = fenceRepository.save(fence);
+        changeLog.append(ChangeKind.GEOFENCE, saved.getId());
+        rebuildAfterCommit();
+        return saved;
+    }
+
+    public Optional<JpaGeofence> get(Long id) {
+        return fenceRepository.findById(id);
+    }
+
+    public List<JpaGeofence> listByOwner(Long ownerId) {
+        return fenceRepository.findByOwnerId(ownerId);
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        eventRepository.deleteByGeofenceId(id);
+        fenceRepository.deleteById(id);
+        changeLog.append(ChangeKind.GEOFENCE, id);
+        rebuildAfterCommit();
+    }
+
+    /**
+     * Rebuilds the index when another node created or deleted a geofence.
+     */
+    @EventListener
+    public void onRemoteChange(RemoteChangeEvent change) {
+        if (change.kind() == ChangeKind.GEOFENCE) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Events for the owner's fences with id > afterId, oldest first.
+     */
+    public List<JpaGeofenceEvent> events(Long ownerId, long afterId, int limit) {
+        return eventRepository.findByOwnerIdAndIdGreaterThanOrderByIdAsc(ownerId, afterId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Queues a marker write for evaluation; never blocks.
+     *
+     * @param before the indexed state before the write, null for a new marker
+     */
+    public void submit(IndexedMarker before, IndexedMarker after) {
+        if (after == null || index.size() == 0) {
+            return;
+        }
+        if (!queue.offer(new Change(before, after, System.currentTimeMillis()))) {
+            long n = dropped.incrementAndGet();
+            // log at 1, 2, 4, 8, ... drops so a sustained overload does not flood the log
+            if ((n & (n - 1)) == 0) {
+                log.warn("Geofence queue full, {} marker changes dropped so far", n);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds once the surrounding transaction has committed, so the new index reads the committed fences and a
+     * rollback leaves the current one in place.
+     */
+    private void rebuildAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            rebuild();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                rebuild();
+            }
+        });
+    }
+
+    private synchronized void rebuild() {
+        List<FenceIndex.Fence> fences = new ArrayList<>();
+        WKTReader reader = new WKTReader(GeoJson.FACTORY);
+        for (JpaGeofence f : fenceRepository.findAll()) {
+            try {
+                fences.add(new FenceIndex.Fence(f.getId(), f.getOwnerId(),
+                        f.getMarkerTypeId() == null ? 0L : f.getMarkerTypeId(),
+                        f.getActiveFrom() == null ? Long.MIN_VALUE : f.getActiveFrom().toInstant().toEpochMilli(),
+                        f.getActiveUntil() == null ? Long.MAX_VALUE : f.getActiveUntil().toInstant().toEpochMilli(),
+                        PreparedGeometryFactory.prepare(reader.read(f.getGeometry()))));
+            } catch (ParseException ex) {
+                log.warn("Skipping geofence {} with unreadable geometry", f.getId(), ex);
+            }
+        }
+        index = new FenceIndex(fences);
+    }
+
+    private void run() {
+        List<Change> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+                evaluate(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException ex) {
+                log.error("Geofence evaluation failed for {} marker changes", batch.size(), ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void evaluate(List<Change> batch) {
+        FenceIndex fences = index;
+        List<JpaGeofenceEvent> events = new ArrayList<>();
+        for (Change c : batch) {
+            IndexedMarker m = c.after();
+            for (FenceIndex.Fence f : fences.covering(m.lon(), m.lat())) {
+                if (!f.activeAt(c.at()) || !watches(f, m) || wasInside(f, c.before())) {
+                    continue;
+                }
+                JpaGeofenceEvent e = new JpaGeofenceEvent();
+                e.setGeofenceId(f.id());
+                e.setOwnerId(f.ownerId());
+                e.setMarkerId(m.id());
+                e.setLongitude(m.lon());
+                e.setLatitude(m.lat());
+                e.setOccurredAt(OffsetDateTime.ofInstant(Instant.ofEpochMilli(c.at()), ZoneOffset.UTC));
+                events.add(e);
+            }
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        eventRepository.saveAll(events);
+        for (JpaGeofenceEvent e : events) {
+            publisher.publishEvent(new GeofenceTriggeredEvent(e));
+        }
+    }
+
+    private static boolean watches(FenceIndex.Fence f, IndexedMarker m) {
+        return (f.typeId() == 0L || f.typeId() == m.typeId()) && m.visibleTo(f.ownerId());
+    }
+
+    // a marker that was already inside (and already watched) did not enter
+    private static boolean wasInside(FenceIndex.Fence f, IndexedMarker before) {
+        return before != null && watches(f, before)
+                && f.region().covers(GeoJson.FACTORY.createPoint(new Coordinate(before.lon(), before.lat())));
+    }
+
+    private record Change(IndexedMarker before, IndexedMarker after, long at) {
+    }
+}
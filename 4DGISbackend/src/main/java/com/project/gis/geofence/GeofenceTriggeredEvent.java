@@ -0,0 +1,9 @@
+package com.project.gis.geofence;
+
+import com.project.gis.entity.JpaGeofenceEvent;
+
+/**
+ * 围栏触发后发布的应用事件，供推送等通知渠道订阅
+ */
+public record GeofenceTriggeredEvent(JpaGeofenceEvent event) {
+}
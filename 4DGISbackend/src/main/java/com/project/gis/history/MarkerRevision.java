@@ -0,0 +1,104 @@
+package com.project.gis.history;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.spatial.Wkt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 标记点的一次变更记录（修订），同时也是该修订之后标记点的完整状态
+ *
+ * @param revision   global, strictly increasing sequence number
+ * @param recordedAt transaction time in epoch millis, non-decreasing with {@code revision}
+ */
+public record MarkerRevision(long revision, long recordedAt, Op op, long markerId, String title, String description,
+        double lon, double lat, double altitude, long startMillis, long endMillis, long typeId, long creatorId,
+        long ownerId, String visibility) {
+
+    public enum Op {
+        CREATE, UPDATE, DELETE
+    }
+
+    static MarkerRevision of(long revision, long recordedAt, Op op, JpaMarker m) {
+        if (op == Op.DELETE) {
+            return new MarkerRevision(revision, recordedAt, op, m.getId(), null, null, Double.NaN, Double.NaN,
+                    Double.NaN, 0L, 0L, 0L, 0L, 0L, null);
+        }
+        double[] p = Wkt.parsePoint(m.getLocation());
+        return new MarkerRevision(revision, recordedAt, op, m.getId(), m.getTitle(), m.getDescription(),
+                p == null ? Double.NaN : p[0], p == null ? Double.NaN : p[1],
+                m.getAltitude() == null ? Double.NaN : m.getAltitude(),
+                m.getStartTime() == null ? 0L : m.getStartTime().toInstant().toEpochMilli(),
+                m.getEndTime() == null ? Long.MAX_VALUE : m.getEndTime().toInstant().toEpochMilli(),
+                m.getMarkerTypeId() == null ? 0L : m.getMarkerTypeId(),
+                m.getCreatorId() == null ? 0L : m.getCreatorId(),
+                m.getOwnerId() == null ? 0L : m.getOwnerId(),
+                m.getVisibility());
+    }
+
+    MarkerRevision withRevision(long revision) {
+        return new MarkerRevision(revision, recordedAt, op, markerId, title, description, lon, lat, altitude,
+                startMillis, endMillis, typeId, creatorId, ownerId, visibility);
+    }
+
+    public boolean activeAt(long millis) {
+        return startMillis <= millis && millis < endMillis;
+    }
+
+    byte[] encode() {
+        byte[] t = utf8(title), d = utf8(description), v = utf8(visibility);
+        ByteBuffer b = ByteBuffer.allocate(8 + 8 + 1 + 8 + 3 * 8 + 5 * 8 + 3 * 4 + len(t) + len(d) + len(v));
+        b.putLong(revision).putLong(recordedAt).put((byte) op.ordinal()).putLong(markerId);
+        b.putDouble(lon).putDouble(lat).putDouble(altitude);
+        b.putLong(startMillis).putLong(endMillis).putLong(typeId).putLong(creatorId).putLong(ownerId);
+        put(b, t);
+        put(b, d);
+        put(b, v);
+        return b.array();
+    }
+
+    /**
+     * Reads only the marker id of an encoded revision, without moving the buffer.
+     */
+    static long markerIdOf(ByteBuffer b) {
+        return b.getLong(b.position() + 17);
+    }
+
+    static MarkerRevision decode(ByteBuffer b) {
+        long revision = b.getLong(), recordedAt = b.getLong();
+        Op op = Op.values()[b.get()];
+        long markerId = b.getLong();
+        double lon = b.getDouble(), lat = b.getDouble(), altitude = b.getDouble();
+        long start = b.getLong(), end = b.getLong(), typeId = b.getLong(), creatorId = b.getLong(), ownerId = b.getLong();
+        String title = get(b), description = get(b), visibility = get(b);
+        return new MarkerRevision(revision, recordedAt, op, markerId, title, description, lon, lat, altitude, start,
+                end, typeId, creatorId, ownerId, visibility);
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int len(byte[] s) {
+        return s == null ? 0 : s.length;
+    }
+
+    private static void put(ByteBuffer b, byte[] s) {
+        if (s == null) {
+            b.putInt(-1);
+        } else {
+            b.putInt(s.length).put(s);
+        }
+    }
+
+    private static String get(ByteBuffer b) {
+        int n = b.getInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] s = new byte[n];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,553 @@
+package com.project.gis.history;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.shard.MarkerStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 标记点修订的追加写日志。
+ * <p>
+ * 修订按序号追加到分段文件 rev-&lt;首个序号&gt;.log（每条记录：长度 + 内容 + CRC32），读取时以只读方式内存映射；
+ * 每 {@code snapshot-every} 条修订在后台生成一次全量快照 snap-&lt;序号&gt;.bin。as-of 查询从不晚于目标时刻的最近快照出发，
+ * 只回放其后的日志。写路径只有一次顺序 append，不会对数据库产生额外的 UPDATE。
+ * <p>
+ * 内存中为每个标记点记着它各条修订在日志中的位置（每条修订 8 字节），启动时扫描一遍日志建立，
+ * 所以查询单个标记点的修订只读它自己的记录。快照只保留最新的 {@code snapshot-retention} 个，
+ * 早于最旧快照的 as-of 查询从日志开头回放。
+ * <p>
+ * 新建的（或文件丢失后重建的）日志先为 markers 表中已有的每个标记点写一条 CREATE 修订，记录时刻取其最后更新时间，
+ * 更早的状态无从得知。日志是每个节点本地的文件：本节点的写入在提交后追加，其它节点的写入经 change_log
+ * 由 MarkerService 追加，记录时刻是本节点得知变更的时刻，比原节点晚不到一个轮询周期（app.change-log.poll-ms）。
+ */
+@Component
+public class RevisionLog {
+    private static final Logger log = LoggerFactory.getLogger(RevisionLog.class);
+    private static final String SEGMENT_PREFIX = "rev-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snap-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final int SNAPSHOT_MAGIC = 0x4D525356;
+    private static final int FORMAT_VERSION = 1;
+    private static final int SEED_PAGE_SIZE = 1000;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final int snapshotEvery;
+    private final int snapshotRetention;
+    private final boolean fsync;
+    private final MarkerStore markerStore;
+
+    // first revision of each segment -> segment file
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    // segment files in revision order, indexed by the ordinal in a record position
+    private final List<Path> segmentOrder = new ArrayList<>();
+    // marker id -> positions (segment ordinal << 32 | offset) of its records, oldest first; guarded by this
+    private final Map<Long, Positions> positions = new HashMap<>();
+    // last revision covered by each snapshot -> recordedAt of that revision
+    private final ConcurrentSkipListMap<Long, Long> snapshots = new ConcurrentSkipListMap<>();
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "revision-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FileChannel active;
+    private Path activePath;
+    private long activeLength;
+    private long nextRevision = 1;
+    private long lastRecordedAt;
+    private long sinceSnapshot;
+
+    public RevisionLog(@Value("${app.history.dir:data/history}") String dir,
+                       @Value("${app.history.segment-bytes:67108864}") long segmentBytes,
+                       @Value("${app.history.snapshot-every:10000}") int snapshotEvery,
+                       @Value("${app.history.snapshot-retention:8}") int snapshotRetention,
+                       @Value("${app.history.fsync:false}") boolean fsync,
+                       MarkerStore markerStore) {
+        this.dir = Paths.get(dir);
+        // a segment is mapped in one piece
+        this.segmentBytes = Math.min(segmentBytes, Integer.MAX_VALUE);
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        this.snapshotRetention = Math.max(1, snapshotRetention);
+        this.fsync = fsync;
+        this.markerStore = markerStore;
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+            for (Path p : ds) {
+                String n = p.getFileName().toString();
+                if (n.startsWith(SEGMENT_PREFIX) && n.endsWith(SEGMENT_SUFFIX)) {
+                    segments.put(sequenceOf(n, SEGMENT_PREFIX, SEGMENT_SUFFIX), p);
+                } else if (n.startsWith(SNAPSHOT_PREFIX) && n.endsWith(SNAPSHOT_SUFFIX)) {
+                    Long recordedAt = readSnapshotHeader(p);
+                    if (recordedAt != null) {
+                        snapshots.put(sequenceOf(n, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX), recordedAt);
+                    }
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            roll(1);
+            seed();
+            return;
+        }
+        Map.Entry<Long, Path> last = segments.lastEntry();
+        long valid = 0;
+        for (Path p : segments.values()) {
+            int ordinal = segmentOrder.size();
+            segmentOrder.add(p);
+            // a crash can leave a torn record at the tail; the last segment is cut back to the last intact one
+            valid = readSegment(p, Long.MAX_VALUE, (payload, offset) -> {
+                index(MarkerRevision.markerIdOf(payload), ordinal, offset);
+                nextRevision = payload.getLong(payload.position()) + 1;
+                lastRecordedAt = payload.getLong(payload.position() + 8);
+                return true;
+            });
+        }
+        nextRevision = Math.max(nextRevision, last.getKey());
+        activePath = last.getValue();
+        active = FileChannel.open(activePath, StandardOpenOption.WRITE);
+        active.truncate(valid);
+        active.position(valid);
+        activeLength = valid;
+        sinceSnapshot = nextRevision - 1 - (snapshots.isEmpty() ? 0 : snapshots.lastKey());
+        log.info("Revision log opened at {}, next revision {}", dir.toAbsolutePath(), nextRevision);
+    }
+
+    /**
+     * Records the current state of every existing marker as of its last update, oldest first, so that as-of queries
+     * also find markers written before this log existed.
+     */
+    private void seed() throws IOException {
+        long now = System.currentTimeMillis();
+        List<MarkerRevision> base = new ArrayList<>();
+        long after = 0;
+        while (true) {
+            List<JpaMarker> page = markerStore.findPageAfter(after, SEED_PAGE_SIZE);
+            for (JpaMarker m : page) {
+                long since = m.getUpdatedAt() != null ? m.getUpdatedAt().toInstant().toEpochMilli()
+                        : m.getCreatedAt() != null ? m.getCreatedAt().toInstant().toEpochMilli() : now;
+                base.add(MarkerRevision.of(0, Math.min(since, now), MarkerRevision.Op.CREATE, m));
+            }
+            if (page.size() < SEED_PAGE_SIZE) {
+                break;
+            }
+            after = page.get(page.size() - 1).getId();
+        }
+        if (base.isEmpty()) {
+            return;
+        }
+        // recordedAt has to be non-decreasing along the log
+        base.sort(Comparator.comparingLong(MarkerRevision::recordedAt).thenComparingLong(MarkerRevision::markerId));
+        for (MarkerRevision r : base) {
+            write(r.withRevision(nextRevision));
+        }
+        active.force(true);
+        long upto = nextRevision - 1;
+        snapshotWriter.execute(() -> writeSnapshot(upto));
+        log.info("Revision log at {} seeded with {} existing markers", dir.toAbsolutePath(), base.size());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        snapshotWriter.shutdown();
+        if (active != null) {
+            active.force(true);
+            active.close();
+        }
+    }
+
+    public MarkerRevision appendDelete(Long markerId) {
+        JpaMarker stub = new JpaMarker();
+        stub.setId(markerId);
+        return append(MarkerRevision.Op.DELETE, stub);
+    }
+
+    public synchronized MarkerRevision append(MarkerRevision.Op op, JpaMarker m) {
+        long now = Math.max(System.currentTimeMillis(), lastRecordedAt);
+        MarkerRevision r = MarkerRevision.of(nextRevision, now, op, m);
+        write(r);
+        if (++sinceSnapshot >= snapshotEvery) {
+            sinceSnapshot = 0;
+            long upto = r.revision();
+            snapshotWriter.execute(() -> writeSnapshot(upto));
+        }
+        return r;
+    }
+
+    private void write(MarkerRevision r) {
+        byte[] payload = r.encode();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(payload.length + 8);
+        frame.putInt(payload.length).put(payload).putInt((int) crc.getValue()).flip();
+        try {
+            if (activeLength > 0 && activeLength + frame.remaining() > segmentBytes) {
+                roll(nextRevision);
+            }
+            index(r.markerId(), segmentOrder.size() - 1, activeLength);
+            while (frame.hasRemaining()) {
+                active.write(frame);
+            }
+            if (fsync) {
+                active.force(false);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        activeLength += frame.limit();
+        nextRevision = r.revision() + 1;
+        lastRecordedAt = r.recordedAt();
+    }
+
+    /**
+     * State of every marker as recorded at {@code millis}: the nearest earlier snapshot plus the log after it.
+     */
+    public Map<Long, MarkerRevision> asOf(long millis) {
+        Map<Long, MarkerRevision> state = new HashMap<>();
+        long base = 0;
+        for (Map.Entry<Long, Long> s : snapshots.descendingMap().entrySet()) {
+            if (s.getValue() > millis) {
+                continue;
+            }
+            try {
+                loadSnapshot(s.getKey(), state);
+                base = s.getKey();
+                break;
+            } catch (IOException ex) {
+                log.warn("Skipping unreadable revision snapshot {}: {}", s.getKey(), ex.getMessage());
+                state.clear();
+            }
+        }
+        replay(base, r -> {
+            if (r.recordedAt() > millis) {
+                return false;
+            }
+            apply(state, r);
+            return true;
+        });
+        return state;
+    }
+
+    /**
+     * Every revision of one marker, oldest first. Reads only that marker's records.
+     */
+    public List<MarkerRevision> revisionsOf(long markerId) {
+        long[] at;
+        List<Path> files;
+        // positions are added after their record is fully written, under the same lock
+        synchronized (this) {
+            Positions p = positions.get(markerId);
+            if (p == null) {
+                return List.of();
+            }
+            at = Arrays.copyOf(p.at, p.size);
+            files = List.copyOf(segmentOrder);
+        }
+        List<MarkerRevision> out = new ArrayList<>(at.length);
+        FileChannel ch = null;
+        int open = -1;
+        try {
+            for (long position : at) {
+                int ordinal = (int) (position >>> 32);
+                if (ordinal != open) {
+                    if (ch != null) {
+                        ch.close();
+                    }
+                    ch = FileChannel.open(files.get(ordinal), StandardOpenOption.READ);
+                    open = ordinal;
+                }
+                out.add(readRecord(ch, (int) position));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            closeQuietly(ch);
+        }
+        return out;
+    }
+
+    private static void closeQuietly(FileChannel ch) {
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException ignored) {
+                // read-only
+            }
+        }
+    }
+
+    private void index(long markerId, int ordinal, long offset) {
+        positions.computeIfAbsent(markerId, k -> new Positions()).add((long) ordinal << 32 | offset);
+    }
+
+    /**
+     * Visits revisions after {@code afterRevision} in order until the visitor returns false.
+     */
+    private void replay(long afterRevision, Predicate<MarkerRevision> visitor) {
+        Long from = segments.floorKey(afterRevision + 1);
+        boolean[] stopped = { false };
+        for (Path p : (from == null ? segments : segments.tailMap(from, true)).values()) {
+            try {
+                readSegment(p, readableLength(p), (payload, offset) -> {
+                    if (payload.getLong(payload.position()) <= afterRevision) {
+                        return true;
+                    }
+                    if (!visitor.test(MarkerRevision.decode(payload))) {
+                        stopped[0] = true;
+                        return false;
+                    }
+                    return true;
+                });
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            if (stopped[0]) {
+                return;
+            }
+        }
+    }
+
+    private static void apply(Map<Long, MarkerRevision> state, MarkerRevision r) {
+        if (r.op() == MarkerRevision.Op.DELETE) {
+            state.remove(r.markerId());
+        } else {
+            state.put(r.markerId(), r);
+        }
+    }
+
+    // the active segment may only be read up to what has been fully appended
+    private synchronized long readableLength(Path p) {
+        return p.equals(activePath) ? activeLength : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return offset just past the last intact record that was read
+     */
+    private static long readSegment(Path p, long limit, RecordVisitor visitor) throws IOException {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = Math.min(limit, ch.size());
+            if (size == 0) {
+                return 0;
+            }
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            while (buf.remaining() >= 4) {
+                int start = buf.position();
+                int len = buf.getInt();
+                if (len <= 0 || buf.remaining() < len + 4) {
+                    return start;
+                }
+                ByteBuffer payload = buf.slice(buf.position(), len);
+                crc.reset();
+                crc.update(payload.duplicate());
+                buf.position(buf.position() + len);
+                if ((int) crc.getValue() != buf.getInt()) {
+                    return start;
+                }
+                if (!visitor.accept(payload, start)) {
+                    return buf.position();
+                }
+            }
+            return buf.position();
+        }
+    }
+
+    private static MarkerRevision readRecord(FileChannel ch, int offset) throws IOException {
+        ByteBuffer len = ByteBuffer.allocate(4);
+        readFully(ch, len, offset);
+        ByteBuffer frame = ByteBuffer.allocate(len.flip().getInt() + 4);
+        readFully(ch, frame, offset + 4L);
+        ByteBuffer payload = frame.flip().slice(0, frame.limit() - 4);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != frame.getInt(frame.limit() - 4)) {
+            throw new IOException("checksum mismatch at offset " + offset);
+        }
+        return MarkerRevision.decode(payload);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, position + buf.position()) < 0) {
+                throw new IOException("unexpected end of segment");
+            }
+        }
+    }
+
+    private void roll(long firstRevision) throws IOException {
+        if (active != null) {
+            active.force(true);
+            active.close();
+        }
+        activePath = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstRevision, SEGMENT_SUFFIX));
+        active = FileChannel.open(activePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        activeLength = 0;
+        segments.put(firstRevision, activePath);
+        segmentOrder.add(activePath);
+    }
+
+    private void writeSnapshot(long upto) {
+        try {
+            Map<Long, MarkerRevision> state = new HashMap<>();
+            Map.Entry<Long, Long> prev = snapshots.floorEntry(upto);
+            long base = prev == null ? 0 : prev.getKey();
+            if (prev != null) {
+                loadSnapshot(base, state);
+            }
+            long[] recordedAt = { prev == null ? 0L : prev.getValue() };
+            replay(base, r -> {
+                if (r.revision() > upto) {
+                    return false;
+                }
+                apply(state, r);
+                recordedAt[0] = r.recordedAt();
+                return true;
+            });
+            Path target = snapshotPath(upto);
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                CheckedOutputStream checked = new CheckedOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(ch)), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(upto);
+                out.writeLong(recordedAt[0]);
+                out.writeInt(state.size());
+                for (MarkerRevision r : state.values()) {
+                    byte[] payload = r.encode();
+                    out.writeInt(payload.length);
+                    out.write(payload);
+                }
+                out.writeLong(checked.getChecksum().getValue());
+                out.flush();
+                ch.force(true);
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            snapshots.put(upto, recordedAt[0]);
+            log.info("Wrote revision snapshot at revision {} ({} markers)", upto, state.size());
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Failed to write revision snapshot at revision {}: {}", upto, ex.getMessage());
+        }
+        dropOldSnapshots();
+    }
+
+    /**
+     * Deletes the oldest snapshots beyond the retention. An as-of query still loading one skips it as unreadable
+     * and starts from an older snapshot or the beginning of the log.
+     */
+    private void dropOldSnapshots() {
+        while (snapshots.size() > snapshotRetention) {
+            Map.Entry<Long, Long> oldest = snapshots.pollFirstEntry();
+            try {
+                Files.deleteIfExists(snapshotPath(oldest.getKey()));
+            } catch (IOException ex) {
+                log.warn("Failed to delete revision snapshot at revision {}: {}", oldest.getKey(), ex.getMessage());
+            }
+        }
+    }
+
+    private void loadSnapshot(long revision, Map<Long, MarkerRevision> state) throws IOException {
+        try (FileChannel ch = FileChannel.open(snapshotPath(revision), StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.limit() < 36) {
+                throw new IOException("truncated snapshot");
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, buf.limit() - 8));
+            if (crc.getValue() != buf.getLong(buf.limit() - 8)) {
+                throw new IOException("checksum mismatch");
+            }
+            buf.position(24);
+            int count = buf.getInt();
+            for (int i = 0; i < count; i++) {
+                int len = buf.getInt();
+                MarkerRevision r = MarkerRevision.decode(buf.slice(buf.position(), len));
+                buf.position(buf.position() + len);
+                state.put(r.markerId(), r);
+            }
+        }
+    }
+
+    // recordedAt of the snapshot, or null when the file is not a snapshot of this format
+    private static Long readSnapshotHeader(Path p) {
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer h = ByteBuffer.allocate(24);
+            ch.read(h, 0);
+            h.flip();
+            if (h.remaining() < 24 || h.getInt() != SNAPSHOT_MAGIC || h.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            h.getLong();
+            return h.getLong();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    private Path snapshotPath(long revision) {
+        return dir.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, revision, SNAPSHOT_SUFFIX));
+    }
+
+    private static long sequenceOf(String name, String prefix, String suffix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        /**
+         * @param payload the encoded revision, positioned at its start
+         * @param offset  of the record's length prefix in the segment
+         */
+        boolean accept(ByteBuffer payload, int offset);
+    }
+
+    private static final class Positions {
+        long[] at = new long[2];
+        int size;
+
+        void add(long position) {
+            if (size == at.length) {
+                at = Arrays.copyOf(at, size * 2);
+            }
+            at[size++] = position;
+        }
+    }
+}
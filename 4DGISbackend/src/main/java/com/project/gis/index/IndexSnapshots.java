@@ -0,0 +1,232 @@
+package com.project.gis.index;
+
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.repository.ChangeLogRepository;
+import com.project.gis.shard.MarkerStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * MarkerIndex 的磁盘快照，让重启不必从数据库全量重建索引。
+ * <p>
+ * 文件 markers.snap：头部（magic、格式版本、拍摄时刻、当时 change_log 的最大 id、条目数、可见性字典）+ 定长记录（每个 IndexedMarker 73 字节）
+ * + CRC32。先写临时文件再原子替换，读取时整体内存映射并校验。
+ * <p>
+ * 恢复后以 change_log 追平：重新加载拍摄时刻（减去 {@link #REPLAY_MARGIN}）之后有过 MARKER 变更的标记点。
+ * 只看 updated_at 无法发现删除，所以用变更日志作水位。快照比 change_log 的保留时间还旧时无法追平，退回全量加载；
+ * 数据库的 change_log 比快照记录的还短（换了库或重建过）时快照不属于这个库，同样退回。
+ */
+@Component
+public class IndexSnapshots {
+    private static final Logger log = LoggerFactory.getLogger(IndexSnapshots.class);
+    private static final int MAGIC = 0x4D494458;
+    private static final int FORMAT_VERSION = 1;
+    private static final int RECORD_BYTES = 9 * 8 + 1;
+    private static final String FILE_NAME = "markers.snap";
+    /**
+     * Covers writes that committed before the snapshot was taken but reached the index only after it was copied,
+     * and change_log ids committed out of order.
+     */
+    private static final Duration REPLAY_MARGIN = Duration.ofMinutes(1);
+    // ids per IN list when loading changed rows; drivers cap the bind parameters of one statement
+    private static final int LOAD_BATCH = 1000;
+
+    private final Path file;
+    private final boolean enabled;
+    private final Duration changeLogRetention;
+    private final ChangeLogRepository changeLogRepository;
+    private final MarkerStore markerStore;
+    private volatile long lastChangeLogId;
+
+    public IndexSnapshots(@Value("${app.index.snapshot.dir:data/index}") String dir,
+                          @Value("${app.index.snapshot.enabled:true}") boolean enabled,
+                          @Value("${app.change-log.retention:PT1H}") Duration changeLogRetention,
+                          ChangeLogRepository changeLogRepository, MarkerStore markerStore) {
+        this.file = Paths.get(dir).resolve(FILE_NAME);
+        this.enabled = enabled;
+        this.changeLogRetention = changeLogRetention;
+        this.changeLogRepository = changeLogRepository;
+        this.markerStore = markerStore;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Writes {@code entries}, which must reflect every change made before {@code takenAt}, and atomically replaces
+     * the previous snapshot.
+     */
+    public void write(Collection<IndexedMarker> entries, long takenAt) throws IOException {
+        Files.createDirectories(file.getParent());
+        Map<String, Integer> visibilities = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        List<IndexedMarker> copy = new ArrayList<>(entries);
+        for (IndexedMarker e : copy) {
+            if (visibilities.putIfAbsent(e.visibility(), dictionary.size()) == null) {
+                dictionary.add(e.visibility());
+            }
+        }
+        if (dictionary.size() > 255) {
+            throw new IOException("too many distinct visibilities for a snapshot: " + dictionary.size());
+        }
+        try {
+            lastChangeLogId = changeLogRepository.maxId();
+        } catch (RuntimeException ex) {
+            // the database can already be gone during shutdown; an older id is still a valid lower bound
+            log.debug("Could not read the change log position, using the last known one", ex);
+        }
+        long changeLogId = lastChangeLogId;
+        Path tmp = file.resolveSibling(FILE_NAME + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(takenAt);
+            out.writeLong(changeLogId);
+            out.writeInt(copy.size());
+            out.writeByte(dictionary.size());
+            for (String v : dictionary) {
+                byte[] b = v.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(b.length);
+                out.write(b);
+            }
+            for (IndexedMarker e : copy) {
+                out.writeLong(e.id());
+                out.writeDouble(e.lon());
+                out.writeDouble(e.lat());
+                out.writeDouble(e.altitude());
+                out.writeLong(e.startMillis());
+                out.writeLong(e.endMillis());
+                out.writeLong(e.typeId());
+                out.writeLong(e.ownerId());
+                out.writeLong(e.creatorId());
+                out.writeByte(visibilities.get(e.visibility()));
+            }
+            out.flush();
+            // the checksum itself is not part of the checked bytes
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Fills the index from the snapshot and catches up on later changes.
+     *
+     * @return false when there is no usable snapshot and the index has to be loaded from the database
+     */
+    boolean restore(MarkerIndex index) {
+        if (!enabled || !Files.exists(file)) {
+            return false;
+        }
+        long startedAt = System.currentTimeMillis();
+        long takenAt;
+        int count;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.limit() < 33 || buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT_VERSION) {
+                log.warn("Ignoring index snapshot {} of an unknown format", file);
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(0, buf.limit() - 4));
+            if ((int) crc.getValue() != buf.getInt(buf.limit() - 4)) {
+                log.warn("Ignoring corrupt index snapshot {}", file);
+                return false;
+            }
+            buf.position(8);
+            takenAt = buf.getLong();
+            if (System.currentTimeMillis() - takenAt + REPLAY_MARGIN.toMillis() >= changeLogRetention.toMillis()) {
+                log.info("Index snapshot from {} is older than the change log retention, loading from the database",
+                        Instant.ofEpochMilli(takenAt));
+                return false;
+            }
+            lastChangeLogId = changeLogRepository.maxId();
+            if (lastChangeLogId < buf.getLong()) {
+                log.info("Index snapshot {} was taken from another database, loading from the database", file);
+                return false;
+            }
+            count = buf.getInt();
+            String[] dictionary = new String[buf.get() & 0xFF];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] b = new byte[buf.getShort() & 0xFFFF];
+                buf.get(b);
+                dictionary[i] = new String(b, StandardCharsets.UTF_8).intern();
+            }
+            if (buf.remaining() - 4 != (long) count * RECORD_BYTES) {
+                log.warn("Ignoring index snapshot {} with a wrong record count", file);
+                return false;
+            }
+            for (int i = 0; i < count; i++) {
+                index.put(new IndexedMarker(buf.getLong(), buf.getDouble(), buf.getDouble(), buf.getDouble(),
+                        buf.getLong(), buf.getLong(), buf.getLong(), buf.getLong(), buf.getLong(),
+                        dictionary[buf.get() & 0xFF]));
+            }
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Failed to read index snapshot {}, loading from the database", file, ex);
+            index.clear();
+            return false;
+        }
+        long mapped = System.currentTimeMillis();
+        int replayed;
+        try {
+            replayed = catchUp(index, takenAt);
+        } catch (RuntimeException ex) {
+            log.warn("Failed to catch up on changes after the index snapshot, loading from the database", ex);
+            index.clear();
+            return false;
+        }
+        log.info("Marker index restored {} markers from the snapshot of {} in {} ms, then {} changed markers in {} ms",
+                count, Instant.ofEpochMilli(takenAt), mapped - startedAt, replayed, System.currentTimeMillis() - mapped);
+        return true;
+    }
+
+    private int catchUp(MarkerIndex index, long takenAt) {
+        OffsetDateTime since = OffsetDateTime.ofInstant(Instant.ofEpochMilli(takenAt).minus(REPLAY_MARGIN),
+                ZoneOffset.UTC);
+        List<Long> ids = changeLogRepository.entityIdsSince(ChangeKind.MARKER.name(), since);
+        Set<Long> missing = new HashSet<>(ids);
+        for (int i = 0; i < ids.size(); i += LOAD_BATCH) {
+            for (JpaMarker m : markerStore.findAllById(ids.subList(i, Math.min(ids.size(), i + LOAD_BATCH)))) {
+                index.put(m);
+                missing.remove(m.getId());
+            }
+        }
+        missing.forEach(index::remove);
+        return ids.size();
+    }
+}
@@ -0,0 +1,51 @@
+package com.project.gis.index;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.spatial.Wkt;
+
+/**
+ * 空间 / 时间索引中保存的标记点精简副本（只含过滤所需的原始类型字段）
+ *
+ * @param altitude    NaN when the marker has no altitude
+ * @param endMillis   {@link Long#MAX_VALUE} for open-ended markers
+ */
+public record IndexedMarker(long id, double lon, double lat, double altitude, long startMillis, long endMillis,
+        long typeId, long ownerId, long creatorId, String visibility) {
+
+    /**
+     * @return null when the marker has no parseable location
+     */
+    public static IndexedMarker of(JpaMarker m) {
+        double[] p = Wkt.parsePoint(m.getLocation());
+        if (p == null || m.getId() == null || m.getStartTime() == null) {
+            return null;
+        }
+        return new IndexedMarker(m.getId(), p[0], p[1],
+                m.getAltitude() == null ? Double.NaN : m.getAltitude(),
+                m.getStartTime().toInstant().toEpochMilli(),
+                m.getEndTime() == null ? Long.MAX_VALUE : m.getEndTime().toInstant().toEpochMilli(),
+                m.getMarkerTypeId() == null ? 0L : m.getMarkerTypeId(),
+                m.getOwnerId() == null ? 0L : m.getOwnerId(),
+                m.getCreatorId() == null ? 0L : m.getCreatorId(),
+                m.getVisibility() == null ? "private" : m.getVisibility().intern());
+    }
+
+    /**
+     * Lifetime is the half-open interval [start, end).
+     */
+    public boolean activeAt(long millis) {
+        return startMillis <= millis && millis < endMillis;
+    }
+
+    public boolean visibleTo(Long viewerId) {
+        return visibleTo(visibility, ownerId, creatorId, viewerId);
+    }
+
+    /**
+     * {@link #visibleTo(Long)} on plain column values, e.g. of an archived row.
+     */
+    public static boolean visibleTo(String visibility, long ownerId, long creatorId, Long viewerId) {
+        return "public".equals(visibility)
+                || (viewerId != null && (ownerId == viewerId || creatorId == viewerId));
+    }
+}
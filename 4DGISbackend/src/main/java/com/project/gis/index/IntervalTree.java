@@ -0,0 +1,168 @@
+package com.project.gis.index;
+
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * 标记点生命周期 [start, end) 上的区间树（以 start 为键的 treap，节点附带子树最大 end）。
+ * 时间点查询（stabbing）和区间重叠查询都是 O(log n + k)。非线程安全，由 {@link MarkerIndex} 负责加锁。
+ */
+class IntervalTree {
+    private final SplittableRandom random = new SplittableRandom();
+    private Node root;
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void insert(IndexedMarker m) {
+        root = insert(root, new Node(m, random.nextInt()));
+        size++;
+    }
+
+    void remove(IndexedMarker m) {
+        root = remove(root, m.startMillis(), m.id());
+    }
+
+    /**
+     * Entries with start <= t < end.
+     */
+    void stab(long t, Consumer<IndexedMarker> visitor) {
+        stab(root, t, visitor);
+    }
+
+    /**
+     * Entries whose lifetime intersects [from, to).
+     */
+    void overlap(long from, long to, Consumer<IndexedMarker> visitor) {
+        overlap(root, from, to, visitor);
+    }
+
+    private static void stab(Node n, long t, Consumer<IndexedMarker> visitor) {
+        while (n != null && n.maxEnd > t) {
+            stab(n.left, t, visitor);
+            if (n.marker.startMillis() > t) {
+                // everything to the right starts even later
+                return;
+            }
+            if (t < n.marker.endMillis()) {
+                visitor.accept(n.marker);
+            }
+            n = n.right;
+        }
+    }
+
+    private static void overlap(Node n, long from, long to, Consumer<IndexedMarker> visitor) {
+        while (n != null && n.maxEnd > from) {
+            overlap(n.left, from, to, visitor);
+            if (n.marker.startMillis() >= to) {
+                return;
+            }
+            if (n.marker.endMillis() > from) {
+                visitor.accept(n.marker);
+            }
+            n = n.right;
+        }
+    }
+
+    private static Node insert(Node n, Node x) {
+        if (n == null) {
+            return x;
+        }
+        if (compare(x.marker.startMillis(), x.marker.id(), n) < 0) {
+            n.left = insert(n.left, x);
+            if (n.left.priority > n.priority) {
+                n = rotateRight(n);
+            }
+        } else {
+            n.right = insert(n.right, x);
+            if (n.right.priority > n.priority) {
+                n = rotateLeft(n);
+            }
+        }
+        n.update();
+        return n;
+    }
+
+    private Node remove(Node n, long start, long id) {
+        if (n == null) {
+            return null;
+        }
+        int c = compare(start, id, n);
+        if (c < 0) {
+            n.left = remove(n.left, start, id);
+        } else if (c > 0) {
+            n.right = remove(n.right, start, id);
+        } else {
+            size--;
+            return merge(n.left, n.right);
+        }
+        n.update();
+        return n;
+    }
+
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        b.left = merge(a, b.left);
+        b.update();
+        return b;
+    }
+
+    private static Node rotateRight(Node n) {
+        Node l = n.left;
+        n.left = l.right;
+        n.update();
+        l.right = n;
+        l.update();
+        return l;
+    }
+
+    private static Node rotateLeft(Node n) {
+        Node r = n.right;
+        n.right = r.left;
+        n.update();
+        r.left = n;
+        r.update();
+        return r;
+    }
+
+    private static int compare(long start, long id, Node n) {
+        int c = Long.compare(start, n.marker.startMillis());
+        return c != 0 ? c : Long.compare(id, n.marker.id());
+    }
+
+    private static final class Node {
+        final IndexedMarker marker;
+        final int priority;
+        long maxEnd;
+        Node left, right;
+
+        Node(IndexedMarker marker, int priority) {
+            this.marker = marker;
+            this.priority = priority;
+            this.maxEnd = marker.endMillis();
+        }
+
+        void update() {
+            long m = marker.endMillis();
+            if (left != null && left.maxEnd > m) {
+                m = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > m) {
+                m = right.maxEnd;
+            }
+            maxEnd = m;
+        }
+    }
+}
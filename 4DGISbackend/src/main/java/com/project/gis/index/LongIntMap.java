@@ -0,0 +1,166 @@
+package com.project.gis.index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * long → int 的开放寻址哈希表（线性探测），键和值都存在原始类型数组里，读写都不装箱。
+ * <p>
+ * 只允许一个写线程（调用方用锁保证），读可以与写并发且不加锁：写入先写值、再以 release 语义写键，读以 acquire
+ * 语义读键；扩容时建好新表再整体替换。删除只把值改成 {@link #ABSENT}，键留在原处作为墓碑，所以并发读不会因为
+ * 删除后的搬移而漏掉别的键。键 0 表示空槽，不能作为键使用。
+ */
+final class LongIntMap {
+    static final int ABSENT = -1;
+
+    private static final VarHandle KEYS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private volatile Table table;
+    // live keys
+    private int size;
+    // occupied slots, including tombstones
+    private int used;
+
+    LongIntMap() {
+        this(16);
+    }
+
+    LongIntMap(int expected) {
+        int capacity = 16;
+        while (capacity * LOAD_FACTOR < expected) {
+            capacity <<= 1;
+        }
+        table = new Table(capacity);
+    }
+
+    /**
+     * @return the value, or {@link #ABSENT}
+     */
+    int get(long key) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = (long) KEYS.getAcquire(t.keys, i);
+            if (k == key) {
+                return t.values[i];
+            }
+            if (k == 0) {
+                return ABSENT;
+            }
+        }
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != ABSENT;
+    }
+
+    /**
+     * @param value not {@link #ABSENT}
+     */
+    void put(long key, int value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("key 0 is reserved");
+        }
+        if (value == ABSENT) {
+            throw new IllegalArgumentException("value " + ABSENT + " is reserved");
+        }
+        if (used + 1 > table.keys.length * LOAD_FACTOR) {
+            rehash();
+        }
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = t.keys[i];
+            if (k == key) {
+                if (t.values[i] == ABSENT) {
+                    size++;
+                }
+                t.values[i] = value;
+                return;
+            }
+            if (k == 0) {
+                t.values[i] = value;
+                KEYS.setRelease(t.keys, i, key);
+                size++;
+                used++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the removed value, or {@link #ABSENT}
+     */
+    int remove(long key) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+            long k = t.keys[i];
+            if (k == key) {
+                int old = t.values[i];
+                if (old != ABSENT) {
+                    t.values[i] = ABSENT;
+                    size--;
+                }
+                return old;
+            }
+            if (k == 0) {
+                return ABSENT;
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        table = new Table(16);
+        size = 0;
+        used = 0;
+    }
+
+    /**
+     * Copies the live entries into a new table, twice as large unless tombstones freed enough room.
+     */
+    private void rehash() {
+        Table old = table;
+        int capacity = old.keys.length;
+        if (size + 1 > capacity * LOAD_FACTOR / 2) {
+            capacity *= 2;
+        }
+        Table t = new Table(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < old.keys.length; j++) {
+            long k = old.keys[j];
+            if (k != 0 && old.values[j] != ABSENT) {
+                int i = slot(k, mask);
+                while (t.keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                t.keys[i] = k;
+                t.values[i] = old.values[j];
+            }
+        }
+        used = size;
+        table = t;
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static final class Table {
+        final long[] keys;
+        final int[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(values, ABSENT);
+        }
+    }
+}
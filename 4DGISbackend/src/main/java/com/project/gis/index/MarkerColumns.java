@@ -0,0 +1,206 @@
+package com.project.gis.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * MarkerIndex 条目的列式副本：每个字段一个原始类型数组，按行号对齐，供大范围扫描使用。
+ * <p>
+ * 删除只把该行的 id 置 0 并回收行号，扫描时跳过空行；可见性按字典编码成 byte。写入只由 MarkerIndex 在写锁下进行，
+ * 扫描在读锁下按块并行执行，逐行过滤时不装箱、不分配对象（标签过滤的序号表与行号表都是 {@link LongIntMap}）。
+ * 代价是它在 byId、四叉树、区间树之外又多一份堆上副本，常驻内存和 GC 标记的工作量都随之增加。
+ */
+public final class MarkerColumns {
+    private static final int INITIAL_ROWS = 1024;
+    // rows per parallel scan task
+    private static final int CHUNK_ROWS = 1 << 16;
+
+    private long[] ids = new long[INITIAL_ROWS];
+    private double[] lons = new double[INITIAL_ROWS];
+    private double[] lats = new double[INITIAL_ROWS];
+    private double[] altitudes = new double[INITIAL_ROWS];
+    private long[] starts = new long[INITIAL_ROWS];
+    private long[] ends = new long[INITIAL_ROWS];
+    private long[] types = new long[INITIAL_ROWS];
+    private long[] owners = new long[INITIAL_ROWS];
+    private long[] creators = new long[INITIAL_ROWS];
+    private byte[] visibilities = new byte[INITIAL_ROWS];
+    private final LongIntMap rowOf = new LongIntMap(INITIAL_ROWS);
+    private final List<String> dictionary = new ArrayList<>();
+    private int publicCode = -1;
+    // rows below this have been used at least once
+    private int highWater;
+    private int[] free = new int[64];
+    private int freeCount;
+
+    MarkerColumns() {
+    }
+
+    void put(IndexedMarker e) {
+        int existing = rowOf.get(e.id());
+        int row;
+        if (existing != LongIntMap.ABSENT) {
+            row = existing;
+        } else {
+            row = freeCount > 0 ? free[--freeCount] : highWater++;
+            if (row >= ids.length) {
+                grow();
+            }
+            rowOf.put(e.id(), row);
+        }
+        ids[row] = e.id();
+        lons[row] = e.lon();
+        lats[row] = e.lat();
+        altitudes[row] = e.altitude();
+        starts[row] = e.startMillis();
+        ends[row] = e.endMillis();
+        types[row] = e.typeId();
+        owners[row] = e.ownerId();
+        creators[row] = e.creatorId();
+        visibilities[row] = code(e.visibility());
+    }
+
+    void remove(long id) {
+        int row = rowOf.remove(id);
+        if (row == LongIntMap.ABSENT) {
+            return;
+        }
+        ids[row] = 0;
+        if (freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = row;
+    }
+
+    void clear() {
+        Arrays.fill(ids, 0, highWater, 0L);
+        rowOf.clear();
+        highWater = 0;
+        freeCount = 0;
+    }
+
+    /**
+     * Ids of the live rows accepted by {@code filter}, ascending. The caller must keep writers out for the
+     * duration of the scan.
+     */
+    long[] scan(RowFilter filter) {
+        int chunks = (highWater + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        if (chunks <= 1) {
+            long[] out = scanChunk(filter, 0, highWater);
+            Arrays.sort(out);
+            return out;
+        }
+        long[][] parts = IntStream.range(0, chunks).parallel()
+                .mapToObj(c -> scanChunk(filter, c * CHUNK_ROWS, Math.min(highWater, (c + 1) * CHUNK_ROWS)))
+                .toArray(long[][]::new);
+        int n = 0;
+        for (long[] p : parts) {
+            n += p.length;
+        }
+        long[] out = new long[n];
+        int at = 0;
+        for (long[] p : parts) {
+            System.arraycopy(p, 0, out, at, p.length);
+            at += p.length;
+        }
+        // rows are reused after deletes, so row order is not id order
+        Arrays.sort(out);
+        return out;
+    }
+
+    private long[] scanChunk(RowFilter filter, int from, int to) {
+        long[] out = new long[256];
+        int n = 0;
+        for (int row = from; row < to; row++) {
+            long id = ids[row];
+            if (id != 0 && filter.test(this, row)) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, n * 2);
+                }
+                out[n++] = id;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    public double lon(int row) {
+        return lons[row];
+    }
+
+    public double lat(int row) {
+        return lats[row];
+    }
+
+    /**
+     * NaN when the marker has no altitude.
+     */
+    public double altitude(int row) {
+        return altitudes[row];
+    }
+
+    public long startMillis(int row) {
+        return starts[row];
+    }
+
+    /**
+     * {@link Long#MAX_VALUE} for open-ended markers.
+     */
+    public long endMillis(int row) {
+        return ends[row];
+    }
+
+    public long typeId(int row) {
+        return types[row];
+    }
+
+    /**
+     * Same rule as {@link IndexedMarker#visibleTo(Long)}.
+     */
+    public boolean visibleTo(int row, Long viewerId) {
+        return visibilities[row] == publicCode
+                || (viewerId != null && (owners[row] == viewerId || creators[row] == viewerId));
+    }
+
+    private byte code(String visibility) {
+        int c = dictionary.indexOf(visibility);
+        if (c < 0) {
+            if (dictionary.size() == 127) {
+                throw new IllegalStateException("too many distinct visibilities: " + visibility);
+            }
+            c = dictionary.size();
+            dictionary.add(visibility);
+            if ("public".equals(visibility)) {
+                publicCode = c;
+            }
+        }
+        return (byte) c;
+    }
+
+    private void grow() {
+        int n = ids.length * 2;
+        ids = Arrays.copyOf(ids, n);
+        lons = Arrays.copyOf(lons, n);
+        lats = Arrays.copyOf(lats, n);
+        altitudes = Arrays.copyOf(altitudes, n);
+        starts = Arrays.copyOf(starts, n);
+        ends = Arrays.copyOf(ends, n);
+        types = Arrays.copyOf(types, n);
+        owners = Arrays.copyOf(owners, n);
+        creators = Arrays.copyOf(creators, n);
+        visibilities = Arrays.copyOf(visibilities, n);
+    }
+
+    /**
+     * Row predicate run by the scan kernel; implementations must be thread-safe and should not allocate.
+     */
+    @FunctionalInterface
+    public interface RowFilter {
+        boolean test(MarkerColumns columns, int row);
+    }
+}
@@ -0,0 +1,301 @@
+package com.project.gis.index;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.shard.MarkerStore;
+import com.project.gis.spatial.BoundingBox;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 标记点的内存空间索引，启动时从快照（{@link IndexSnapshots}）恢复、没有可用快照时从数据库加载，
+ * 之后由 MarkerService 在写入时同步维护，并定期在后台写快照。
+ * <p>
+ * 除四叉树 / 区间树外还维护一份列式副本（{@link MarkerColumns}），选择性差的过滤条件直接对它做并行全表扫描
+ */
+@Component
+public class MarkerIndex {
+    private static final Logger log = LoggerFactory.getLogger(MarkerIndex.class);
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final MarkerStore markerStore;
+    private final IndexSnapshots snapshots;
+    private final Map<Long, IndexedMarker> byId = new ConcurrentHashMap<>();
+    private final QuadTree tree = new QuadTree();
+    private final IntervalTree lifetimes = new IntervalTree();
+    private final MarkerColumns columns = new MarkerColumns();
+    // owners and creators of non-public entries -> number of such entries
+    private final Map<Long, Integer> restricted = new ConcurrentHashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // bumped on every change, lets callers cache derived results
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean loaded;
+
+    public MarkerIndex(MarkerStore markerStore, IndexSnapshots snapshots) {
+        this.markerStore = markerStore;
+        this.snapshots = snapshots;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (snapshots.restore(this)) {
+            loaded = true;
+            return;
+        }
+        long startedAt = System.currentTimeMillis();
+        long after = 0;
+        while (true) {
+            List<JpaMarker> page = markerStore.findPageAfter(after, LOAD_PAGE_SIZE);
+            page.forEach(this::put);
+            if (page.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            after = page.get(page.size() - 1).getId();
+        }
+        loaded = true;
+        log.info("Marker index loaded {} markers in {} ms", byId.size(), System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Also runs on shutdown, so that a restart has next to nothing to catch up on.
+     */
+    @PreDestroy
+    @Scheduled(initialDelayString = "${app.index.snapshot.interval:PT10M}",
+            fixedDelayString = "${app.index.snapshot.interval:PT10M}")
+    public void snapshot() {
+        if (!loaded || !snapshots.isEnabled()) {
+            return;
+        }
+        // taken before copying, so the copy reflects at least every change up to this point
+        long takenAt = System.currentTimeMillis();
+        try {
+            snapshots.write(byId.values(), takenAt);
+            log.debug("Wrote index snapshot of {} markers in {} ms", byId.size(),
+                    System.currentTimeMillis() - takenAt);
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Failed to write index snapshot", ex);
+        }
+    }
+
+    public void put(JpaMarker m) {
+        IndexedMarker e = IndexedMarker.of(m);
+        if (e != null) {
+            put(e);
+        }
+    }
+
+    void put(IndexedMarker e) {
+        lock.writeLock().lock();
+        try {
+            IndexedMarker old = byId.put(e.id(), e);
+            if (old != null) {
+                tree.remove(old);
+                lifetimes.remove(old);
+                countRestricted(old, -1);
+            }
+            tree.insert(e);
+            lifetimes.insert(e);
+            columns.put(e);
+            countRestricted(e, 1);
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            IndexedMarker old = byId.remove(id);
+            if (old != null) {
+                tree.remove(old);
+                lifetimes.remove(old);
+                columns.remove(id);
+                countRestricted(old, -1);
+                version.incrementAndGet();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            for (IndexedMarker e : byId.values()) {
+                tree.remove(e);
+                lifetimes.remove(e);
+            }
+            byId.clear();
+            columns.clear();
+            restricted.clear();
+            version.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void countRestricted(IndexedMarker e, int delta) {
+        if ("public".equals(e.visibility())) {
+            return;
+        }
+        restricted.merge(e.ownerId(), delta, (a, b) -> a + b == 0 ? null : a + b);
+        if (e.creatorId() != e.ownerId()) {
+            restricted.merge(e.creatorId(), delta, (a, b) -> a + b == 0 ? null : a + b);
+        }
+    }
+
+    /**
+     * True when the user owns or created at least one non-public entry, i.e. sees more than the public markers.
+     */
+    public boolean hasRestricted(long userId) {
+        return restricted.containsKey(userId);
+    }
+
+    public IndexedMarker get(Long id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Ids of up to {@code limit} entries whose lifetime ended at or before {@code millis}.
+     */
+    public List<Long> endedBy(long millis, int limit) {
+        List<Long> out = new ArrayList<>();
+        for (IndexedMarker e : byId.values()) {
+            if (e.endMillis() <= millis) {
+                out.add(e.id());
+                if (out.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * False until the startup load has finished; callers should fall back to the database meanwhile.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void query(BoundingBox box, Consumer<IndexedMarker> visitor) {
+        lock.readLock().lock();
+        try {
+            tree.query(box, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * True when the spatial tree narrows {@code box} down to a small part of the index, i.e. walking the tree beats
+     * a full scan.
+     */
+    public boolean isSelective(BoundingBox box) {
+        if (box == null) {
+            return false;
+        }
+        lock.readLock().lock();
+        try {
+            return tree.estimate(box) < lifetimes.size() / 4;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of all entries accepted by {@code filter}, ascending, from a parallel scan over the columnar copy.
+     * Meant for filters the trees cannot narrow down much.
+     */
+    public long[] scan(MarkerColumns.RowFilter filter) {
+        lock.readLock().lock();
+        try {
+            return columns.scan(filter);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Entries active at {@code t} (start <= t < end), optionally restricted to a box.
+     */
+    public void activeAt(BoundingBox box, long t, Consumer<IndexedMarker> visitor) {
+        select(box, v -> lifetimes.stab(t, v), e -> e.activeAt(t), visitor);
+    }
+
+    /**
+     * Entries whose lifetime intersects [from, to), optionally restricted to a box.
+     */
+    public void overlapping(BoundingBox box, long from, long to, Consumer<IndexedMarker> visitor) {
+        select(box, v -> lifetimes.overlap(from, to, v), e -> e.startMillis() < to && e.endMillis() > from, visitor);
+    }
+
+    /**
+     * Drives the scan from the spatial tree when the box is clearly selective, otherwise from the interval tree,
+     * and checks the other dimension on each hit.
+     */
+    private void select(BoundingBox box, Consumer<Consumer<IndexedMarker>> timeScan, Predicate<IndexedMarker> inTime,
+            Consumer<IndexedMarker> visitor) {
+        lock.readLock().lock();
+        try {
+            if (box == null) {
+                timeScan.accept(visitor);
+            } else if (tree.estimate(box) < lifetimes.size() / 4) {
+                tree.query(box, e -> {
+                    if (inTime.test(e)) {
+                        visitor.accept(e);
+                    }
+                });
+            } else {
+                timeScan.accept(e -> {
+                    if (box.contains(e.lon(), e.lat())) {
+                        visitor.accept(e);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * k nearest entries accepted by {@code filter}, closest first.
+     */
+    public List<Neighbour> nearest(double lon, double lat, int k, Predicate<IndexedMarker> filter,
+            ToDoubleFunction<IndexedMarker> distance) {
+        lock.readLock().lock();
+        try {
+            return tree.nearest(lon, lat, k, filter, distance);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record Neighbour(IndexedMarker marker, double distance) {
+    }
+}
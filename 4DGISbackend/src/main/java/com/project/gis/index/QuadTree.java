@@ -0,0 +1,202 @@
+package com.project.gis.index;
+
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 经纬度上的分桶点四叉树。非线程安全，由 {@link MarkerIndex} 负责加锁。
+ */
+class QuadTree {
+    private static final int LEAF_CAPACITY = 32;
+    private static final int MAX_DEPTH = 24;
+
+    private final Node root = new Node(-180.0, -90.0, 180.0, 90.0, 0);
+
+    void insert(IndexedMarker m) {
+        root.insert(m);
+    }
+
+    boolean remove(IndexedMarker m) {
+        return root.remove(m);
+    }
+
+    /**
+     * Visits every entry inside the box (boxes crossing the antimeridian are split).
+     */
+    void query(BoundingBox box, Consumer<IndexedMarker> visitor) {
+        for (BoundingBox b : box.split()) {
+            root.query(b.minLon(), b.minLat(), b.maxLon(), b.maxLat(), visitor);
+        }
+    }
+
+    /**
+     * Upper bound on the number of entries inside the box, from node counts only.
+     */
+    int estimate(BoundingBox box) {
+        int n = 0;
+        for (BoundingBox b : box.split()) {
+            n += root.estimate(b.minLon(), b.minLat(), b.maxLon(), b.maxLat());
+        }
+        return n;
+    }
+
+    /**
+     * Best-first k-nearest-neighbour search. Nodes are expanded in order of their great-circle lower bound,
+     * so only the part of the tree that can still hold a closer match is visited.
+     *
+     * @param distance exact distance of an entry; must never be smaller than its surface distance
+     */
+    List<MarkerIndex.Neighbour> nearest(double lon, double lat, int k, Predicate<IndexedMarker> filter,
+            ToDoubleFunction<IndexedMarker> distance) {
+        List<MarkerIndex.Neighbour> out = new ArrayList<>(k);
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(new Candidate(0.0, root, null));
+        while (!queue.isEmpty() && out.size() < k) {
+            Candidate c = queue.poll();
+            if (c.entry != null) {
+                out.add(new MarkerIndex.Neighbour(c.entry, c.distance));
+                continue;
+            }
+            Node n = c.node;
+            if (n.children != null) {
+                for (Node child : n.children) {
+                    if (child.size > 0) {
+                        queue.add(new Candidate(GeoDistance.minDistanceToRect(lon, lat, child.minLon, child.minLat,
+                                child.maxLon, child.maxLat), child, null));
+                    }
+                }
+            } else {
+                for (IndexedMarker m : n.entries) {
+                    if (filter.test(m)) {
+                        queue.add(new Candidate(distance.applyAsDouble(m), null, m));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private record Candidate(double distance, Node node, IndexedMarker entry) implements Comparable<Candidate> {
+        @Override
+        public int compareTo(Candidate o) {
+            return Double.compare(distance, o.distance);
+        }
+    }
+
+    private static final class Node {
+        final double minLon, minLat, maxLon, maxLat;
+        final int depth;
+        List<IndexedMarker> entries = new ArrayList<>();
+        Node[] children;
+        int size;
+
+        Node(double minLon, double minLat, double maxLon, double maxLat, int depth) {
+            this.minLon = minLon;
+            this.minLat = minLat;
+            this.maxLon = maxLon;
+            this.maxLat = maxLat;
+            this.depth = depth;
+        }
+
+        void insert(IndexedMarker m) {
+            size++;
+            if (children != null) {
+                child(m).insert(m);
+                return;
+            }
+            entries.add(m);
+            if (entries.size() > LEAF_CAPACITY && depth < MAX_DEPTH) {
+                split();
+            }
+        }
+
+        boolean remove(IndexedMarker m) {
+            boolean removed;
+            if (children != null) {
+                removed = child(m).remove(m);
+            } else {
+                removed = entries.removeIf(e -> e.id() == m.id());
+            }
+            if (removed) {
+                size--;
+                if (children != null && size <= LEAF_CAPACITY / 2) {
+                    merge();
+                }
+            }
+            return removed;
+        }
+
+        void query(double qMinLon, double qMinLat, double qMaxLon, double qMaxLat, Consumer<IndexedMarker> visitor) {
+            if (size == 0 || qMaxLon < minLon || qMinLon > maxLon || qMaxLat < minLat || qMinLat > maxLat) {
+                return;
+            }
+            if (children != null) {
+                for (Node c : children) {
+                    c.query(qMinLon, qMinLat, qMaxLon, qMaxLat, visitor);
+                }
+                return;
+            }
+            for (IndexedMarker m : entries) {
+                if (m.lon() >= qMinLon && m.lon() <= qMaxLon && m.lat() >= qMinLat && m.lat() <= qMaxLat) {
+                    visitor.accept(m);
+                }
+            }
+        }
+
+        int estimate(double qMinLon, double qMinLat, double qMaxLon, double qMaxLat) {
+            if (size == 0 || qMaxLon < minLon || qMinLon > maxLon || qMaxLat < minLat || qMinLat > maxLat) {
+                return 0;
+            }
+            if (children == null || (qMinLon <= minLon && qMaxLon >= maxLon && qMinLat <= minLat && qMaxLat >= maxLat)) {
+                return size;
+            }
+            int n = 0;
+            for (Node c : children) {
+                n += c.estimate(qMinLon, qMinLat, qMaxLon, qMaxLat);
+            }
+            return n;
+        }
+
+        private Node child(IndexedMarker m) {
+            double midLon = (minLon + maxLon) / 2, midLat = (minLat + maxLat) / 2;
+            return children[(m.lon() < midLon ? 0 : 1) + (m.lat() < midLat ? 0 : 2)];
+        }
+
+        private void split() {
+            double midLon = (minLon + maxLon) / 2, midLat = (minLat + maxLat) / 2;
+            children = new Node[] {
+                    new Node(minLon, minLat, midLon, midLat, depth + 1),
+                    new Node(midLon, minLat, maxLon, midLat, depth + 1),
+                    new Node(minLon, midLat, midLon, maxLat, depth + 1),
+                    new Node(midLon, midLat, maxLon, maxLat, depth + 1) };
+            for (IndexedMarker e : entries) {
+                child(e).insert(e);
+            }
+            entries = null;
+        }
+
+        private void merge() {
+            List<IndexedMarker> all = new ArrayList<>(size);
+            collect(all);
+            children = null;
+            entries = all;
+        }
+
+        private void collect(List<IndexedMarker> out) {
+            if (children == null) {
+                out.addAll(entries);
+            } else {
+                for (Node c : children) {
+                    c.collect(out);
+                }
+            }
+        }
+    }
+}
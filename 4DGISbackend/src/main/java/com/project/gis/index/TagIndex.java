@@ -0,0 +1,249 @@
+package com.project.gis.index;
+
+import com.project.gis.entity.JpaMarkerTag;
+import com.project.gis.repository.MarkerTagRepository;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+
+/**
+ * 标签 → 标记点的内存位图索引（RoaringBitmap），多标签 AND / OR 与按标签计数都是位运算，不再反复 join marker_tags。
+ * 位图中存放的是标记点的紧凑序号（首次打标签时分配），而不是数据库 ID。启动时从数据库加载，之后由 TagService 同步维护。
+ */
+@Component
+public class TagIndex {
+    private static final Logger log = LoggerFactory.getLogger(TagIndex.class);
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    private final MarkerTagRepository markerTagRepository;
+    // written under the write lock, read without it (counts, and selections during a scan)
+    private final LongIntMap ordinals = new LongIntMap();
+    private final Map<Long, RoaringBitmap> byTag = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // ordinal -> marker id; replaced (never mutated below next) when it grows, so selections can keep a reference
+    private long[] ids = new long[1024];
+    private int next;
+    private volatile boolean loaded;
+
+    public TagIndex(MarkerTagRepository markerTagRepository) {
+        this.markerTagRepository = markerTagRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long startedAt = System.currentTimeMillis();
+        // keyset pages: offsets would skip or repeat rows while tags are being written
+        long markerId = Long.MIN_VALUE;
+        long tagId = Long.MIN_VALUE;
+        while (true) {
+            List<JpaMarkerTag> page = markerTagRepository.findPageAfter(markerId, tagId,
+                    PageRequest.of(0, LOAD_PAGE_SIZE));
+            page.forEach(t -> add(t.getId().getMarkerId(), t.getId().getTagId()));
+            if (page.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            JpaMarkerTag last = page.get(page.size() - 1);
+            markerId = last.getId().getMarkerId();
+            tagId = last.getId().getTagId();
+        }
+        lock.writeLock().lock();
+        try {
+            byTag.values().forEach(RoaringBitmap::runOptimize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        loaded = true;
+        log.info("Tag index loaded {} tags over {} markers in {} ms", byTag.size(), ordinals.size(),
+                System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * False until the startup load has finished; callers should fall back to the database meanwhile.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void add(long markerId, long tagId) {
+        lock.writeLock().lock();
+        try {
+            byTag.computeIfAbsent(tagId, k -> new RoaringBitmap()).add(ordinal(markerId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long markerId, long tagId) {
+        lock.writeLock().lock();
+        try {
+            int o = ordinals.get(markerId);
+            RoaringBitmap b = byTag.get(tagId);
+            if (o != LongIntMap.ABSENT && b != null) {
+                b.remove(o);
+                if (b.isEmpty()) {
+                    byTag.remove(tagId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every tag of a deleted marker. Its ordinal is retired, not reused.
+     */
+    public void removeMarker(long markerId) {
+        lock.writeLock().lock();
+        try {
+            int o = ordinals.remove(markerId);
+            if (o == LongIntMap.ABSENT) {
+                return;
+            }
+            Iterator<RoaringBitmap> it = byTag.values().iterator();
+            while (it.hasNext()) {
+                RoaringBitmap b = it.next();
+                if (b.checkedRemove(o) && b.isEmpty()) {
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Markers carrying all ({@code all}) or any of the given tags.
+     */
+    public Selection select(long[] tagIds, boolean all) {
+        lock.readLock().lock();
+        try {
+            List<RoaringBitmap> bitmaps = new ArrayList<>(tagIds.length);
+            for (long tagId : tagIds) {
+                RoaringBitmap b = byTag.get(tagId);
+                if (b != null) {
+                    bitmaps.add(b);
+                } else if (all) {
+                    return new Selection(new RoaringBitmap(), ids, ordinals);
+                }
+            }
+            RoaringBitmap bits;
+            if (bitmaps.isEmpty()) {
+                bits = new RoaringBitmap();
+            } else if (bitmaps.size() == 1) {
+                bits = bitmaps.get(0).clone();
+            } else {
+                bits = all ? FastAggregation.and(bitmaps.iterator()) : FastAggregation.or(bitmaps.iterator());
+            }
+            return new Selection(bits, ids, ordinals);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of markers among {@code markerIds} carrying each tag, computed as one AND-cardinality per tag against
+     * the result's bitmap. Tags without a hit are left out.
+     */
+    public Map<Long, Integer> counts(long[] markerIds) {
+        RoaringBitmap result = new RoaringBitmap();
+        for (long id : markerIds) {
+            int o = ordinals.get(id);
+            if (o != LongIntMap.ABSENT) {
+                result.add(o);
+            }
+        }
+        Map<Long, Integer> out = new HashMap<>();
+        if (result.isEmpty()) {
+            return out;
+        }
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, RoaringBitmap> e : byTag.entrySet()) {
+                int n = RoaringBitmap.andCardinality(e.getValue(), result);
+                if (n > 0) {
+                    out.put(e.getKey(), n);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return out;
+    }
+
+    /**
+     * A selection over an explicit id list, for use while the index is still loading.
+     */
+    public static Selection selectionOf(Iterable<Long> markerIds) {
+        LongIntMap ordinals = new LongIntMap();
+        long[] ids = new long[16];
+        RoaringBitmap bits = new RoaringBitmap();
+        for (Long id : markerIds) {
+            if (!ordinals.containsKey(id)) {
+                int o = ordinals.size();
+                if (o == ids.length) {
+                    ids = Arrays.copyOf(ids, o * 2);
+                }
+                ids[o] = id;
+                ordinals.put(id, o);
+                bits.add(o);
+            }
+        }
+        return new Selection(bits, ids, ordinals);
+    }
+
+    private int ordinal(long markerId) {
+        int o = ordinals.get(markerId);
+        if (o != LongIntMap.ABSENT) {
+            return o;
+        }
+        if (next == ids.length) {
+            ids = Arrays.copyOf(ids, next * 2);
+        }
+        ids[next] = markerId;
+        ordinals.put(markerId, next);
+        return next++;
+    }
+
+    /**
+     * Immutable set of markers matched by a tag filter.
+     */
+    public static final class Selection {
+        private final RoaringBitmap bits;
+        private final long[] ids;
+        private final LongIntMap ordinals;
+
+        private Selection(RoaringBitmap bits, long[] ids, LongIntMap ordinals) {
+            this.bits = bits;
+            this.ids = ids;
+            this.ordinals = ordinals;
+        }
+
+        public boolean contains(long markerId) {
+            int o = ordinals.get(markerId);
+            return o != LongIntMap.ABSENT && bits.contains(o);
+        }
+
+        public int size() {
+            return bits.getCardinality();
+        }
+
+        public void forEach(LongConsumer visitor) {
+            bits.forEach((int o) -> visitor.accept(ids[o]));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.project.gis.ingest;
+
+import com.project.gis.entity.JpaMarker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * 写入缓冲的本地追加日志，使已确认（202）但尚未落库的创建请求在进程崩溃后仍能恢复。
+ * <p>
+ * 每条记录：长度 + 内容 + CRC32。内容为 CREATE（序号 + 标记点字段）或 COMMIT（一批已落库的序号）。
+ * 重启时回放没有对应 COMMIT 的 CREATE；缓冲空闲且文件超过阈值时整体截断。
+ */
+final class IngestJournal implements Closeable {
+    private static final byte CREATE = 1;
+    private static final byte COMMIT = 2;
+
+    private final FileChannel channel;
+    private final boolean fsync;
+    private final Map<Long, JpaMarker> uncommitted;
+    private final long maxSeq;
+
+    private IngestJournal(FileChannel channel, boolean fsync, Map<Long, JpaMarker> uncommitted, long maxSeq) {
+        this.channel = channel;
+        this.fsync = fsync;
+        this.uncommitted = uncommitted;
+        this.maxSeq = maxSeq;
+    }
+
+    /**
+     * Opens (or creates) the journal and recovers its content, cutting off a torn last record.
+     */
+    static IngestJournal open(Path file, boolean fsync) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer all = ByteBuffer.wrap(Files.readAllBytes(file));
+        Map<Long, JpaMarker> creates = new LinkedHashMap<>();
+        Set<Long> committed = new HashSet<>();
+        long maxSeq = 0;
+        long good = 0;
+        while (all.remaining() >= 8) {
+            int len = all.getInt(all.position());
+            if (len <= 0 || len > all.remaining() - 8) {
+                break;
+            }
+            byte[] payload = new byte[len];
+            all.position(all.position() + 4);
+            all.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (all.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            ByteBuffer b = ByteBuffer.wrap(payload);
+            if (b.get() == CREATE) {
+                long seq = b.getLong();
+                creates.put(seq, decode(b));
+                maxSeq = Math.max(maxSeq, seq);
+            } else {
+                int n = b.getInt();
+                for (int i = 0; i < n; i++) {
+                    committed.add(b.getLong());
+                }
+            }
+            good = all.position();
+        }
+        ch.truncate(good);
+        ch.position(good);
+        creates.keySet().removeAll(committed);
+        return new IngestJournal(ch, fsync, creates, maxSeq);
+    }
+
+    /**
+     * Creates found at open time without a matching commit, in journal order.
+     */
+    Map<Long, JpaMarker> uncommitted() {
+        return uncommitted;
+    }
+
+    long maxSeq() {
+        return maxSeq;
+    }
+
+    synchronized void appendCreate(long seq, JpaMarker m) throws IOException {
+        byte[] title = utf8(m.getTitle()), description = utf8(m.getDescription()), location = utf8(m.getLocation()),
+                visibility = utf8(m.getVisibility());
+        ByteBuffer b = ByteBuffer.allocate(1 + 8 + 8 + 8 + 8 + 3 * 8 + 4 * 4 + len(title) + len(description)
+                + len(location) + len(visibility));
+        b.put(CREATE).putLong(seq);
+        b.putDouble(m.getAltitude() == null ? Double.NaN : m.getAltitude());
+        b.putLong(m.getStartTime().toInstant().toEpochMilli());
+        b.putLong(m.getEndTime() == null ? Long.MIN_VALUE : m.getEndTime().toInstant().toEpochMilli());
+        b.putLong(m.getMarkerTypeId()).putLong(m.getCreatorId()).putLong(m.getOwnerId());
+        put(b, title);
+        put(b, description);
+        put(b, location);
+        put(b, visibility);
+        write(b.array());
+    }
+
+    synchronized void appendCommit(List<Long> seqs) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(1 + 4 + 8 * seqs.size());
+        b.put(COMMIT).putInt(seqs.size());
+        for (long s : seqs) {
+            b.putLong(s);
+        }
+        write(b.array());
+    }
+
+    /**
+     * Empties the journal once it has grown past {@code maxBytes}, provided nothing is outstanding.
+     * The caller's check runs under the journal lock, so no create can slip in between.
+     */
+    synchronized void truncateIfIdle(long maxBytes, BooleanSupplier idle) throws IOException {
+        if (channel.position() > maxBytes && idle.getAsBoolean()) {
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void write(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).put(payload).putInt((int) crc.getValue()).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    private static JpaMarker decode(ByteBuffer b) {
+        JpaMarker m = new JpaMarker();
+        double altitude = b.getDouble();
+        m.setAltitude(Double.isNaN(altitude) ? null : altitude);
+        m.setStartTime(OffsetDateTime.ofInstant(Instant.ofEpochMilli(b.getLong()), ZoneOffset.UTC));
+        long end = b.getLong();
+        m.setEndTime(end == Long.MIN_VALUE ? null : OffsetDateTime.ofInstant(Instant.ofEpochMilli(end), ZoneOffset.UTC));
+        m.setMarkerTypeId(b.getLong());
+        m.setCreatorId(b.getLong());
+        m.setOwnerId(b.getLong());
+        m.setTitle(get(b));
+        m.setDescription(get(b));
+        m.setLocation(get(b));
+        m.setVisibility(get(b));
+        return m;
+    }
+
+    private static byte[] utf8(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int len(byte[] s) {
+        return s == null ? 0 : s.length;
+    }
+
+    private static void put(ByteBuffer b, byte[] s) {
+        if (s == null) {
+            b.putInt(-1);
+        } else {
+            b.putInt(s.length).put(s);
+        }
+    }
+
+    private static String get(ByteBuffer b) {
+        int n = b.getInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] s = new byte[n];
+        b.get(s);
+        return new String(s, StandardCharsets.UTF_8);
+    }
+}
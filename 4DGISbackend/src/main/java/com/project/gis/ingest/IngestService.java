@@ -0,0 +1,239 @@
+package com.project.gis.ingest;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.service.MarkerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 标记点创建的写缓冲（write-behind），由 {@code app.ingest.enabled} 开启。
+ * <p>
+ * 请求线程把创建请求写入本地日志后放进无锁环形队列即返回 202；单个写线程成批取出，在一个事务里插入（group commit），
+ * 再把这批序号记为已提交。队列满时拒绝新请求（503），由客户端退避重试。
+ */
+@Service
+public class IngestService {
+    private static final Logger log = LoggerFactory.getLogger(IngestService.class);
+
+    public enum Status {
+        PENDING, COMMITTED, FAILED
+    }
+
+    public record Result(Status status, Long markerId) {
+    }
+
+    private final MarkerService markerService;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final boolean journalEnabled;
+    private final String journalFile;
+    private final boolean fsync;
+    private final long journalMaxBytes;
+
+    private final MpscRingBuffer<Pending> ring;
+    // accepted but not yet committed; bounds the ring and drives backpressure
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong nextSeq = new AtomicLong(1);
+    private final Map<Long, Result> results;
+    // results with ids up to here may have been evicted
+    private volatile long evictedUpTo;
+    private volatile IngestJournal journal;
+    private volatile boolean running;
+    private Thread writer;
+
+    public IngestService(MarkerService markerService,
+                         @Value("${app.ingest.enabled:false}") boolean enabled,
+                         @Value("${app.ingest.capacity:65536}") int capacity,
+                         @Value("${app.ingest.batch-size:500}") int batchSize,
+                         @Value("${app.ingest.journal:true}") boolean journalEnabled,
+                         @Value("${app.ingest.journal-file:data/ingest/journal.log}") String journalFile,
+                         @Value("${app.ingest.fsync:false}") boolean fsync,
+                         @Value("${app.ingest.journal-max-bytes:67108864}") long journalMaxBytes,
+                         @Value("${app.ingest.result-retention:100000}") int resultRetention) {
+        this.markerService = markerService;
+        this.enabled = enabled;
+        this.capacity = Math.max(1, capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.journalEnabled = journalEnabled;
+        this.journalFile = journalFile;
+        this.fsync = fsync;
+        this.journalMaxBytes = journalMaxBytes;
+        this.ring = new MpscRingBuffer<>(enabled ? this.capacity : 2);
+        this.results = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Result> eldest) {
+                if (size() <= resultRetention) {
+                    return false;
+                }
+                evictedUpTo = Math.max(evictedUpTo, eldest.getKey());
+                return true;
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replays creates that were acknowledged but not committed before the last shutdown, then starts the writer.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (journalEnabled) {
+            IngestJournal j = IngestJournal.open(Paths.get(journalFile), fsync);
+            nextSeq.set(j.maxSeq() + 1);
+            journal = j;
+            List<Pending> replay = new ArrayList<>();
+            j.uncommitted().forEach((seq, m) -> replay.add(new Pending(seq, m)));
+            for (int i = 0; i < replay.size(); i += batchSize) {
+                commit(replay.subList(i, Math.min(replay.size(), i + batchSize)));
+            }
+            if (!replay.isEmpty()) {
+                log.info("Replayed {} buffered marker creates from the ingest journal", replay.size());
+            }
+        }
+        running = true;
+        writer = new Thread(this::run, "marker-ingest-writer");
+        writer.start();
+    }
+
+    /**
+     * Stops accepting work and lets the writer drain what is already buffered.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Accepts a create for asynchronous insertion.
+     *
+     * @return the ingest id to poll with {@link #status}, or -1 when the buffer is full
+     */
+    public long submit(JpaMarker marker) {
+        if (!running || outstanding.incrementAndGet() > capacity) {
+            if (running) {
+                outstanding.decrementAndGet();
+            }
+            return -1;
+        }
+        long seq = nextSeq.getAndIncrement();
+        IngestJournal j = journal;
+        if (j != null) {
+            try {
+                j.appendCreate(seq, marker);
+            } catch (IOException ex) {
+                outstanding.decrementAndGet();
+                throw new UncheckedIOException(ex);
+            }
+        }
+        // cannot fail for long: outstanding <= capacity <= ring size, the writer frees slots before it
+        // decrements outstanding
+        while (!ring.offer(new Pending(seq, marker))) {
+            Thread.onSpinWait();
+        }
+        return seq;
+    }
+
+    /**
+     * @return null when the id is unknown or has aged out of the retained results
+     */
+    public Result status(long ingestId) {
+        Result r = results.get(ingestId);
+        if (r != null) {
+            return r;
+        }
+        return ingestId > evictedUpTo && ingestId < nextSeq.get() ? new Result(Status.PENDING, null) : null;
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || outstanding.get() > 0) {
+            ring.drain(batch::add, batchSize);
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(1_000_000L);
+                continue;
+            }
+            try {
+                commit(batch);
+            } catch (RuntimeException ex) {
+                log.error("Ingest batch of {} markers failed", batch.size(), ex);
+            }
+            outstanding.addAndGet(-batch.size());
+            batch.clear();
+            IngestJournal j = journal;
+            if (j != null) {
+                try {
+                    j.truncateIfIdle(journalMaxBytes, () -> outstanding.get() == 0);
+                } catch (IOException ex) {
+                    log.error("Failed to truncate the ingest journal", ex);
+                }
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        List<JpaMarker> markers = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            markers.add(p.marker());
+        }
+        try {
+            List<JpaMarker> saved = markerService.createAll(markers);
+            for (int i = 0; i < batch.size(); i++) {
+                results.put(batch.get(i).seq(), new Result(Status.COMMITTED, saved.get(i).getId()));
+            }
+        } catch (RuntimeException ex) {
+            // one bad row rolls back the whole batch; retry one by one so only that row is lost
+            log.warn("Group commit of {} markers failed, retrying individually", batch.size(), ex);
+            for (Pending p : batch) {
+                try {
+                    results.put(p.seq(), new Result(Status.COMMITTED, markerService.retryCreate(p.marker()).getId()));
+                } catch (RuntimeException single) {
+                    log.warn("Dropping buffered marker create {}", p.seq(), single);
+                    results.put(p.seq(), new Result(Status.FAILED, null));
+                }
+            }
+        }
+        IngestJournal j = journal;
+        if (j != null) {
+            try {
+                j.appendCommit(batch.stream().map(Pending::seq).toList());
+            } catch (IOException ex) {
+                // the creates would be replayed (and duplicated) after a restart
+                log.error("Failed to record committed ingest batch", ex);
+            }
+        }
+    }
+
+    private record Pending(long seq, JpaMarker marker) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.project.gis.ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界、无锁的多生产者单消费者环形队列（Vyukov 方案：每个槽位带序号，生产者只 CAS 一次尾指针）。
+ * 槽位序号等于尾指针时可写，等于尾指针 + 1 时可读；消费者读完把序号推进一整圈。
+ */
+final class MpscRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // only touched by the consumer thread
+    private long head;
+
+    MpscRingBuffer(int capacity) {
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return false when the buffer is full
+     */
+    boolean offer(E e) {
+        while (true) {
+            long t = tail.get();
+            int idx = (int) (t & mask);
+            long diff = sequences.get(idx) - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    items.lazySet(idx, e);
+                    // publishes the item to the consumer
+                    sequences.set(idx, t + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Hands up to {@code max} items to the consumer in FIFO order. Consumer thread only.
+     *
+     * @return number of items drained
+     */
+    int drain(Consumer<E> consumer, int max) {
+        int n = 0;
+        while (n < max) {
+            int idx = (int) (head & mask);
+            if (sequences.get(idx) != head + 1) {
+                // empty, or the producer that claimed this slot has not published yet
+                break;
+            }
+            E e = items.get(idx);
+            items.lazySet(idx, null);
+            sequences.set(idx, head + mask + 1);
+            head++;
+            n++;
+            consumer.accept(e);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,78 @@
+package com.project.gis.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 为各仓库查询的过滤列补齐索引。写成 Java 迁移而不是 SQL：V1 新建的库已经带了其中一部分索引，而由 ddl-auto 建出、
+ * 按 V1 基线接入的旧库一个都没有，所以逐个检查 —— 已有以这些列开头的索引（包括唯一约束）就跳过，两种库最终结构一致。
+ * 只涉及 V1 里的表；之后的迁移建表时自带索引。Flyway 通过 Spring 注入的 JavaMigration bean 发现它，MySQL / H2 共用。
+ */
+@Component
+public class V2__LookupIndexes extends BaseJavaMigration {
+    private static final List<String[]> INDEXES = List.of(
+            // table, index, columns
+            new String[]{"markers", "idx_owner_id", "owner_id"},
+            new String[]{"attachments", "idx_marker_id", "marker_id"},
+            new String[]{"marker_tags", "idx_marker_tag_tag", "tag_id"},
+            new String[]{"marker_collaborators", "idx_collaborator_user", "user_id"},
+            new String[]{"friend_requests", "idx_friend_request_recipient", "recipient_id"},
+            // mirrors the (user1_id, user2_id) primary key so both branches of FriendshipRepository.findByUserId
+            // are index lookups
+            new String[]{"friendships", "idx_friendship_user2", "user2_id,user1_id"});
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement st = connection.createStatement()) {
+            for (String[] index : INDEXES) {
+                if (!hasIndexOn(connection, index[0], index[2])) {
+                    st.execute("create index " + index[1] + " on " + index[0] + " (" + index[2] + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether some index of {@code table} starts with exactly {@code columns}, in order.
+     */
+    private static boolean hasIndexOn(Connection connection, String table, String columns) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String name = meta.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+        Map<String, List<String>> indexColumns = new TreeMap<>();
+        try (ResultSet rs = meta.getIndexInfo(connection.getCatalog(), connection.getSchema(), name, false, false)) {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                if (index == null || column == null) {
+                    continue;
+                }
+                List<String> cols = indexColumns.computeIfAbsent(index, k -> new ArrayList<>());
+                int pos = rs.getShort("ORDINAL_POSITION") - 1;
+                while (cols.size() <= pos) {
+                    cols.add(null);
+                }
+                cols.set(pos, column.toLowerCase(Locale.ROOT));
+            }
+        }
+        List<String> wanted = List.of(columns.split(","));
+        for (List<String> cols : indexColumns.values()) {
+            if (cols.size() >= wanted.size() && cols.subList(0, wanted.size()).equals(wanted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
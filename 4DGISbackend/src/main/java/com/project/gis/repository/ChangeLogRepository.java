@@ -0,0 +1,24 @@
+package com.project.gis.repository;
+
+import com.project.gis.entity.JpaChangeLogEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface ChangeLogRepository extends JpaRepository<JpaChangeLogEntry, Long> {
+    List<JpaChangeLogEntry> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable page);
+
+    @Query("select coalesce(max(c.id), 0) from JpaChangeLogEntry c")
+    long maxId();
+
+    @Query("select distinct c.entityId from JpaChangeLogEntry c where c.kind = :kind and c.createdAt >= :since")
+    List<Long> entityIdsSince(@Param("kind") String kind, @Param("since") OffsetDateTime since);
+
+    @Modifying
+    @Query("delete from JpaChangeLogEntry c where c.createdAt < :before")
+    int deleteOlderThan(@Param("before") OffsetDateTime before);
+}
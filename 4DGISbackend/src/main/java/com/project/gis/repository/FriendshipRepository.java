@@ -8,6 +8,12 @@ import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface FriendshipRepository extends JpaRepository<JpaFriendship, FriendshipId> {
-    @Query("select f from JpaFriendship f where f.id.user1Id = :uid or f.id.user2Id = :uid")
+    /**
+     * Friendships of {@code userId} on either side. Written as two branches rather than an OR so that each is an index
+     * lookup: the primary key for user1_id, idx_friendship_user2 for user2_id. A pair is stored once with
+     * user1_id &lt; user2_id, so the branches never overlap and UNION ALL needs no de-duplication.
+     */
+    @Query("select f from JpaFriendship f where f.id.user1Id = :uid"
+            + " union all select f from JpaFriendship f where f.id.user2Id = :uid")
     List<JpaFriendship> findByUserId(@Param("uid") Long userId);
 }
@@ -0,0 +1,12 @@
+package com.project.gis.repository;
+
+import com.project.gis.entity.JpaGeofenceEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface GeofenceEventRepository extends JpaRepository<JpaGeofenceEvent, Long> {
+    List<JpaGeofenceEvent> findByOwnerIdAndIdGreaterThanOrderByIdAsc(Long ownerId, Long afterId, Pageable page);
+
+    void deleteByGeofenceId(Long geofenceId);
+}
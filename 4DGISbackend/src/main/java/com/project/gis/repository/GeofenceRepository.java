@@ -0,0 +1,9 @@
+package com.project.gis.repository;
+
+import com.project.gis.entity.JpaGeofence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import java.util.List;
+
+public interface GeofenceRepository extends JpaRepository<JpaGeofence, Long> {
+    List<JpaGeofence> findByOwnerId(Long ownerId);
+}
@@ -1,6 +1,7 @@
 package com.project.gis.repository;
 
 import com.project.gis.entity.JpaMarker;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,6 +10,12 @@ import java.util.List;
 public interface MarkerRepository extends JpaRepository<JpaMarker, Long> {
     List<JpaMarker> findByOwnerId(Long ownerId);
 
+    List<JpaMarker> findByCellIdBetween(Long from, Long to);
+
+    List<JpaMarker> findByCellIdIsNull();
+
+    List<JpaMarker> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
     @Query("select m from JpaMarker m where m.title like %:q% or m.description like %:q%")
     List<JpaMarker> search(@Param("q") String q);
 }
@@ -2,7 +2,26 @@ package com.project.gis.repository;
 
 import com.project.gis.entity.JpaMarkerTag;
 import com.project.gis.entity.JpaMarkerTag.MarkerTagId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Collection;
+import java.util.List;
 
 public interface MarkerTagRepository extends JpaRepository<JpaMarkerTag, MarkerTagId> {
+    List<JpaMarkerTag> findByIdMarkerId(Long markerId);
+
+    List<JpaMarkerTag> findByIdMarkerIdIn(Collection<Long> markerIds);
+
+    List<JpaMarkerTag> findByIdTagIdIn(Collection<Long> tagIds);
+
+    void deleteByIdMarkerId(Long markerId);
+
+    /**
+     * Keyset page in (marker_id, tag_id) order: the rows after the given key, up to the page size.
+     */
+    @Query("select t from JpaMarkerTag t where t.id.markerId > :markerId"
+            + " or (t.id.markerId = :markerId and t.id.tagId > :tagId) order by t.id.markerId, t.id.tagId")
+    List<JpaMarkerTag> findPageAfter(Long markerId, Long tagId, Pageable page);
 }
@@ -1,7 +1,17 @@
 package com.project.gis.repository;
 
 import com.project.gis.entity.JpaMarkerType;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.List;
+
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
 
 public interface MarkerTypeRepository extends JpaRepository<JpaMarkerType, Long> {
+    @Override
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "reference-queries")})
+    List<JpaMarkerType> findAll();
 }
@@ -1,10 +1,25 @@
 package com.project.gis.repository;
 
 import com.project.gis.entity.JpaTag;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+
 public interface TagRepository extends JpaRepository<JpaTag, Long> {
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "reference-queries")})
     Optional<JpaTag> findByTagName(String tagName);
+
+    /**
+     * Same lookup as {@link #findByTagName} but past the query cache, which can still hold "not found" for a name a
+     * concurrent transaction has just inserted.
+     */
+    @Query("select t from JpaTag t where t.tagName = :tagName")
+    Optional<JpaTag> findUncachedByTagName(@Param("tagName") String tagName);
 }
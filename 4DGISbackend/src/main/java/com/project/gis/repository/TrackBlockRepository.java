@@ -0,0 +1,20 @@
+package com.project.gis.repository;
+
+import com.project.gis.entity.JpaTrackBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TrackBlockRepository extends JpaRepository<JpaTrackBlock, Long> {
+    List<JpaTrackBlock> findByMarkerIdAndStartTimeLessThanEqualAndEndTimeGreaterThanEqualOrderByStartTimeAsc(
+            Long markerId, Long to, Long from);
+
+    Optional<JpaTrackBlock> findFirstByMarkerIdAndStartTimeLessThanEqualOrderByStartTimeDesc(Long markerId, Long t);
+
+    Optional<JpaTrackBlock> findFirstByMarkerIdAndEndTimeGreaterThanEqualOrderByStartTimeAsc(Long markerId, Long t);
+
+    Optional<JpaTrackBlock> findFirstByMarkerIdOrderByEndTimeDesc(Long markerId);
+
+    void deleteByMarkerId(Long markerId);
+}
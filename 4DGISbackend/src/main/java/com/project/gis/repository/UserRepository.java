@@ -1,11 +1,35 @@
 package com.project.gis.repository;
 
 import com.project.gis.entity.JpaUser;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+
 public interface UserRepository extends JpaRepository<JpaUser, Long> {
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "user-lookups")})
     Optional<JpaUser> findByUsername(String username);
+
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "user-lookups")})
     Optional<JpaUser> findByEmail(String email);
+
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "user-lookups")})
     Optional<JpaUser> findByPhone(String phone);
+
+    /**
+     * Users whose username, email or phone equals {@code identity}; each column has a unique index, so at most three
+     * (a user matching on two columns comes back twice). One branch per column so that each is a unique-index lookup,
+     * which an OR over the three is not.
+     */
+    @Query("select u from JpaUser u where u.username = :identity"
+            + " union all select u from JpaUser u where u.email = :identity"
+            + " union all select u from JpaUser u where u.phone = :identity")
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"), @QueryHint(name = HINT_CACHE_REGION, value = "user-lookups")})
+    List<JpaUser> findByIdentity(@Param("identity") String identity);
 }
@@ -0,0 +1,137 @@
+package com.project.gis.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.gis.dto.ErrorResponse;
+import com.project.gis.error.ErrorCode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 准入控制，排在 JwtAuthFilter 之后：先按 JWT subject（未登录时按客户端 IP）走令牌桶限流，再经过自适应的全局并发上限。
+ * 任一关口拒绝都直接返回 429 + Retry-After，请求不会进入业务代码，也不会去抢数据库连接。
+ * <p>
+ * 客户端 IP 取 {@link HttpServletRequest#getRemoteAddr()}：部署在反向代理后面时由 server.forward-headers-strategy=native
+ * 换成 X-Forwarded-For 中最后一个不属于可信代理（server.tomcat.remoteip.internal-proxies）的地址；
+ * 直连的客户端自带的 X-Forwarded-For 不被采信，否则换个头就能换一个令牌桶。
+ */
+public class AdmissionControlFilter extends OncePerRequestFilter {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final TokenBuckets users;
+    private final TokenBuckets anonymous;
+    private final ConcurrencyLimit concurrency;
+    private final Counter rateLimited;
+    private final Counter shed;
+
+    public AdmissionControlFilter(AdmissionProperties props, MeterRegistry registry) {
+        this.users = new TokenBuckets(props.getStripes(), props.getUserRatePerSecond(), props.getUserBurst());
+        this.anonymous = new TokenBuckets(props.getStripes(), props.getAnonymousRatePerSecond(),
+                props.getAnonymousBurst());
+        this.concurrency = new ConcurrencyLimit(props.getInitialLimit(), props.getMinLimit(), props.getMaxLimit(),
+                props.getRttTolerance(), props.getSmoothing());
+        Gauge.builder("admission.concurrency.limit", concurrency, ConcurrencyLimit::limit).register(registry);
+        Gauge.builder("admission.concurrency.inflight", concurrency, ConcurrencyLimit::inflight).register(registry);
+        this.rateLimited = Counter.builder("admission.rejected").tag("reason", "rate").register(registry);
+        this.shed = Counter.builder("admission.rejected").tag("reason", "concurrency").register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Authentication a = SecurityContextHolder.getContext().getAuthentication();
+        long waitMillis = a != null && a.getPrincipal() instanceof String subject
+                ? users.tryAcquire(subject)
+                : anonymous.tryAcquire(request.getRemoteAddr());
+        if (waitMillis > 0) {
+            rateLimited.increment();
+            reject(response, waitMillis, "请求过于频繁，请稍后重试");
+            return;
+        }
+        if (!concurrency.tryAcquire()) {
+            shed.increment();
+            reject(response, 1000, "服务繁忙，请稍后重试");
+            return;
+        }
+        long startedAt = System.nanoTime();
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // an async handler (login) is still running: keep the permit until the response completes. The
+                // async redispatch is not filtered again (OncePerRequestFilter), so it takes no second token or permit
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(startedAt));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                concurrency.release(System.nanoTime() - startedAt);
+            }
+        }
+    }
+
+    /**
+     * Releases the concurrency permit of an async request exactly once, whichever way it ends.
+     */
+    private final class ReleaseOnCompletion implements AsyncListener {
+        private final long startedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleaseOnCompletion(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // listeners are dropped when async processing is restarted
+            event.getAsyncContext().addListener(this);
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                concurrency.release(System.nanoTime() - startedAt);
+            }
+        }
+    }
+
+    private static void reject(HttpServletResponse response, long waitMillis, String message) throws IOException {
+        response.setStatus(429);
+        response.setHeader("Retry-After", String.valueOf((waitMillis + 999) / 1000));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        MAPPER.writeValue(response.getOutputStream(), ErrorResponse.of(ErrorCode.TOO_MANY_REQUESTS, message));
+    }
+}
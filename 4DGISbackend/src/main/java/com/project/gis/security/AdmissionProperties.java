@@ -0,0 +1,44 @@
+package com.project.gis.security;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 准入控制配置（app.admission.*）：按用户限流 + 自适应全局并发上限
+ */
+@Data
+@ConfigurationProperties(prefix = "app.admission")
+public class AdmissionProperties {
+    private boolean enabled = true;
+    /**
+     * 已登录用户（JWT subject）每秒补充的令牌数，即长期平均请求速率
+     */
+    private double userRatePerSecond = 20;
+    /**
+     * 已登录用户允许的突发请求数（桶容量）
+     */
+    private int userBurst = 40;
+    /**
+     * 未登录请求按客户端 IP 限流，主要保护登录 / 注册接口
+     */
+    private double anonymousRatePerSecond = 5;
+    private int anonymousBurst = 10;
+    /**
+     * 令牌桶分条数（向上取 2 的幂），哈希冲突的用户共享一个桶
+     */
+    private int stripes = 65536;
+    /**
+     * 全局并发上限的初始值 / 下限 / 上限
+     */
+    private int initialLimit = 40;
+    private int minLimit = 8;
+    private int maxLimit = 400;
+    /**
+     * 短期 RTT 超过长期基线的多少倍才开始收缩并发上限
+     */
+    private double rttTolerance = 2.0;
+    /**
+     * 每个样本对并发上限的调整幅度（0~1）
+     */
+    private double smoothing = 0.2;
+}
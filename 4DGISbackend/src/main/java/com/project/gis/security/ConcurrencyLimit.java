@@ -0,0 +1,100 @@
+package com.project.gis.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应的全局并发上限（gradient 算法）。以长期平均 RTT 为基线，每个采样窗口比较一次：窗口内平均 RTT 明显变长说明请求
+ * 开始在数据库 / 连接池排队，上限按 基线/窗口 的比例收缩；RTT 正常时留出 sqrt(limit) 的余量逐步放大。
+ * 超出上限的请求立即拒绝，而不是在 Hikari 池里等到超时。
+ */
+final class ConcurrencyLimit {
+    private static final long WINDOW_NANOS = 100_000_000L;
+    private static final int MIN_WINDOW_SAMPLES = 10;
+    private static final double LONG_ALPHA = 0.05;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private volatile double limit;
+    // guarded by updateLock
+    private long windowStart = System.nanoTime();
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInflight;
+    private double longRtt;
+
+    ConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    boolean tryAcquire() {
+        if (inflight.incrementAndGet() > (int) limit) {
+            inflight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    void release(long rttNanos) {
+        int inflightAtEnd = inflight.getAndDecrement();
+        // one thread samples at a time; a sample that loses the race is simply dropped
+        if (updateLock.tryLock()) {
+            try {
+                sample(rttNanos, inflightAtEnd);
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inflight() {
+        return inflight.get();
+    }
+
+    private void sample(long rtt, int inflightAtEnd) {
+        windowRttSum += rtt;
+        windowSamples++;
+        windowMaxInflight = Math.max(windowMaxInflight, inflightAtEnd);
+        long now = System.nanoTime();
+        if (now - windowStart < WINDOW_NANOS || windowSamples < MIN_WINDOW_SAMPLES) {
+            return;
+        }
+        double shortRtt = (double) windowRttSum / windowSamples;
+        boolean saturated = windowMaxInflight >= limit / 2;
+        windowStart = now;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInflight = 0;
+        update(shortRtt, saturated);
+    }
+
+    private void update(double shortRtt, boolean saturated) {
+        if (longRtt == 0) {
+            longRtt = shortRtt;
+            return;
+        }
+        // while saturated the samples include queueing, so the baseline may only creep up; otherwise it would chase
+        // the overload and the limit would never come down
+        longRtt += (shortRtt - longRtt) * (shortRtt > longRtt && saturated ? LONG_ALPHA / 10 : LONG_ALPHA);
+        if (!saturated) {
+            // far from the limit, the window says nothing about whether it is too high or too low
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double next = limit * gradient + Math.sqrt(limit);
+        next = limit * (1 - smoothing) + next * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
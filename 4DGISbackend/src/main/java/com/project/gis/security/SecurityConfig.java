@@ -1,5 +1,7 @@
 package com.project.gis.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,11 +12,16 @@ import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
 public class SecurityConfig {
     private final JwtService jwtService;
+    private final AdmissionProperties admissionProperties;
+    private final MeterRegistry meterRegistry;
 
-    public SecurityConfig(JwtService jwtService) {
+    public SecurityConfig(JwtService jwtService, AdmissionProperties admissionProperties, MeterRegistry meterRegistry) {
         this.jwtService = jwtService;
+        this.admissionProperties = admissionProperties;
+        this.meterRegistry = meterRegistry;
     }
 
     @Bean
@@ -29,6 +36,10 @@ public class SecurityConfig {
                 .anyRequest().authenticated()
                 .and()
                 .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
+        if (admissionProperties.isEnabled()) {
+            // after authentication so limits apply per JWT subject
+            http.addFilterAfter(new AdmissionControlFilter(admissionProperties, meterRegistry), JwtAuthFilter.class);
+        }
         return http.build();
     }
 
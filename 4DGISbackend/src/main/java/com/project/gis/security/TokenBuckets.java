@@ -0,0 +1,65 @@
+package com.project.gis.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 按 key 分条的令牌桶。每个桶的状态（上次补充时间 + 令牌数）打包在 AtomicLongArray 的一个 long 里，用 CAS 更新，
+ * 无锁；分条数固定，内存不随用户数增长，也不需要清理过期用户。哈希冲突的 key 共享一个桶，分条足够多时影响可以忽略。
+ */
+final class TokenBuckets {
+    private static final int TOKEN_BITS = 24;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    // tokens are kept in thousandths so slow refill rates still accrue every millisecond
+    private static final long SCALE = 1000;
+
+    private final AtomicLongArray state;
+    private final int mask;
+    private final long capacity;
+    private final double refillPerMilli;
+    private final long origin = System.nanoTime();
+
+    /**
+     * @throws IllegalArgumentException when the rate is not positive or the burst does not fit the packed state
+     */
+    TokenBuckets(int stripes, double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1 || burst * SCALE > TOKEN_MASK) {
+            throw new IllegalArgumentException("rate / burst");
+        }
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.state = new AtomicLongArray(n);
+        this.mask = n - 1;
+        this.capacity = burst * SCALE;
+        this.refillPerMilli = ratePerSecond * SCALE / 1000.0;
+    }
+
+    /**
+     * Takes one token from {@code key}'s bucket.
+     *
+     * @return 0 when admitted, otherwise the milliseconds until a token will be available
+     */
+    long tryAcquire(String key) {
+        int i = spread(key.hashCode()) & mask;
+        // +1 keeps a touched slot distinct from the all-zero initial state, which means "full"
+        long now = (System.nanoTime() - origin) / 1_000_000 + 1;
+        while (true) {
+            long s = state.get(i);
+            long tokens = capacity;
+            if (s != 0) {
+                long elapsed = now - (s >>> TOKEN_BITS);
+                tokens = Math.min(capacity, (s & TOKEN_MASK) + (long) (Math.max(0, elapsed) * refillPerMilli));
+            }
+            if (tokens < SCALE) {
+                return Math.max(1, (long) Math.ceil((SCALE - tokens) / refillPerMilli));
+            }
+            if (state.compareAndSet(i, s, (now << TOKEN_BITS) | (tokens - SCALE))) {
+                return 0;
+            }
+        }
+    }
+
+    private static int spread(int h) {
+        h ^= h >>> 16;
+        h *= 0x45d9f3b;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,147 @@
+package com.project.gis.service;
+
+import com.project.gis.dto.FacetCount;
+import com.project.gis.dto.MarkerFacetsResponse;
+import com.project.gis.dto.MarkersGetRequest;
+import com.project.gis.dto.TimeBucketCount;
+import com.project.gis.dto.Visibility;
+import com.project.gis.entity.JpaMarkerType;
+import com.project.gis.entity.JpaTag;
+import com.project.gis.entity.JpaUser;
+import com.project.gis.index.IndexedMarker;
+import com.project.gis.repository.MarkerTypeRepository;
+import com.project.gis.repository.UserRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 当前视口的分面统计（类型 / 可见性 / 所有者 / 标签 / 时间分桶），一次遍历候选集同时完成所有计数
+ */
+@Service
+public class FacetService {
+    private static final int MAX_OWNERS = 50;
+    private static final int MAX_TIME_BUCKETS = 2000;
+    private static final long HOUR = 3_600_000L;
+    // 1970-01-05, the first Monday after the epoch
+    private static final long MONDAY = 4 * 24 * HOUR;
+
+    private final MarkerService markerService;
+    private final TagService tagService;
+    private final MarkerTypeRepository markerTypeRepository;
+    private final UserRepository userRepository;
+
+    public FacetService(MarkerService markerService, TagService tagService, MarkerTypeRepository markerTypeRepository,
+            UserRepository userRepository) {
+        this.markerService = markerService;
+        this.tagService = tagService;
+        this.markerTypeRepository = markerTypeRepository;
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * @param interval hour, day or week; null means day
+     * @throws IllegalArgumentException when the filters or the interval are invalid, or the interval is too fine
+     *                                  for the matched time range
+     */
+    @Transactional(readOnly = true)
+    public MarkerFacetsResponse facets(MarkersGetRequest req, Long viewerId, String interval) {
+        String name = interval == null || interval.isBlank() ? "day" : interval.trim().toLowerCase();
+        long width = switch (name) {
+            case "hour" -> HOUR;
+            case "day" -> 24 * HOUR;
+            case "week" -> 7 * 24 * HOUR;
+            default -> throw new IllegalArgumentException("interval");
+        };
+        long origin = "week".equals(name) ? MONDAY : 0L;
+        List<IndexedMarker> matched = markerService.matching(req, viewerId);
+
+        LongIntCounter types = new LongIntCounter(64);
+        LongIntCounter owners = new LongIntCounter(256);
+        LongIntCounter buckets = new LongIntCounter(256);
+        int[] visibility = new int[Visibility.values().length];
+        long[] ids = new long[matched.size()];
+        for (int i = 0; i < ids.length; i++) {
+            IndexedMarker e = matched.get(i);
+            ids[i] = e.id();
+            types.increment(e.typeId());
+            owners.increment(e.ownerId());
+            buckets.increment(Math.floorDiv(e.startMillis() - origin, width) * width + origin);
+            visibility[Visibility.of(e.visibility()).ordinal()]++;
+        }
+        if (buckets.size() > MAX_TIME_BUCKETS) {
+            throw new IllegalArgumentException("interval");
+        }
+
+        MarkerFacetsResponse resp = new MarkerFacetsResponse();
+        resp.setTotal((long) ids.length);
+        resp.setInterval(name);
+
+        Map<Long, String> typeNames = markerTypeRepository.findAll().stream()
+                .collect(Collectors.toMap(JpaMarkerType::getId, JpaMarkerType::getTypeName));
+        resp.setTypes(top(types, Integer.MAX_VALUE, typeNames::get));
+
+        List<FacetCount> topOwners = top(owners, MAX_OWNERS, id -> null);
+        Map<Long, String> userNames = userRepository
+                .findAllById(topOwners.stream().map(c -> Long.parseLong(c.getValue())).toList()).stream()
+                .collect(Collectors.toMap(JpaUser::getId, JpaUser::getUsername));
+        topOwners.forEach(c -> c.setLabel(userNames.get(Long.parseLong(c.getValue()))));
+        resp.setOwners(topOwners);
+
+        List<FacetCount> vis = new ArrayList<>(visibility.length);
+        for (Visibility v : Visibility.values()) {
+            if (visibility[v.ordinal()] > 0) {
+                vis.add(count(v.toValue(), null, visibility[v.ordinal()]));
+            }
+        }
+        resp.setVisibility(vis);
+
+        Map<Long, Integer> tagCounts = tagService.counts(ids);
+        Map<Long, String> tagNames = tagService.getTags(tagCounts.keySet()).stream()
+                .collect(Collectors.toMap(JpaTag::getId, JpaTag::getTagName));
+        resp.setTags(tagCounts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed())
+                .map(e -> count(String.valueOf(e.getKey()), tagNames.get(e.getKey()), e.getValue()))
+                .toList());
+
+        List<TimeBucketCount> timeBuckets = new ArrayList<>(buckets.size());
+        buckets.forEach((start, n) -> {
+            TimeBucketCount b = new TimeBucketCount();
+            b.setStart(OffsetDateTime.ofInstant(Instant.ofEpochMilli(start), ZoneOffset.UTC));
+            b.setCount((long) n);
+            timeBuckets.add(b);
+        });
+        timeBuckets.sort(Comparator.comparing(TimeBucketCount::getStart));
+        resp.setTimeBuckets(timeBuckets);
+        return resp;
+    }
+
+    private static List<FacetCount> top(LongIntCounter counter, int limit, Function<Long, String> label) {
+        List<long[]> entries = new ArrayList<>(counter.size());
+        counter.forEach((key, n) -> entries.add(new long[]{key, n}));
+        entries.sort((a, b) -> Long.compare(b[1], a[1]));
+        List<FacetCount> out = new ArrayList<>(Math.min(limit, entries.size()));
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            long key = entries.get(i)[0];
+            out.add(count(String.valueOf(key), label.apply(key), entries.get(i)[1]));
+        }
+        return out;
+    }
+
+    private static FacetCount count(String value, String label, long n) {
+        FacetCount c = new FacetCount();
+        c.setValue(value);
+        c.setLabel(label);
+        c.setCount(n);
+        return c;
+    }
+}
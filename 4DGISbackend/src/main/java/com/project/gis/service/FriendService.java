@@ -1,11 +1,14 @@
 package com.project.gis.service;
 
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
 import com.project.gis.entity.JpaFriendRequest;
 import com.project.gis.entity.JpaFriendship;
 import com.project.gis.entity.JpaFriendship.FriendshipId;
 import com.project.gis.repository.FriendRequestRepository;
 import com.project.gis.repository.FriendshipRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -14,12 +17,16 @@ import java.util.stream.Collectors;
 public class FriendService {
     private final FriendRequestRepository requestRepository;
     private final FriendshipRepository friendshipRepository;
+    private final ChangeLog changeLog;
 
-    public FriendService(FriendRequestRepository requestRepository, FriendshipRepository friendshipRepository) {
+    public FriendService(FriendRequestRepository requestRepository, FriendshipRepository friendshipRepository,
+                         ChangeLog changeLog) {
         this.requestRepository = requestRepository;
         this.friendshipRepository = friendshipRepository;
+        this.changeLog = changeLog;
     }
 
+    @Transactional
     public JpaFriendRequest sendRequest(Long requesterId, Long recipientId) {
         if (requestRepository.existsByRequesterIdAndRecipientId(requesterId, recipientId)) {
             throw new IllegalStateException("Request already exists");
@@ -27,9 +34,12 @@ public class FriendService {
         JpaFriendRequest req = new JpaFriendRequest();
         req.setRequesterId(requesterId);
         req.setRecipientId(recipientId);
-        return requestRepository.save(req);
+        JpaFriendRequest saved = requestRepository.save(req);
+        changed(requesterId, recipientId);
+        return saved;
     }
 
+    @Transactional
     public void handleRequest(Long requestId, boolean accept) {
         JpaFriendRequest req = requestRepository.findById(requestId).orElseThrow();
         if (accept) {
@@ -42,16 +52,20 @@ public class FriendService {
             friendshipRepository.save(f);
         }
         requestRepository.delete(req);
+        changed(req.getRequesterId(), req.getRecipientId());
     }
 
+    @Transactional
     public void addFriendDirect(Long userA, Long userB) {
         FriendshipId id = new FriendshipId();
         if (userA < userB) { id.setUser1Id(userA); id.setUser2Id(userB);} else { id.setUser1Id(userB); id.setUser2Id(userA);} 
         JpaFriendship f = new JpaFriendship();
         f.setId(id);
         friendshipRepository.save(f);
+        changed(userA, userB);
     }
 
+    @Transactional(readOnly = true)
     public java.util.List<com.project.gis.dto.FriendResponse> listFriends(Long userId, com.project.gis.repository.UserRepository userRepository) {
         java.util.List<JpaFriendship> l = friendshipRepository.findByUserId(userId);
         java.util.List<com.project.gis.dto.FriendResponse> out = new java.util.ArrayList<>();
@@ -67,10 +81,12 @@ public class FriendService {
         return out;
     }
 
+    @Transactional(readOnly = true)
     public List<JpaFriendRequest> getReceived(Long recipientId) {
         return requestRepository.findByRecipientId(recipientId);
     }
 
+    @Transactional
     public void acceptRequest(Long requestId) {
         JpaFriendRequest req = requestRepository.findById(requestId).orElseThrow();
         Long a = req.getRequesterId();
@@ -81,16 +97,26 @@ public class FriendService {
         f.setId(id);
         friendshipRepository.save(f);
         requestRepository.delete(req);
+        changed(a, b);
     }
 
+    @Transactional
     public void removeFriend(Long userA, Long userB) {
         FriendshipId id = new FriendshipId();
         if (userA < userB) { id.setUser1Id(userA); id.setUser2Id(userB);} else { id.setUser1Id(userB); id.setUser2Id(userA);} 
         friendshipRepository.deleteById(id);
+        changed(userA, userB);
     }
 
+    @Transactional(readOnly = true)
     public List<Long> listFriendIds(Long userId) {
         List<JpaFriendship> l = friendshipRepository.findByUserId(userId);
         return l.stream().map(f -> f.getId().getUser1Id().equals(userId) ? f.getId().getUser2Id() : f.getId().getUser1Id()).collect(Collectors.toList());
     }
+
+    // both users' friend lists changed; no node caches them yet, a friend-list cache would subscribe to FRIENDSHIP
+    private void changed(Long userA, Long userB) {
+        changeLog.append(ChangeKind.FRIENDSHIP, userA);
+        changeLog.append(ChangeKind.FRIENDSHIP, userB);
+    }
 }
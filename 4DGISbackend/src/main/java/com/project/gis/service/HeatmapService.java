@@ -0,0 +1,239 @@
+package com.project.gis.service;
+
+import com.project.gis.archive.MarkerArchive;
+import com.project.gis.dto.HeatmapResponse;
+import com.project.gis.index.IndexedMarker;
+import com.project.gis.index.MarkerIndex;
+import com.project.gis.spatial.BoundingBox;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Serial;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 视口内标记点的密度网格（按单元格计数）。
+ * <p>
+ * 视口先按缩放级别对应的单元格尺寸向外对齐、时间窗口按 {@code time-quantum-ms} 向外取整，相近的请求因此落到同一个
+ * 缓存键上。网格按单元格范围递归二分成若干子视口，在 fork-join 线程池中各自查询内存索引并只写自己那部分单元格。
+ * 时间窗口涉及已归档的标记点时，再在调用线程上扫描与视口、窗口重叠的归档段，把其中的标记点加进计数。
+ */
+@Service
+public class HeatmapService {
+    // cells per 256px web-map tile, i.e. one cell is 8px on screen
+    private static final int CELLS_PER_TILE = 32;
+    private static final int MAX_ZOOM = 22;
+    private static final int MAX_CELLS = 512 * 512;
+    // a sub-grid with fewer cells than this is counted on the calling thread
+    private static final int SPLIT_THRESHOLD = 64 * 64;
+
+    private final MarkerIndex markerIndex;
+    private final MarkerArchive markerArchive;
+    private final ForkJoinPool pool;
+    private final long timeQuantumMs;
+    private final long maxStalenessMs;
+    private final Map<Key, Cached> cache;
+
+    public HeatmapService(MarkerIndex markerIndex, MarkerArchive markerArchive,
+                          @Value("${app.heatmap.parallelism:0}") int parallelism,
+                          @Value("${app.heatmap.time-quantum-ms:60000}") long timeQuantumMs,
+                          @Value("${app.heatmap.max-staleness-ms:5000}") long maxStalenessMs,
+                          @Value("${app.heatmap.cache-entries:256}") int cacheEntries) {
+        this.markerIndex = markerIndex;
+        this.markerArchive = markerArchive;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.timeQuantumMs = Math.max(1, timeQuantumMs);
+        this.maxStalenessMs = maxStalenessMs;
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Cached> eldest) {
+                return size() > cacheEntries;
+            }
+        });
+    }
+
+    /**
+     * @param fromMillis inclusive lower bound of the time window, {@link Long#MIN_VALUE} when open
+     * @param toMillis   exclusive upper bound of the time window, {@link Long#MAX_VALUE} when open
+     * @throws IllegalArgumentException when the viewport needs more than {@value #MAX_CELLS} cells at this zoom
+     */
+    public HeatmapResponse heatmap(BoundingBox box, int zoom, long fromMillis, long toMillis, Long typeId,
+            Long viewerId) {
+        double cell = 360.0 / ((1L << Math.max(0, Math.min(zoom, MAX_ZOOM))) * CELLS_PER_TILE);
+        double east = box.crossesAntimeridian() ? box.maxLon() + 360.0 : box.maxLon();
+        double minLon = Math.floor(box.minLon() / cell) * cell;
+        double minLat = Math.max(-90.0, Math.floor(box.minLat() / cell) * cell);
+        int cols = Math.max(1, (int) Math.ceil((east - minLon) / cell));
+        int rows = Math.max(1, (int) Math.ceil((Math.min(90.0, box.maxLat()) - minLat) / cell));
+        if ((long) cols * rows > MAX_CELLS) {
+            throw new IllegalArgumentException("viewport");
+        }
+        long from = fromMillis == Long.MIN_VALUE ? fromMillis : Math.floorDiv(fromMillis, timeQuantumMs) * timeQuantumMs;
+        long to = toMillis == Long.MAX_VALUE ? toMillis
+                : Math.floorDiv(toMillis + timeQuantumMs - 1, timeQuantumMs) * timeQuantumMs;
+        Key key = new Key(zoom, Math.round(minLon / cell), Math.round(minLat / cell), cols, rows, from, to, typeId,
+                viewerId);
+
+        long version = markerIndex.version();
+        long archiveVersion = markerArchive.version();
+        long now = System.currentTimeMillis();
+        Cached hit = cache.get(key);
+        if (hit != null && ((hit.version == version && hit.archiveVersion == archiveVersion)
+                || now - hit.computedAt < maxStalenessMs)) {
+            return hit.response;
+        }
+        Grid grid = new Grid(minLon, minLat, cell, cols, rows, from, to, typeId, viewerId);
+        pool.invoke(new CountTask(grid, 0, cols, 0, rows));
+        BoundingBox all = grid.box(0, cols, 0, rows);
+        if (!markerArchive.isEmpty() && markerArchive.mayMatch(all, from, to)) {
+            countArchived(grid, all);
+        }
+
+        HeatmapResponse resp = new HeatmapResponse();
+        resp.setMinLon(minLon);
+        resp.setMinLat(minLat);
+        resp.setCellSize(cell);
+        resp.setCols(cols);
+        resp.setRows(rows);
+        resp.setCounts(grid.counts);
+        int max = 0;
+        long total = 0;
+        for (int c : grid.counts) {
+            max = Math.max(max, c);
+            total += c;
+        }
+        resp.setMax(max);
+        resp.setTotal(total);
+        if (markerIndex.isLoaded()) {
+            cache.put(key, new Cached(resp, version, archiveVersion, now));
+        }
+        return resp;
+    }
+
+    /**
+     * Adds the archived markers of the grid's window; segments outside it are skipped unread, so only past windows
+     * pay for this. A marker the tiering job is moving is in the index and the archive for a moment; only the index
+     * copy is counted.
+     */
+    private void countArchived(Grid grid, BoundingBox box) {
+        markerArchive.points(box, grid.from, grid.to,
+                (type, owner, creator, visibility) -> (grid.typeId == null || grid.typeId == type)
+                        && IndexedMarker.visibleTo(visibility, owner, creator, grid.viewerId),
+                (id, lon, lat) -> {
+                    int c = Math.min(grid.col(lon), grid.cols - 1), r = Math.min(grid.row(lat), grid.rows - 1);
+                    if (c >= 0 && r >= 0 && markerIndex.get(id) == null) {
+                        grid.counts[r * grid.cols + c]++;
+                    }
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private record Key(int zoom, long col0, long row0, int cols, int rows, long from, long to, Long typeId,
+            Long viewerId) {
+    }
+
+    private record Cached(HeatmapResponse response, long version, long archiveVersion, long computedAt) {
+    }
+
+    private final class Grid {
+        final double minLon, minLat, cell;
+        final int cols, rows;
+        final long from, to;
+        final Long typeId, viewerId;
+        final int[] counts;
+
+        Grid(double minLon, double minLat, double cell, int cols, int rows, long from, long to, Long typeId,
+                Long viewerId) {
+            this.minLon = minLon;
+            this.minLat = minLat;
+            this.cell = cell;
+            this.cols = cols;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.typeId = typeId;
+            this.viewerId = viewerId;
+            this.counts = new int[cols * rows];
+        }
+
+        boolean accepts(IndexedMarker e) {
+            return e.startMillis() < to && e.endMillis() > from
+                    && (typeId == null || typeId == e.typeId())
+                    && e.visibleTo(viewerId);
+        }
+
+        /**
+         * Sub-box covering cells [c0, c1) x [r0, r1); longitudes past 180 wrap round.
+         */
+        BoundingBox box(int c0, int c1, int r0, int r1) {
+            double west = minLon + c0 * cell, east = minLon + c1 * cell;
+            if (west >= 180.0) {
+                west -= 360.0;
+                east -= 360.0;
+            }
+            return new BoundingBox(west, minLat + r0 * cell, east > 180.0 ? east - 360.0 : east,
+                    Math.min(90.0, minLat + r1 * cell));
+        }
+
+        int col(double lon) {
+            return (int) Math.floor(((lon < minLon ? lon + 360.0 : lon) - minLon) / cell);
+        }
+
+        int row(double lat) {
+            return (int) Math.floor((lat - minLat) / cell);
+        }
+    }
+
+    private final class CountTask extends RecursiveTask<Void> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final Grid grid;
+        private final int c0, c1, r0, r1;
+
+        CountTask(Grid grid, int c0, int c1, int r0, int r1) {
+            this.grid = grid;
+            this.c0 = c0;
+            this.c1 = c1;
+            this.r0 = r0;
+            this.r1 = r1;
+        }
+
+        @Override
+        protected Void compute() {
+            int w = c1 - c0, h = r1 - r0;
+            if (w * h > SPLIT_THRESHOLD) {
+                CountTask a, b;
+                if (w >= h) {
+                    int mid = c0 + w / 2;
+                    a = new CountTask(grid, c0, mid, r0, r1);
+                    b = new CountTask(grid, mid, c1, r0, r1);
+                } else {
+                    int mid = r0 + h / 2;
+                    a = new CountTask(grid, c0, c1, r0, mid);
+                    b = new CountTask(grid, c0, c1, mid, r1);
+                }
+                invokeAll(a, b);
+                return null;
+            }
+            int[] counts = grid.counts;
+            markerIndex.query(grid.box(c0, c1, r0, r1), e -> {
+                int c = Math.min(grid.col(e.lon()), grid.cols - 1), r = Math.min(grid.row(e.lat()), grid.rows - 1);
+                // points on a shared edge are seen by both neighbours; only the owner of the cell counts them
+                if (c >= c0 && c < c1 && r >= r0 && r < r1 && grid.accepts(e)) {
+                    counts[r * grid.cols + c]++;
+                }
+            });
+            return null;
+        }
+    }
+}
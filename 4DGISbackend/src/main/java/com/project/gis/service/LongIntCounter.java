@@ -0,0 +1,75 @@
+package com.project.gis.service;
+
+/**
+ * long 键 → int 计数的开放寻址哈希表（线性探测），分面统计时代替 Map&lt;Long, Integer&gt;，计数过程不装箱、不分配。
+ * 非线程安全。
+ */
+final class LongIntCounter {
+    // a slot is free iff its count is 0, so every key (including 0) can be counted
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    LongIntCounter(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedKeys) * 2 - 1) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    void increment(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (counts[i] != 0) {
+            if (keys[i] == key) {
+                counts[i]++;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        counts[i] = 1;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (counts[i] != 0) {
+                visitor.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldCounts[j] != 0) {
+                int i = slot(oldKeys[j], mask);
+                while (counts[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                counts[i] = oldCounts[j];
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void accept(long key, int count);
+    }
+}
@@ -0,0 +1,257 @@
+package com.project.gis.service;
+
+import com.project.gis.dto.MarkersGetRequest;
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.index.IndexedMarker;
+import com.project.gis.index.MarkerColumns;
+import com.project.gis.index.TagIndex;
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.Wkt;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+
+/**
+ * MarkersGetRequest 的过滤条件（可见性 + 时间 / 高度 / 类型 / 标签 / 关键词 / 视口）
+ */
+public class MarkerFilter implements MarkerColumns.RowFilter {
+    private final Long viewerId;
+    private final BoundingBox bbox;
+    private final OffsetDateTime timeStart;
+    private final OffsetDateTime timeEnd;
+    private final OffsetDateTime at;
+    private final Double minHeight;
+    private final Double maxHeight;
+    private final Long typeId;
+    private final String keyword;
+    private final long[] tagIds;
+    private final boolean allTags;
+    // epoch millis, precomputed so the per-row tests allocate nothing
+    private final long fromMillis;
+    private final long toMillis;
+    private final long atMillis;
+    // resolved from tagIds by MarkerService before the filter is used
+    private TagIndex.Selection tagged;
+
+    private MarkerFilter(Long viewerId, BoundingBox bbox, MarkersGetRequest req, Long typeId, long[] tagIds,
+            boolean allTags) {
+        this.viewerId = viewerId;
+        this.bbox = bbox;
+        this.timeStart = req.getTimeStart();
+        this.timeEnd = req.getTimeEnd();
+        this.at = req.getAt();
+        this.minHeight = req.getMinHeight();
+        this.maxHeight = req.getMaxHeight();
+        this.typeId = typeId;
+        this.keyword = req.getKeyword() == null || req.getKeyword().isBlank() ? null : req.getKeyword();
+        this.tagIds = tagIds;
+        this.allTags = allTags;
+        this.fromMillis = timeStart == null ? Long.MIN_VALUE : timeStart.toInstant().toEpochMilli();
+        this.toMillis = timeEnd == null ? Long.MAX_VALUE : timeEnd.toInstant().toEpochMilli() + 1;
+        this.atMillis = at == null ? 0L : at.toInstant().toEpochMilli();
+    }
+
+    /**
+     * @throws IllegalArgumentException when bbox, type or tags cannot be parsed
+     */
+    public static MarkerFilter of(MarkersGetRequest req, Long viewerId) {
+        BoundingBox bbox = null;
+        if (req.getBbox() != null && !req.getBbox().isBlank()) {
+            bbox = BoundingBox.parse(req.getBbox());
+            if (bbox == null) {
+                throw new IllegalArgumentException("bbox");
+            }
+        }
+        return of(req, viewerId, bbox);
+    }
+
+    /**
+     * Same as {@link #of(MarkersGetRequest, Long)} but with the viewport given directly; {@code req.bbox} is ignored.
+     *
+     * @throws IllegalArgumentException when type or tags cannot be parsed
+     */
+    public static MarkerFilter of(MarkersGetRequest req, Long viewerId, BoundingBox bbox) {
+        Long typeId = null;
+        if (req.getType() != null && !req.getType().isBlank()) {
+            try {
+                typeId = Long.parseLong(req.getType().trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("type");
+            }
+        }
+        long[] tagIds = null;
+        if (req.getTags() != null && !req.getTags().isBlank()) {
+            try {
+                tagIds = Arrays.stream(req.getTags().split(",")).map(String::trim).filter(t -> !t.isEmpty())
+                        .mapToLong(Long::parseLong).toArray();
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("tags");
+            }
+        }
+        boolean allTags = true;
+        if (req.getTagMode() != null && !req.getTagMode().isBlank()) {
+            switch (req.getTagMode().trim().toLowerCase()) {
+                case "all" -> allTags = true;
+                case "any" -> allTags = false;
+                default -> throw new IllegalArgumentException("tagMode");
+            }
+        }
+        return new MarkerFilter(viewerId, bbox, req, typeId, tagIds == null || tagIds.length == 0 ? null : tagIds,
+                allTags);
+    }
+
+    public BoundingBox getBbox() {
+        return bbox;
+    }
+
+    /**
+     * Null when the request has no tag filter.
+     */
+    public long[] getTagIds() {
+        return tagIds;
+    }
+
+    public boolean isAllTags() {
+        return allTags;
+    }
+
+    public TagIndex.Selection getTagged() {
+        return tagged;
+    }
+
+    void restrictTo(TagIndex.Selection tagged) {
+        this.tagged = tagged;
+    }
+
+    public boolean hasKeyword() {
+        return keyword != null;
+    }
+
+    public OffsetDateTime getAt() {
+        return at;
+    }
+
+    /**
+     * Lower bound (inclusive) of the time window for overlap queries, in epoch millis.
+     */
+    public long fromMillis() {
+        return fromMillis;
+    }
+
+    /**
+     * Upper bound (exclusive) of the time window for overlap queries, in epoch millis.
+     */
+    public long toMillis() {
+        return toMillis;
+    }
+
+    /**
+     * Everything except the keyword, which needs the full entity.
+     */
+    public boolean test(IndexedMarker e) {
+        if (!e.visibleTo(viewerId)) {
+            return false;
+        }
+        if (at != null && !e.activeAt(atMillis)) {
+            return false;
+        }
+        if (e.startMillis() >= toMillis || e.endMillis() <= fromMillis) {
+            return false;
+        }
+        if (minHeight != null && (Double.isNaN(e.altitude()) || e.altitude() < minHeight)) {
+            return false;
+        }
+        if (maxHeight != null && (Double.isNaN(e.altitude()) || e.altitude() > maxHeight)) {
+            return false;
+        }
+        if (typeId != null && typeId != e.typeId()) {
+            return false;
+        }
+        if (tagged != null && !tagged.contains(e.id())) {
+            return false;
+        }
+        return bbox == null || bbox.contains(e.lon(), e.lat());
+    }
+
+    /**
+     * Same as {@link #test(IndexedMarker)}, on a row of the columnar index copy.
+     */
+    @Override
+    public boolean test(MarkerColumns c, int row) {
+        long start = c.startMillis(row);
+        long end = c.endMillis(row);
+        if (start >= toMillis || end <= fromMillis || (at != null && (start > atMillis || atMillis >= end))) {
+            return false;
+        }
+        if (bbox != null && !bbox.contains(c.lon(row), c.lat(row))) {
+            return false;
+        }
+        if (typeId != null && typeId != c.typeId(row)) {
+            return false;
+        }
+        double altitude = c.altitude(row);
+        if (minHeight != null && (Double.isNaN(altitude) || altitude < minHeight)) {
+            return false;
+        }
+        if (maxHeight != null && (Double.isNaN(altitude) || altitude > maxHeight)) {
+            return false;
+        }
+        if (!c.visibleTo(row, viewerId)) {
+            return false;
+        }
+        // last: the tag lookup is the most expensive test
+        return tagged == null || tagged.contains(c.id(row));
+    }
+
+    /**
+     * The visibility and type tests of {@link #test(JpaMarker)} on plain column values, so a scan over stored rows
+     * can reject most of them before building entities.
+     */
+    public boolean test(long typeId, long ownerId, long creatorId, String visibility) {
+        if (!"public".equals(visibility) && (viewerId == null || (ownerId != viewerId && creatorId != viewerId))) {
+            return false;
+        }
+        return this.typeId == null || this.typeId == typeId;
+    }
+
+    public boolean test(JpaMarker m) {
+        if (!"public".equals(m.getVisibility()) && !m.getOwnerId().equals(viewerId)
+                && !m.getCreatorId().equals(viewerId)) {
+            return false;
+        }
+        // lifetime [start, end), end == null means still active
+        if (at != null && (m.getStartTime().isAfter(at) || (m.getEndTime() != null && !m.getEndTime().isAfter(at)))) {
+            return false;
+        }
+        if (timeEnd != null && m.getStartTime().isAfter(timeEnd)) {
+            return false;
+        }
+        if (timeStart != null && m.getEndTime() != null && !m.getEndTime().isAfter(timeStart)) {
+            return false;
+        }
+        if (minHeight != null && (m.getAltitude() == null || m.getAltitude() < minHeight)) {
+            return false;
+        }
+        if (maxHeight != null && (m.getAltitude() == null || m.getAltitude() > maxHeight)) {
+            return false;
+        }
+        if (typeId != null && !typeId.equals(m.getMarkerTypeId())) {
+            return false;
+        }
+        if (tagged != null && !tagged.contains(m.getId())) {
+            return false;
+        }
+        if (keyword != null && !contains(m.getTitle(), keyword) && !contains(m.getDescription(), keyword)) {
+            return false;
+        }
+        if (bbox != null) {
+            double[] p = Wkt.parsePoint(m.getLocation());
+            return p != null && bbox.contains(p[0], p[1]);
+        }
+        return true;
+    }
+
+    private static boolean contains(String s, String q) {
+        return s != null && s.contains(q);
+    }
+}
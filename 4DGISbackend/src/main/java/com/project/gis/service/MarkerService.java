@@ -1,37 +1,744 @@
 package com.project.gis.service;
 
+import com.project.gis.archive.MarkerArchive;
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.RemoteChangeEvent;
+import com.project.gis.dto.MarkersGetRequest;
 import com.project.gis.entity.JpaMarker;
-import com.project.gis.repository.MarkerRepository;
+import com.project.gis.geofence.GeofenceService;
+import com.project.gis.history.MarkerRevision;
+import com.project.gis.history.RevisionLog;
+import com.project.gis.index.IndexedMarker;
+import com.project.gis.index.MarkerIndex;
+import com.project.gis.index.TagIndex;
+import com.project.gis.shard.MarkerRow;
+import com.project.gis.shard.MarkerStore;
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.GeoCell;
+import com.project.gis.spatial.GeoDistance;
+import com.project.gis.spatial.GeoJson;
+import com.project.gis.spatial.Wkt;
+import com.project.gis.trajectory.TrajectoryService;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 @Service
 public class MarkerService {
-    private final MarkerRepository markerRepository;
+    private static final Logger log = LoggerFactory.getLogger(MarkerService.class);
+    // upper bound on cell-range scans per bbox query
+    private static final int MAX_CELL_RANGES = 16;
+    // below this many candidates the containment test is not worth fanning out
+    private static final int PARALLEL_CONTAINMENT_THRESHOLD = 4096;
+    // ids per IN list when loading rows; drivers cap the bind parameters of one statement
+    private static final int LOAD_BATCH = 1000;
 
-    public MarkerService(MarkerRepository markerRepository) {
-        this.markerRepository = markerRepository;
+    private final MarkerStore markerStore;
+    private final MarkerIndex markerIndex;
+    private final RevisionLog revisionLog;
+    private final TrajectoryService trajectoryService;
+    private final GeofenceService geofenceService;
+    private final TransactionTemplate transactionTemplate;
+    private final TagService tagService;
+    private final MarkerArchive markerArchive;
+
+    public MarkerService(MarkerStore markerStore, MarkerIndex markerIndex, RevisionLog revisionLog,
+                         TrajectoryService trajectoryService, GeofenceService geofenceService,
+                         TransactionTemplate transactionTemplate, TagService tagService,
+                         MarkerArchive markerArchive) {
+        this.markerStore = markerStore;
+        this.markerIndex = markerIndex;
+        this.revisionLog = revisionLog;
+        this.trajectoryService = trajectoryService;
+        this.geofenceService = geofenceService;
+        this.transactionTemplate = transactionTemplate;
+        this.tagService = tagService;
+        this.markerArchive = markerArchive;
     }
 
     public JpaMarker create(JpaMarker marker) {
-        return markerRepository.save(marker);
+        MarkerRevision.Op op = marker.getId() == null ? MarkerRevision.Op.CREATE : MarkerRevision.Op.UPDATE;
+        IndexedMarker before = marker.getId() == null ? null : markerIndex.get(marker.getId());
+        // the store appends the change log entry; with app.shards only that entry is part of this transaction
+        JpaMarker saved = transactionTemplate.execute(s -> markerStore.save(marker));
+        afterSave(op, before, saved);
+        return saved;
+    }
+
+    /**
+     * Inserts new markers in a single transaction, so a whole batch costs one commit.
+     */
+    public List<JpaMarker> createAll(List<JpaMarker> markers) {
+        List<JpaMarker> saved = transactionTemplate.execute(s -> markerStore.saveAll(markers));
+        for (JpaMarker m : saved) {
+            afterSave(MarkerRevision.Op.CREATE, null, m);
+        }
+        return saved;
+    }
+
+    /**
+     * Inserts one marker of a {@link #createAll} batch that failed, keeping the id the batch gave it so that rows
+     * the failed batch left behind are overwritten rather than duplicated.
+     */
+    public JpaMarker retryCreate(JpaMarker marker) {
+        JpaMarker saved = transactionTemplate.execute(s -> markerStore.insert(marker));
+        afterSave(MarkerRevision.Op.CREATE, null, saved);
+        return saved;
     }
 
+    private void afterSave(MarkerRevision.Op op, IndexedMarker before, JpaMarker saved) {
+        markerIndex.put(saved);
+        geofenceService.submit(before, IndexedMarker.of(saved));
+        try {
+            revisionLog.append(op, saved);
+        } catch (RuntimeException ex) {
+            log.error("Failed to record revision of marker {}", saved.getId(), ex);
+        }
+    }
+
+    /**
+     * Another node created, moved, deleted or archived a marker: reload it into the in-memory index (the heatmap
+     * cache follows the index version) and record the revision in this node's log. Geofences were already handled
+     * by the node that made the change.
+     */
+    @EventListener
+    public void onRemoteChange(RemoteChangeEvent change) {
+        if (change.kind() != ChangeKind.MARKER) {
+            return;
+        }
+        // read-write so it reads the primary; a replica may not have the change yet
+        Optional<JpaMarker> current = transactionTemplate.execute(s -> markerStore.findById(change.entityId()));
+        if (current != null && current.isPresent()) {
+            MarkerRevision.Op op = markerIndex.get(change.entityId()) == null
+                    ? MarkerRevision.Op.CREATE : MarkerRevision.Op.UPDATE;
+            markerIndex.put(current.get());
+            try {
+                revisionLog.append(op, current.get());
+            } catch (RuntimeException ex) {
+                log.error("Failed to record revision of marker {}", change.entityId(), ex);
+            }
+        } else {
+            IndexedMarker before = markerIndex.get(change.entityId());
+            markerIndex.remove(change.entityId());
+            markerArchive.refresh();
+            // archiving takes the row out of the table, but the marker still exists; a marker that had not ended
+            // cannot have been archived
+            boolean running = before != null && before.endMillis() > System.currentTimeMillis();
+            if (running || markerArchive.get(change.entityId()).isEmpty()) {
+                try {
+                    revisionLog.appendDelete(change.entityId());
+                } catch (RuntimeException ex) {
+                    log.error("Failed to record deletion of marker {}", change.entityId(), ex);
+                }
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
     public Optional<JpaMarker> get(Long id) {
-        return markerRepository.findById(id);
+        return markerStore.findById(id);
+    }
+
+    /**
+     * Like {@link #get(Long)} but read from the primary, for read-modify-write paths: a replica can lag behind, and
+     * saving its copy back would undo newer changes or check permissions against a previous owner.
+     */
+    @Transactional
+    public Optional<JpaMarker> getForUpdate(Long id) {
+        return markerStore.findById(id);
+    }
+
+    /**
+     * Like {@link #get(Long)} but also finds archived markers, which are read-only.
+     */
+    @Transactional(readOnly = true)
+    public Optional<JpaMarker> lookup(Long id) {
+        Optional<JpaMarker> hot = markerStore.findById(id);
+        return hot.isPresent() ? hot : markerArchive.get(id);
+    }
+
+    /**
+     * The archived copy of a marker; empty when it is not archived (or was deleted from the archive).
+     */
+    public Optional<JpaMarker> archived(Long id) {
+        return markerArchive.get(id);
     }
 
-    public List<JpaMarker> listByOwner(Long ownerId) {
-        return markerRepository.findByOwnerId(ownerId);
+    /**
+     * Loads the markers in the order of {@code ids}, skipping ids that no longer exist.
+     */
+    @Transactional(readOnly = true)
+    public List<JpaMarker> listByIds(List<Long> ids) {
+        Map<Long, JpaMarker> byId = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += LOAD_BATCH) {
+            for (JpaMarker m : markerStore.findAllById(ids.subList(i, Math.min(ids.size(), i + LOAD_BATCH)))) {
+                byId.put(m.getId(), m);
+            }
+        }
+        List<JpaMarker> out = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            JpaMarker m = byId.get(id);
+            if (m != null) {
+                out.add(m);
+            }
+        }
+        return out;
     }
 
+    /**
+     * The owner's markers as row projections, in id order, read into memory so the connection is released before
+     * they are written anywhere.
+     */
+    @Transactional(readOnly = true)
+    public List<MarkerRow> rowsByOwner(Long ownerId) {
+        List<MarkerRow> rows = new ArrayList<>();
+        markerStore.readRowsByOwner(ownerId, row -> rows.add(row.copy()));
+        return rows;
+    }
+
+    @Transactional(readOnly = true)
     public List<JpaMarker> search(String q) {
-        return markerRepository.search(q);
+        return markerStore.search(q);
     }
 
+    /**
+     * Deletes a marker, hot or archived. An archived one gets a tombstone in the archive; the change log entry
+     * written with the (possibly absent) hot row makes other nodes re-read the archive.
+     */
     public void delete(Long id) {
-        markerRepository.deleteById(id);
+        // only markers that have ended get archived (and are hot and archived for a moment while the tiering job
+        // moves them), so a hot marker that is still running skips the archive lookup
+        IndexedMarker hot = markerIndex.get(id);
+        if ((hot == null || hot.endMillis() <= System.currentTimeMillis()) && markerArchive.get(id).isPresent()) {
+            try {
+                markerArchive.delete(id);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        transactionTemplate.executeWithoutResult(s -> {
+            tagService.markerDeleted(id);
+            markerStore.deleteById(id);
+        });
+        markerIndex.remove(id);
+        trajectoryService.deleteTrack(id);
+        try {
+            revisionLog.appendDelete(id);
+        } catch (RuntimeException ex) {
+            log.error("Failed to record deletion of marker {}", id, ex);
+        }
+    }
+
+    /**
+     * Markers as they were recorded at {@code asOfMillis} and visible to the viewer at that time, optionally
+     * restricted to a box and to markers valid at {@code atMillis}.
+     */
+    public List<MarkerRevision> asOf(long asOfMillis, BoundingBox box, Long atMillis, Long viewerId) {
+        return revisionLog.asOf(asOfMillis).values().stream()
+                .filter(r -> visibleTo(r, viewerId))
+                .filter(r -> box == null || box.contains(r.lon(), r.lat()))
+                .filter(r -> atMillis == null || r.activeAt(atMillis))
+                .toList();
+    }
+
+    /**
+     * The revisions of one marker the viewer was allowed to see: states visible to them, and a deletion when the
+     * state before it was. Empty when the viewer could never see the marker.
+     */
+    public List<MarkerRevision> revisions(Long markerId, Long viewerId) {
+        List<MarkerRevision> out = new ArrayList<>();
+        boolean lastVisible = false;
+        for (MarkerRevision r : revisionLog.revisionsOf(markerId)) {
+            if (r.op() == MarkerRevision.Op.DELETE) {
+                if (lastVisible) {
+                    out.add(r);
+                }
+                lastVisible = false;
+            } else {
+                lastVisible = visibleTo(r, viewerId);
+                if (lastVisible) {
+                    out.add(r);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static boolean visibleTo(MarkerRevision r, Long viewerId) {
+        return "public".equals(r.visibility())
+                || (viewerId != null && (r.ownerId() == viewerId || r.creatorId() == viewerId));
+    }
+
+    /**
+     * The k markers closest to (lon, lat) that are active at {@code atMillis} and visible to the viewer.
+     * When {@code altitude} is given the distance becomes sqrt(surface^2 + (altWeight * dAlt)^2); markers without
+     * an altitude count as being at the query altitude.
+     */
+    public List<MarkerIndex.Neighbour> nearby(double lon, double lat, Double altitude, double altWeight, int k,
+            long atMillis, Long viewerId) {
+        return markerIndex.nearest(lon, lat, k,
+                e -> e.activeAt(atMillis) && e.visibleTo(viewerId),
+                e -> distance(e, lon, lat, altitude, altWeight));
+    }
+
+    private static double distance(IndexedMarker e, double lon, double lat, Double altitude, double altWeight) {
+        double surface = GeoDistance.haversine(lon, lat, e.lon(), e.lat());
+        if (altitude == null || altWeight == 0.0 || Double.isNaN(e.altitude())) {
+            return surface;
+        }
+        double dz = altWeight * (e.altitude() - altitude);
+        return Math.sqrt(surface * surface + dz * dz);
+    }
+
+    /**
+     * Markers visible to {@code viewerId} that match the request filters, by ascending id, cut to the requested
+     * page. Unless there is a keyword, the matches are found in the in-memory index and only the rows on the page
+     * are read, by {@link #readPage}.
+     *
+     * @throws IllegalArgumentException when bbox, type, tags, offset or limit are invalid
+     */
+    @Transactional(readOnly = true)
+    public Page query(MarkersGetRequest req, Long viewerId) {
+        MarkerFilter filter = withTags(MarkerFilter.of(req, viewerId));
+        int offset = offsetOf(req);
+        int limit = limitOf(req);
+        if (!markerIndex.isLoaded() || filter.hasKeyword()) {
+            return slice(withArchived(queryHot(filter), filter, m -> true), offset, limit);
+        }
+        return page(indexIds(filter), archived(filter, m -> true), filter, offset, limit);
+    }
+
+    /**
+     * One page of query results; {@link #total()} counts every match.
+     */
+    public static final class Page {
+        private final long total;
+        // ascending ids of hot markers whose rows are still to be read
+        private final List<Long> hotIds;
+        // ascending, already in memory: archived markers, or every row on the page when a keyword needed entities
+        private final List<JpaMarker> loaded;
+        private final MarkerFilter filter;
+        // the whole page already read, see materialize(); null otherwise
+        private final List<MarkerRow> rows;
+
+        private Page(long total, List<Long> hotIds, List<JpaMarker> loaded, MarkerFilter filter) {
+            this(total, hotIds, loaded, filter, null);
+        }
+
+        private Page(long total, List<Long> hotIds, List<JpaMarker> loaded, MarkerFilter filter, List<MarkerRow> rows) {
+            this.total = total;
+            this.hotIds = hotIds;
+            this.loaded = loaded;
+            this.filter = filter;
+            this.rows = rows;
+        }
+
+        public long total() {
+            return total;
+        }
+
+        /**
+         * Number of markers on the page, at most; rows that changed since the query may still drop out.
+         */
+        int size() {
+            return rows != null ? rows.size() : hotIds.size() + loaded.size();
+        }
+
+        /**
+         * The page split, in id order, into pages of at most {@code maxRows} markers that can each be
+         * {@link #materialize materialized} on their own.
+         */
+        public List<Page> chunks(int maxRows) {
+            if (rows != null || size() <= maxRows) {
+                return List.of(this);
+            }
+            List<Page> out = new ArrayList<>();
+            int h = 0, l = 0;
+            while (h < hotIds.size() || l < loaded.size()) {
+                int hEnd = h, lEnd = l;
+                while (hEnd - h + lEnd - l < maxRows && (hEnd < hotIds.size() || lEnd < loaded.size())) {
+                    if (lEnd == loaded.size() || (hEnd < hotIds.size() && hotIds.get(hEnd) < loaded.get(lEnd).getId())) {
+                        hEnd++;
+                    } else {
+                        lEnd++;
+                    }
+                }
+                out.add(new Page(total, hotIds.subList(h, hEnd), loaded.subList(l, lEnd), filter));
+                h = hEnd;
+                l = lEnd;
+            }
+            return out;
+        }
+
+        /**
+         * @throws IllegalStateException when the page has not been {@link #materialize materialized}
+         */
+        public List<MarkerRow> rows() {
+            if (rows == null) {
+                throw new IllegalStateException("page not materialized");
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * The page with its rows read into memory, so that several requests can be answered from it without going to
+     * the database again.
+     */
+    @Transactional(readOnly = true)
+    public Page materialize(Page page) {
+        if (page.rows != null) {
+            return page;
+        }
+        List<MarkerRow> rows = new ArrayList<>(page.size());
+        try {
+            readPage(page, row -> rows.add(row.copy()));
+        } catch (IOException ex) {
+            // the handler only collects
+            throw new UncheckedIOException(ex);
+        }
+        return new Page(page.total, List.of(), List.of(), null, List.copyOf(rows));
+    }
+
+    /**
+     * Hands the markers of the page to {@code handler} in id order; hot rows are read as projections, without
+     * entities or a persistence context.
+     */
+    @Transactional(readOnly = true)
+    public void readPage(Page page, MarkerRow.Handler handler) throws IOException {
+        if (page.rows != null) {
+            for (MarkerRow row : page.rows) {
+                handler.accept(row);
+            }
+            return;
+        }
+        Deque<JpaMarker> pending = new ArrayDeque<>(page.loaded);
+        MarkerRow inMemory = new MarkerRow();
+        markerStore.readRows(page.hotIds, row -> {
+            while (!pending.isEmpty() && pending.peek().getId() < row.id()) {
+                handler.accept(inMemory.load(pending.poll()));
+            }
+            // the index can lag behind the table, so each row is checked once more
+            IndexedMarker e = row.indexed();
+            if (e != null && page.filter.test(e)) {
+                handler.accept(row);
+            }
+        });
+        while (!pending.isEmpty()) {
+            handler.accept(inMemory.load(pending.poll()));
+        }
+    }
+
+    /**
+     * Whose visibility the result of {@code req} depends on: null when {@code viewerId} owns or created no
+     * non-public marker the request can reach, so they get the same public view as an anonymous query; the viewer
+     * otherwise. Lets identical queries of different users share one result.
+     *
+     * @throws IllegalArgumentException when bbox, type or tags cannot be parsed
+     */
+    public Long aclViewer(MarkersGetRequest req, Long viewerId) {
+        if (viewerId == null) {
+            return null;
+        }
+        if (!markerIndex.isLoaded() || markerIndex.hasRestricted(viewerId)) {
+            return viewerId;
+        }
+        if (!markerArchive.isEmpty()) {
+            // archived markers are not counted per user, so any segment the query could read keeps the viewer
+            MarkerFilter filter = MarkerFilter.of(req, viewerId);
+            long[] window = archiveWindow(filter);
+            if (markerArchive.mayMatch(filter.getBbox(), window[0], window[1])) {
+                return viewerId;
+            }
+        }
+        return null;
+    }
+
+    private List<JpaMarker> queryHot(MarkerFilter filter) {
+        if (!markerIndex.isLoaded()) {
+            List<JpaMarker> candidates;
+            if (filter.getTagged() != null) {
+                List<Long> ids = new ArrayList<>(filter.getTagged().size());
+                filter.getTagged().forEach(ids::add);
+                candidates = listByIds(ids);
+            } else {
+                candidates = filter.getBbox() == null ? markerStore.findAll() : findInBbox(filter.getBbox());
+            }
+            return candidates.stream().filter(filter::test).toList();
+        }
+        List<Long> ids = indexCandidates(filter).stream().map(IndexedMarker::id).toList();
+        return listByIds(ids).stream().filter(filter::test).toList();
+    }
+
+    /**
+     * Compact copies of the markers matching the request, for aggregations that need no full rows. Without a
+     * keyword they come straight from the in-memory indexes and no marker row is loaded.
+     *
+     * @throws IllegalArgumentException when bbox, type or tags cannot be parsed
+     */
+    @Transactional(readOnly = true)
+    public List<IndexedMarker> matching(MarkersGetRequest req, Long viewerId) {
+        MarkerFilter filter = withTags(MarkerFilter.of(req, viewerId));
+        if (markerIndex.isLoaded() && !filter.hasKeyword()) {
+            List<IndexedMarker> hot = indexCandidates(filter);
+            if (markerArchive.isEmpty()) {
+                return hot;
+            }
+            List<IndexedMarker> out = new ArrayList<>(hot);
+            archived(filter, m -> true).stream().map(IndexedMarker::of).filter(Objects::nonNull).forEach(out::add);
+            return out;
+        }
+        return withArchived(queryHot(filter), filter, m -> true).stream()
+                .map(IndexedMarker::of).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Number of markers per tag among the markers matching the request.
+     *
+     * @throws IllegalArgumentException when bbox, type or tags cannot be parsed
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> tagCounts(MarkersGetRequest req, Long viewerId) {
+        return tagService.counts(matching(req, viewerId).stream().mapToLong(IndexedMarker::id).toArray());
+    }
+
+    private MarkerFilter withTags(MarkerFilter filter) {
+        if (filter.getTagIds() != null) {
+            filter.restrictTo(tagService.select(filter.getTagIds(), filter.isAllTags()));
+        }
+        return filter;
+    }
+
+    /**
+     * Markers inside a polygonal region that also pass the request's time / height / type / tag / keyword filters.
+     * Candidates come from the spatial index by the region's envelope; each is then tested against the prepared
+     * region, whose point-in-area check is indexed and costs O(log vertices) rather than O(vertices). Paged like
+     * {@link #query(MarkersGetRequest, Long)}.
+     */
+    @Transactional(readOnly = true)
+    public Page queryWithin(Geometry region, MarkersGetRequest req, Long viewerId) {
+        int offset = offsetOf(req);
+        int limit = limitOf(req);
+        Envelope env = region.getEnvelopeInternal();
+        MarkerFilter filter = withTags(MarkerFilter.of(req, viewerId,
+                new BoundingBox(env.getMinX(), env.getMinY(), env.getMaxX(), env.getMaxY())));
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(region);
+        Predicate<JpaMarker> inRegion = m -> {
+            double[] p = Wkt.parsePoint(m.getLocation());
+            return p != null && covers(prepared, p[0], p[1]);
+        };
+        if (!markerIndex.isLoaded()) {
+            List<JpaMarker> hot = findInBbox(filter.getBbox()).stream().filter(filter::test).filter(inRegion).toList();
+            return slice(withArchived(hot, filter, inRegion), offset, limit);
+        }
+        List<IndexedMarker> candidates = indexCandidates(filter);
+        Stream<IndexedMarker> s = candidates.size() >= PARALLEL_CONTAINMENT_THRESHOLD
+                ? candidates.parallelStream() : candidates.stream();
+        long[] ids = s.filter(e -> covers(prepared, e.lon(), e.lat())).mapToLong(IndexedMarker::id).toArray();
+        Arrays.sort(ids);
+        if (filter.hasKeyword()) {
+            List<Long> all = Arrays.stream(ids).boxed().toList();
+            return slice(withArchived(listByIds(all).stream().filter(filter::test).toList(), filter, inRegion),
+                    offset, limit);
+        }
+        return page(ids, archived(filter, inRegion), filter, offset, limit);
+    }
+
+    private static int offsetOf(MarkersGetRequest req) {
+        if (req.getOffset() == null) {
+            return 0;
+        }
+        if (req.getOffset() < 0) {
+            throw new IllegalArgumentException("offset");
+        }
+        return req.getOffset();
+    }
+
+    private static int limitOf(MarkersGetRequest req) {
+        if (req.getLimit() == null) {
+            return Integer.MAX_VALUE;
+        }
+        if (req.getLimit() < 0) {
+            throw new IllegalArgumentException("limit");
+        }
+        return req.getLimit();
+    }
+
+    /**
+     * Ids of the hot markers that pass everything but the keyword, ascending. A selective tag or box filter is
+     * answered from the tag bitmap or the trees, anything broader by a scan over the index's columnar copy.
+     */
+    private long[] indexIds(MarkerFilter filter) {
+        TagIndex.Selection tagged = filter.getTagged();
+        if ((tagged != null && tagged.size() < markerIndex.size() / 4) || markerIndex.isSelective(filter.getBbox())) {
+            long[] ids = indexCandidates(filter).stream().mapToLong(IndexedMarker::id).toArray();
+            Arrays.sort(ids);
+            return ids;
+        }
+        return markerIndex.scan(filter);
+    }
+
+    /**
+     * Merges the sorted hot ids with the archived matches by id and keeps what falls on the requested page; a
+     * marker present in both is taken from the hot table.
+     */
+    private Page page(long[] hot, List<JpaMarker> archived, MarkerFilter filter, int offset, int limit) {
+        List<JpaMarker> cold = new ArrayList<>(archived.size());
+        for (JpaMarker m : archived) {
+            if (Arrays.binarySearch(hot, m.getId()) < 0) {
+                cold.add(m);
+            }
+        }
+        cold.sort(Comparator.comparing(JpaMarker::getId));
+        List<Long> hotIds = new ArrayList<>();
+        List<JpaMarker> coldPage = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        for (long n = 0; (i < hot.length || j < cold.size()) && n < (long) offset + limit; n++) {
+            boolean fromHot = j == cold.size() || (i < hot.length && hot[i] < cold.get(j).getId());
+            if (n < offset) {
+                if (fromHot) {
+                    i++;
+                } else {
+                    j++;
+                }
+            } else if (fromHot) {
+                hotIds.add(hot[i++]);
+            } else {
+                coldPage.add(cold.get(j++));
+            }
+        }
+        return new Page(hot.length + cold.size(), hotIds, coldPage, filter);
+    }
+
+    private static Page slice(List<JpaMarker> matches, int offset, int limit) {
+        List<JpaMarker> sorted = new ArrayList<>(matches);
+        sorted.sort(Comparator.comparing(JpaMarker::getId));
+        int from = Math.min(offset, sorted.size());
+        int to = (int) Math.min(sorted.size(), (long) from + limit);
+        return new Page(sorted.size(), List.of(), new ArrayList<>(sorted.subList(from, to)), null);
+    }
+
+    /**
+     * Adds the archived markers that pass the filter and {@code also} to the hot ones; a marker present in both
+     * (an interrupted archiving run) is taken from the hot table.
+     */
+    private List<JpaMarker> withArchived(List<JpaMarker> hot, MarkerFilter filter, Predicate<JpaMarker> also) {
+        List<JpaMarker> archived = archived(filter, also);
+        if (archived.isEmpty()) {
+            return hot;
+        }
+        Set<Long> hotIds = new HashSet<>();
+        hot.forEach(m -> hotIds.add(m.getId()));
+        List<JpaMarker> out = new ArrayList<>(hot);
+        archived.stream().filter(m -> !hotIds.contains(m.getId())).forEach(out::add);
+        return out;
+    }
+
+    /**
+     * Archive segments whose time range or box cannot match the filter are skipped unread, so queries on current
+     * or recent time windows cost nothing here.
+     */
+    private List<JpaMarker> archived(MarkerFilter filter, Predicate<JpaMarker> also) {
+        if (markerArchive.isEmpty()) {
+            return List.of();
+        }
+        long[] window = archiveWindow(filter);
+        return markerArchive.find(filter.getBbox(), window[0], window[1], filter::test,
+                m -> filter.test(m) && also.test(m));
+    }
+
+    /**
+     * [from, to) in epoch millis that a marker's lifetime must overlap to pass the filter's time conditions.
+     */
+    private static long[] archiveWindow(MarkerFilter filter) {
+        long from = filter.fromMillis();
+        long to = filter.toMillis();
+        if (filter.getAt() != null) {
+            long at = filter.getAt().toInstant().toEpochMilli();
+            from = Math.max(from, at);
+            to = Math.min(to, at + 1);
+        }
+        return new long[]{from, to};
+    }
+
+    private static boolean covers(PreparedGeometry region, double lon, double lat) {
+        return region.covers(GeoJson.FACTORY.createPoint(new Coordinate(lon, lat)));
+    }
+
+    private List<IndexedMarker> indexCandidates(MarkerFilter filter) {
+        List<IndexedMarker> out = new ArrayList<>();
+        Consumer<IndexedMarker> collect = e -> {
+            if (filter.test(e)) {
+                out.add(e);
+            }
+        };
+        TagIndex.Selection tagged = filter.getTagged();
+        if (tagged != null && tagged.size() < markerIndex.size() / 4) {
+            // a selective tag filter beats both trees: visit just the tagged markers
+            tagged.forEach(id -> {
+                IndexedMarker e = markerIndex.get(id);
+                if (e != null) {
+                    collect.accept(e);
+                }
+            });
+            return out;
+        }
+        if (filter.getAt() != null) {
+            markerIndex.activeAt(filter.getBbox(), filter.getAt().toInstant().toEpochMilli(), collect);
+        } else {
+            markerIndex.overlapping(filter.getBbox(), filter.fromMillis(), filter.toMillis(), collect);
+        }
+        return out;
+    }
+
+    /**
+     * Cell-range scans over idx_cell_id, only on the shards the ranges fall into; the result is a superset of the
+     * box and must still be filtered exactly.
+     */
+    @Transactional(readOnly = true)
+    public List<JpaMarker> findInBbox(BoundingBox bbox) {
+        return markerStore.findInCells(GeoCell.ranges(bbox, MAX_CELL_RANGES));
+    }
+
+    /**
+     * Rows written before cell_id existed are invisible to bbox queries until their cell is filled in.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillCellIds() {
+        List<JpaMarker> missing = markerStore.findByCellIdIsNull();
+        for (JpaMarker m : missing) {
+            m.setCellId(GeoCell.of(m.getLocation()));
+        }
+        if (!missing.isEmpty()) {
+            transactionTemplate.executeWithoutResult(s -> markerStore.saveAll(missing));
+        }
     }
 }
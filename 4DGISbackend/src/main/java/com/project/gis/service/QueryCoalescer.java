@@ -0,0 +1,208 @@
+package com.project.gis.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.gis.dto.MarkersGetRequest;
+import com.project.gis.spatial.BoundingBox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * 视口查询的合并层（single-flight）：热点事件时大量客户端几乎同时查询同一视口，只让其中一个真正执行。
+ * <p>
+ * 请求先规范化：视口按 {@code viewport-quantum} 度向外对齐到网格，时间窗口按 {@code time-quantum} 向外取整、
+ * at 向下取整，类型 / 标签 / 分页参数写成统一形式；可见性按 {@link MarkerService#aclViewer} 归类，
+ * 没有非公开标记点的用户共用公开视图。规范化后相同的并发请求等待同一次计算，结果在 {@code ttl} 内继续复用。
+ * 不超过 {@code max-rows} 条的页连同行数据一起缓存，之后的请求不再访问数据库；更大的页只共享匹配结果（id），行仍各自读取。
+ * <p>
+ * 结果存在 Caffeine 异步缓存里：计算中的条目不会过期，完成后 ttl 到期即移除；失败的计算不缓存。
+ * 缓存按页里的标记点数（行或 id）计重，总量超过 {@code max-cached-rows} 时淘汰最少使用的页。
+ * <p>
+ * 代价是结果最多旧 ttl + time-quantum，并且可能包含视口外不到一个网格的标记点；quantum 设为 0 则不对齐。
+ */
+@Service
+public class QueryCoalescer {
+    private final MarkerService markerService;
+    private final boolean enabled;
+    private final double viewportQuantum;
+    private final long timeQuantumMs;
+    private final int maxRows;
+    private final AsyncCache<Key, Outcome> flights;
+    private final Counter computed;
+    private final Counter joined;
+    private final Counter cached;
+
+    public QueryCoalescer(MarkerService markerService, MeterRegistry meterRegistry,
+                          @Value("${app.query-coalescing.enabled:true}") boolean enabled,
+                          @Value("${app.query-coalescing.ttl:PT1S}") Duration ttl,
+                          @Value("${app.query-coalescing.viewport-quantum:0.001}") double viewportQuantum,
+                          @Value("${app.query-coalescing.time-quantum:PT1S}") Duration timeQuantum,
+                          @Value("${app.query-coalescing.max-rows:2000}") int maxRows,
+                          @Value("${app.query-coalescing.max-cached-rows:200000}") long maxCachedRows) {
+        this.markerService = markerService;
+        this.enabled = enabled;
+        this.viewportQuantum = viewportQuantum;
+        this.timeQuantumMs = timeQuantum.toMillis();
+        this.maxRows = maxRows;
+        this.flights = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxCachedRows)
+                .weigher((Key k, Outcome o) -> o.page() == null ? 1 : Math.max(1, o.page().size()))
+                // eviction work is small; doing it on the calling thread keeps the cache bounded without a pool
+                .executor(Runnable::run)
+                .<Key, Outcome>buildAsync();
+        this.computed = Counter.builder("query.coalescing").tag("outcome", "computed").register(meterRegistry);
+        this.joined = Counter.builder("query.coalescing").tag("outcome", "joined").register(meterRegistry);
+        this.cached = Counter.builder("query.coalescing").tag("outcome", "cached").register(meterRegistry);
+    }
+
+    /**
+     * {@link MarkerService#query} for the normalized request, shared with identical requests that are in flight or
+     * finished less than a ttl ago.
+     *
+     * @throws IllegalArgumentException when bbox, type, tags, offset or limit are invalid
+     */
+    public MarkerService.Page query(MarkersGetRequest req, Long viewerId) {
+        if (!enabled) {
+            return markerService.query(req, viewerId);
+        }
+        MarkersGetRequest normalized = normalize(req);
+        Long aclViewer = markerService.aclViewer(normalized, viewerId);
+        Key key = new Key(normalized, aclViewer);
+        CompletableFuture<Outcome> mine = new CompletableFuture<>();
+        // an expired entry counts as absent, so this starts a new computation once the ttl has passed
+        CompletableFuture<Outcome> flight = flights.asMap().putIfAbsent(key, mine);
+        if (flight != null) {
+            (flight.isDone() ? cached : joined).increment();
+            return flight.join().get();
+        }
+        computed.increment();
+        try {
+            MarkerService.Page page = markerService.query(normalized, aclViewer);
+            if (page.size() <= maxRows) {
+                page = markerService.materialize(page);
+            }
+            // the ttl starts now: the cache re-times and weighs an entry when its future completes
+            mine.complete(new Outcome(page, null));
+            return page;
+        } catch (RuntimeException | Error ex) {
+            // failures are not cached; whoever is waiting gets the same error. They complete the future normally,
+            // an exceptional one would be logged by the cache as a failed load
+            flights.asMap().remove(key, mine);
+            mine.complete(new Outcome(null, ex));
+            throw ex;
+        }
+    }
+
+    /**
+     * A copy of {@code req} in canonical form, widened to the quantization grid; unparseable fields are kept as
+     * they are so that the query reports them.
+     */
+    private MarkersGetRequest normalize(MarkersGetRequest req) {
+        MarkersGetRequest n = new MarkersGetRequest();
+        n.setKeyword(req.getKeyword() == null || req.getKeyword().isBlank() ? null : req.getKeyword());
+        n.setBbox(normalizeBbox(req.getBbox()));
+        n.setMinHeight(req.getMinHeight());
+        n.setMaxHeight(req.getMaxHeight());
+        n.setTimeStart(floor(req.getTimeStart()));
+        n.setTimeEnd(ceil(req.getTimeEnd()));
+        n.setAt(floor(req.getAt()));
+        n.setType(req.getType() == null || req.getType().isBlank() ? null : req.getType().trim());
+        n.setTags(normalizeTags(req.getTags()));
+        n.setTagMode(req.getTagMode() == null || req.getTagMode().isBlank() ? "all"
+                : req.getTagMode().trim().toLowerCase());
+        n.setOffset(req.getOffset() == null ? 0 : req.getOffset());
+        n.setLimit(req.getLimit());
+        return n;
+    }
+
+    private String normalizeBbox(String bbox) {
+        if (bbox == null || bbox.isBlank()) {
+            return null;
+        }
+        BoundingBox b = BoundingBox.parse(bbox);
+        if (b == null) {
+            return bbox;
+        }
+        if (viewportQuantum <= 0) {
+            return b.minLon() + "," + b.minLat() + "," + b.maxLon() + "," + b.maxLat();
+        }
+        double minLon = Math.max(-180.0, Math.floor(b.minLon() / viewportQuantum) * viewportQuantum);
+        double minLat = Math.max(-90.0, Math.floor(b.minLat() / viewportQuantum) * viewportQuantum);
+        double maxLon = Math.min(180.0, Math.ceil(b.maxLon() / viewportQuantum) * viewportQuantum);
+        double maxLat = Math.min(90.0, Math.ceil(b.maxLat() / viewportQuantum) * viewportQuantum);
+        if (b.crossesAntimeridian() && minLon <= maxLon) {
+            // the widened ends met: the box already spanned all but a sliver of the globe
+            minLon = -180.0;
+            maxLon = 180.0;
+        }
+        return minLon + "," + minLat + "," + maxLon + "," + maxLat;
+    }
+
+    private static String normalizeTags(String tags) {
+        if (tags == null || tags.isBlank()) {
+            return null;
+        }
+        try {
+            String sorted = Arrays.stream(tags.split(",")).map(String::trim).filter(t -> !t.isEmpty())
+                    .mapToLong(Long::parseLong).sorted().distinct()
+                    .mapToObj(Long::toString).collect(Collectors.joining(","));
+            return sorted.isEmpty() ? null : sorted;
+        } catch (NumberFormatException ex) {
+            return tags;
+        }
+    }
+
+    private OffsetDateTime floor(OffsetDateTime t) {
+        if (t == null) {
+            return null;
+        }
+        long ms = t.toInstant().toEpochMilli();
+        if (timeQuantumMs > 0) {
+            ms = Math.floorDiv(ms, timeQuantumMs) * timeQuantumMs;
+        }
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(ms), ZoneOffset.UTC);
+    }
+
+    private OffsetDateTime ceil(OffsetDateTime t) {
+        if (t == null) {
+            return null;
+        }
+        long ms = t.toInstant().toEpochMilli();
+        if (timeQuantumMs > 0) {
+            ms = Math.floorDiv(ms + timeQuantumMs - 1, timeQuantumMs) * timeQuantumMs;
+        }
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(ms), ZoneOffset.UTC);
+    }
+
+    /**
+     * @param viewer null for the public view, see {@link MarkerService#aclViewer}
+     */
+    private record Key(MarkersGetRequest request, Long viewer) {
+    }
+
+    /**
+     * The page, or the error of a failed computation for the requests that were waiting on it.
+     */
+    private record Outcome(MarkerService.Page page, Throwable error) {
+        MarkerService.Page get() {
+            if (error instanceof RuntimeException r) {
+                throw r;
+            }
+            if (error instanceof Error e) {
+                throw e;
+            }
+            return page;
+        }
+    }
+}
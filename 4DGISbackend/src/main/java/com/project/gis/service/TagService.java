@@ -0,0 +1,209 @@
+package com.project.gis.service;
+
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.changelog.RemoteChangeEvent;
+import com.project.gis.entity.JpaMarkerTag;
+import com.project.gis.entity.JpaMarkerTag.MarkerTagId;
+import com.project.gis.entity.JpaTag;
+import com.project.gis.index.TagIndex;
+import com.project.gis.repository.MarkerTagRepository;
+import com.project.gis.repository.TagRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 标签定义与标记点打标签；写数据库的同时维护内存中的 {@link TagIndex}，索引的修改在事务提交后才生效
+ */
+@Service
+public class TagService {
+    private static final int IN_CHUNK = 1000;
+
+    private final TagRepository tagRepository;
+    private final MarkerTagRepository markerTagRepository;
+    private final TagIndex tagIndex;
+    private final ChangeLog changeLog;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    public TagService(TagRepository tagRepository, MarkerTagRepository markerTagRepository, TagIndex tagIndex,
+                      ChangeLog changeLog, EntityManagerFactory entityManagerFactory,
+                      TransactionTemplate transactionTemplate) {
+        this.tagRepository = tagRepository;
+        this.markerTagRepository = markerTagRepository;
+        this.tagIndex = tagIndex;
+        this.changeLog = changeLog;
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Transactional(readOnly = true)
+    public List<JpaTag> listTags() {
+        return tagRepository.findAll();
+    }
+
+    @Transactional(readOnly = true)
+    public List<JpaTag> getTags(Collection<Long> ids) {
+        return tagRepository.findAllById(ids);
+    }
+
+    /**
+     * Returns the existing tag when the name is already taken, also when a concurrent request inserted it between
+     * the lookup and the insert: the unique key rejects the second insert, whose transaction is rolled back, and the
+     * winner's row is read again in a new one.
+     */
+    public JpaTag create(String name, Long creatorId) {
+        try {
+            return transactionTemplate.execute(s -> tagRepository.findByTagName(name).orElseGet(() -> {
+                JpaTag t = new JpaTag();
+                t.setTagName(name);
+                t.setCreatorId(creatorId);
+                JpaTag saved = tagRepository.saveAndFlush(t);
+                changeLog.append(ChangeKind.TAG, saved.getId());
+                return saved;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            return transactionTemplate.execute(s -> tagRepository.findUncachedByTagName(name)).orElseThrow(() -> e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<JpaTag> tagsOf(Long markerId) {
+        List<Long> ids = markerTagRepository.findByIdMarkerId(markerId).stream().map(t -> t.getId().getTagId()).toList();
+        return tagRepository.findAllById(ids);
+    }
+
+    /**
+     * @throws IllegalArgumentException when a tag does not exist
+     */
+    @Transactional
+    public void addTags(Long markerId, Collection<Long> tagIds) {
+        Set<Long> wanted = new HashSet<>(tagIds);
+        if (tagRepository.findAllById(wanted).size() != wanted.size()) {
+            throw new IllegalArgumentException("tagIds");
+        }
+        List<JpaMarkerTag> rows = new ArrayList<>(wanted.size());
+        for (Long tagId : wanted) {
+            JpaMarkerTag row = new JpaMarkerTag();
+            MarkerTagId id = new MarkerTagId();
+            id.setMarkerId(markerId);
+            id.setTagId(tagId);
+            row.setId(id);
+            rows.add(row);
+        }
+        markerTagRepository.saveAll(rows);
+        changeLog.append(ChangeKind.MARKER_TAGS, markerId);
+        afterCommit(() -> {
+            for (Long tagId : wanted) {
+                tagIndex.add(markerId, tagId);
+            }
+        });
+    }
+
+    @Transactional
+    public void removeTag(Long markerId, Long tagId) {
+        MarkerTagId id = new MarkerTagId();
+        id.setMarkerId(markerId);
+        id.setTagId(tagId);
+        markerTagRepository.deleteById(id);
+        changeLog.append(ChangeKind.MARKER_TAGS, markerId);
+        afterCommit(() -> tagIndex.remove(markerId, tagId));
+    }
+
+    @Transactional
+    public void markerDeleted(Long markerId) {
+        markerTagRepository.deleteByIdMarkerId(markerId);
+        changeLog.append(ChangeKind.MARKER_TAGS, markerId);
+        afterCommit(() -> tagIndex.removeMarker(markerId));
+    }
+
+    /**
+     * Applies {@code change} to the shared index once the surrounding transaction (possibly a caller's) has
+     * committed: a rollback leaves the index as it was, and other requests never see uncommitted tags.
+     */
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+
+    /**
+     * Another node changed a marker's tags or created a tag. Read-write so the reload reads the primary; a replica
+     * may not have the change yet.
+     */
+    @EventListener
+    @Transactional
+    public void onRemoteChange(RemoteChangeEvent change) {
+        if (change.kind() == ChangeKind.MARKER_TAGS) {
+            tagIndex.removeMarker(change.entityId());
+            for (JpaMarkerTag row : markerTagRepository.findByIdMarkerId(change.entityId())) {
+                tagIndex.add(change.entityId(), row.getId().getTagId());
+            }
+        } else if (change.kind() == ChangeKind.TAG) {
+            // findByTagName results, which may hold a "not found" for the new name
+            entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion("reference-queries");
+        }
+    }
+
+    /**
+     * Markers carrying all ({@code all}) or any of the given tags.
+     */
+    @Transactional(readOnly = true)
+    public TagIndex.Selection select(long[] tagIds, boolean all) {
+        if (tagIndex.isLoaded()) {
+            return tagIndex.select(tagIds, all);
+        }
+        List<Long> ids = new ArrayList<>(tagIds.length);
+        for (long t : tagIds) {
+            ids.add(t);
+        }
+        Map<Long, Integer> hits = new HashMap<>();
+        for (JpaMarkerTag t : markerTagRepository.findByIdTagIdIn(ids)) {
+            hits.merge(t.getId().getMarkerId(), 1, Integer::sum);
+        }
+        int need = all ? (int) ids.stream().distinct().count() : 1;
+        return TagIndex.selectionOf(hits.entrySet().stream().filter(e -> e.getValue() >= need).map(Map.Entry::getKey)
+                .toList());
+    }
+
+    /**
+     * Number of markers among {@code markerIds} carrying each tag.
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, Integer> counts(long[] markerIds) {
+        if (tagIndex.isLoaded()) {
+            return tagIndex.counts(markerIds);
+        }
+        Map<Long, Integer> out = new HashMap<>();
+        for (int i = 0; i < markerIds.length; i += IN_CHUNK) {
+            List<Long> chunk = Arrays.stream(markerIds, i, Math.min(markerIds.length, i + IN_CHUNK)).boxed().toList();
+            for (JpaMarkerTag t : markerTagRepository.findByIdMarkerIdIn(chunk)) {
+                out.merge(t.getId().getTagId(), 1, Integer::sum);
+            }
+        }
+        return out;
+    }
+}
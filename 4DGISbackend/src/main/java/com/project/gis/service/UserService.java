@@ -1,28 +1,86 @@
 package com.project.gis.service;
 
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.changelog.RemoteChangeEvent;
 import com.project.gis.entity.JpaUser;
 import com.project.gis.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Service
 public class UserService {
     private final UserRepository userRepository;
+    private final ChangeLog changeLog;
+    private final EntityManagerFactory entityManagerFactory;
     private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+    // BCrypt is deliberately slow CPU work; it runs on its own CPU-sized pool so a login storm cannot take over the
+    // request threads, and is refused outright once the queue is full
+    private final ThreadPoolExecutor passwordVerifier;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, ChangeLog changeLog, EntityManagerFactory entityManagerFactory,
+                       MeterRegistry meterRegistry,
+                       @Value("${app.auth.verify-threads:0}") int verifyThreads,
+                       @Value("${app.auth.verify-queue:128}") int verifyQueue) {
         this.userRepository = userRepository;
+        this.changeLog = changeLog;
+        this.entityManagerFactory = entityManagerFactory;
+        int threads = verifyThreads > 0 ? verifyThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.passwordVerifier = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, verifyQueue)), r -> {
+                    Thread t = new Thread(r, "password-verifier-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(passwordVerifier, "password-verifier", List.of()).bindTo(meterRegistry);
     }
 
+    @PreDestroy
+    public void stop() {
+        passwordVerifier.shutdownNow();
+    }
+
+    @Transactional
     public JpaUser register(String username, String rawPassword, String email, String phone) {
         JpaUser u = new JpaUser();
         u.setUsername(username);
         u.setPasswordHash(passwordEncoder.encode(rawPassword));
         u.setEmail(email);
         u.setPhone(phone);
-        return userRepository.save(u);
+        JpaUser saved = userRepository.save(u);
+        changeLog.append(ChangeKind.USER, saved.getId());
+        return saved;
+    }
+
+    /**
+     * Another node changed a user: drop it from the second-level cache, and drop the cached lookups, which may hold
+     * a "not found" for a name that now exists.
+     */
+    @EventListener
+    public void onRemoteChange(RemoteChangeEvent change) {
+        if (change.kind() == ChangeKind.USER) {
+            entityManagerFactory.getCache().evict(JpaUser.class, change.entityId());
+            entityManagerFactory.unwrap(SessionFactory.class).getCache().evictQueryRegion("user-lookups");
+        }
     }
 
     public Optional<JpaUser> findByUsername(String username) {
@@ -37,6 +95,20 @@ public class UserService {
         return userRepository.findByPhone(phone);
     }
 
+    /**
+     * Resolves a login identity with one query. When it matches several users, username wins over email, and email
+     * over phone, as with the lookups done one after another.
+     */
+    public Optional<JpaUser> findByIdentity(String identity) {
+        if (identity == null || identity.isEmpty()) {
+            return Optional.empty();
+        }
+        return userRepository.findByIdentity(identity).stream()
+                .min(Comparator.comparingInt(u -> identity.equals(u.getUsername()) ? 0
+                        : identity.equals(u.getEmail()) ? 1 : 2));
+    }
+
+    @Transactional(readOnly = true)
     public java.util.List<JpaUser> searchByUsername(String q) {
         // simple implementation using repository method by username like
         return userRepository.findAll().stream().filter(u -> u.getUsername() != null && u.getUsername().toLowerCase().contains(q.toLowerCase())).toList();
@@ -45,4 +117,13 @@ public class UserService {
     public boolean checkPassword(JpaUser user, String rawPassword) {
         return passwordEncoder.matches(rawPassword, user.getPasswordHash());
     }
+
+    /**
+     * {@link #checkPassword} on the password-verifier pool.
+     *
+     * @throws RejectedExecutionException when the pool's queue is full
+     */
+    public CompletableFuture<Boolean> checkPasswordAsync(JpaUser user, String rawPassword) {
+        return CompletableFuture.supplyAsync(() -> checkPassword(user, rawPassword), passwordVerifier);
+    }
 }
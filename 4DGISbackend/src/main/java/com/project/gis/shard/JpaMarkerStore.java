@@ -0,0 +1,144 @@
+package com.project.gis.shard;
+
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.repository.MarkerRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 未分片时的 MarkerStore：markers 表就在主库上，直接交给 MarkerRepository；
+ * 只读投影（{@link MarkerRow}）用 JdbcTemplate 直接读，跟随当前事务的连接（只读事务时即副本库）。
+ */
+@Component
+@ConditionalOnProperty(name = "app.shards.enabled", havingValue = "false", matchIfMissing = true)
+public class JpaMarkerStore implements MarkerStore {
+    private static final String SELECT_ROWS = "select " + MarkerRow.COLUMNS + " from markers";
+    // keeps IN lists well below driver / optimizer limits
+    private static final int MAX_IN_LIST = 1000;
+
+    private final MarkerRepository markerRepository;
+    private final JdbcTemplate jdbc;
+    private final ChangeLog changeLog;
+
+    public JpaMarkerStore(MarkerRepository markerRepository, JdbcTemplate jdbc, ChangeLog changeLog) {
+        this.markerRepository = markerRepository;
+        this.jdbc = jdbc;
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public JpaMarker save(JpaMarker marker) {
+        JpaMarker saved = markerRepository.save(marker);
+        changeLog.append(ChangeKind.MARKER, saved.getId());
+        return saved;
+    }
+
+    /**
+     * A failed attempt rolled back with its primary transaction, so normally nothing exists under its id; the id is
+     * then dropped and the database assigns a new one.
+     */
+    @Override
+    public JpaMarker insert(JpaMarker marker) {
+        if (marker.getId() != null && !markerRepository.existsById(marker.getId())) {
+            marker.setId(null);
+        }
+        return save(marker);
+    }
+
+    @Override
+    public List<JpaMarker> saveAll(List<JpaMarker> markers) {
+        List<JpaMarker> saved = markerRepository.saveAll(markers);
+        for (JpaMarker m : saved) {
+            changeLog.append(ChangeKind.MARKER, m.getId());
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<JpaMarker> findById(Long id) {
+        return markerRepository.findById(id);
+    }
+
+    @Override
+    public List<JpaMarker> findAllById(List<Long> ids) {
+        return markerRepository.findAllById(ids);
+    }
+
+    @Override
+    public List<JpaMarker> findAll() {
+        return markerRepository.findAll();
+    }
+
+    @Override
+    public List<JpaMarker> findPageAfter(long afterId, int limit) {
+        return markerRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<JpaMarker> findByOwnerId(Long ownerId) {
+        return markerRepository.findByOwnerId(ownerId);
+    }
+
+    @Override
+    public List<JpaMarker> findInCells(List<long[]> ranges) {
+        List<JpaMarker> out = new ArrayList<>();
+        for (long[] r : ranges) {
+            out.addAll(markerRepository.findByCellIdBetween(r[0], r[1]));
+        }
+        return out;
+    }
+
+    @Override
+    public List<JpaMarker> findByCellIdIsNull() {
+        return markerRepository.findByCellIdIsNull();
+    }
+
+    @Override
+    public List<JpaMarker> search(String q) {
+        return markerRepository.search(q);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        markerRepository.deleteById(id);
+        changeLog.append(ChangeKind.MARKER, id);
+    }
+
+    @Override
+    public void readRows(List<Long> ids, MarkerRow.Handler handler) {
+        RowCallbackHandler rows = rowsTo(handler);
+        // ascending chunks of ascending ids, each ordered by the query
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_LIST));
+            jdbc.query(SELECT_ROWS + " where id in (" + "?, ".repeat(chunk.size() - 1) + "?) order by id", rows,
+                    chunk.toArray());
+        }
+    }
+
+    @Override
+    public void readRowsByOwner(Long ownerId, MarkerRow.Handler handler) {
+        jdbc.query(SELECT_ROWS + " where owner_id = ? order by id", rowsTo(handler), ownerId);
+    }
+
+    private static RowCallbackHandler rowsTo(MarkerRow.Handler handler) {
+        MarkerRow row = new MarkerRow();
+        return rs -> {
+            try {
+                handler.accept(row.load(rs));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        };
+    }
+}
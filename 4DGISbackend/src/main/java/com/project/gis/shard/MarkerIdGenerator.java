@@ -0,0 +1,41 @@
+package com.project.gis.shard;
+
+/**
+ * 分片后的标记点 ID：41 位毫秒时间戳（自 2024-01-01 起）+ 10 位节点编号 + 12 位序号，各节点、各分片间不会重复，
+ * 且大致按时间递增，按 id 排序的分页和合并仍然有意义。
+ * <p>
+ * 时钟回拨时继续沿用上一次的毫秒值；同一毫秒内序号用完就借用下一毫秒，生成方从不阻塞。
+ */
+public class MarkerIdGenerator {
+    static final long EPOCH_MILLIS = 1_704_067_200_000L;
+    static final int WORKER_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    private static final long MAX_WORKER = (1L << WORKER_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long worker;
+    private long lastMillis;
+    private long sequence;
+
+    public MarkerIdGenerator(int workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER) {
+            throw new IllegalArgumentException("app.shards.worker-id must be between 0 and " + MAX_WORKER
+                    + ", was " + workerId);
+        }
+        this.worker = workerId;
+    }
+
+    public synchronized long next() {
+        long now = System.currentTimeMillis() - EPOCH_MILLIS;
+        if (now > lastMillis) {
+            lastMillis = now;
+            sequence = 0;
+        } else {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                lastMillis++;
+            }
+        }
+        return (lastMillis << (WORKER_BITS + SEQUENCE_BITS)) | (worker << SEQUENCE_BITS) | sequence;
+    }
+}
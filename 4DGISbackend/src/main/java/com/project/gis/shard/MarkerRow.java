@@ -0,0 +1,184 @@
+package com.project.gis.shard;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.index.IndexedMarker;
+import com.project.gis.spatial.Wkt;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+
+/**
+ * markers 表一行的只读投影（接口输出所需的列，外加用于可见性判断的 owner_id），读取时同一个实例逐行复用，不构造实体。
+ * 处理器只能在回调内使用它，需要保留时调用 {@link #copy()}。
+ */
+public final class MarkerRow {
+    static final String COLUMNS = "id, title, description, location, altitude, start_time, end_time, marker_type_id,"
+            + " creator_id, owner_id, visibility, created_at, updated_at";
+
+    private long id;
+    private String title;
+    private String description;
+    private boolean located;
+    private double lon;
+    private double lat;
+    private Double altitude;
+    private OffsetDateTime startTime;
+    private OffsetDateTime endTime;
+    private long typeId;
+    private long creatorId;
+    private long ownerId;
+    private String visibility;
+    private OffsetDateTime createdAt;
+    private OffsetDateTime updatedAt;
+
+    MarkerRow load(ResultSet rs) throws SQLException {
+        id = rs.getLong(1);
+        title = rs.getString(2);
+        description = rs.getString(3);
+        setLocation(rs.getString(4));
+        double alt = rs.getDouble(5);
+        altitude = rs.wasNull() ? null : alt;
+        startTime = rs.getObject(6, OffsetDateTime.class);
+        endTime = rs.getObject(7, OffsetDateTime.class);
+        typeId = rs.getLong(8);
+        creatorId = rs.getLong(9);
+        ownerId = rs.getLong(10);
+        visibility = rs.getString(11);
+        createdAt = rs.getObject(12, OffsetDateTime.class);
+        updatedAt = rs.getObject(13, OffsetDateTime.class);
+        return this;
+    }
+
+    /**
+     * Fills the row from an entity that is already in memory, e.g. an archived marker.
+     */
+    public MarkerRow load(JpaMarker m) {
+        id = m.getId();
+        title = m.getTitle();
+        description = m.getDescription();
+        setLocation(m.getLocation());
+        altitude = m.getAltitude();
+        startTime = m.getStartTime();
+        endTime = m.getEndTime();
+        typeId = m.getMarkerTypeId() == null ? 0L : m.getMarkerTypeId();
+        creatorId = m.getCreatorId() == null ? 0L : m.getCreatorId();
+        ownerId = m.getOwnerId() == null ? 0L : m.getOwnerId();
+        visibility = m.getVisibility();
+        createdAt = m.getCreatedAt();
+        updatedAt = m.getUpdatedAt();
+        return this;
+    }
+
+    private void setLocation(String wkt) {
+        double[] p = Wkt.parsePoint(wkt);
+        located = p != null;
+        lon = located ? p[0] : 0.0;
+        lat = located ? p[1] : 0.0;
+    }
+
+    public MarkerRow copy() {
+        MarkerRow c = new MarkerRow();
+        c.id = id;
+        c.title = title;
+        c.description = description;
+        c.located = located;
+        c.lon = lon;
+        c.lat = lat;
+        c.altitude = altitude;
+        c.startTime = startTime;
+        c.endTime = endTime;
+        c.typeId = typeId;
+        c.creatorId = creatorId;
+        c.ownerId = ownerId;
+        c.visibility = visibility;
+        c.createdAt = createdAt;
+        c.updatedAt = updatedAt;
+        return c;
+    }
+
+    /**
+     * The row as the in-memory index would hold it, or null when it has no location or start time.
+     */
+    public IndexedMarker indexed() {
+        if (!located || startTime == null) {
+            return null;
+        }
+        return new IndexedMarker(id, lon, lat, altitude == null ? Double.NaN : altitude,
+                startTime.toInstant().toEpochMilli(),
+                endTime == null ? Long.MAX_VALUE : endTime.toInstant().toEpochMilli(),
+                typeId, ownerId, creatorId, visibility == null ? "private" : visibility);
+    }
+
+    public long id() {
+        return id;
+    }
+
+    public String title() {
+        return title;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    /**
+     * False when the stored location is missing or not a WKT point; lon / lat are 0 then.
+     */
+    public boolean hasLocation() {
+        return located;
+    }
+
+    public double lon() {
+        return lon;
+    }
+
+    public double lat() {
+        return lat;
+    }
+
+    public Double altitude() {
+        return altitude;
+    }
+
+    public OffsetDateTime startTime() {
+        return startTime;
+    }
+
+    public OffsetDateTime endTime() {
+        return endTime;
+    }
+
+    public long typeId() {
+        return typeId;
+    }
+
+    public long creatorId() {
+        return creatorId;
+    }
+
+    public long ownerId() {
+        return ownerId;
+    }
+
+    public String visibility() {
+        return visibility;
+    }
+
+    public OffsetDateTime createdAt() {
+        return createdAt;
+    }
+
+    public OffsetDateTime updatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * Receives rows in ascending id order; typically writes them straight to a response stream.
+     */
+    @FunctionalInterface
+    public interface Handler {
+        void accept(MarkerRow row) throws IOException;
+    }
+}
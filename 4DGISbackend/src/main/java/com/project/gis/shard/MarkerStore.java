@@ -0,0 +1,73 @@
+package com.project.gis.shard;
+
+import com.project.gis.entity.JpaMarker;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * markers 表的存取入口。默认实现 {@link JpaMarkerStore} 走主库上的 MarkerRepository；
+ * 开启 app.shards.enabled 后换成按空间网格分片的 {@link ShardedMarkerStore}。
+ * 除 {@link #findPageAfter} 和 readRows* 外，返回多行的方法不保证顺序。
+ * <p>
+ * 写方法同时为每个写到的标记点追加一条 MARKER 变更日志，必须在主库事务里调用。
+ */
+public interface MarkerStore {
+
+    /**
+     * Inserts the marker when it has no id yet, otherwise updates it; created / updated times and the cell are
+     * filled in either way.
+     *
+     * @throws org.springframework.transaction.IllegalTransactionStateException when called outside a transaction
+     */
+    JpaMarker save(JpaMarker marker);
+
+    /**
+     * Inserts a new marker, keeping an id it was given by an earlier attempt that failed: whatever that attempt left
+     * under the id is overwritten, so retrying a failed insert never duplicates the marker.
+     */
+    JpaMarker insert(JpaMarker marker);
+
+    List<JpaMarker> saveAll(List<JpaMarker> markers);
+
+    Optional<JpaMarker> findById(Long id);
+
+    List<JpaMarker> findAllById(List<Long> ids);
+
+    List<JpaMarker> findAll();
+
+    /**
+     * Keyset page: up to {@code limit} markers with an id greater than {@code afterId}.
+     */
+    List<JpaMarker> findPageAfter(long afterId, int limit);
+
+    List<JpaMarker> findByOwnerId(Long ownerId);
+
+    /**
+     * Markers whose cell lies in one of the inclusive {lo, hi} ranges (see GeoCell.ranges).
+     */
+    List<JpaMarker> findInCells(List<long[]> ranges);
+
+    List<JpaMarker> findByCellIdIsNull();
+
+    /**
+     * Keyword match on title or description.
+     */
+    List<JpaMarker> search(String q);
+
+    void deleteById(Long id);
+
+    /**
+     * Streams the {@link MarkerRow} projection of the given markers to {@code handler} in ascending id order,
+     * without building entities. Ids that no longer exist are skipped.
+     *
+     * @param ids ascending
+     * @throws java.io.UncheckedIOException when the handler fails
+     */
+    void readRows(List<Long> ids, MarkerRow.Handler handler);
+
+    /**
+     * Same as {@link #readRows} for all markers of one owner.
+     */
+    void readRowsByOwner(Long ownerId, MarkerRow.Handler handler);
+}
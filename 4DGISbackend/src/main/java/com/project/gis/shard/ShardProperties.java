@@ -0,0 +1,44 @@
+package com.project.gis.shard;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * markers 分片配置（app.shards.*）
+ */
+@Data
+@ConfigurationProperties(prefix = "app.shards")
+public class ShardProperties {
+    private boolean enabled;
+    /**
+     * 分片库，按顺序各负责一段连续的网格 key（GeoCell）区间
+     */
+    private List<Node> nodes = new ArrayList<>();
+    /**
+     * 相邻分片之间的网格 key 分界点，升序，个数为分片数 - 1；为空时把整个 key 空间均分。
+     * 数据集中在少数地区时用它让各分片的行数接近。
+     */
+    private List<Long> splitCells = new ArrayList<>();
+    /**
+     * 本节点的 ID 生成器编号（0 - 1023），同一集群内每个节点必须不同
+     */
+    private int workerId;
+    /**
+     * 并发查询各分片的线程数，0 表示分片数的两倍
+     */
+    private int fanoutThreads;
+
+    @Data
+    public static class Node {
+        private String name;
+        private String url;
+        /**
+         * 为空时沿用主库的用户名 / 密码
+         */
+        private String username;
+        private String password;
+    }
+}
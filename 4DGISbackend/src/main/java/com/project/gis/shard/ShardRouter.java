@@ -0,0 +1,75 @@
+package com.project.gis.shard;
+
+import com.project.gis.spatial.GeoCell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 网格 key 到分片的映射。每个分片负责一段连续的 key 区间，Z-order 下空间上相邻的标记点大多落在同一分片，
+ * 视口查询的网格区间按分界点切开后只会发到与它重叠的分片。没有坐标（key 为 null）的标记点放在第一个分片。
+ */
+public class ShardRouter {
+    // exclusive upper bound of GeoCell keys
+    private static final long KEY_SPACE = 1L << (2 * GeoCell.MAX_LEVEL);
+
+    // bounds[i] is the first key of shard i + 1
+    private final long[] bounds;
+
+    public ShardRouter(int shards, List<Long> splitCells) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("at least one shard is required");
+        }
+        bounds = new long[shards - 1];
+        if (splitCells == null || splitCells.isEmpty()) {
+            long width = KEY_SPACE / shards;
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = width * (i + 1);
+            }
+        } else {
+            if (splitCells.size() != bounds.length) {
+                throw new IllegalArgumentException("app.shards.split-cells needs " + bounds.length
+                        + " boundaries for " + shards + " shards, got " + splitCells.size());
+            }
+            for (int i = 0; i < bounds.length; i++) {
+                bounds[i] = splitCells.get(i);
+                if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                    throw new IllegalArgumentException("app.shards.split-cells must be strictly ascending");
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return bounds.length + 1;
+    }
+
+    public int shardOf(Long cell) {
+        if (cell == null) {
+            return 0;
+        }
+        int i = Arrays.binarySearch(bounds, cell);
+        return i >= 0 ? i + 1 : -i - 1;
+    }
+
+    /**
+     * Splits inclusive {lo, hi} key ranges at the shard boundaries.
+     *
+     * @return the ranges each overlapping shard has to scan, by shard
+     */
+    public Map<Integer, List<long[]>> split(List<long[]> ranges) {
+        Map<Integer, List<long[]>> out = new TreeMap<>();
+        for (long[] r : ranges) {
+            int last = shardOf(r[1]);
+            for (int s = shardOf(r[0]); s <= last; s++) {
+                long lo = s == 0 ? r[0] : Math.max(r[0], bounds[s - 1]);
+                long hi = s == bounds.length ? r[1] : Math.min(r[1], bounds[s] - 1);
+                out.computeIfAbsent(s, k -> new ArrayList<>()).add(new long[]{lo, hi});
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,428 @@
+package com.project.gis.shard;
+
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.spatial.GeoCell;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 按空间网格把 markers 分到多个库的 MarkerStore。
+ * <p>
+ * 写入按标记点的网格 key 路由到唯一的分片（{@link ShardRouter}），ID 由 {@link MarkerIdGenerator} 分配。
+ * 视口查询只发往网格区间重叠的分片，其余查询（按 id / 所有者 / 关键词 / 时间）无法按空间裁剪，发往全部分片；
+ * 多个分片时并行执行，各分片结果按 id 有序，再做 k 路归并，分页查询在归并后截断。
+ * <p>
+ * 标记点移动到另一个分片时先写新分片再删旧分片，两步之间（或中途失败后）同一 id 可能短暂出现在两个分片，
+ * 读取时按 id 去重并保留 updated_at 较新的一份，下一次保存或删除会把多余的副本清掉。
+ * <p>
+ * 分片上的写入不参与主库事务，各自立即提交。因此每次写分片之前先在调用方的主库事务里追加变更日志：追加失败时分片
+ * 不会被写到。剩下的窗口是分片已提交、主库事务随后回滚或提交失败 —— 这时分片里的行是新的，却没有变更日志，
+ * 其它节点的缓存要到下一次修改这个标记点（或重启重新加载）才会更新。反过来主库提交了而分片写失败时，
+ * 只是多出一条日志，其它节点重新读到的仍是分片里的旧行，不会出错。
+ * <p>
+ * 批量插入在每个分片上各用一个本地事务，一个分片里任何一行失败，这个分片的整批都回滚；其它已提交的分片再按 id
+ * 删掉刚插入的行（补偿），然后抛出异常，主库事务连同变更日志一起回滚。补偿本身也失败时行会留在分片上，
+ * 所以失败后的重试用 {@link #insert} 并沿用已分配的 id：同一 id 的行已存在就覆盖，不会出现重复的标记点。
+ */
+public class ShardedMarkerStore implements MarkerStore, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ShardedMarkerStore.class);
+    private static final String COLUMNS = "id, title, description, location, cell_id, altitude, start_time, end_time,"
+            + " marker_type_id, creator_id, owner_id, visibility, created_at, updated_at";
+    private static final String INSERT = "insert into markers (" + COLUMNS
+            + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "update markers set title = ?, description = ?, location = ?, cell_id = ?,"
+            + " altitude = ?, start_time = ?, end_time = ?, marker_type_id = ?, creator_id = ?, owner_id = ?,"
+            + " visibility = ?, created_at = ?, updated_at = ? where id = ?";
+    private static final String SELECT = "select " + COLUMNS + " from markers";
+    private static final String SELECT_ROWS = "select " + MarkerRow.COLUMNS + " from markers";
+    // keeps IN lists well below driver / optimizer limits
+    private static final int MAX_IN_LIST = 1000;
+    private static final RowMapper<JpaMarker> ROW = ShardedMarkerStore::mapRow;
+    private static final Comparator<JpaMarker> BY_ID = Comparator.comparing(JpaMarker::getId);
+
+    private final List<DataSource> dataSources;
+    private final List<JdbcTemplate> shards;
+    private final List<TransactionTemplate> transactions;
+    private final ShardRouter router;
+    private final MarkerIdGenerator ids;
+    private final Executor fanout;
+    private final ChangeLog changeLog;
+
+    public ShardedMarkerStore(List<DataSource> shards, ShardRouter router, MarkerIdGenerator ids, Executor fanout,
+                              ChangeLog changeLog) {
+        if (shards.size() != router.size()) {
+            throw new IllegalArgumentException(shards.size() + " shard data sources for " + router.size() + " shards");
+        }
+        this.dataSources = shards;
+        this.shards = shards.stream().map(JdbcTemplate::new).toList();
+        this.transactions = shards.stream()
+                .map(ds -> new TransactionTemplate(new DataSourceTransactionManager(ds)))
+                .toList();
+        this.router = router;
+        this.ids = ids;
+        this.fanout = fanout;
+        this.changeLog = changeLog;
+    }
+
+    @Override
+    public JpaMarker save(JpaMarker marker) {
+        boolean isNew = prepare(marker);
+        int target = router.shardOf(marker.getCellId());
+        changeLog.append(ChangeKind.MARKER, marker.getId());
+        if (isNew) {
+            shards.get(target).update(INSERT, insertArgs(marker));
+            return marker;
+        }
+        if (shards.get(target).update(UPDATE, updateArgs(marker)) == 0) {
+            // moved from another shard (or deleted meanwhile, then this recreates it like a JPA merge would)
+            shards.get(target).update(INSERT, insertArgs(marker));
+        }
+        // the old row of a move, or a copy left behind by an earlier move that failed halfway
+        List<Integer> others = IntStream.range(0, shards.size()).filter(i -> i != target).boxed().toList();
+        each(others, i -> shards.get(i).update("delete from markers where id = ?", marker.getId()));
+        return marker;
+    }
+
+    /**
+     * Idempotent insert: the id is assigned only if the marker has none, and an existing row under that id (left
+     * behind by an earlier failed attempt) is overwritten. New markers never move, so only their shard is written.
+     */
+    @Override
+    public JpaMarker insert(JpaMarker marker) {
+        prepare(marker);
+        int target = router.shardOf(marker.getCellId());
+        changeLog.append(ChangeKind.MARKER, marker.getId());
+        if (shards.get(target).update(UPDATE, updateArgs(marker)) == 0) {
+            shards.get(target).update(INSERT, insertArgs(marker));
+        }
+        return marker;
+    }
+
+    /**
+     * New markers are inserted with one batch per shard, each in a local shard transaction; when a shard fails, the
+     * batches the other shards committed are deleted again before the failure is rethrown.
+     */
+    @Override
+    public List<JpaMarker> saveAll(List<JpaMarker> markers) {
+        Map<Integer, List<JpaMarker>> inserts = new TreeMap<>();
+        for (JpaMarker m : markers) {
+            if (prepare(m)) {
+                changeLog.append(ChangeKind.MARKER, m.getId());
+                inserts.computeIfAbsent(router.shardOf(m.getCellId()), k -> new ArrayList<>()).add(m);
+            } else {
+                save(m);
+            }
+        }
+        Map<Integer, RuntimeException> failed = new ConcurrentHashMap<>();
+        each(inserts.keySet(), i -> {
+            List<Object[]> args = inserts.get(i).stream().map(ShardedMarkerStore::insertArgs).toList();
+            try {
+                transactions.get(i).executeWithoutResult(s -> shards.get(i).batchUpdate(INSERT, args));
+            } catch (RuntimeException ex) {
+                failed.put(i, ex);
+            }
+            return i;
+        });
+        if (failed.isEmpty()) {
+            return markers;
+        }
+        List<Integer> committed = inserts.keySet().stream().filter(i -> !failed.containsKey(i)).toList();
+        each(committed, i -> {
+            try {
+                deleteIds(i, inserts.get(i).stream().map(JpaMarker::getId).toList());
+            } catch (RuntimeException ex) {
+                // the rows stay until a retry with the same ids overwrites them
+                log.error("Failed to remove {} markers of a failed batch from shard {}", inserts.get(i).size(), i,
+                        ex);
+            }
+            return i;
+        });
+        throw failed.values().iterator().next();
+    }
+
+    private void deleteIds(int shard, List<Long> ids) {
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_LIST));
+            shards.get(shard).update("delete from markers where id in (" + "?, ".repeat(chunk.size() - 1) + "?)",
+                    chunk.toArray());
+        }
+    }
+
+    @Override
+    public Optional<JpaMarker> findById(Long id) {
+        return query(all(), i -> shards.get(i).query(SELECT + " where id = ?", ROW, id), 1).stream().findFirst();
+    }
+
+    @Override
+    public List<JpaMarker> findAllById(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            chunks.add(ids.subList(from, Math.min(ids.size(), from + MAX_IN_LIST)));
+        }
+        return query(all(), i -> {
+            List<JpaMarker> out = new ArrayList<>();
+            for (List<Long> chunk : chunks) {
+                String in = chunk.stream().map(x -> "?").collect(Collectors.joining(", "));
+                out.addAll(shards.get(i).query(SELECT + " where id in (" + in + ")", ROW, chunk.toArray()));
+            }
+            out.sort(BY_ID);
+            return out;
+        }, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<JpaMarker> findAll() {
+        return query(all(), i -> shards.get(i).query(SELECT + " order by id", ROW), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<JpaMarker> findPageAfter(long afterId, int limit) {
+        // every shard returns its own first page, the merge keeps the overall first one
+        return query(all(), i -> shards.get(i).query(SELECT + " where id > ? order by id limit ?", ROW, afterId, limit),
+                limit);
+    }
+
+    @Override
+    public List<JpaMarker> findByOwnerId(Long ownerId) {
+        return query(all(), i -> shards.get(i).query(SELECT + " where owner_id = ? order by id", ROW, ownerId),
+                Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<JpaMarker> findInCells(List<long[]> ranges) {
+        Map<Integer, List<long[]>> byShard = router.split(ranges);
+        return query(byShard.keySet(), i -> {
+            List<JpaMarker> out = new ArrayList<>();
+            for (long[] r : byShard.get(i)) {
+                out.addAll(shards.get(i).query(SELECT + " where cell_id between ? and ?", ROW, r[0], r[1]));
+            }
+            out.sort(BY_ID);
+            return out;
+        }, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<JpaMarker> findByCellIdIsNull() {
+        return query(all(), i -> shards.get(i).query(SELECT + " where cell_id is null order by id", ROW),
+                Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<JpaMarker> search(String q) {
+        String like = "%" + q + "%";
+        return query(all(), i -> shards.get(i).query(SELECT + " where title like ? or description like ? order by id",
+                ROW, like, like), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        changeLog.append(ChangeKind.MARKER, id);
+        each(all(), i -> shards.get(i).update("delete from markers where id = ?", id));
+    }
+
+    /**
+     * Each chunk of ids goes to every shard; the rows are copied so the per-shard results can be merged by id.
+     */
+    @Override
+    public void readRows(List<Long> ids, MarkerRow.Handler handler) {
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_LIST));
+            String sql = SELECT_ROWS + " where id in (" + "?, ".repeat(chunk.size() - 1) + "?) order by id";
+            emit(each(all(), i -> shards.get(i).query(sql, ShardedMarkerStore::copyRow, chunk.toArray())), handler);
+        }
+    }
+
+    @Override
+    public void readRowsByOwner(Long ownerId, MarkerRow.Handler handler) {
+        emit(each(all(), i -> shards.get(i).query(SELECT_ROWS + " where owner_id = ? order by id",
+                ShardedMarkerStore::copyRow, ownerId)), handler);
+    }
+
+    private static MarkerRow copyRow(ResultSet rs, int row) throws SQLException {
+        return new MarkerRow().load(rs);
+    }
+
+    /**
+     * Merges id-ordered per-shard rows like {@link #merge}, dropping the older copy of a mid-move duplicate.
+     */
+    private static void emit(List<List<MarkerRow>> sorted, MarkerRow.Handler handler) {
+        List<MarkerRow> all = new ArrayList<>();
+        sorted.forEach(all::addAll);
+        all.sort(Comparator.comparingLong(MarkerRow::id));
+        try {
+            for (int i = 0; i < all.size(); i++) {
+                MarkerRow r = all.get(i);
+                if (i + 1 < all.size() && all.get(i + 1).id() == r.id()) {
+                    MarkerRow next = all.get(i + 1);
+                    all.set(i + 1, next.updatedAt().isAfter(r.updatedAt()) ? next : r);
+                    continue;
+                }
+                handler.accept(r);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int shard = 0; shard < dataSources.size(); shard++) {
+            if (dataSources.get(shard) instanceof Closeable c) {
+                try {
+                    c.close();
+                } catch (IOException ex) {
+                    log.warn("Failed to close the data source of shard {}", shard, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * What the entity's JPA callbacks do on persist / update, plus the id for new markers.
+     *
+     * @return whether the marker is new
+     */
+    private boolean prepare(JpaMarker m) {
+        OffsetDateTime now = OffsetDateTime.now();
+        boolean isNew = m.getId() == null;
+        if (isNew) {
+            m.setId(ids.next());
+        }
+        if (isNew || m.getCreatedAt() == null) {
+            m.setCreatedAt(now);
+        }
+        m.setUpdatedAt(now);
+        m.setCellId(GeoCell.of(m.getLocation()));
+        return isNew;
+    }
+
+    private List<Integer> all() {
+        return IntStream.range(0, shards.size()).boxed().toList();
+    }
+
+    /**
+     * Runs {@code perShard} on each target shard, in parallel when there is more than one, and merges the
+     * id-ordered results into one id-ordered list of at most {@code limit} markers.
+     */
+    private List<JpaMarker> query(Iterable<Integer> targets, Function<Integer, List<JpaMarker>> perShard, int limit) {
+        return merge(each(targets, perShard), limit);
+    }
+
+    private <T> List<T> each(Iterable<Integer> targets, Function<Integer, T> perShard) {
+        List<Integer> list = new ArrayList<>();
+        targets.forEach(list::add);
+        if (list.size() == 1) {
+            return List.of(perShard.apply(list.get(0)));
+        }
+        List<CompletableFuture<T>> futures = list.stream()
+                .map(i -> CompletableFuture.supplyAsync(() -> perShard.apply(i), fanout))
+                .toList();
+        try {
+            return futures.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw ex;
+        }
+    }
+
+    private static List<JpaMarker> merge(List<List<JpaMarker>> sorted, int limit) {
+        if (sorted.size() == 1) {
+            List<JpaMarker> only = sorted.get(0);
+            return only.size() <= limit ? only : only.subList(0, limit);
+        }
+        // each entry: list index, position in that list
+        PriorityQueue<int[]> heads = new PriorityQueue<>(
+                Comparator.comparing((int[] h) -> sorted.get(h[0]).get(h[1]).getId()));
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<JpaMarker> out = new ArrayList<>();
+        while (!heads.isEmpty()) {
+            int[] h = heads.poll();
+            JpaMarker m = sorted.get(h[0]).get(h[1]);
+            JpaMarker last = out.isEmpty() ? null : out.get(out.size() - 1);
+            if (last != null && last.getId().equals(m.getId())) {
+                // mid-move duplicate, keep the newer copy
+                if (m.getUpdatedAt().isAfter(last.getUpdatedAt())) {
+                    out.set(out.size() - 1, m);
+                }
+            } else if (out.size() < limit) {
+                out.add(m);
+            } else {
+                break;
+            }
+            if (++h[1] < sorted.get(h[0]).size()) {
+                heads.add(h);
+            }
+        }
+        return out;
+    }
+
+    private static Object[] insertArgs(JpaMarker m) {
+        return new Object[]{m.getId(), m.getTitle(), m.getDescription(), m.getLocation(), m.getCellId(),
+                m.getAltitude(), m.getStartTime(), m.getEndTime(), m.getMarkerTypeId(), m.getCreatorId(),
+                m.getOwnerId(), m.getVisibility(), m.getCreatedAt(), m.getUpdatedAt()};
+    }
+
+    private static Object[] updateArgs(JpaMarker m) {
+        return new Object[]{m.getTitle(), m.getDescription(), m.getLocation(), m.getCellId(), m.getAltitude(),
+                m.getStartTime(), m.getEndTime(), m.getMarkerTypeId(), m.getCreatorId(), m.getOwnerId(),
+                m.getVisibility(), m.getCreatedAt(), m.getUpdatedAt(), m.getId()};
+    }
+
+    private static JpaMarker mapRow(ResultSet rs, int row) throws SQLException {
+        JpaMarker m = new JpaMarker();
+        m.setId(rs.getLong("id"));
+        m.setTitle(rs.getString("title"));
+        m.setDescription(rs.getString("description"));
+        m.setLocation(rs.getString("location"));
+        long cell = rs.getLong("cell_id");
+        m.setCellId(rs.wasNull() ? null : cell);
+        double altitude = rs.getDouble("altitude");
+        m.setAltitude(rs.wasNull() ? null : altitude);
+        m.setStartTime(rs.getObject("start_time", OffsetDateTime.class));
+        m.setEndTime(rs.getObject("end_time", OffsetDateTime.class));
+        m.setMarkerTypeId(rs.getLong("marker_type_id"));
+        m.setCreatorId(rs.getLong("creator_id"));
+        m.setOwnerId(rs.getLong("owner_id"));
+        m.setVisibility(rs.getString("visibility"));
+        m.setCreatedAt(rs.getObject("created_at", OffsetDateTime.class));
+        m.setUpdatedAt(rs.getObject("updated_at", OffsetDateTime.class));
+        return m;
+    }
+}
@@ -0,0 +1,74 @@
+package com.project.gis.shard;
+
+import com.project.gis.changelog.ChangeLog;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 开启 app.shards.enabled 后，markers 表按空间网格分布到 app.shards.nodes 列出的各个库，
+ * 其余表仍在主库（spring.datasource）。启动时对每个分片执行 db/shard/{h2|mysql} 下的迁移。
+ * <p>
+ * 主库 markers 表中已有的数据不会自动搬迁，切换前需要按 {@link ShardRouter} 的规则导入各分片。
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.shards.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardingConfig {
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ThreadPoolExecutor shardFanout(ShardProperties props, MeterRegistry meterRegistry) {
+        int threads = props.getFanoutThreads() > 0 ? props.getFanoutThreads() : 2 * props.getNodes().size();
+        AtomicInteger seq = new AtomicInteger();
+        // a full queue makes the request thread query the shard itself instead of failing
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(256), r -> {
+                    Thread t = new Thread(r, "shard-fanout-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        new ExecutorServiceMetrics(executor, "shard-fanout", List.of()).bindTo(meterRegistry);
+        return executor;
+    }
+
+    @Bean
+    public ShardedMarkerStore markerStore(DataSourceProperties primaryProperties, ShardProperties props,
+                                          ThreadPoolExecutor shardFanout, ChangeLog changeLog) {
+        List<DataSource> shards = new ArrayList<>();
+        for (ShardProperties.Node node : props.getNodes()) {
+            HikariDataSource ds = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(node.getUrl())
+                    .username(node.getUsername() != null ? node.getUsername() : primaryProperties.determineUsername())
+                    .password(node.getPassword() != null ? node.getPassword() : primaryProperties.determinePassword())
+                    .build();
+            ds.setPoolName("shard-" + node.getName());
+            Flyway.configure()
+                    .dataSource(ds)
+                    .locations("classpath:db/shard/" + (node.getUrl().startsWith("jdbc:h2:") ? "h2" : "mysql"))
+                    // own history table, a shard may live in the same schema as the primary
+                    .table("flyway_shard_history")
+                    .baselineOnMigrate(true)
+                    .load()
+                    .migrate();
+            shards.add(ds);
+        }
+        return new ShardedMarkerStore(shards, new ShardRouter(shards.size(), props.getSplitCells()),
+                new MarkerIdGenerator(props.getWorkerId()), shardFanout, changeLog);
+    }
+}
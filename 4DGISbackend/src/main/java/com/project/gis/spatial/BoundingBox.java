@@ -0,0 +1,63 @@
+package com.project.gis.spatial;
+
+import java.util.List;
+
+/**
+ * 经纬度矩形范围（视口），minLon > maxLon 表示跨越 180° 经线
+ */
+public record BoundingBox(double minLon, double minLat, double maxLon, double maxLat) {
+
+    public static final BoundingBox WORLD = new BoundingBox(-180.0, -90.0, 180.0, 90.0);
+
+    /**
+     * Parses "minLon,minLat,maxLon,maxLat".
+     *
+     * @return null when the text is missing or malformed
+     */
+    public static BoundingBox parse(String s) {
+        if (s == null || s.isBlank()) {
+            return null;
+        }
+        String[] parts = s.split(",");
+        if (parts.length != 4) {
+            return null;
+        }
+        double[] v = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                v[i] = Double.parseDouble(parts[i].trim());
+                if (Double.isNaN(v[i]) || Double.isInfinite(v[i])) {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+        if (v[0] < -180.0 || v[0] > 180.0 || v[2] < -180.0 || v[2] > 180.0
+                || v[1] < -90.0 || v[3] > 90.0 || v[1] > v[3]) {
+            return null;
+        }
+        return new BoundingBox(v[0], v[1], v[2], v[3]);
+    }
+
+    public boolean crossesAntimeridian() {
+        return minLon > maxLon;
+    }
+
+    /**
+     * Boxes that never cross the antimeridian, so callers can work with plain min/max comparisons.
+     */
+    public List<BoundingBox> split() {
+        if (!crossesAntimeridian()) {
+            return List.of(this);
+        }
+        return List.of(new BoundingBox(minLon, minLat, 180.0, maxLat), new BoundingBox(-180.0, minLat, maxLon, maxLat));
+    }
+
+    public boolean contains(double lon, double lat) {
+        if (lat < minLat || lat > maxLat) {
+            return false;
+        }
+        return crossesAntimeridian() ? (lon >= minLon || lon <= maxLon) : (lon >= minLon && lon <= maxLon);
+    }
+}
@@ -0,0 +1,124 @@
+package com.project.gis.spatial;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 层级网格编码（Z-order / Morton）。
+ * <p>
+ * 经纬度各量化为 31 位整数后按位交织得到 62 位 key：相邻 key 在空间上相邻，某一层级的网格恰好对应一段连续的
+ * key 区间，因此普通 B-tree 索引上的 {@code between} 扫描即可完成矩形范围过滤，H2 与 MySQL 通用。
+ * key 的高位前缀（{@link #parent(long, int)}）也可直接作为分片 / 分区键。
+ */
+public final class GeoCell {
+    /**
+     * Bits per axis at the finest level.
+     */
+    public static final int MAX_LEVEL = 31;
+
+    private static final long AXIS_CELLS = 1L << MAX_LEVEL;
+
+    private GeoCell() {
+    }
+
+    public static long encode(double lon, double lat) {
+        return interleave(quantize(lon + 180.0, 360.0), quantize(lat + 90.0, 180.0));
+    }
+
+    /**
+     * @return the cell of a WKT POINT, or null when it cannot be parsed
+     */
+    public static Long of(String wkt) {
+        double[] p = Wkt.parsePoint(wkt);
+        return p == null ? null : encode(p[0], p[1]);
+    }
+
+    /**
+     * Prefix of {@code key} identifying its ancestor cell at {@code level} (0 = whole world).
+     */
+    public static long parent(long key, int level) {
+        return key >>> (2 * (MAX_LEVEL - level));
+    }
+
+    /**
+     * Covers the box with at most about {@code maxRanges} inclusive key ranges {lo, hi}, sorted and merged.
+     * Cells are refined breadth-first while the budget allows, so the cover is exact for small boxes and
+     * coarser (superset) for large ones; callers must still check the exact coordinates.
+     */
+    public static List<long[]> ranges(BoundingBox box, int maxRanges) {
+        List<long[]> out = new ArrayList<>();
+        List<BoundingBox> parts = box.split();
+        for (BoundingBox b : parts) {
+            cover(quantize(b.minLon() + 180.0, 360.0), quantize(b.minLat() + 90.0, 180.0),
+                    quantize(b.maxLon() + 180.0, 360.0), quantize(b.maxLat() + 90.0, 180.0),
+                    Math.max(1, maxRanges / parts.size()), out);
+        }
+        return merge(out);
+    }
+
+    private static void cover(long x0, long y0, long x1, long y1, int budget, List<long[]> out) {
+        // each entry: level, cx, cy
+        Deque<long[]> frontier = new ArrayDeque<>();
+        frontier.add(new long[] { 0, 0, 0 });
+        int emitted = 0;
+        while (!frontier.isEmpty()) {
+            long[] c = frontier.poll();
+            int level = (int) c[0];
+            int shift = MAX_LEVEL - level;
+            long cx0 = c[1] << shift, cx1 = ((c[1] + 1) << shift) - 1;
+            long cy0 = c[2] << shift, cy1 = ((c[2] + 1) << shift) - 1;
+            if (cx1 < x0 || cx0 > x1 || cy1 < y0 || cy0 > y1) {
+                continue;
+            }
+            boolean inside = cx0 >= x0 && cx1 <= x1 && cy0 >= y0 && cy1 <= y1;
+            if (inside || level == MAX_LEVEL || emitted + frontier.size() + 4 > budget) {
+                long lo = interleave(c[1], c[2]) << (2 * shift);
+                long hi = shift == 0 ? lo : lo | ((1L << (2 * shift)) - 1);
+                out.add(new long[] { lo, hi });
+                emitted++;
+                continue;
+            }
+            for (int dy = 0; dy < 2; dy++) {
+                for (int dx = 0; dx < 2; dx++) {
+                    frontier.add(new long[] { level + 1, (c[1] << 1) | dx, (c[2] << 1) | dy });
+                }
+            }
+        }
+    }
+
+    private static List<long[]> merge(List<long[]> ranges) {
+        ranges.sort(Comparator.comparingLong(r -> r[0]));
+        List<long[]> merged = new ArrayList<>();
+        for (long[] r : ranges) {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && r[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], r[1]);
+            } else {
+                merged.add(new long[] { r[0], r[1] });
+            }
+        }
+        return merged;
+    }
+
+    private static long quantize(double offset, double span) {
+        long v = (long) Math.floor(offset / span * AXIS_CELLS);
+        return Math.max(0, Math.min(AXIS_CELLS - 1, v));
+    }
+
+    static long interleave(long x, long y) {
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(long v) {
+        v &= 0xFFFFFFFFL;
+        v = (v | (v << 16)) & 0x0000FFFF0000FFFFL;
+        v = (v | (v << 8)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0F0F0F0F0FL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+}
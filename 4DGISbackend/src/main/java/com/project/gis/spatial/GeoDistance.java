@@ -0,0 +1,58 @@
+package com.project.gis.spatial;
+
+/**
+ * 球面大圆距离（米）
+ */
+public final class GeoDistance {
+    public static final double EARTH_RADIUS_M = 6_371_008.8;
+
+    private GeoDistance() {
+    }
+
+    public static double haversine(double lon1, double lat1, double lon2, double lat2) {
+        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2);
+        double dp = p2 - p1, dl = Math.toRadians(lon2 - lon1);
+        double h = Math.sin(dp / 2) * Math.sin(dp / 2) + Math.cos(p1) * Math.cos(p2) * Math.sin(dl / 2) * Math.sin(dl / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /**
+     * Smallest great-circle distance from the point to any point of the lon/lat rectangle (0 when inside).
+     * Used as the lower bound when walking a spatial index best-first.
+     */
+    public static double minDistanceToRect(double lon, double lat, double minLon, double minLat, double maxLon,
+            double maxLat) {
+        if (lon >= minLon && lon <= maxLon) {
+            if (lat >= minLat && lat <= maxLat) {
+                return 0.0;
+            }
+            // straight along the meridian
+            return Math.toRadians(lat < minLat ? minLat - lat : lat - maxLat) * EARTH_RADIUS_M;
+        }
+        return Math.min(distanceToMeridian(lon, lat, minLon, minLat, maxLat),
+                distanceToMeridian(lon, lat, maxLon, minLat, maxLat));
+    }
+
+    private static double distanceToMeridian(double lon, double lat, double meridian, double minLat, double maxLat) {
+        double dl = Math.toRadians(normalize(meridian - lon));
+        double phi = Math.toRadians(lat);
+        if (Math.abs(dl) < Math.PI / 2) {
+            // foot of the perpendicular from the point onto the meridian's great circle
+            double foot = Math.toDegrees(Math.atan(Math.tan(phi) / Math.cos(dl)));
+            if (foot >= minLat && foot <= maxLat) {
+                return Math.asin(Math.min(1.0, Math.cos(phi) * Math.abs(Math.sin(dl)))) * EARTH_RADIUS_M;
+            }
+        }
+        return Math.min(haversine(lon, lat, meridian, minLat), haversine(lon, lat, meridian, maxLat));
+    }
+
+    private static double normalize(double deg) {
+        double d = deg % 360.0;
+        if (d > 180.0) {
+            d -= 360.0;
+        } else if (d < -180.0) {
+            d += 360.0;
+        }
+        return d;
+    }
+}
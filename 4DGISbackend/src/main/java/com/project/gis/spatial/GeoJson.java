@@ -0,0 +1,139 @@
+package com.project.gis.spatial;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.geom.util.GeometryFixer;
+
+/**
+ * GeoJSON 面要素（Polygon / MultiPolygon，或包着它们的 Feature）到 JTS 几何的转换
+ */
+public final class GeoJson {
+    public static final GeometryFactory FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    private GeoJson() {
+    }
+
+    /**
+     * Self-intersecting input (a hand-drawn lasso, typically) is repaired rather than rejected.
+     *
+     * @throws IllegalArgumentException when the node is not a well-formed polygonal geometry or has more than
+     *                                  {@code maxVertices} positions
+     */
+    public static Geometry toPolygonal(JsonNode node, int maxVertices) {
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("geometry");
+        }
+        String type = node.path("type").asText();
+        if ("Feature".equals(type)) {
+            return toPolygonal(node.get("geometry"), maxVertices);
+        }
+        JsonNode coords = node.get("coordinates");
+        int[] budget = { maxVertices };
+        Geometry g;
+        if ("Polygon".equals(type)) {
+            g = polygon(coords, budget);
+        } else if ("MultiPolygon".equals(type)) {
+            if (coords == null || !coords.isArray() || coords.isEmpty()) {
+                throw new IllegalArgumentException("geometry");
+            }
+            Polygon[] parts = new Polygon[coords.size()];
+            for (int i = 0; i < parts.length; i++) {
+                parts[i] = polygon(coords.get(i), budget);
+            }
+            g = FACTORY.createMultiPolygon(parts);
+        } else {
+            throw new IllegalArgumentException("geometry type");
+        }
+        return g.isValid() ? g : GeometryFixer.fix(g);
+    }
+
+    /**
+     * Inverse of {@link #toPolygonal}: a Polygon or MultiPolygon as a GeoJSON geometry object.
+     */
+    public static ObjectNode write(Geometry g) {
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        if (g instanceof Polygon p) {
+            out.put("type", "Polygon");
+            out.set("coordinates", rings(p));
+        } else {
+            out.put("type", "MultiPolygon");
+            ArrayNode parts = out.putArray("coordinates");
+            for (int i = 0; i < g.getNumGeometries(); i++) {
+                parts.add(rings((Polygon) g.getGeometryN(i)));
+            }
+        }
+        return out;
+    }
+
+    private static ArrayNode rings(Polygon p) {
+        ArrayNode rings = JsonNodeFactory.instance.arrayNode();
+        rings.add(positions(p.getExteriorRing()));
+        for (int i = 0; i < p.getNumInteriorRing(); i++) {
+            rings.add(positions(p.getInteriorRingN(i)));
+        }
+        return rings;
+    }
+
+    private static ArrayNode positions(LineString ring) {
+        ArrayNode out = JsonNodeFactory.instance.arrayNode();
+        for (Coordinate c : ring.getCoordinates()) {
+            out.addArray().add(c.x).add(c.y);
+        }
+        return out;
+    }
+
+    private static Polygon polygon(JsonNode rings, int[] budget) {
+        if (rings == null || !rings.isArray() || rings.isEmpty()) {
+            throw new IllegalArgumentException("geometry");
+        }
+        LinearRing shell = ring(rings.get(0), budget);
+        LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = ring(rings.get(i + 1), budget);
+        }
+        return FACTORY.createPolygon(shell, holes);
+    }
+
+    private static LinearRing ring(JsonNode positions, int[] budget) {
+        if (positions == null || !positions.isArray()) {
+            throw new IllegalArgumentException("geometry");
+        }
+        int n = positions.size();
+        budget[0] -= n;
+        if (budget[0] < 0) {
+            throw new IllegalArgumentException("too many vertices");
+        }
+        Coordinate[] c = new Coordinate[n];
+        for (int i = 0; i < n; i++) {
+            JsonNode p = positions.get(i);
+            if (!p.isArray() || p.size() < 2 || !p.get(0).isNumber() || !p.get(1).isNumber()) {
+                throw new IllegalArgumentException("geometry");
+            }
+            double lon = p.get(0).asDouble(), lat = p.get(1).asDouble();
+            if (lon < -180.0 || lon > 180.0 || lat < -90.0 || lat > 90.0) {
+                throw new IllegalArgumentException("coordinates");
+            }
+            c[i] = new Coordinate(lon, lat);
+        }
+        // tolerate rings that are not explicitly closed
+        if (n > 0 && !c[0].equals2D(c[n - 1])) {
+            Coordinate[] closed = new Coordinate[n + 1];
+            System.arraycopy(c, 0, closed, 0, n);
+            closed[n] = c[0].copy();
+            c = closed;
+        }
+        if (c.length < 4) {
+            throw new IllegalArgumentException("geometry");
+        }
+        return FACTORY.createLinearRing(c);
+    }
+}
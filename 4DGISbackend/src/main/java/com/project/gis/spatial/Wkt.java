@@ -0,0 +1,41 @@
+package com.project.gis.spatial;
+
+import java.util.Locale;
+
+/**
+ * markers.location 中 WKT POINT 文本的读写工具
+ */
+public final class Wkt {
+    private Wkt() {
+    }
+
+    /**
+     * WKT POINT(lon lat); always uses '.' as decimal separator regardless of the default locale
+     */
+    public static String point(double lon, double lat) {
+        return String.format(Locale.ROOT, "POINT(%f %f)", lon, lat);
+    }
+
+    /**
+     * @return {lon, lat}, or null when the text is not a POINT
+     */
+    public static double[] parsePoint(String wkt) {
+        if (wkt == null) {
+            return null;
+        }
+        int open = wkt.indexOf('(');
+        int close = wkt.lastIndexOf(')');
+        if (open < 0 || close <= open || !wkt.substring(0, open).trim().equalsIgnoreCase("POINT")) {
+            return null;
+        }
+        String[] parts = wkt.substring(open + 1, close).trim().split("\\s+");
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            return new double[] { Double.parseDouble(parts[0]), Double.parseDouble(parts[1]) };
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.gis.trajectory;
+
+/**
+ * 按位读取（高位在前），与 {@link BitWriter} 对应
+ */
+class BitReader {
+    private final byte[] buf;
+    private final int end;
+    private long bitPos;
+
+    BitReader(byte[] buf, int offset, int length) {
+        this.buf = buf;
+        this.end = offset + length;
+        this.bitPos = (long) offset << 3;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    long readBits(int n) {
+        long v = 0;
+        while (n > 0) {
+            int byteIndex = (int) (bitPos >>> 3);
+            if (byteIndex >= end) {
+                throw new IllegalStateException("track block truncated");
+            }
+            int avail = 8 - (int) (bitPos & 7);
+            int take = Math.min(avail, n);
+            int bits = (buf[byteIndex] >>> (avail - take)) & ((1 << take) - 1);
+            v = (v << take) | bits;
+            bitPos += take;
+            n -= take;
+        }
+        return v;
+    }
+}
@@ -0,0 +1,41 @@
+package com.project.gis.trajectory;
+
+import java.util.Arrays;
+
+/**
+ * 按位写入（高位在前）
+ */
+class BitWriter {
+    private byte[] buf;
+    private long bitCount;
+
+    BitWriter(int initialBytes) {
+        buf = new byte[Math.max(16, initialBytes)];
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the low {@code n} bits of {@code value}, 0 <= n <= 64.
+     */
+    void writeBits(long value, int n) {
+        while (n > 0) {
+            int byteIndex = (int) (bitCount >>> 3);
+            if (byteIndex >= buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            int free = 8 - (int) (bitCount & 7);
+            int take = Math.min(free, n);
+            int bits = (int) ((value >>> (n - take)) & ((1 << take) - 1));
+            buf[byteIndex] |= (byte) (bits << (free - take));
+            bitCount += take;
+            n -= take;
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buf, (int) ((bitCount + 7) >>> 3));
+    }
+}
@@ -0,0 +1,170 @@
+package com.project.gis.trajectory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 轨迹块的列式压缩编码。
+ * <p>
+ * 块内四列分别编码后依次拼接（每列前带字节长度）：时间戳用 delta-of-delta 变长分桶，
+ * 经度 / 纬度 / 高度用相邻值的 XOR（Gorilla 方案）。规律采样的轨迹每个点通常只需几个字节。
+ */
+final class TrackBlockCodec {
+    private TrackBlockCodec() {
+    }
+
+    static byte[] encode(TrackSamples s) {
+        int n = s.size();
+        byte[][] columns = {
+                encodeTimes(s.timeColumn(), n),
+                encodeDoubles(s.lonColumn(), n),
+                encodeDoubles(s.latColumn(), n),
+                encodeDoubles(s.altColumn(), n) };
+        int total = 4;
+        for (byte[] c : columns) {
+            total += 4 + c.length;
+        }
+        ByteBuffer out = ByteBuffer.allocate(total);
+        out.putInt(n);
+        for (byte[] c : columns) {
+            out.putInt(c.length).put(c);
+        }
+        return out.array();
+    }
+
+    static TrackSamples decode(byte[] data) {
+        ByteBuffer in = ByteBuffer.wrap(data);
+        int n = in.getInt();
+        long[] time = new long[n];
+        double[] lon = new double[n], lat = new double[n], alt = new double[n];
+        decodeTimes(column(in, data), time, n);
+        decodeDoubles(column(in, data), lon, n);
+        decodeDoubles(column(in, data), lat, n);
+        decodeDoubles(column(in, data), alt, n);
+        TrackSamples s = new TrackSamples(n);
+        for (int i = 0; i < n; i++) {
+            s.add(time[i], lon[i], lat[i], alt[i]);
+        }
+        return s;
+    }
+
+    private static BitReader column(ByteBuffer in, byte[] data) {
+        int len = in.getInt();
+        BitReader r = new BitReader(data, in.position(), len);
+        in.position(in.position() + len);
+        return r;
+    }
+
+    private static byte[] encodeTimes(long[] t, int n) {
+        BitWriter w = new BitWriter(n * 2);
+        if (n == 0) {
+            return w.toByteArray();
+        }
+        w.writeBits(t[0], 64);
+        long prevDelta = 0;
+        for (int i = 1; i < n; i++) {
+            long delta = t[i] - t[i - 1];
+            long dod = delta - prevDelta;
+            if (dod == 0) {
+                w.writeBit(false);
+            } else if (dod >= -64 && dod <= 63) {
+                w.writeBits(0b10, 2);
+                w.writeBits(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                w.writeBits(0b110, 3);
+                w.writeBits(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                w.writeBits(0b1110, 4);
+                w.writeBits(dod, 12);
+            } else {
+                w.writeBits(0b1111, 4);
+                w.writeBits(dod, 64);
+            }
+            prevDelta = delta;
+        }
+        return w.toByteArray();
+    }
+
+    private static void decodeTimes(BitReader r, long[] t, int n) {
+        if (n == 0) {
+            return;
+        }
+        t[0] = r.readBits(64);
+        long prevDelta = 0;
+        for (int i = 1; i < n; i++) {
+            long dod;
+            if (!r.readBit()) {
+                dod = 0;
+            } else if (!r.readBit()) {
+                dod = signExtend(r.readBits(7), 7);
+            } else if (!r.readBit()) {
+                dod = signExtend(r.readBits(9), 9);
+            } else if (!r.readBit()) {
+                dod = signExtend(r.readBits(12), 12);
+            } else {
+                dod = r.readBits(64);
+            }
+            prevDelta += dod;
+            t[i] = t[i - 1] + prevDelta;
+        }
+    }
+
+    private static byte[] encodeDoubles(double[] v, int n) {
+        BitWriter w = new BitWriter(n * 4);
+        if (n == 0) {
+            return w.toByteArray();
+        }
+        long prev = Double.doubleToRawLongBits(v[0]);
+        w.writeBits(prev, 64);
+        int prevLeading = -1, prevTrailing = 0;
+        for (int i = 1; i < n; i++) {
+            long cur = Double.doubleToRawLongBits(v[i]);
+            long x = cur ^ prev;
+            prev = cur;
+            if (x == 0) {
+                w.writeBit(false);
+                continue;
+            }
+            w.writeBit(true);
+            int leading = Math.min(31, Long.numberOfLeadingZeros(x));
+            int trailing = Long.numberOfTrailingZeros(x);
+            if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+                // fits in the previous meaningful-bit window
+                w.writeBit(false);
+                w.writeBits(x >>> prevTrailing, 64 - prevLeading - prevTrailing);
+            } else {
+                int significant = 64 - leading - trailing;
+                w.writeBit(true);
+                w.writeBits(leading, 5);
+                w.writeBits(significant - 1, 6);
+                w.writeBits(x >>> trailing, significant);
+                prevLeading = leading;
+                prevTrailing = trailing;
+            }
+        }
+        return w.toByteArray();
+    }
+
+    private static void decodeDoubles(BitReader r, double[] v, int n) {
+        if (n == 0) {
+            return;
+        }
+        long prev = r.readBits(64);
+        v[0] = Double.longBitsToDouble(prev);
+        int leading = 0, trailing = 0;
+        for (int i = 1; i < n; i++) {
+            if (r.readBit()) {
+                if (r.readBit()) {
+                    leading = (int) r.readBits(5);
+                    int significant = (int) r.readBits(6) + 1;
+                    trailing = 64 - leading - significant;
+                }
+                prev ^= r.readBits(64 - leading - trailing) << trailing;
+            }
+            v[i] = Double.longBitsToDouble(prev);
+        }
+    }
+
+    private static long signExtend(long v, int bits) {
+        return (v << (64 - bits)) >> (64 - bits);
+    }
+}
@@ -0,0 +1,7 @@
+package com.project.gis.trajectory;
+
+/**
+ * 单个轨迹采样，时间为 epoch 毫秒，无高度时 alt 为 NaN
+ */
+public record TrackSample(long time, double lon, double lat, double alt) {
+}
@@ -0,0 +1,129 @@
+package com.project.gis.trajectory;
+
+import java.util.Arrays;
+
+/**
+ * 按列存放的轨迹采样 (t, lon, lat, alt)，时间为 epoch 毫秒，无高度时 alt 为 NaN
+ */
+public class TrackSamples {
+    private long[] time;
+    private double[] lon;
+    private double[] lat;
+    private double[] alt;
+    private int size;
+
+    public TrackSamples(int capacity) {
+        capacity = Math.max(1, capacity);
+        time = new long[capacity];
+        lon = new double[capacity];
+        lat = new double[capacity];
+        alt = new double[capacity];
+    }
+
+    public void add(long t, double lonValue, double latValue, double altValue) {
+        if (size == time.length) {
+            int n = size * 2;
+            time = Arrays.copyOf(time, n);
+            lon = Arrays.copyOf(lon, n);
+            lat = Arrays.copyOf(lat, n);
+            alt = Arrays.copyOf(alt, n);
+        }
+        time[size] = t;
+        lon[size] = lonValue;
+        lat[size] = latValue;
+        alt[size] = altValue;
+        size++;
+    }
+
+    public void addAll(TrackSamples other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.time[i], other.lon[i], other.lat[i], other.alt[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long time(int i) {
+        return time[i];
+    }
+
+    public double lon(int i) {
+        return lon[i];
+    }
+
+    public double lat(int i) {
+        return lat[i];
+    }
+
+    public double alt(int i) {
+        return alt[i];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Index of the first sample with time >= t (size() when there is none). Requires time order.
+     */
+    public int lowerBound(long t) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (time[mid] < t) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Stable sort by time; a no-op for the common already-ordered case.
+     */
+    void sortByTime() {
+        boolean sorted = true;
+        for (int i = 1; i < size && sorted; i++) {
+            sorted = time[i - 1] <= time[i];
+        }
+        if (sorted) {
+            return;
+        }
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(time[a], time[b]));
+        long[] t2 = new long[time.length];
+        double[] lon2 = new double[time.length], lat2 = new double[time.length], alt2 = new double[time.length];
+        for (int i = 0; i < size; i++) {
+            t2[i] = time[order[i]];
+            lon2[i] = lon[order[i]];
+            lat2[i] = lat[order[i]];
+            alt2[i] = alt[order[i]];
+        }
+        time = t2;
+        lon = lon2;
+        lat = lat2;
+        alt = alt2;
+    }
+
+    long[] timeColumn() {
+        return time;
+    }
+
+    double[] lonColumn() {
+        return lon;
+    }
+
+    double[] latColumn() {
+        return lat;
+    }
+
+    double[] altColumn() {
+        return alt;
+    }
+}
@@ -0,0 +1,85 @@
+package com.project.gis.trajectory;
+
+/**
+ * 按缩放级别简化轨迹（Douglas-Peucker）。
+ * <p>
+ * 点先投影到该级别的 Web Mercator 像素坐标，再按像素容差简化，所以同一容差在任何纬度、任何级别下看起来都一样粗细。
+ * 首尾采样总会保留，相邻块简化后仍能首尾相接。
+ */
+final class TrackSimplifier {
+    static final int MAX_ZOOM = 22;
+    private static final double MAX_MERCATOR_LAT = 85.05112878;
+
+    private TrackSimplifier() {
+    }
+
+    static TrackSamples simplify(TrackSamples s, int zoom, double tolerancePx) {
+        int n = s.size();
+        if (n <= 2) {
+            return copy(s, null);
+        }
+        double scale = 256.0 * Math.pow(2, Math.min(zoom, MAX_ZOOM));
+        double[] x = new double[n], y = new double[n];
+        double shift = 0.0;
+        for (int i = 0; i < n; i++) {
+            // unwrap longitude so a track crossing the antimeridian stays continuous
+            if (i > 0) {
+                double d = s.lon(i) - s.lon(i - 1);
+                if (d > 180.0) {
+                    shift -= 360.0;
+                } else if (d < -180.0) {
+                    shift += 360.0;
+                }
+            }
+            x[i] = (s.lon(i) + shift) / 360.0 * scale;
+            double phi = Math.toRadians(Math.max(-MAX_MERCATOR_LAT, Math.min(MAX_MERCATOR_LAT, s.lat(i))));
+            y[i] = Math.log(Math.tan(Math.PI / 4 + phi / 2)) / (2 * Math.PI) * scale;
+        }
+        boolean[] keep = new boolean[n];
+        keep[0] = keep[n - 1] = true;
+        double tol2 = tolerancePx * tolerancePx;
+        int[] stack = new int[2 * n];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        while (top > 0) {
+            int last = stack[--top], first = stack[--top];
+            double maxD = -1.0;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = segmentDistance2(x[i], y[i], x[first], y[first], x[last], y[last]);
+                if (d > maxD) {
+                    maxD = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && maxD > tol2) {
+                keep[index] = true;
+                stack[top++] = first;
+                stack[top++] = index;
+                stack[top++] = index;
+                stack[top++] = last;
+            }
+        }
+        return copy(s, keep);
+    }
+
+    private static double segmentDistance2(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax, dy = by - ay;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 == 0.0 ? 0.0 : ((px - ax) * dx + (py - ay) * dy) / len2;
+        t = Math.max(0.0, Math.min(1.0, t));
+        double ex = px - (ax + t * dx), ey = py - (ay + t * dy);
+        return ex * ex + ey * ey;
+    }
+
+    private static TrackSamples copy(TrackSamples s, boolean[] keep) {
+        TrackSamples out = new TrackSamples(keep == null ? s.size() : 16);
+        for (int i = 0; i < s.size(); i++) {
+            if (keep == null || keep[i]) {
+                out.add(s.time(i), s.lon(i), s.lat(i), s.alt(i));
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,323 @@
+package com.project.gis.trajectory;
+
+import com.project.gis.entity.JpaTrackBlock;
+import com.project.gis.repository.TrackBlockRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 标记点轨迹（移动目标的时间序列）。
+ * <p>
+ * 新采样先进入每个标记点的内存缓冲，攒满 {@code block-size} 个或空闲超过 {@code flush-ms} 后压缩成一个
+ * {@link JpaTrackBlock} 写入数据库，因此高频上报时每个采样只摊到一小部分 INSERT。查询时按时间范围取出相交的块解码，
+ * 再合并尚未落库的缓冲。缓冲清空后再空闲 {@code flush-ms} 就被丢弃，下次上报时重新从数据库读取已落库的终点。
+ * <p>
+ * 按缩放级别简化的版本以块为单位缓存：块一旦落库就不再改变，所以缓存无需失效，只按 LRU 淘汰。
+ */
+@Service
+public class TrajectoryService {
+    private final TrackBlockRepository blockRepository;
+    private final int blockSize;
+    private final long flushAfterMs;
+    private final double lodTolerancePx;
+    private final Map<Long, TrackBuffer> buffers = new ConcurrentHashMap<>();
+    // (block id, zoom tier) -> simplified samples
+    private final Map<Long, TrackSamples> lodCache;
+
+    public TrajectoryService(TrackBlockRepository blockRepository,
+                             @Value("${app.track.block-size:1024}") int blockSize,
+                             @Value("${app.track.flush-ms:10000}") long flushAfterMs,
+                             @Value("${app.track.lod-tolerance-px:1.0}") double lodTolerancePx,
+                             @Value("${app.track.lod-cache-entries:4096}") int lodCacheEntries) {
+        this.blockRepository = blockRepository;
+        this.blockSize = Math.max(2, blockSize);
+        this.flushAfterMs = flushAfterMs;
+        this.lodTolerancePx = lodTolerancePx;
+        this.lodCache = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, TrackSamples> eldest) {
+                return size() > lodCacheEntries;
+            }
+        });
+    }
+
+    /**
+     * Buffers the samples; those not newer than the already persisted part of the track are dropped.
+     *
+     * @return number of accepted samples
+     */
+    public int append(Long markerId, TrackSamples in) {
+        while (true) {
+            TrackBuffer b = buffers.get(markerId);
+            if (b == null) {
+                // queried outside computeIfAbsent, which would hold the map's bin lock for the round trip
+                long sealedUntil = blockRepository.findFirstByMarkerIdOrderByEndTimeDesc(markerId)
+                        .map(JpaTrackBlock::getEndTime).orElse(Long.MIN_VALUE);
+                b = buffers.computeIfAbsent(markerId, id -> new TrackBuffer(sealedUntil));
+            }
+            synchronized (b) {
+                if (b.retired) {
+                    // dropped by flushIdle or deleteTrack after the lookup
+                    continue;
+                }
+                long now = System.currentTimeMillis();
+                if (b.samples.size() == 0) {
+                    b.firstAppendAt = now;
+                }
+                b.lastAppendAt = now;
+                int accepted = 0;
+                for (int i = 0; i < in.size(); i++) {
+                    if (in.time(i) <= b.sealedUntil) {
+                        continue;
+                    }
+                    b.samples.add(in.time(i), in.lon(i), in.lat(i), in.alt(i));
+                    accepted++;
+                    if (b.samples.size() >= blockSize) {
+                        seal(markerId, b);
+                        b.firstAppendAt = System.currentTimeMillis();
+                    }
+                }
+                return accepted;
+            }
+        }
+    }
+
+    /**
+     * Samples with from <= t <= to, in time order.
+     */
+    public TrackSamples slice(Long markerId, long from, long to) {
+        TrackSamples out = new TrackSamples(256);
+        for (JpaTrackBlock blk : blockRepository
+                .findByMarkerIdAndStartTimeLessThanEqualAndEndTimeGreaterThanEqualOrderByStartTimeAsc(markerId, to, from)) {
+            copyRange(TrackBlockCodec.decode(blk.getData()), from, to, out);
+        }
+        TrackBuffer b = buffers.get(markerId);
+        if (b != null) {
+            synchronized (b) {
+                b.samples.sortByTime();
+                copyRange(b.samples, from, to, out);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Like {@link #slice} but simplified for display at the given web-map zoom level, so the number of points
+     * depends on how the track looks at that zoom rather than on how many samples were recorded.
+     */
+    public TrackSamples simplifiedSlice(Long markerId, long from, long to, int zoom) {
+        int tier = lodTier(zoom);
+        TrackSamples out = new TrackSamples(256);
+        for (JpaTrackBlock blk : blockRepository
+                .findByMarkerIdAndStartTimeLessThanEqualAndEndTimeGreaterThanEqualOrderByStartTimeAsc(markerId, to, from)) {
+            if (blk.getStartTime() >= from && blk.getEndTime() <= to) {
+                out.addAll(lod(blk, tier));
+            } else {
+                TrackSamples part = new TrackSamples(blk.getSampleCount());
+                copyRange(TrackBlockCodec.decode(blk.getData()), from, to, part);
+                out.addAll(TrackSimplifier.simplify(part, tier, lodTolerancePx));
+            }
+        }
+        TrackBuffer b = buffers.get(markerId);
+        if (b != null) {
+            TrackSamples head = new TrackSamples(64);
+            synchronized (b) {
+                b.samples.sortByTime();
+                copyRange(b.samples, from, to, head);
+            }
+            out.addAll(TrackSimplifier.simplify(head, tier, lodTolerancePx));
+        }
+        // one more pass over the joined pieces drops the block boundaries that did not need to be kept
+        return TrackSimplifier.simplify(out, tier, lodTolerancePx);
+    }
+
+    /**
+     * Position at {@code t}, linearly interpolated between the surrounding samples.
+     *
+     * @return empty when t lies outside the recorded track
+     */
+    public Optional<TrackSample> positionAt(Long markerId, long t) {
+        TrackSample before = null, after = null;
+        Optional<JpaTrackBlock> blockBefore = blockRepository
+                .findFirstByMarkerIdAndStartTimeLessThanEqualOrderByStartTimeDesc(markerId, t);
+        if (blockBefore.isPresent()) {
+            TrackSamples s = TrackBlockCodec.decode(blockBefore.get().getData());
+            int i = s.lowerBound(t + 1) - 1;
+            before = i >= 0 ? sample(s, i) : null;
+            after = i + 1 < s.size() ? sample(s, i + 1) : null;
+        }
+        if (after == null) {
+            Optional<JpaTrackBlock> blockAfter = blockRepository
+                    .findFirstByMarkerIdAndEndTimeGreaterThanEqualOrderByStartTimeAsc(markerId, t);
+            if (blockAfter.isPresent()) {
+                TrackSamples s = TrackBlockCodec.decode(blockAfter.get().getData());
+                int i = s.lowerBound(t);
+                after = i < s.size() ? sample(s, i) : null;
+            }
+        }
+        TrackBuffer b = buffers.get(markerId);
+        if (b != null) {
+            synchronized (b) {
+                b.samples.sortByTime();
+                int i = b.samples.lowerBound(t + 1) - 1;
+                if (i >= 0 && (before == null || b.samples.time(i) > before.time())) {
+                    before = sample(b.samples, i);
+                }
+                if (i + 1 < b.samples.size() && (after == null || b.samples.time(i + 1) < after.time())) {
+                    after = sample(b.samples, i + 1);
+                }
+            }
+        }
+        if (before != null && before.time() == t) {
+            return Optional.of(before);
+        }
+        if (before == null || after == null) {
+            return Optional.empty();
+        }
+        return Optional.of(interpolate(before, after, t));
+    }
+
+    @Transactional
+    public void deleteTrack(Long markerId) {
+        TrackBuffer b = buffers.remove(markerId);
+        if (b != null) {
+            synchronized (b) {
+                b.retired = true;
+            }
+        }
+        blockRepository.deleteByMarkerId(markerId);
+    }
+
+    /**
+     * Seals buffers that have been collecting for longer than {@code flush-ms}, bounding what a crash can lose, and
+     * drops empty buffers that received nothing for as long, so the map only holds recently active tracks.
+     */
+    @Scheduled(fixedDelayString = "${app.track.flush-ms:10000}")
+    public void flushIdle() {
+        long now = System.currentTimeMillis();
+        buffers.forEach((markerId, b) -> {
+            synchronized (b) {
+                if (b.samples.size() > 0 && now - b.firstAppendAt >= flushAfterMs) {
+                    seal(markerId, b);
+                }
+                if (b.samples.size() == 0 && now - b.lastAppendAt >= flushAfterMs) {
+                    b.retired = true;
+                    buffers.remove(markerId, b);
+                }
+            }
+        });
+    }
+
+    int bufferCount() {
+        return buffers.size();
+    }
+
+    @PreDestroy
+    public void flushAll() {
+        buffers.forEach((markerId, b) -> {
+            synchronized (b) {
+                if (b.samples.size() > 0) {
+                    seal(markerId, b);
+                }
+            }
+        });
+    }
+
+    // caller holds the buffer's lock
+    private void seal(Long markerId, TrackBuffer b) {
+        b.samples.sortByTime();
+        JpaTrackBlock blk = new JpaTrackBlock();
+        blk.setMarkerId(markerId);
+        blk.setStartTime(b.samples.time(0));
+        blk.setEndTime(b.samples.time(b.samples.size() - 1));
+        blk.setSampleCount(b.samples.size());
+        blk.setData(TrackBlockCodec.encode(b.samples));
+        blockRepository.save(blk);
+        for (int tier = 0; tier <= TrackSimplifier.MAX_ZOOM; tier += 2) {
+            lodCache.put(lodKey(blk.getId(), tier), TrackSimplifier.simplify(b.samples, tier, lodTolerancePx));
+        }
+        b.sealedUntil = blk.getEndTime();
+        b.samples.clear();
+    }
+
+    private TrackSamples lod(JpaTrackBlock blk, int tier) {
+        Long key = lodKey(blk.getId(), tier);
+        TrackSamples cached = lodCache.get(key);
+        if (cached == null) {
+            cached = TrackSimplifier.simplify(TrackBlockCodec.decode(blk.getData()), tier, lodTolerancePx);
+            lodCache.put(key, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Zoom levels are served from even tiers, rounding towards the finer one.
+     */
+    private static int lodTier(int zoom) {
+        int z = Math.max(0, Math.min(zoom, TrackSimplifier.MAX_ZOOM));
+        return Math.min(TrackSimplifier.MAX_ZOOM, z + (z & 1));
+    }
+
+    private static Long lodKey(long blockId, int tier) {
+        return blockId * 32 + tier;
+    }
+
+    private static void copyRange(TrackSamples src, long from, long to, TrackSamples out) {
+        for (int i = src.lowerBound(from); i < src.size() && src.time(i) <= to; i++) {
+            out.add(src.time(i), src.lon(i), src.lat(i), src.alt(i));
+        }
+    }
+
+    private static TrackSample sample(TrackSamples s, int i) {
+        return new TrackSample(s.time(i), s.lon(i), s.lat(i), s.alt(i));
+    }
+
+    private static TrackSample interpolate(TrackSample a, TrackSample b, long t) {
+        double f = (double) (t - a.time()) / (b.time() - a.time());
+        double dLon = b.lon() - a.lon();
+        // take the short way round across the antimeridian
+        if (dLon > 180.0) {
+            dLon -= 360.0;
+        } else if (dLon < -180.0) {
+            dLon += 360.0;
+        }
+        double lon = a.lon() + f * dLon;
+        if (lon > 180.0) {
+            lon -= 360.0;
+        } else if (lon < -180.0) {
+            lon += 360.0;
+        }
+        double alt;
+        if (Double.isNaN(a.alt())) {
+            alt = b.alt();
+        } else if (Double.isNaN(b.alt())) {
+            alt = a.alt();
+        } else {
+            alt = a.alt() + f * (b.alt() - a.alt());
+        }
+        return new TrackSample(t, lon, a.lat() + f * (b.lat() - a.lat()), alt);
+    }
+
+    private static final class TrackBuffer {
+        final TrackSamples samples = new TrackSamples(64);
+        // end time of the newest persisted block
+        long sealedUntil;
+        long firstAppendAt;
+        long lastAppendAt;
+        // removed from the map; appends have to look the buffer up again
+        boolean retired;
+
+        TrackBuffer(long sealedUntil) {
+            this.sealedUntil = sealedUntil;
+        }
+    }
+}
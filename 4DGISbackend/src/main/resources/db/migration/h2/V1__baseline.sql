@@ -0,0 +1,101 @@
+-- H2 copy of ../mysql/V1__baseline.sql for the in-memory profiles; keep the two in step.
+
+create table users (
+  id bigint not null generated by default as identity,
+  username varchar(50) not null,
+  password_hash varchar(255) not null,
+  email varchar(100),
+  phone varchar(20),
+  role varchar(255) not null,
+  created_at timestamp(6) with time zone not null,
+  updated_at timestamp(6) with time zone not null,
+  primary key (id),
+  constraint uk_username unique (username),
+  constraint uk_email unique (email),
+  constraint uk_phone unique (phone)
+);
+
+create table marker_types (
+  id bigint not null generated by default as identity,
+  type_name varchar(255) not null,
+  icon_url varchar(255),
+  default_color varchar(255),
+  creator_id bigint not null,
+  created_at timestamp(6) with time zone not null,
+  primary key (id),
+  constraint uk_type_name unique (type_name)
+);
+
+create table markers (
+  id bigint not null generated by default as identity,
+  title varchar(255) not null,
+  description text,
+  location text not null,
+  altitude float(53),
+  start_time timestamp(6) with time zone not null,
+  end_time timestamp(6) with time zone,
+  marker_type_id bigint not null,
+  creator_id bigint not null,
+  owner_id bigint not null,
+  visibility varchar(255) not null,
+  created_at timestamp(6) with time zone not null,
+  updated_at timestamp(6) with time zone not null,
+  primary key (id)
+);
+create index idx_creator_id on markers (creator_id);
+create index idx_owner_id on markers (owner_id);
+create index idx_type_id on markers (marker_type_id);
+create index idx_time on markers (start_time, end_time);
+
+create table marker_collaborators (
+  marker_id bigint not null,
+  user_id bigint not null,
+  permission varchar(255) not null,
+  granted_at timestamp(6) with time zone not null,
+  primary key (marker_id, user_id)
+);
+create index idx_collaborator_user on marker_collaborators (user_id);
+
+create table tags (
+  id bigint not null generated by default as identity,
+  tag_name varchar(255) not null,
+  creator_id bigint not null,
+  created_at timestamp(6) with time zone not null,
+  primary key (id),
+  constraint uk_tag_name unique (tag_name)
+);
+
+create table marker_tags (
+  marker_id bigint not null,
+  tag_id bigint not null,
+  primary key (marker_id, tag_id)
+);
+create index idx_marker_tag_tag on marker_tags (tag_id);
+
+create table attachments (
+  id bigint not null generated by default as identity,
+  marker_id bigint not null,
+  file_name varchar(255) not null,
+  file_path varchar(255) not null,
+  file_type varchar(255),
+  uploader_id bigint not null,
+  uploaded_at timestamp(6) with time zone not null,
+  primary key (id)
+);
+create index idx_marker_id on attachments (marker_id);
+
+create table friend_requests (
+  id bigint not null generated by default as identity,
+  requester_id bigint not null,
+  recipient_id bigint not null,
+  created_at timestamp(6) with time zone not null,
+  primary key (id),
+  constraint uk_friend_request unique (requester_id, recipient_id)
+);
+
+create table friendships (
+  user1_id bigint not null,
+  user2_id bigint not null,
+  created_at timestamp(6) with time zone not null,
+  primary key (user1_id, user2_id)
+);
@@ -0,0 +1,11 @@
+-- H2 copy of ../mysql/V3__change_log.sql.
+
+create table change_log (
+  id bigint generated by default as identity,
+  kind varchar(32) not null,
+  entity_id bigint not null,
+  origin varchar(64) not null,
+  created_at timestamp(6) with time zone not null,
+  primary key (id)
+);
+create index idx_change_log_created on change_log (created_at);
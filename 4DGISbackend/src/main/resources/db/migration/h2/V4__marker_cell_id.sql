@@ -0,0 +1,4 @@
+-- H2 copy of ../mysql/V4__marker_cell_id.sql.
+
+alter table markers add column cell_id bigint;
+create index idx_cell_id on markers (cell_id);
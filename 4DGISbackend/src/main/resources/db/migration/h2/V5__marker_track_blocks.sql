@@ -0,0 +1,12 @@
+-- H2 copy of ../mysql/V5__marker_track_blocks.sql.
+
+create table marker_track_blocks (
+  id bigint not null generated by default as identity,
+  marker_id bigint not null,
+  start_time bigint not null,
+  end_time bigint not null,
+  sample_count integer not null,
+  data blob not null,
+  primary key (id)
+);
+create index idx_track_marker_time on marker_track_blocks (marker_id, start_time);
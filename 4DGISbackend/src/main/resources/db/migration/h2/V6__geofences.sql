@@ -0,0 +1,27 @@
+-- H2 copy of ../mysql/V6__geofences.sql.
+
+create table geofences (
+  id bigint not null generated by default as identity,
+  owner_id bigint not null,
+  name varchar(255) not null,
+  geometry clob not null,
+  marker_type_id bigint,
+  active_from timestamp(6) with time zone,
+  active_until timestamp(6) with time zone,
+  created_at timestamp(6) with time zone not null,
+  primary key (id)
+);
+create index idx_geofence_owner on geofences (owner_id);
+
+create table geofence_events (
+  id bigint not null generated by default as identity,
+  geofence_id bigint not null,
+  owner_id bigint not null,
+  marker_id bigint not null,
+  longitude float(53) not null,
+  latitude float(53) not null,
+  occurred_at timestamp(6) with time zone not null,
+  primary key (id)
+);
+create index idx_geofence_event_owner on geofence_events (owner_id, id);
+create index idx_geofence_event_fence on geofence_events (geofence_id);
@@ -0,0 +1,104 @@
+-- Baseline schema: the tables as ddl-auto created them before Flyway took over, plus the secondary indexes the
+-- hand-written schema script had. Databases that already have these tables are baselined at version 1 instead
+-- (spring.flyway.baseline-on-migrate), so this script only runs on an empty schema and must not change: every
+-- later table or column goes into a new V<n>__*.sql here and in ../h2, which both kinds of database then run.
+
+create table users (
+  id bigint not null auto_increment,
+  username varchar(50) not null,
+  password_hash varchar(255) not null,
+  email varchar(100),
+  phone varchar(20),
+  role varchar(255) not null,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (id),
+  constraint uk_username unique (username),
+  constraint uk_email unique (email),
+  constraint uk_phone unique (phone)
+) engine=InnoDB default charset=utf8mb4;
+
+create table marker_types (
+  id bigint not null auto_increment,
+  type_name varchar(255) not null,
+  icon_url varchar(255),
+  default_color varchar(255),
+  creator_id bigint not null,
+  created_at datetime(6) not null,
+  primary key (id),
+  constraint uk_type_name unique (type_name)
+) engine=InnoDB default charset=utf8mb4;
+
+create table markers (
+  id bigint not null auto_increment,
+  title varchar(255) not null,
+  description text,
+  location text not null,
+  altitude float(53),
+  start_time datetime(6) not null,
+  end_time datetime(6),
+  marker_type_id bigint not null,
+  creator_id bigint not null,
+  owner_id bigint not null,
+  visibility varchar(255) not null,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_creator_id on markers (creator_id);
+create index idx_owner_id on markers (owner_id);
+create index idx_type_id on markers (marker_type_id);
+create index idx_time on markers (start_time, end_time);
+
+create table marker_collaborators (
+  marker_id bigint not null,
+  user_id bigint not null,
+  permission varchar(255) not null,
+  granted_at datetime(6) not null,
+  primary key (marker_id, user_id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_collaborator_user on marker_collaborators (user_id);
+
+create table tags (
+  id bigint not null auto_increment,
+  tag_name varchar(255) not null,
+  creator_id bigint not null,
+  created_at datetime(6) not null,
+  primary key (id),
+  constraint uk_tag_name unique (tag_name)
+) engine=InnoDB default charset=utf8mb4;
+
+create table marker_tags (
+  marker_id bigint not null,
+  tag_id bigint not null,
+  primary key (marker_id, tag_id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_marker_tag_tag on marker_tags (tag_id);
+
+create table attachments (
+  id bigint not null auto_increment,
+  marker_id bigint not null,
+  file_name varchar(255) not null,
+  file_path varchar(255) not null,
+  file_type varchar(255),
+  uploader_id bigint not null,
+  uploaded_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_marker_id on attachments (marker_id);
+
+create table friend_requests (
+  id bigint not null auto_increment,
+  requester_id bigint not null,
+  recipient_id bigint not null,
+  created_at datetime(6) not null,
+  primary key (id),
+  constraint uk_friend_request unique (requester_id, recipient_id)
+) engine=InnoDB default charset=utf8mb4;
+
+create table friendships (
+  user1_id bigint not null,
+  user2_id bigint not null,
+  created_at datetime(6) not null,
+  primary key (user1_id, user2_id)
+) engine=InnoDB default charset=utf8mb4;
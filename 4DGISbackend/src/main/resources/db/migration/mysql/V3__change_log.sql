@@ -0,0 +1,11 @@
+-- Cache invalidation bus between backend nodes, see ChangeLogTailer. Rows are pruned after app.change-log.retention.
+
+create table change_log (
+  id bigint not null auto_increment,
+  kind varchar(32) not null,
+  entity_id bigint not null,
+  origin varchar(64) not null,
+  created_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_change_log_created on change_log (created_at);
@@ -0,0 +1,5 @@
+-- Z-order cell of markers.location for B-tree bbox scans (GeoCell). Existing rows are left null and filled in at
+-- startup by MarkerService.backfillCellIds.
+
+alter table markers add column cell_id bigint;
+create index idx_cell_id on markers (cell_id);
@@ -0,0 +1,12 @@
+-- Marker trajectories as compressed columnar blocks, see TrackBlockCodec.
+
+create table marker_track_blocks (
+  id bigint not null auto_increment,
+  marker_id bigint not null,
+  start_time bigint not null,
+  end_time bigint not null,
+  sample_count integer not null,
+  data mediumblob not null,
+  primary key (id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_track_marker_time on marker_track_blocks (marker_id, start_time);
@@ -0,0 +1,27 @@
+-- User geofences and the entry events GeofenceService records for them.
+
+create table geofences (
+  id bigint not null auto_increment,
+  owner_id bigint not null,
+  name varchar(255) not null,
+  geometry mediumtext not null,
+  marker_type_id bigint,
+  active_from datetime(6),
+  active_until datetime(6),
+  created_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_geofence_owner on geofences (owner_id);
+
+create table geofence_events (
+  id bigint not null auto_increment,
+  geofence_id bigint not null,
+  owner_id bigint not null,
+  marker_id bigint not null,
+  longitude float(53) not null,
+  latitude float(53) not null,
+  occurred_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_geofence_event_owner on geofence_events (owner_id, id);
+create index idx_geofence_event_fence on geofence_events (geofence_id);
@@ -0,0 +1,23 @@
+-- markers table of one shard (app.shards.*); ids are assigned by the application, see MarkerIdGenerator
+create table markers (
+  id bigint not null,
+  title varchar(255) not null,
+  description text,
+  location text not null,
+  cell_id bigint,
+  altitude float(53),
+  start_time datetime(6) not null,
+  end_time datetime(6),
+  marker_type_id bigint not null,
+  creator_id bigint not null,
+  owner_id bigint not null,
+  visibility varchar(255) not null,
+  created_at datetime(6) not null,
+  updated_at datetime(6) not null,
+  primary key (id)
+) engine=InnoDB default charset=utf8mb4;
+create index idx_cell_id on markers (cell_id);
+create index idx_creator_id on markers (creator_id);
+create index idx_owner_id on markers (owner_id);
+create index idx_type_id on markers (marker_type_id);
+create index idx_time on markers (start_time, end_time);
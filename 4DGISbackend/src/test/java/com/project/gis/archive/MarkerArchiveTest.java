@@ -0,0 +1,109 @@
+package com.project.gis.archive;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.spatial.Wkt;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MarkerArchiveTest {
+    private static final OffsetDateTime START = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void columnFilterRunsBeforeEntitiesAreBuilt() throws Exception {
+        MarkerArchive archive = open();
+        List<JpaMarker> markers = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            markers.add(marker(id, id % 10 == 0 ? 7L : 8L, id % 2 == 0 ? 2L : 3L));
+        }
+        archive.write(markers);
+
+        AtomicInteger built = new AtomicInteger();
+        List<JpaMarker> found = archive.find(null, Long.MIN_VALUE, Long.MAX_VALUE,
+                (typeId, ownerId, creatorId, visibility) -> ownerId == 7L && typeId == 2L,
+                m -> {
+                    built.incrementAndGet();
+                    return true;
+                });
+
+        assertThat(found).extracting(JpaMarker::getId).containsExactly(10L, 20L, 30L, 40L, 50L, 60L, 70L, 80L, 90L,
+                100L);
+        assertThat(built).hasValue(10);
+    }
+
+    @Test
+    void deletedMarkersAreGoneHereAndOnOtherNodes() throws Exception {
+        MarkerArchive archive = open();
+        archive.write(List.of(marker(1, 7L, 2L), marker(2, 7L, 2L)));
+        MarkerArchive other = open();
+
+        archive.delete(1);
+
+        assertThat(archive.get(1)).isEmpty();
+        assertThat(archive.get(2)).isPresent();
+        assertThat(archive.find(null, Long.MIN_VALUE, Long.MAX_VALUE, (t, o, c, v) -> true, m -> true))
+                .extracting(JpaMarker::getId).containsExactly(2L);
+        assertThat(other.get(1)).isPresent();
+        other.refresh();
+        assertThat(other.get(1)).isEmpty();
+        // tombstones survive a restart
+        assertThat(open().get(1)).isEmpty();
+    }
+
+    @Test
+    void idLookupReadsOnlyTheIdColumn() throws Exception {
+        MarkerArchive archive = open();
+        // overlapping id ranges, as segments cut by end time have
+        archive.write(List.of(marker(1, 7L, 2L), marker(3, 7L, 2L), marker(5, 7L, 2L)));
+        archive.write(List.of(marker(2, 7L, 2L), marker(6, 7L, 2L)));
+        // a broken checksum fails any read of the whole segment
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "seg-*.col")) {
+            for (Path file : files) {
+                byte[] data = Files.readAllBytes(file);
+                data[data.length - 1] ^= 1;
+                Files.write(file, data);
+            }
+        }
+
+        MarkerArchive reopened = open();
+        assertThat(reopened.get(4)).isEmpty();
+        assertThatThrownBy(() -> reopened.get(3)).isInstanceOf(UncheckedIOException.class);
+    }
+
+    private MarkerArchive open() throws Exception {
+        MarkerArchive archive = new MarkerArchive(dir.toString(), new SimpleMeterRegistry());
+        archive.open();
+        return archive;
+    }
+
+    private static JpaMarker marker(long id, long ownerId, long typeId) {
+        JpaMarker m = new JpaMarker();
+        m.setId(id);
+        m.setTitle("m" + id);
+        m.setLocation(Wkt.point(10 + id * 0.01, 20));
+        m.setStartTime(START);
+        m.setEndTime(START.plusDays(1));
+        m.setMarkerTypeId(typeId);
+        m.setOwnerId(ownerId);
+        m.setCreatorId(ownerId);
+        m.setVisibility("public");
+        m.setCreatedAt(START);
+        m.setUpdatedAt(START);
+        return m;
+    }
+}
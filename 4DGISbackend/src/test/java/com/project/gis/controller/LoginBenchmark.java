@@ -0,0 +1,140 @@
+package com.project.gis.controller;
+
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.dto.LoginRequest;
+import com.project.gis.entity.JpaUser;
+import com.project.gis.repository.UserRepository;
+import com.project.gis.security.JwtService;
+import com.project.gis.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Closed-loop logins per second through AuthController.login. The identity lookup is stubbed; BCrypt runs for real at
+ * the default strength. The password check on the verifier pool (the current path) is compared with the check on the
+ * calling request thread (the previous path), reporting throughput, latency and 503 rejections.
+ * <p>
+ * Not part of the default test run; run it on its own with
+ * {@code mvn test -Dtest=LoginBenchmark -Dlogin.clients=64 -Dlogin.seconds=10}.
+ */
+class LoginBenchmark {
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private final int clients = Integer.getInteger("login.clients", 4 * Runtime.getRuntime().availableProcessors());
+    private final long seconds = Long.getLong("login.seconds", 10);
+    private UserService userService;
+    private AuthController controller;
+
+    @BeforeEach
+    void setUp() {
+        JpaUser user = new JpaUser();
+        user.setId(1L);
+        user.setUsername("storm");
+        user.setPasswordHash(new BCryptPasswordEncoder().encode(PASSWORD));
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.findByIdentity("storm")).thenReturn(List.of(user));
+        userService = new UserService(userRepository, mock(ChangeLog.class), mock(EntityManagerFactory.class),
+                new SimpleMeterRegistry(), 0, 128);
+        controller = new AuthController(userService, new JwtService("", 3600000));
+    }
+
+    @AfterEach
+    void tearDown() {
+        userService.stop();
+    }
+
+    @Test
+    void loginsPerSecond() throws Exception {
+        LoginRequest req = new LoginRequest();
+        req.setIdentity("storm");
+        req.setPassword(PASSWORD);
+
+        // warm-up: JIT, BCrypt tables, thread pools
+        run("warm-up", 1, r -> controller.login(r).join(), req);
+        Result executor = run("verifier pool", seconds, r -> controller.login(r).join(), req);
+        Result inline = run("request thread", seconds, r -> {
+            JpaUser u = userService.findByIdentity(r.getIdentity()).orElseThrow();
+            return userService.checkPassword(u, r.getPassword())
+                    ? ResponseEntity.ok().build() : ResponseEntity.status(401).build();
+        }, req);
+
+        assertThat(executor.ok).isPositive();
+        assertThat(inline.ok).isPositive();
+    }
+
+    private Result run(String label, long durationSeconds, Function<LoginRequest, ResponseEntity<?>> login,
+                       LoginRequest req) throws Exception {
+        long deadline = System.nanoTime() + durationSeconds * 1_000_000_000L;
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Result>> futures = new ArrayList<>();
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            futures.add(pool.submit(() -> {
+                Result r = new Result();
+                while (System.nanoTime() < deadline) {
+                    long t = System.nanoTime();
+                    int status = login.apply(req).getStatusCode().value();
+                    r.record(status, System.nanoTime() - t);
+                }
+                return r;
+            }));
+        }
+        Result total = new Result();
+        for (Future<Result> f : futures) {
+            total.merge(f.get());
+        }
+        pool.shutdown();
+        double elapsed = (System.nanoTime() - startedAt) / 1e9;
+        long[] lat = Arrays.copyOf(total.latencies, total.count);
+        Arrays.sort(lat);
+        System.out.printf("%-15s clients=%d logins/s=%.1f ok=%d rejected=%d p50=%.1fms p99=%.1fms%n", label, clients,
+                total.ok / elapsed, total.ok, total.rejected,
+                lat.length == 0 ? 0 : lat[lat.length / 2] / 1e6,
+                lat.length == 0 ? 0 : lat[(int) (lat.length * 0.99)] / 1e6);
+        return total;
+    }
+
+    private static final class Result {
+        long ok;
+        long rejected;
+        int count;
+        long[] latencies = new long[1024];
+
+        void record(int status, long nanos) {
+            if (status == 200) {
+                ok++;
+            } else if (status == 503) {
+                rejected++;
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        void merge(Result other) {
+            ok += other.ok;
+            rejected += other.rejected;
+            for (int i = 0; i < other.count; i++) {
+                record(-1, other.latencies[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.project.gis.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MarkerJsonWriterTest {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void completedBodyIsClosedJson() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MarkerJsonWriter.stream(mapper, response, w -> {
+            w.generator().writeStartArray();
+            w.generator().writeString("a");
+            w.generator().writeEndArray();
+        });
+
+        assertThat(mapper.readValue(response.getContentAsString(), new TypeReference<List<String>>() {
+        })).containsExactly("a");
+    }
+
+    @Test
+    void earlyFailureLeavesTheResponseUncommitted() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThatThrownBy(() -> MarkerJsonWriter.stream(mapper, response, w -> {
+            w.generator().writeStartArray();
+            w.generator().writeString("a");
+            throw new IOException("shard down");
+        })).hasMessage("shard down");
+
+        // nothing reached the container, which can still reset the buffer and send a 500
+        assertThat(response.isCommitted()).isFalse();
+        assertThat(response.getContentAsByteArray()).isEmpty();
+    }
+
+    @Test
+    void lateFailureLeavesTheDocumentUnterminated() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        assertThatThrownBy(() -> MarkerJsonWriter.stream(mapper, response, w -> {
+            w.generator().writeStartArray();
+            for (int i = 0; i < 20_000; i++) {
+                w.generator().writeString("row " + i);
+            }
+            throw new IOException("shard down");
+        })).hasMessage("shard down");
+
+        String body = response.getContentAsString();
+        assertThat(response.isCommitted()).isTrue();
+        assertThat(body).startsWith("[\"row 0\"").doesNotEndWith("]");
+        assertThatThrownBy(() -> mapper.readValue(body, List.class)).isInstanceOf(IOException.class);
+    }
+}
@@ -0,0 +1,179 @@
+package com.project.gis.history;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.shard.MarkerStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RevisionLogTest {
+    @TempDir
+    Path dir;
+
+    private final List<RevisionLog> opened = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (RevisionLog log : opened) {
+            log.close();
+        }
+    }
+
+    @Test
+    void newLogIsSeededWithExistingMarkersAsOfTheirLastUpdate() throws Exception {
+        OffsetDateTime t1 = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+        OffsetDateTime t2 = t1.plusHours(1);
+        MarkerStore store = mock(MarkerStore.class);
+        when(store.findPageAfter(eq(0L), anyInt())).thenReturn(List.of(marker(2, "b", t2), marker(1, "a", t1)));
+        RevisionLog log = open(store, 1 << 20, 10_000, 8);
+
+        assertThat(log.asOf(t1.toInstant().toEpochMilli())).containsOnlyKeys(1L);
+        assertThat(log.asOf(System.currentTimeMillis())).containsOnlyKeys(1L, 2L);
+        assertThat(log.revisionsOf(2)).singleElement().satisfies(r -> {
+            assertThat(r.op()).isEqualTo(MarkerRevision.Op.CREATE);
+            assertThat(r.revision()).isEqualTo(2);
+            assertThat(r.recordedAt()).isEqualTo(t2.toInstant().toEpochMilli());
+        });
+    }
+
+    @Test
+    void asOfReplaysTheLogAfterTheNearestSnapshot() throws Exception {
+        RevisionLog log = open(mock(MarkerStore.class), 1 << 20, 3, 8);
+        List<MarkerRevision> written = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            written.add(log.append(i == 1 ? MarkerRevision.Op.CREATE : MarkerRevision.Op.UPDATE,
+                    marker(1, "v" + i, null)));
+            Thread.sleep(2);
+        }
+        written.add(log.appendDelete(1L));
+        awaitSnapshots(2);
+        log.close();
+        opened.remove(log);
+
+        RevisionLog reopened = open(mock(MarkerStore.class), 1 << 20, 3, 8);
+        for (int i = 0; i < 8; i++) {
+            assertThat(reopened.asOf(written.get(i).recordedAt()).get(1L).title()).isEqualTo("v" + (i + 1));
+        }
+        assertThat(reopened.asOf(written.get(8).recordedAt())).isEmpty();
+        assertThat(reopened.asOf(written.get(0).recordedAt() - 1)).isEmpty();
+    }
+
+    @Test
+    void revisionsOfReadsOneMarkerAcrossSegmentsAndRestarts() throws Exception {
+        RevisionLog log = open(mock(MarkerStore.class), 400, 10_000, 8);
+        for (int i = 0; i < 30; i++) {
+            log.append(i < 3 ? MarkerRevision.Op.CREATE : MarkerRevision.Op.UPDATE, marker(i % 3 + 1, "t" + i, null));
+        }
+        log.appendDelete(2L);
+        assertThat(segmentCount()).isGreaterThan(3);
+
+        assertThat(log.revisionsOf(2)).extracting(MarkerRevision::title)
+                .containsExactly("t1", "t4", "t7", "t10", "t13", "t16", "t19", "t22", "t25", "t28", null);
+        log.close();
+        opened.remove(log);
+
+        RevisionLog reopened = open(mock(MarkerStore.class), 400, 10_000, 8);
+        assertThat(reopened.revisionsOf(3)).extracting(MarkerRevision::revision)
+                .containsExactly(3L, 6L, 9L, 12L, 15L, 18L, 21L, 24L, 27L, 30L);
+        assertThat(reopened.revisionsOf(2)).last().extracting(MarkerRevision::op).isEqualTo(MarkerRevision.Op.DELETE);
+        assertThat(reopened.revisionsOf(4)).isEmpty();
+    }
+
+    @Test
+    void tornTailIsCutOffOnReopen() throws Exception {
+        RevisionLog log = open(mock(MarkerStore.class), 1 << 20, 10_000, 8);
+        log.append(MarkerRevision.Op.CREATE, marker(1, "a", null));
+        log.append(MarkerRevision.Op.UPDATE, marker(1, "b", null));
+        log.append(MarkerRevision.Op.UPDATE, marker(1, "c", null));
+        log.close();
+        opened.remove(log);
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(p -> p.getFileName().toString().startsWith("rev-")).findFirst().orElseThrow();
+        }
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            // half of the last record made it to disk
+            ch.truncate(ch.size() - 20);
+        }
+
+        RevisionLog reopened = open(mock(MarkerStore.class), 1 << 20, 10_000, 8);
+        assertThat(reopened.revisionsOf(1)).extracting(MarkerRevision::title).containsExactly("a", "b");
+        assertThat(reopened.append(MarkerRevision.Op.UPDATE, marker(1, "d", null)).revision()).isEqualTo(3);
+        assertThat(reopened.revisionsOf(1)).extracting(MarkerRevision::title).containsExactly("a", "b", "d");
+        assertThat(reopened.asOf(Long.MAX_VALUE).get(1L).title()).isEqualTo("d");
+    }
+
+    @Test
+    void onlyTheNewestSnapshotsAreKept() throws Exception {
+        RevisionLog log = open(mock(MarkerStore.class), 1 << 20, 2, 2);
+        for (int i = 1; i <= 10; i++) {
+            log.append(MarkerRevision.Op.CREATE, marker(i, "m" + i, null));
+        }
+        awaitSnapshotAt(10);
+
+        assertThat(snapshots()).containsExactly("snap-00000000000000000008.bin", "snap-00000000000000000010.bin");
+        assertThat(log.asOf(Long.MAX_VALUE)).hasSize(10);
+    }
+
+    private RevisionLog open(MarkerStore store, long segmentBytes, int snapshotEvery, int retention)
+            throws IOException {
+        RevisionLog log = new RevisionLog(dir.toString(), segmentBytes, snapshotEvery, retention, false, store);
+        log.open();
+        opened.add(log);
+        return log;
+    }
+
+    private void awaitSnapshots(int count) throws Exception {
+        for (int i = 0; i < 500 && snapshots().size() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertThat(snapshots()).hasSizeGreaterThanOrEqualTo(count);
+    }
+
+    // the snapshot at the given revision is written last, and the ones beyond the retention are deleted right after
+    private void awaitSnapshotAt(long revision) throws Exception {
+        String name = String.format("snap-%020d.bin", revision);
+        for (int i = 0; i < 500 && !(snapshots().contains(name) && snapshots().size() <= 2); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private List<String> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).filter(n -> n.startsWith("snap-") && n.endsWith(".bin"))
+                    .sorted().toList();
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("rev-")).count();
+        }
+    }
+
+    private static JpaMarker marker(long id, String title, OffsetDateTime updatedAt) {
+        JpaMarker m = new JpaMarker();
+        m.setId(id);
+        m.setTitle(title);
+        m.setLocation("POINT(" + id + " 1)");
+        m.setVisibility("public");
+        m.setUpdatedAt(updatedAt);
+        return m;
+    }
+}
@@ -0,0 +1,118 @@
+package com.project.gis.index;
+
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.repository.ChangeLogRepository;
+import com.project.gis.shard.MarkerStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IndexSnapshotsTest {
+    private static final OffsetDateTime START = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    private ChangeLogRepository changeLog;
+    private MarkerStore store;
+    private IndexSnapshots snapshots;
+
+    @BeforeEach
+    void setUp() {
+        changeLog = mock(ChangeLogRepository.class);
+        store = mock(MarkerStore.class);
+        when(changeLog.maxId()).thenReturn(5L);
+        snapshots = new IndexSnapshots(dir.toString(), true, Duration.ofHours(1), changeLog, store);
+    }
+
+    @Test
+    void restoreReadsBackWhatWasWritten() throws Exception {
+        List<IndexedMarker> entries = List.of(
+                new IndexedMarker(1, 10.5, -20.25, Double.NaN, 1_000, Long.MAX_VALUE, 3, 7, 7, "public"),
+                new IndexedMarker(2, -179.9, 89.9, 1234.5, 2_000, 3_000, 4, 8, 9, "private"),
+                new IndexedMarker(3, 0, 0, 0, 0, 1, 0, 0, 0, "friends"));
+        snapshots.write(entries, System.currentTimeMillis());
+
+        MarkerIndex index = new MarkerIndex(store, snapshots);
+        assertThat(snapshots.restore(index)).isTrue();
+
+        assertThat(index.size()).isEqualTo(3);
+        for (IndexedMarker e : entries) {
+            assertThat(index.get(e.id())).isEqualTo(e);
+        }
+    }
+
+    @Test
+    void corruptSnapshotIsRejected() throws Exception {
+        snapshots.write(List.of(entry(1), entry(2)), System.currentTimeMillis());
+        Path file = dir.resolve("markers.snap");
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(file, bytes);
+
+        MarkerIndex index = new MarkerIndex(store, snapshots);
+        assertThat(snapshots.restore(index)).isFalse();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void snapshotOlderThanTheChangeLogRetentionIsNotUsed() throws Exception {
+        // the replay margin of a minute has to fit into the one hour of retained change log as well
+        snapshots.write(List.of(entry(1)), System.currentTimeMillis() - Duration.ofMinutes(59).toMillis());
+        assertThat(snapshots.restore(new MarkerIndex(store, snapshots))).isFalse();
+
+        snapshots.write(List.of(entry(1)), System.currentTimeMillis() - Duration.ofMinutes(57).toMillis());
+        assertThat(snapshots.restore(new MarkerIndex(store, snapshots))).isTrue();
+    }
+
+    @Test
+    void snapshotAheadOfTheChangeLogBelongsToAnotherDatabase() throws Exception {
+        snapshots.write(List.of(entry(1)), System.currentTimeMillis());
+        when(changeLog.maxId()).thenReturn(4L);
+
+        assertThat(snapshots.restore(new MarkerIndex(store, snapshots))).isFalse();
+    }
+
+    @Test
+    void catchUpReloadsChangedMarkersAndDropsDeletedOnes() throws Exception {
+        snapshots.write(List.of(entry(1), entry(2), entry(3)), System.currentTimeMillis());
+        // 1 moved, 2 was deleted, 4 is new
+        when(changeLog.entityIdsSince(eq("MARKER"), any())).thenReturn(List.of(1L, 2L, 4L));
+        when(store.findAllById(anyList())).thenReturn(List.of(marker(1, "POINT(50 50)"), marker(4, "POINT(1 2)")));
+
+        MarkerIndex index = new MarkerIndex(store, snapshots);
+        assertThat(snapshots.restore(index)).isTrue();
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.get(1L).lon()).isEqualTo(50.0);
+        assertThat(index.get(2L)).isNull();
+        assertThat(index.get(3L)).isEqualTo(entry(3));
+        assertThat(index.get(4L).lat()).isEqualTo(2.0);
+    }
+
+    private static IndexedMarker entry(long id) {
+        return new IndexedMarker(id, id, id, Double.NaN, 0, Long.MAX_VALUE, 1, 1, 1, "public");
+    }
+
+    private static JpaMarker marker(long id, String location) {
+        JpaMarker m = new JpaMarker();
+        m.setId(id);
+        m.setLocation(location);
+        m.setStartTime(START);
+        m.setVisibility("public");
+        return m;
+    }
+}
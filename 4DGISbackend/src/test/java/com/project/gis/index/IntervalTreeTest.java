@@ -0,0 +1,91 @@
+package com.project.gis.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntervalTreeTest {
+
+    @Test
+    void stabbingMatchesABruteForceScanThroughInsertsAndRemovals() {
+        IntervalTree tree = new IntervalTree();
+        Map<Long, IndexedMarker> live = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(3_000);
+            IndexedMarker old = live.remove(id);
+            if (old != null) {
+                tree.remove(old);
+            } else {
+                long start = random.nextInt(10_000);
+                long end = random.nextInt(10) == 0 ? Long.MAX_VALUE : start + 1 + random.nextInt(500);
+                IndexedMarker m = marker(id, start, end);
+                live.put(id, m);
+                tree.insert(m);
+            }
+            if (i % 1_000 == 0) {
+                long t = random.nextInt(11_000);
+                assertThat(ids(tree, t)).containsExactlyInAnyOrderElementsOf(
+                        live.values().stream().filter(m -> m.activeAt(t)).map(IndexedMarker::id).toList());
+            }
+        }
+        assertThat(tree.size()).isEqualTo(live.size());
+    }
+
+    @Test
+    void lifetimeIsHalfOpen() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert(marker(1, 100, 200));
+
+        assertThat(ids(tree, 99)).isEmpty();
+        assertThat(ids(tree, 100)).containsExactly(1L);
+        assertThat(ids(tree, 199)).containsExactly(1L);
+        assertThat(ids(tree, 200)).isEmpty();
+    }
+
+    @Test
+    void openEndedMarkersStayActive() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert(marker(1, 100, Long.MAX_VALUE));
+        tree.insert(marker(2, 50, 150));
+
+        assertThat(ids(tree, Long.MAX_VALUE - 1)).containsExactly(1L);
+        List<Long> overlapping = new ArrayList<>();
+        tree.overlap(1_000, 2_000, m -> overlapping.add(m.id()));
+        assertThat(overlapping).containsExactly(1L);
+    }
+
+    @Test
+    void duplicateStartsAreKeptApartById() {
+        IntervalTree tree = new IntervalTree();
+        for (long id = 1; id <= 50; id++) {
+            tree.insert(marker(id, 100, 100 + id));
+        }
+        tree.remove(marker(25, 100, 125));
+        tree.remove(marker(26, 100, 126));
+
+        assertThat(tree.size()).isEqualTo(48);
+        assertThat(ids(tree, 124)).containsExactlyInAnyOrderElementsOf(LongStream.rangeClosed(27, 50).boxed().toList());
+        assertThat(ids(tree, 100)).hasSize(48);
+        // removing an entry that is not there changes nothing
+        tree.remove(marker(25, 100, 125));
+        assertThat(tree.size()).isEqualTo(48);
+    }
+
+    private static List<Long> ids(IntervalTree tree, long t) {
+        List<Long> out = new ArrayList<>();
+        tree.stab(t, m -> out.add(m.id()));
+        return out;
+    }
+
+    private static IndexedMarker marker(long id, long start, long end) {
+        return new IndexedMarker(id, 0, 0, Double.NaN, start, end, 1, 1, 1, "public");
+    }
+}
@@ -0,0 +1,74 @@
+package com.project.gis.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LongIntMapTest {
+
+    @Test
+    void behavesLikeAHashMapThroughGrowthAndRemovals() {
+        LongIntMap map = new LongIntMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(50_000);
+            if (random.nextInt(4) == 0) {
+                Integer old = expected.remove(key);
+                assertThat(map.remove(key)).isEqualTo(old == null ? LongIntMap.ABSENT : old);
+            } else {
+                expected.put(key, i);
+                map.put(key, i);
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 50_000; key++) {
+            Integer v = expected.get(key);
+            assertThat(map.get(key)).isEqualTo(v == null ? LongIntMap.ABSENT : v);
+        }
+    }
+
+    @Test
+    void reservedKeyAndValueAreRejected() {
+        LongIntMap map = new LongIntMap();
+        assertThatThrownBy(() -> map.put(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> map.put(1, LongIntMap.ABSENT)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(map.get(0)).isEqualTo(LongIntMap.ABSENT);
+    }
+
+    @Test
+    void readersSeeExistingKeysWhileTheWriterGrowsAndRemoves() throws Exception {
+        LongIntMap map = new LongIntMap();
+        for (long key = 1; key <= 1000; key++) {
+            map.put(key, (int) key);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger misses = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (long key = 1; key <= 1000; key++) {
+                    if (map.get(key) != (int) key) {
+                        misses.incrementAndGet();
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (long key = 1001; key <= 500_000; key++) {
+            map.put(key, (int) key);
+            if (key % 3 == 0) {
+                map.remove(key);
+            }
+        }
+        done.set(true);
+        reader.join();
+        assertThat(misses).hasValue(0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.project.gis.index;
+
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.GeoDistance;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuadTreeTest {
+
+    @Test
+    void nearestReturnsTheClosestEntriesInOrder() {
+        QuadTree tree = new QuadTree();
+        List<IndexedMarker> all = new ArrayList<>();
+        Random random = new Random(11);
+        for (long id = 1; id <= 5_000; id++) {
+            IndexedMarker m = marker(id, random.nextDouble() * 40 - 20, random.nextDouble() * 40 - 20, Double.NaN);
+            all.add(m);
+            tree.insert(m);
+        }
+        for (int q = 0; q < 20; q++) {
+            double lon = random.nextDouble() * 50 - 25, lat = random.nextDouble() * 50 - 25;
+            ToDoubleFunction<IndexedMarker> surface = m -> GeoDistance.haversine(lon, lat, m.lon(), m.lat());
+            List<MarkerIndex.Neighbour> found = tree.nearest(lon, lat, 10, m -> m.id() % 3 != 0, surface);
+
+            List<Long> expected = all.stream().filter(m -> m.id() % 3 != 0)
+                    .sorted(Comparator.comparingDouble(surface)).limit(10).map(IndexedMarker::id).toList();
+            assertThat(found).extracting(n -> n.marker().id()).containsExactlyElementsOf(expected);
+            assertThat(found).extracting(MarkerIndex.Neighbour::distance).isSorted();
+        }
+    }
+
+    @Test
+    void altitudeWeightingPushesHighEntriesBack() {
+        QuadTree tree = new QuadTree();
+        // 1 is right above the query point but 5 km up, 2 is about 1.1 km away on the ground
+        tree.insert(marker(1, 10.0, 10.0, 5_000.0));
+        tree.insert(marker(2, 10.01, 10.0, 0.0));
+        ToDoubleFunction<IndexedMarker> weighted = m -> {
+            double surface = GeoDistance.haversine(10.0, 10.0, m.lon(), m.lat());
+            double dz = m.altitude();
+            return Math.sqrt(surface * surface + dz * dz);
+        };
+
+        assertThat(tree.nearest(10.0, 10.0, 2, m -> true, weighted)).extracting(n -> n.marker().id())
+                .containsExactly(2L, 1L);
+        assertThat(tree.nearest(10.0, 10.0, 2, m -> true, m -> GeoDistance.haversine(10.0, 10.0, m.lon(), m.lat())))
+                .extracting(n -> n.marker().id()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void removedEntriesAreNotFoundAgain() {
+        QuadTree tree = new QuadTree();
+        List<IndexedMarker> all = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            IndexedMarker m = marker(id, 1 + id * 0.001, 1.0, Double.NaN);
+            all.add(m);
+            tree.insert(m);
+        }
+        // leaves merge back once most of their entries are gone
+        for (IndexedMarker m : all.subList(0, 190)) {
+            assertThat(tree.remove(m)).isTrue();
+        }
+        assertThat(tree.remove(all.get(0))).isFalse();
+
+        List<MarkerIndex.Neighbour> found = tree.nearest(1.0, 1.0, 20, m -> true,
+                m -> GeoDistance.haversine(1.0, 1.0, m.lon(), m.lat()));
+        assertThat(found).extracting(n -> n.marker().id())
+                .containsExactly(191L, 192L, 193L, 194L, 195L, 196L, 197L, 198L, 199L, 200L);
+        assertThat(tree.estimate(BoundingBox.WORLD)).isEqualTo(10);
+    }
+
+    private static IndexedMarker marker(long id, double lon, double lat, double altitude) {
+        return new IndexedMarker(id, lon, lat, altitude, 0, Long.MAX_VALUE, 1, 1, 1, "public");
+    }
+}
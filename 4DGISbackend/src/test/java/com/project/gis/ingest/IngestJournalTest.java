@@ -0,0 +1,122 @@
+package com.project.gis.ingest;
+
+import com.project.gis.entity.JpaMarker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestJournalTest {
+    private static final OffsetDateTime START = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void createsWithoutACommitAreReplayedInJournalOrder() throws Exception {
+        Path file = dir.resolve("ingest.journal");
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            journal.appendCreate(1, marker("a"));
+            journal.appendCreate(2, marker("b"));
+            journal.appendCreate(3, marker("c"));
+            journal.appendCommit(List.of(1L, 3L));
+            journal.appendCreate(4, marker("d"));
+        }
+
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            assertThat(journal.uncommitted()).containsOnlyKeys(2L, 4L);
+            assertThat(journal.uncommitted().values()).extracting(JpaMarker::getTitle).containsExactly("b", "d");
+            assertThat(journal.maxSeq()).isEqualTo(4);
+            JpaMarker b = journal.uncommitted().get(2L);
+            assertThat(b.getLocation()).isEqualTo("POINT(1.5 2.5)");
+            assertThat(b.getStartTime()).isEqualTo(START);
+            assertThat(b.getEndTime()).isNull();
+            assertThat(b.getAltitude()).isNull();
+            assertThat(b.getDescription()).isNull();
+            assertThat(b.getOwnerId()).isEqualTo(7L);
+        }
+    }
+
+    @Test
+    void tornLastRecordIsCutOff() throws Exception {
+        Path file = dir.resolve("ingest.journal");
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            journal.appendCreate(1, marker("a"));
+            journal.appendCreate(2, marker("b"));
+        }
+        long intact;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            intact = ch.size();
+            // a crash in the middle of the third record
+            ch.position(intact);
+            ch.write(java.nio.ByteBuffer.wrap(new byte[]{0, 0, 0, 100, 1, 2, 3}));
+        }
+
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            assertThat(journal.uncommitted()).containsOnlyKeys(1L, 2L);
+            assertThat(Files.size(file)).isEqualTo(intact);
+            journal.appendCommit(List.of(1L));
+        }
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            assertThat(journal.uncommitted()).containsOnlyKeys(2L);
+        }
+    }
+
+    @Test
+    void recordWithABadChecksumEndsTheJournal() throws Exception {
+        Path file = dir.resolve("ingest.journal");
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            journal.appendCreate(1, marker("a"));
+            journal.appendCreate(2, marker("b"));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            assertThat(journal.uncommitted()).containsOnlyKeys(1L);
+            assertThat(journal.maxSeq()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void truncateIfIdleEmptiesOnlyALargeIdleJournal() throws Exception {
+        Path file = dir.resolve("ingest.journal");
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            journal.appendCreate(1, marker("a"));
+            journal.appendCommit(List.of(1L));
+            long size = Files.size(file);
+
+            journal.truncateIfIdle(size, () -> true);
+            assertThat(Files.size(file)).isEqualTo(size);
+            journal.truncateIfIdle(size - 1, () -> false);
+            assertThat(Files.size(file)).isEqualTo(size);
+            journal.truncateIfIdle(size - 1, () -> true);
+            assertThat(Files.size(file)).isZero();
+
+            journal.appendCreate(2, marker("b"));
+        }
+        try (IngestJournal journal = IngestJournal.open(file, false)) {
+            assertThat(journal.uncommitted()).containsOnlyKeys(2L);
+        }
+    }
+
+    private static JpaMarker marker(String title) {
+        JpaMarker m = new JpaMarker();
+        m.setTitle(title);
+        m.setLocation("POINT(1.5 2.5)");
+        m.setStartTime(START);
+        m.setMarkerTypeId(3L);
+        m.setCreatorId(7L);
+        m.setOwnerId(7L);
+        m.setVisibility("public");
+        return m;
+    }
+}
@@ -0,0 +1,103 @@
+package com.project.gis.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MpscRingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertThat(new MpscRingBuffer<>(1).capacity()).isEqualTo(2);
+        assertThat(new MpscRingBuffer<>(3).capacity()).isEqualTo(4);
+        assertThat(new MpscRingBuffer<>(4).capacity()).isEqualTo(4);
+        assertThat(new MpscRingBuffer<>(1000).capacity()).isEqualTo(1024);
+    }
+
+    @Test
+    void fullBufferRejectsUntilDrained() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+        assertThat(buffer.offer(4)).isFalse();
+
+        List<Integer> out = new ArrayList<>();
+        assertThat(buffer.drain(out::add, 1)).isEqualTo(1);
+        assertThat(buffer.offer(4)).isTrue();
+        assertThat(buffer.offer(5)).isFalse();
+        assertThat(buffer.drain(out::add, 10)).isEqualTo(4);
+        assertThat(out).containsExactly(0, 1, 2, 3, 4);
+        assertThat(buffer.drain(out::add, 10)).isZero();
+    }
+
+    @Test
+    void orderIsKeptAcrossManyWrapArounds() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+        List<Integer> out = new ArrayList<>();
+        int next = 0;
+        for (int round = 0; round < 1_000; round++) {
+            // uneven batch sizes move the head and tail around the ring, leaving up to two items behind
+            for (int i = round % 6; i >= 0; i--) {
+                assertThat(buffer.offer(next++)).isTrue();
+            }
+            buffer.drain(out::add, Math.max(0, next - out.size() - round % 3));
+        }
+        buffer.drain(out::add, Integer.MAX_VALUE);
+
+        assertThat(out).hasSize(next);
+        for (int i = 0; i < next; i++) {
+            assertThat(out.get(i)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws Exception {
+        int producers = 4, perProducer = 20_000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(new long[]{producer, i})) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        long[] last = new long[producers];
+        Arrays.fill(last, -1);
+        boolean[] inOrder = {true};
+        int received = 0;
+        start.countDown();
+        while (received < producers * perProducer) {
+            received += buffer.drain(e -> {
+                if (e[1] != last[(int) e[0]] + 1) {
+                    inOrder[0] = false;
+                }
+                last[(int) e[0]] = e[1];
+            }, 64);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        assertThat(inOrder[0]).isTrue();
+        assertThat(last).containsOnly(perProducer - 1);
+        assertThat(buffer.drain(e -> { }, 1)).isZero();
+    }
+}
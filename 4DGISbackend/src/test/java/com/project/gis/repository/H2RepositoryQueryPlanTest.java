@@ -0,0 +1,35 @@
+package com.project.gis.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository query plans on the in-memory H2 database the local profiles use.
+ */
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:plan;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"})
+class H2RepositoryQueryPlanTest extends RepositoryQueryPlanTest {
+
+    /**
+     * Tables H2 reads with a tableScan; its plan text marks every table access with the index it uses.
+     */
+    @Override
+    protected List<String> scans(JdbcTemplate jdbc, String sql, Object[] binds) {
+        List<String> scans = new ArrayList<>();
+        for (String plan : jdbc.queryForList("explain " + sql, String.class, binds)) {
+            for (String part : plan.split("/\\*")) {
+                int end = part.indexOf("*/");
+                String access = end < 0 ? "" : part.substring(0, end).trim();
+                if (access.endsWith(".tableScan")) {
+                    scans.add(access);
+                }
+            }
+        }
+        return scans;
+    }
+}
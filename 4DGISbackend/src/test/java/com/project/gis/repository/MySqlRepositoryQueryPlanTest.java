@@ -0,0 +1,45 @@
+package com.project.gis.repository;
+
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repository query plans on MySQL 8 in a container; skipped where Docker is not available.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQLDialect")
+class MySqlRepositoryQueryPlanTest extends RepositoryQueryPlanTest {
+    @Container
+    @ServiceConnection
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @Override
+    protected void afterSeed(JdbcTemplate jdbc) {
+        jdbc.execute("analyze table users, marker_types, markers, tags, marker_tags, marker_collaborators,"
+                + " attachments, friendships, friend_requests, marker_track_blocks, geofences, geofence_events,"
+                + " change_log");
+    }
+
+    /**
+     * Tables MySQL reads in full (type ALL) or through a full index scan (type index).
+     */
+    @Override
+    protected List<String> scans(JdbcTemplate jdbc, String sql, Object[] binds) {
+        List<String> scans = new ArrayList<>();
+        for (Map<String, Object> row : jdbc.queryForList("explain " + sql, binds)) {
+            Object type = row.get("type");
+            if ("ALL".equals(type) || "index".equals(type)) {
+                scans.add(row.get("table") + ":" + type);
+            }
+        }
+        return scans;
+    }
+}
@@ -0,0 +1,316 @@
+package com.project.gis.repository;
+
+import com.project.gis.migration.V2__LookupIndexes;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.Serial;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query plan regression test for every repository method. Each probe calls the real method, captures the SQL
+ * Hibernate generates for it with a {@link StatementInspector}, and EXPLAINs that SQL on a schema built by the Flyway
+ * migrations and seeded with a few thousand rows per table. The test fails when the plan reads a table in full
+ * (MySQL type ALL / index, H2 tableScan). Queries that scan by design (keyword search, all marker types) are marked
+ * {@code expectScan} and only logged.
+ * <p>
+ * Only the first statement of a call is explained: derived deletes select the rows first and then delete them one
+ * by one by primary key. The bind values of a probe are the ones its SQL's conditions take, in order; the row limit
+ * is bound separately since dialects write it differently. Subclasses pick the database.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.locations=classpath:db/migration/{vendor}",
+        "spring.jpa.hibernate.ddl-auto=validate"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({V2__LookupIndexes.class, RepositoryQueryPlanTest.CaptureConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+abstract class RepositoryQueryPlanTest {
+    private static final int SEED_ROWS = 5000;
+    private static final OffsetDateTime EPOCH = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private CapturedSql captured;
+    @Autowired
+    private MarkerRepository markers;
+    @Autowired
+    private AttachmentRepository attachments;
+    @Autowired
+    private FriendRequestRepository friendRequests;
+    @Autowired
+    private FriendshipRepository friendships;
+    @Autowired
+    private GeofenceRepository geofences;
+    @Autowired
+    private GeofenceEventRepository geofenceEvents;
+    @Autowired
+    private MarkerTagRepository markerTags;
+    @Autowired
+    private MarkerTypeRepository markerTypes;
+    @Autowired
+    private TagRepository tags;
+    @Autowired
+    private TrackBlockRepository trackBlocks;
+    @Autowired
+    private ChangeLogRepository changeLog;
+    @Autowired
+    private UserRepository users;
+
+    /**
+     * Tables the database reads in full when running {@code sql} with {@code binds}.
+     */
+    protected abstract List<String> scans(JdbcTemplate jdbc, String sql, Object[] binds);
+
+    /**
+     * Runs after seeding, e.g. to refresh the optimizer statistics.
+     */
+    protected void afterSeed(JdbcTemplate jdbc) {
+    }
+
+    @BeforeAll
+    void seed() {
+        int n = SEED_ROWS;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        insert("insert into users (id, username, password_hash, email, phone, role, created_at, updated_at)"
+                + " values (?, ?, 'x', ?, ?, 'user', ?, ?)", n, i -> new Object[]{
+                i, "user-" + i, "user-" + i + "@example.com", String.valueOf(1_300_000_000L + i), now, now});
+        insert("insert into marker_types (id, type_name, creator_id, created_at) values (?, ?, 0, ?)", 10,
+                i -> new Object[]{i, "type-" + i, now});
+        insert("insert into markers (id, title, description, location, cell_id, start_time, marker_type_id,"
+                + " creator_id, owner_id, visibility, created_at, updated_at)"
+                + " values (?, ?, '', ?, ?, ?, ?, ?, ?, 'public', ?, ?)", n, i -> new Object[]{
+                i, "marker-" + i, "POINT(" + (i % 360 - 180) + " " + (i % 180 - 90) + ")", (long) i * 37 % (n * 4L),
+                now, i % 10 + 1, i % 500 + 1, i % 500 + 1, now, now});
+        insert("insert into tags (id, tag_name, creator_id, created_at) values (?, ?, 1, ?)", n / 10,
+                i -> new Object[]{i, "tag-" + i, now});
+        insert("insert into marker_tags (marker_id, tag_id) values (?, ?)", n, i -> new Object[]{i, i % (n / 10) + 1});
+        insert("insert into marker_collaborators (marker_id, user_id, permission, granted_at) values (?, ?, 'viewer', ?)",
+                n, i -> new Object[]{i, (i * 7) % n + 1, now});
+        insert("insert into attachments (id, marker_id, file_name, file_path, uploader_id, uploaded_at)"
+                + " values (?, ?, 'a', 'a', ?, ?)", n, i -> new Object[]{i, i, i, now});
+        insert("insert into friendships (user1_id, user2_id, created_at) values (?, ?, ?)", n - 1,
+                i -> new Object[]{i, i + 1, now});
+        insert("insert into friend_requests (id, requester_id, recipient_id, created_at) values (?, ?, ?, ?)", n - 2,
+                i -> new Object[]{i, i, i + 2, now});
+        insert("insert into marker_track_blocks (id, marker_id, start_time, end_time, sample_count, data)"
+                + " values (?, ?, ?, ?, 1, ?)", n, i -> new Object[]{i, i % 500 + 1, i * 1_000L, i * 1_000L + 999,
+                new byte[]{0}});
+        insert("insert into geofences (id, owner_id, name, geometry, created_at) values (?, ?, ?, ?, ?)", n / 10,
+                i -> new Object[]{i, i, "fence-" + i, "POLYGON((0 0, 1 0, 1 1, 0 0))", now});
+        insert("insert into geofence_events (id, geofence_id, owner_id, marker_id, longitude, latitude, occurred_at)"
+                + " values (?, ?, ?, ?, 0, 0, ?)", n, i -> new Object[]{i, i % (n / 10) + 1, i % (n / 10) + 1, i, now});
+        insert("insert into change_log (id, kind, entity_id, origin, created_at) values (?, 'MARKER', ?, 'n', ?)", n,
+                i -> new Object[]{i, i, new Timestamp(now.getTime() - (n - i) * 1_000L)});
+        afterSeed(jdbc);
+    }
+
+    List<Probe> probes() {
+        PageRequest first1000 = PageRequest.of(0, 1000);
+        return List.of(
+                probe("MarkerRepository.findByOwnerId", () -> markers.findByOwnerId(7L), 7L),
+                probe("MarkerRepository.findByCellIdBetween", () -> markers.findByCellIdBetween(100L, 120L), 100L, 120L),
+                probe("MarkerRepository.findByCellIdIsNull", () -> markers.findByCellIdIsNull()),
+                probe("MarkerRepository.findByIdGreaterThanOrderByIdAsc",
+                        () -> markers.findByIdGreaterThanOrderByIdAsc(7L, first1000), 7L).limit(1000),
+                scan("MarkerRepository.search", () -> markers.search("x"), "%x%", "%x%"),
+                probe("AttachmentRepository.findByMarkerId", () -> attachments.findByMarkerId(7L), 7L),
+                probe("FriendRequestRepository.findByRecipientId", () -> friendRequests.findByRecipientId(7L), 7L),
+                probe("FriendRequestRepository.findByRequesterId", () -> friendRequests.findByRequesterId(7L), 7L),
+                probe("FriendRequestRepository.existsByRequesterIdAndRecipientId",
+                        () -> friendRequests.existsByRequesterIdAndRecipientId(7L, 9L), 7L, 9L).limit(1),
+                probe("FriendshipRepository.findByUserId", () -> friendships.findByUserId(7L), 7L, 7L),
+                probe("GeofenceRepository.findByOwnerId", () -> geofences.findByOwnerId(7L), 7L),
+                probe("GeofenceEventRepository.findByOwnerIdAndIdGreaterThanOrderByIdAsc",
+                        () -> geofenceEvents.findByOwnerIdAndIdGreaterThanOrderByIdAsc(7L, 0L, PageRequest.of(0, 100)),
+                        7L, 0L).limit(100),
+                probe("GeofenceEventRepository.deleteByGeofenceId", () -> geofenceEvents.deleteByGeofenceId(7L), 7L),
+                probe("MarkerTagRepository.findByIdMarkerId", () -> markerTags.findByIdMarkerId(7L), 7L),
+                probe("MarkerTagRepository.findByIdMarkerIdIn",
+                        () -> markerTags.findByIdMarkerIdIn(List.of(7L, 8L, 9L)), 7L, 8L, 9L),
+                probe("MarkerTagRepository.findByIdTagIdIn", () -> markerTags.findByIdTagIdIn(List.of(3L, 4L)), 3L, 4L),
+                probe("MarkerTagRepository.deleteByIdMarkerId", () -> markerTags.deleteByIdMarkerId(7L), 7L),
+                probe("MarkerTagRepository.findPageAfter", () -> markerTags.findPageAfter(7L, 3L, first1000),
+                        7L, 7L, 3L).limit(1000),
+                scan("MarkerTypeRepository.findAll", () -> markerTypes.findAll()),
+                probe("TagRepository.findByTagName", () -> tags.findByTagName("tag-7"), "tag-7"),
+                probe("TagRepository.findUncachedByTagName", () -> tags.findUncachedByTagName("tag-7"), "tag-7"),
+                probe("TrackBlockRepository.findByMarkerIdAndStartTimeLessThanEqualAndEndTimeGreaterThanEqual",
+                        () -> trackBlocks.findByMarkerIdAndStartTimeLessThanEqualAndEndTimeGreaterThanEqualOrderByStartTimeAsc(
+                                7L, 2_000L, 1_000L), 7L, 2_000L, 1_000L),
+                probe("TrackBlockRepository.findFirstByMarkerIdAndStartTimeLessThanEqualOrderByStartTimeDesc",
+                        () -> trackBlocks.findFirstByMarkerIdAndStartTimeLessThanEqualOrderByStartTimeDesc(7L, 1_000L),
+                        7L, 1_000L).limit(1),
+                probe("TrackBlockRepository.findFirstByMarkerIdAndEndTimeGreaterThanEqualOrderByStartTimeAsc",
+                        () -> trackBlocks.findFirstByMarkerIdAndEndTimeGreaterThanEqualOrderByStartTimeAsc(7L, 1_000L),
+                        7L, 1_000L).limit(1),
+                probe("TrackBlockRepository.findFirstByMarkerIdOrderByEndTimeDesc",
+                        () -> trackBlocks.findFirstByMarkerIdOrderByEndTimeDesc(7L), 7L).limit(1),
+                probe("TrackBlockRepository.deleteByMarkerId", () -> trackBlocks.deleteByMarkerId(7L), 7L),
+                probe("ChangeLogRepository.findByIdGreaterThanOrderByIdAsc",
+                        () -> changeLog.findByIdGreaterThanOrderByIdAsc(7L, PageRequest.of(0, 500)), 7L).limit(500),
+                probe("ChangeLogRepository.maxId", () -> changeLog.maxId()),
+                probe("ChangeLogRepository.entityIdsSince", () -> changeLog.entityIdsSince("MARKER", EPOCH),
+                        "MARKER", EPOCH),
+                probe("ChangeLogRepository.deleteOlderThan", () -> changeLog.deleteOlderThan(EPOCH), EPOCH),
+                probe("UserRepository.findByUsername", () -> users.findByUsername("user-7"), "user-7"),
+                probe("UserRepository.findByEmail", () -> users.findByEmail("user-7@example.com"), "user-7@example.com"),
+                probe("UserRepository.findByPhone", () -> users.findByPhone("1300000007"), "1300000007"),
+                probe("UserRepository.findByIdentity", () -> users.findByIdentity("user-7"),
+                        "user-7", "user-7", "user-7"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("probes")
+    void repositoryQueryUsesAnIndex(Probe probe) {
+        String sql = capture(probe);
+        List<String> scans = scans(jdbc, sql, binds(probe, sql));
+        if (probe.expectScan) {
+            System.out.printf("plan scan  %s (expected): %s%n", probe.name, scans);
+            return;
+        }
+        assertThat(scans).as("full scans in the plan of %s", sql).isEmpty();
+    }
+
+    /**
+     * First SQL statement Hibernate sends for the probe's call, made in a transaction that is rolled back.
+     */
+    private String capture(Probe probe) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<String> statements = tx.execute(status -> {
+            captured.start();
+            try {
+                probe.call.run();
+                return captured.statements();
+            } finally {
+                captured.stop();
+                status.setRollbackOnly();
+            }
+        });
+        assertThat(statements).as("SQL sent by %s", probe.name).isNotEmpty();
+        return statements.get(0);
+    }
+
+    /**
+     * The probe's bind values followed by the ones of the row limit clause: none, the limit (MySQL {@code limit ?}),
+     * or offset and limit (H2 {@code offset ? rows fetch first ? rows only}).
+     */
+    private static Object[] binds(Probe probe, String sql) {
+        int extra = (int) sql.chars().filter(c -> c == '?').count() - probe.binds.length;
+        Object[] limitBinds = switch (extra) {
+            case 0 -> new Object[0];
+            case 1 -> new Object[]{probe.limit};
+            case 2 -> new Object[]{0, probe.limit};
+            default -> null;
+        };
+        assertThat(limitBinds).as("bind values for %s", sql).isNotNull();
+        assertThat(extra == 0 || probe.limit != null).as("row limit for %s", sql).isTrue();
+        Object[] all = Arrays.copyOf(probe.binds, probe.binds.length + extra);
+        System.arraycopy(limitBinds, 0, all, probe.binds.length, extra);
+        return all;
+    }
+
+    private void insert(String sql, int rows, IntFunction<Object[]> row) {
+        jdbc.batchUpdate(sql, IntStream.rangeClosed(1, rows).mapToObj(row).toList());
+    }
+
+    private static Probe probe(String name, Runnable call, Object... binds) {
+        return new Probe(name, call, binds, false, null);
+    }
+
+    private static Probe scan(String name, Runnable call, Object... binds) {
+        return new Probe(name, call, binds, true, null);
+    }
+
+    /**
+     * @param binds bind values of the SQL's own conditions, in order
+     * @param limit row limit of a paged or first-row query, bound to the dialect's limit clause
+     */
+    record Probe(String name, Runnable call, Object[] binds, boolean expectScan, Integer limit) {
+        Probe limit(int rows) {
+            return new Probe(name, call, binds, expectScan, rows);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Records the SQL Hibernate prepares while capturing is on.
+     */
+    static class CapturedSql implements StatementInspector {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean capturing;
+
+        @Override
+        public String inspect(String sql) {
+            if (capturing) {
+                statements.add(sql);
+            }
+            return sql;
+        }
+
+        void start() {
+            statements.clear();
+            capturing = true;
+        }
+
+        void stop() {
+            capturing = false;
+        }
+
+        List<String> statements() {
+            synchronized (statements) {
+                return List.copyOf(statements);
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class CaptureConfig {
+        @Bean
+        CapturedSql capturedSql() {
+            return new CapturedSql();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector(CapturedSql capturedSql) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, capturedSql);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.project.gis.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A global limit of one permit, so whether the permit is still held shows up as a 429 for the next request.
+ */
+class AdmissionControlFilterTest {
+    private SimpleMeterRegistry registry;
+    private AdmissionControlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        AdmissionProperties props = new AdmissionProperties();
+        props.setInitialLimit(1);
+        props.setMinLimit(1);
+        props.setMaxLimit(1);
+        props.setAnonymousRatePerSecond(1000);
+        props.setAnonymousBurst(1000);
+        registry = new SimpleMeterRegistry();
+        filter = new AdmissionControlFilter(props, registry);
+    }
+
+    @Test
+    void synchronousRequestReleasesItsPermitOnReturn() throws Exception {
+        assertThat(run((req, res) -> { })).isEqualTo(200);
+        assertThat(inflight()).isZero();
+        assertThat(run((req, res) -> { })).isEqualTo(200);
+    }
+
+    @Test
+    void asyncRequestHoldsItsPermitUntilItCompletes() throws Exception {
+        MockHttpServletRequest login = request();
+        filter.doFilter(login, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+        AsyncContext async = login.getAsyncContext();
+
+        assertThat(inflight()).isEqualTo(1);
+        assertThat(run((req, res) -> { })).isEqualTo(429);
+
+        async.complete();
+        assertThat(inflight()).isZero();
+        assertThat(run((req, res) -> { })).isEqualTo(200);
+    }
+
+    @Test
+    void permitIsReleasedOnceWhenAnAsyncRequestFails() throws Exception {
+        MockHttpServletRequest login = request();
+        filter.doFilter(login, new MockHttpServletResponse(), (req, res) -> req.startAsync());
+
+        // a container reports the error and then completes the request
+        MockAsyncContext async = (MockAsyncContext) login.getAsyncContext();
+        AsyncEvent event = new AsyncEvent(async, new IllegalStateException("broken pipe"));
+        for (AsyncListener listener : async.getListeners()) {
+            listener.onError(event);
+            listener.onComplete(event);
+        }
+        assertThat(inflight()).isZero();
+        assertThat(run((req, res) -> { })).isEqualTo(200);
+    }
+
+    private int run(FilterChain chain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(), response, chain);
+        return response.getStatus();
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private double inflight() {
+        return registry.get("admission.concurrency.inflight").gauge().value();
+    }
+}
@@ -0,0 +1,105 @@
+package com.project.gis.service;
+
+import com.project.gis.archive.MarkerArchive;
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.index.IndexSnapshots;
+import com.project.gis.index.MarkerIndex;
+import com.project.gis.shard.MarkerStore;
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.Wkt;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A real index and archive; the cache only reuses results while neither has changed (max staleness 0).
+ */
+class HeatmapServiceTest {
+    private static final OffsetDateTime START = OffsetDateTime.parse("2024-01-01T00:00:00Z");
+    private static final BoundingBox WORLD = new BoundingBox(-180, -80, 180, 80);
+
+    @TempDir
+    Path dir;
+
+    private MarkerIndex markerIndex;
+    private MarkerArchive markerArchive;
+    private HeatmapService heatmap;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MarkerStore store = mock(MarkerStore.class);
+        when(store.findPageAfter(anyLong(), anyInt())).thenReturn(List.of());
+        markerIndex = new MarkerIndex(store, mock(IndexSnapshots.class));
+        markerIndex.load();
+        markerArchive = new MarkerArchive(dir.toString(), new SimpleMeterRegistry());
+        markerArchive.open();
+        heatmap = new HeatmapService(markerIndex, markerArchive, 2, 1, 0, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        heatmap.shutdown();
+    }
+
+    @Test
+    void pastWindowsCountArchivedMarkers() throws Exception {
+        markerIndex.put(marker(1, 10, 20, "public", 7L));
+        markerArchive.write(List.of(marker(2, 10, 20, "public", 7L), marker(3, -100, -40, "public", 7L),
+                marker(4, 10, 20, "private", 7L)));
+
+        long from = START.toInstant().toEpochMilli();
+        long to = START.plusDays(1).toInstant().toEpochMilli();
+        assertThat(heatmap.heatmap(WORLD, 0, from, to, null, null).getTotal()).isEqualTo(3);
+        // the owner also sees the private one
+        assertThat(heatmap.heatmap(WORLD, 0, from, to, null, 7L).getTotal()).isEqualTo(4);
+        // a window after the archived markers ended does not read the archive
+        assertThat(heatmap.heatmap(WORLD, 0, to, Long.MAX_VALUE, null, null).getTotal()).isZero();
+    }
+
+    @Test
+    void archiveChangesInvalidateCachedGrids() throws Exception {
+        markerArchive.write(List.of(marker(2, 10, 20, "public", 7L), marker(3, 11, 21, "public", 7L)));
+        long from = START.toInstant().toEpochMilli();
+        assertThat(heatmap.heatmap(WORLD, 0, from, Long.MAX_VALUE, null, null).getTotal()).isEqualTo(2);
+
+        markerArchive.delete(3);
+        assertThat(heatmap.heatmap(WORLD, 0, from, Long.MAX_VALUE, null, null).getTotal()).isEqualTo(1);
+    }
+
+    @Test
+    void markerBeingArchivedIsCountedOnce() throws Exception {
+        JpaMarker m = marker(2, 10, 20, "public", 7L);
+        markerIndex.put(m);
+        markerArchive.write(List.of(m));
+
+        assertThat(heatmap.heatmap(WORLD, 0, Long.MIN_VALUE, Long.MAX_VALUE, null, null).getTotal()).isEqualTo(1);
+    }
+
+    private static JpaMarker marker(long id, double lon, double lat, String visibility, long ownerId) {
+        JpaMarker m = new JpaMarker();
+        m.setId(id);
+        m.setTitle("m" + id);
+        m.setLocation(Wkt.point(lon, lat));
+        m.setStartTime(START);
+        m.setEndTime(START.plusHours(1));
+        m.setMarkerTypeId(1L);
+        m.setOwnerId(ownerId);
+        m.setCreatorId(ownerId);
+        m.setVisibility(visibility);
+        m.setCreatedAt(START);
+        m.setUpdatedAt(START);
+        return m;
+    }
+}
@@ -0,0 +1,139 @@
+package com.project.gis.service;
+
+import com.project.gis.dto.MarkersGetRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The marker service is mocked; pages above max-rows (10) are not materialized, so they weigh their size.
+ */
+class QueryCoalescerTest {
+    private static final Duration TTL = Duration.ofMillis(200);
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+    private MarkerService markerService;
+
+    @BeforeEach
+    void setUp() {
+        markerService = mock(MarkerService.class);
+        when(markerService.materialize(any())).thenAnswer(inv -> inv.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalQueriesShareOneComputation() throws Exception {
+        MarkerService.Page page = page(5);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(markerService.query(any(), any())).thenAnswer(inv -> {
+            started.countDown();
+            release.await();
+            return page;
+        });
+        QueryCoalescer coalescer = coalescer(1000);
+
+        Future<MarkerService.Page> first = pool.submit(() -> coalescer.query(request("1,1,2,2"), 7L));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<MarkerService.Page> second = pool.submit(() -> coalescer.query(request("1,1,2,2"), 7L));
+        while (count("joined") == 0) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(page);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(page);
+        verify(markerService, times(1)).query(any(), any());
+    }
+
+    @Test
+    void resultIsReusedWithinTheTtlOnly() throws Exception {
+        MarkerService.Page page = page(5);
+        when(markerService.query(any(), any())).thenReturn(page);
+        QueryCoalescer coalescer = coalescer(1000);
+
+        coalescer.query(request("1,1,2,2"), 7L);
+        coalescer.query(request("1,1,2,2"), 7L);
+        verify(markerService, times(1)).query(any(), any());
+        assertThat(count("cached")).isEqualTo(1);
+
+        Thread.sleep(TTL.toMillis() * 2);
+        coalescer.query(request("1,1,2,2"), 7L);
+        verify(markerService, times(2)).query(any(), any());
+    }
+
+    @Test
+    void failuresAreNotCached() {
+        MarkerService.Page page = page(5);
+        when(markerService.query(any(), any())).thenThrow(new IllegalArgumentException("bad bbox"))
+                .thenReturn(page);
+        QueryCoalescer coalescer = coalescer(1000);
+
+        assertThatThrownBy(() -> coalescer.query(request("1,1,2,2"), 7L)).hasMessage("bad bbox");
+        assertThat(coalescer.query(request("1,1,2,2"), 7L).size()).isEqualTo(5);
+        verify(markerService, times(2)).query(any(), any());
+    }
+
+    @Test
+    void pagesBeyondTheWeightLimitAreEvicted() {
+        MarkerService.Page medium = page(60);
+        when(markerService.query(any(), any())).thenReturn(medium);
+        QueryCoalescer coalescer = coalescer(100);
+
+        coalescer.query(request("1,1,2,2"), 7L);
+        coalescer.query(request("3,3,4,4"), 7L);
+        // 120 ids against a limit of 100: at most one of the two pages is still cached
+        coalescer.query(request("1,1,2,2"), 7L);
+        coalescer.query(request("3,3,4,4"), 7L);
+        verify(markerService, atLeast(3)).query(any(), any());
+
+        MarkerService.Page heavy = page(150);
+        when(markerService.query(any(), any())).thenReturn(heavy);
+        coalescer.query(request("5,5,6,6"), 7L);
+        coalescer.query(request("5,5,6,6"), 7L);
+        assertThat(count("cached")).isLessThanOrEqualTo(1);
+    }
+
+    private QueryCoalescer coalescer(long maxCachedRows) {
+        return new QueryCoalescer(markerService, registry, true, TTL, 0.001, Duration.ofSeconds(1), 10,
+                maxCachedRows);
+    }
+
+    private double count(String outcome) {
+        return registry.counter("query.coalescing", "outcome", outcome).count();
+    }
+
+    private static MarkerService.Page page(int size) {
+        MarkerService.Page page = mock(MarkerService.Page.class);
+        when(page.size()).thenReturn(size);
+        return page;
+    }
+
+    private static MarkersGetRequest request(String bbox) {
+        MarkersGetRequest req = new MarkersGetRequest();
+        req.setBbox(bbox);
+        return req;
+    }
+}
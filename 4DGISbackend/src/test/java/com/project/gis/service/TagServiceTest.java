@@ -0,0 +1,151 @@
+package com.project.gis.service;
+
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.entity.JpaTag;
+import com.project.gis.index.TagIndex;
+import com.project.gis.repository.MarkerTagRepository;
+import com.project.gis.repository.TagRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The transaction is simulated with the synchronization manager, so commit and rollback can be triggered by hand.
+ */
+class TagServiceTest {
+    private TagRepository tagRepository;
+    private ChangeLog changeLog;
+    private TagIndex tagIndex;
+    private TagService tagService;
+
+    @BeforeEach
+    void setUp() {
+        tagRepository = mock(TagRepository.class);
+        when(tagRepository.findAllById(anyIterable())).thenReturn(List.of(new JpaTag()));
+        changeLog = mock(ChangeLog.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(a -> a.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        tagIndex = new TagIndex(mock(MarkerTagRepository.class));
+        tagService = new TagService(tagRepository, mock(MarkerTagRepository.class), tagIndex, changeLog,
+                mock(EntityManagerFactory.class), transactionTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void tagsReachTheIndexOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        tagService.addTags(1L, List.of(7L));
+        assertThat(tagged(7L)).isZero();
+
+        commit();
+        assertThat(tagged(7L)).isEqualTo(1);
+    }
+
+    @Test
+    void rollbackLeavesTheIndexUnchanged() {
+        tagIndex.add(1L, 7L);
+        TransactionSynchronizationManager.initSynchronization();
+        tagService.addTags(2L, List.of(7L));
+        tagService.removeTag(1L, 7L);
+        tagService.markerDeleted(1L);
+
+        rollback();
+        assertThat(tagged(7L)).isEqualTo(1);
+        assertThat(tagIndex.select(new long[]{7L}, true).contains(1L)).isTrue();
+    }
+
+    @Test
+    void removalsApplyAfterCommit() {
+        tagIndex.add(1L, 7L);
+        tagIndex.add(2L, 7L);
+        TransactionSynchronizationManager.initSynchronization();
+        tagService.removeTag(1L, 7L);
+        tagService.markerDeleted(2L);
+        assertThat(tagged(7L)).isEqualTo(2);
+
+        commit();
+        assertThat(tagged(7L)).isZero();
+    }
+
+    @Test
+    void withoutTransactionTheIndexChangesImmediately() {
+        tagService.addTags(1L, List.of(7L));
+        assertThat(tagged(7L)).isEqualTo(1);
+    }
+
+    @Test
+    void countsTagsAmongTheGivenMarkers() {
+        tagIndex.add(1L, 7L);
+        tagIndex.add(2L, 7L);
+        tagIndex.add(2L, 8L);
+        tagIndex.add(3L, 9L);
+
+        assertThat(tagIndex.counts(new long[]{1L, 2L, 4L})).isEqualTo(Map.of(7L, 2, 8L, 1));
+        assertThat(tagIndex.counts(new long[0])).isEmpty();
+    }
+
+    @Test
+    void createReturnsTheTagAConcurrentRequestInsertedFirst() {
+        JpaTag winner = new JpaTag();
+        winner.setId(5L);
+        winner.setTagName("river");
+        when(tagRepository.findByTagName("river")).thenReturn(Optional.empty());
+        when(tagRepository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("uk_tag_name"));
+        when(tagRepository.findUncachedByTagName("river")).thenReturn(Optional.of(winner));
+
+        assertThat(tagService.create("river", 1L)).isSameAs(winner);
+    }
+
+    @Test
+    void createInsertsANewNameOnce() {
+        JpaTag saved = new JpaTag();
+        saved.setId(6L);
+        when(tagRepository.findByTagName("lake")).thenReturn(Optional.empty());
+        when(tagRepository.saveAndFlush(any())).thenReturn(saved);
+
+        assertThat(tagService.create("lake", 1L)).isSameAs(saved);
+        verify(changeLog).append(ChangeKind.TAG, 6L);
+    }
+
+    private int tagged(long tagId) {
+        return tagIndex.select(new long[]{tagId}, true).size();
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> s = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCommit(s);
+        TransactionSynchronizationUtils.invokeAfterCompletion(s, TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private static void rollback() {
+        List<TransactionSynchronization> s = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        TransactionSynchronizationUtils.invokeAfterCompletion(s, TransactionSynchronization.STATUS_ROLLED_BACK);
+    }
+}
@@ -0,0 +1,269 @@
+package com.project.gis.shard;
+
+import com.project.gis.changelog.ChangeKind;
+import com.project.gis.changelog.ChangeLog;
+import com.project.gis.entity.JpaMarker;
+import com.project.gis.spatial.BoundingBox;
+import com.project.gis.spatial.GeoCell;
+import com.project.gis.spatial.Wkt;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Three in-memory H2 shards migrated with db/shard/h2, split at the default key boundaries, queried through a real
+ * fan-out pool. The change log is mocked; it lives in the primary database.
+ */
+class ShardedMarkerStoreTest {
+    private static final int SHARDS = 3;
+
+    private final List<JdbcTemplate> jdbc = new ArrayList<>();
+    private final ShardRouter router = new ShardRouter(SHARDS, List.of());
+    private ExecutorService fanout;
+    private ChangeLog changeLog;
+    private ShardedMarkerStore store;
+
+    @BeforeEach
+    void setUp() {
+        String run = UUID.randomUUID().toString();
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            JdbcDataSource ds = new JdbcDataSource();
+            ds.setURL("jdbc:h2:mem:shard" + i + "-" + run + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+            Flyway.configure().dataSource(ds).locations("classpath:db/shard/h2").table("flyway_shard_history")
+                    .load().migrate();
+            shards.add(ds);
+            jdbc.add(new JdbcTemplate(ds));
+        }
+        fanout = Executors.newFixedThreadPool(2 * SHARDS);
+        changeLog = mock(ChangeLog.class);
+        store = new ShardedMarkerStore(shards, router, new MarkerIdGenerator(1), fanout, changeLog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanout.shutdownNow();
+        jdbc.forEach(t -> t.execute("shutdown"));
+    }
+
+    @Test
+    void writesGoToTheShardOfTheirCell() {
+        double[][] points = {{-120, 40}, {10, 50}, {120, -30}, {-60, -20}, {150, 60}};
+        Set<Integer> used = new HashSet<>();
+        for (double[] p : points) {
+            JpaMarker m = store.save(marker(p[0], p[1]));
+            int shard = router.shardOf(GeoCell.encode(p[0], p[1]));
+            used.add(shard);
+            for (int i = 0; i < SHARDS; i++) {
+                assertThat(rows(i, m.getId())).as("shard %d", i).isEqualTo(i == shard ? 1 : 0);
+            }
+            verify(changeLog).append(ChangeKind.MARKER, m.getId());
+        }
+        assertThat(used).hasSize(SHARDS);
+    }
+
+    @Test
+    void bboxQueryReadsOnlyTheOverlappingShards() {
+        List<Long> near = new ArrayList<>();
+        for (double[] p : new double[][]{{-0.5, 0.5}, {0.5, 0.5}}) {
+            near.add(store.save(marker(p[0], p[1])).getId());
+        }
+        store.save(marker(-0.5, -0.5));
+        store.save(marker(100, 45));
+
+        // the box straddles the boundary between shards 1 and 2; shard 0 is not asked
+        List<long[]> ranges = GeoCell.ranges(new BoundingBox(-1, 0.25, 1, 1), 64);
+        assertThat(router.split(ranges)).containsOnlyKeys(1, 2);
+        assertThat(store.findInCells(ranges)).extracting(JpaMarker::getId).containsExactlyElementsOf(near);
+    }
+
+    @Test
+    void pagesAreMergedAcrossShardsInIdOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            ids.add(store.save(marker(-170 + 5.5 * i, -80 + 2.6 * i)).getId());
+        }
+        assertThat(ids).isSorted();
+
+        List<Long> paged = new ArrayList<>();
+        long after = 0;
+        for (List<JpaMarker> page = store.findPageAfter(after, 7); !page.isEmpty();
+             page = store.findPageAfter(after, 7)) {
+            assertThat(page).hasSizeLessThanOrEqualTo(7);
+            page.forEach(m -> paged.add(m.getId()));
+            after = page.get(page.size() - 1).getId();
+        }
+        assertThat(paged).containsExactlyElementsOf(ids);
+        assertThat(store.findAll()).extracting(JpaMarker::getId).containsExactlyElementsOf(ids);
+    }
+
+    @Test
+    void markerMovedToAnotherShardLeavesTheOldOne() {
+        JpaMarker m = store.save(marker(-120, 40));
+        int from = router.shardOf(GeoCell.encode(-120, 40));
+        int to = router.shardOf(GeoCell.encode(120, 40));
+        assertThat(to).isNotEqualTo(from);
+
+        m.setLocation(Wkt.point(120, 40));
+        store.save(m);
+        assertThat(rows(from, m.getId())).isZero();
+        assertThat(rows(to, m.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void halfMovedMarkerIsReadOnceAsTheNewerCopy() {
+        JpaMarker m = store.save(marker(-120, 40));
+        int to = router.shardOf(GeoCell.encode(120, 40));
+        // a move that inserted into the new shard and failed before deleting from the old one
+        jdbc.get(to).update("insert into markers (id, title, location, cell_id, start_time, marker_type_id,"
+                        + " creator_id, owner_id, visibility, created_at, updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                m.getId(), "moved", Wkt.point(120, 40), GeoCell.encode(120, 40), m.getStartTime(), 1L, 7L, 7L,
+                "PUBLIC", m.getCreatedAt(), m.getUpdatedAt().plusSeconds(1));
+
+        assertThat(store.findById(m.getId())).get().extracting(JpaMarker::getTitle).isEqualTo("moved");
+        assertThat(store.findAll()).extracting(JpaMarker::getTitle).containsExactly("moved");
+        assertThat(store.findAllById(List.of(m.getId()))).extracting(JpaMarker::getTitle).containsExactly("moved");
+        List<String> rows = new ArrayList<>();
+        store.readRows(List.of(m.getId()), r -> rows.add(r.title()));
+        assertThat(rows).containsExactly("moved");
+
+        // the next save removes the stale copy
+        JpaMarker current = store.findById(m.getId()).orElseThrow();
+        store.save(current);
+        assertThat(countAll(m.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void failedChangeLogAppendSkipsTheShardWrite() {
+        doThrow(new IllegalStateException("no transaction")).when(changeLog).append(any(), anyLong());
+
+        JpaMarker m = marker(10, 50);
+        assertThatThrownBy(() -> store.save(m)).isInstanceOf(IllegalStateException.class);
+        assertThat(countAll(m.getId())).isZero();
+    }
+
+    @Test
+    void failedShardBatchIsUndoneOnEveryShard() {
+        double[][] points = {{-120, 40}, {120, 40}, {10, 50}, {-60, -20}};
+        List<JpaMarker> batch = new ArrayList<>();
+        Set<Integer> used = new HashSet<>();
+        for (double[] p : points) {
+            batch.add(marker(p[0], p[1]));
+            used.add(router.shardOf(GeoCell.encode(p[0], p[1])));
+        }
+        assertThat(used).hasSize(SHARDS);
+        // violates "title not null" on the shard of (120, 40), after a good row of the same shard
+        JpaMarker bad = marker(120, 40);
+        bad.setTitle(null);
+        batch.add(bad);
+
+        assertThatThrownBy(() -> store.saveAll(batch)).isInstanceOf(RuntimeException.class);
+        for (JpaMarker m : batch) {
+            assertThat(m.getId()).isNotNull();
+            assertThat(countAll(m.getId())).as("marker %d", m.getId()).isZero();
+        }
+    }
+
+    @Test
+    void retryKeepsTheIdsAndOverwritesLeftoverRows() {
+        List<JpaMarker> batch = List.of(marker(-120, 40), marker(120, 40));
+        batch.get(1).setTitle(null);
+        assertThatThrownBy(() -> store.saveAll(batch)).isInstanceOf(RuntimeException.class);
+        List<Long> ids = batch.stream().map(JpaMarker::getId).toList();
+        // a row whose compensating delete failed
+        JpaMarker left = batch.get(0);
+        jdbc.get(router.shardOf(GeoCell.encode(-120, 40))).update("insert into markers (id, title, location,"
+                        + " cell_id, start_time, marker_type_id, creator_id, owner_id, visibility, created_at,"
+                        + " updated_at) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                left.getId(), "left", left.getLocation(), left.getCellId(), left.getStartTime(), 1L, 7L, 7L,
+                "PUBLIC", left.getCreatedAt(), left.getUpdatedAt());
+
+        batch.get(1).setTitle("fixed");
+        for (JpaMarker m : batch) {
+            store.insert(m);
+        }
+        assertThat(batch).extracting(JpaMarker::getId).containsExactlyElementsOf(ids);
+        assertThat(store.findAllById(ids)).extracting(JpaMarker::getTitle).containsExactly("m", "fixed");
+        for (Long id : ids) {
+            assertThat(countAll(id)).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreadsAndWorkers() throws Exception {
+        MarkerIdGenerator a = new MarkerIdGenerator(1);
+        MarkerIdGenerator b = new MarkerIdGenerator(2);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                MarkerIdGenerator gen = t % 2 == 0 ? a : b;
+                futures.add(pool.submit(() -> {
+                    long[] out = new long[20_000];
+                    for (int i = 0; i < out.length; i++) {
+                        out[i] = gen.next();
+                    }
+                    return out;
+                }));
+            }
+            Set<Long> seen = new HashSet<>();
+            for (Future<long[]> f : futures) {
+                long[] ids = f.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertThat(seen.add(ids[i])).as("duplicate id %d", ids[i]).isTrue();
+                    if (i > 0) {
+                        assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private int rows(int shard, long id) {
+        return jdbc.get(shard).queryForObject("select count(*) from markers where id = ?", Integer.class, id);
+    }
+
+    private int countAll(long id) {
+        int n = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            n += rows(i, id);
+        }
+        return n;
+    }
+
+    private static JpaMarker marker(double lon, double lat) {
+        JpaMarker m = new JpaMarker();
+        m.setTitle("m");
+        m.setLocation(Wkt.point(lon, lat));
+        m.setStartTime(OffsetDateTime.now());
+        m.setMarkerTypeId(1L);
+        m.setCreatorId(7L);
+        m.setOwnerId(7L);
+        m.setVisibility("PUBLIC");
+        return m;
+    }
+}
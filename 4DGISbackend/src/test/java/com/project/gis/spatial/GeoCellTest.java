@@ -0,0 +1,83 @@
+package com.project.gis.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeoCellTest {
+    private static final int MAX_RANGES = 16;
+
+    @Test
+    void rangesCoverEveryPointInsideTheBox() {
+        Random random = new Random(3);
+        for (int i = 0; i < 200; i++) {
+            double minLon = random.nextDouble() * 340 - 170, minLat = random.nextDouble() * 160 - 80;
+            double w = Math.pow(10, random.nextInt(5) - 3) * (1 + random.nextDouble());
+            BoundingBox box = new BoundingBox(minLon, minLat, Math.min(180, minLon + w), Math.min(90, minLat + w));
+            List<long[]> ranges = GeoCell.ranges(box, MAX_RANGES);
+
+            assertThat(ranges).hasSizeLessThanOrEqualTo(MAX_RANGES);
+            assertSortedAndDisjoint(ranges);
+            assertThat(covered(ranges, box.minLon(), box.minLat())).isTrue();
+            assertThat(covered(ranges, box.maxLon(), box.maxLat())).isTrue();
+            for (int j = 0; j < 50; j++) {
+                double lon = box.minLon() + random.nextDouble() * (box.maxLon() - box.minLon());
+                double lat = box.minLat() + random.nextDouble() * (box.maxLat() - box.minLat());
+                assertThat(covered(ranges, lon, lat)).as("%s, %s in %s", lon, lat, box).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void aCellAlignedBoxIsCoveredExactly() {
+        // the north-eastern quadrant is the level-1 cell (1, 1)
+        List<long[]> ranges = GeoCell.ranges(new BoundingBox(0, 0, 180, 90), MAX_RANGES);
+
+        assertThat(ranges).hasSize(1);
+        assertThat(ranges.get(0)).containsExactly(3L << 60, (1L << 62) - 1);
+        assertThat(covered(ranges, 0, 0)).isTrue();
+        assertThat(covered(ranges, -0.0001, 45)).isFalse();
+        assertThat(covered(ranges, 45, -0.0001)).isFalse();
+    }
+
+    @Test
+    void boxesAcrossTheAntimeridianCoverBothEdgesButNotTheMiddle() {
+        BoundingBox box = new BoundingBox(170, -10, -170, 10);
+        List<long[]> ranges = GeoCell.ranges(box, MAX_RANGES);
+
+        assertThat(ranges).hasSizeLessThanOrEqualTo(MAX_RANGES);
+        assertSortedAndDisjoint(ranges);
+        assertThat(covered(ranges, 175, 0)).isTrue();
+        assertThat(covered(ranges, -175, 0)).isTrue();
+        assertThat(covered(ranges, 180, 5)).isTrue();
+        assertThat(covered(ranges, -180, -5)).isTrue();
+        // the cover is coarse, but nowhere near the [-170, 170] a box read as min > max would span
+        assertThat(covered(ranges, 0, 0)).isFalse();
+        assertThat(covered(ranges, 45, 0)).isFalse();
+        assertThat(covered(ranges, -60, -60)).isFalse();
+    }
+
+    @Test
+    void theWholeWorldIsOneRange() {
+        assertThat(GeoCell.ranges(BoundingBox.WORLD, MAX_RANGES)).singleElement()
+                .satisfies(r -> assertThat(r).containsExactly(0L, (1L << 62) - 1));
+    }
+
+    private static boolean covered(List<long[]> ranges, double lon, double lat) {
+        long key = GeoCell.encode(lon, lat);
+        return ranges.stream().anyMatch(r -> r[0] <= key && key <= r[1]);
+    }
+
+    private static void assertSortedAndDisjoint(List<long[]> ranges) {
+        for (int i = 0; i < ranges.size(); i++) {
+            assertThat(ranges.get(i)[0]).isLessThanOrEqualTo(ranges.get(i)[1]);
+            if (i > 0) {
+                // adjacent ranges are merged, so there is a gap between consecutive ones
+                assertThat(ranges.get(i)[0]).isGreaterThan(ranges.get(i - 1)[1] + 1);
+            }
+        }
+    }
+}
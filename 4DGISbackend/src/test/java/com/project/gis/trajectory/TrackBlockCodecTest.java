@@ -0,0 +1,106 @@
+package com.project.gis.trajectory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrackBlockCodecTest {
+
+    @Test
+    void emptyAndSingleSample() {
+        assertRoundTrip(new TrackSamples(1));
+        TrackSamples one = new TrackSamples(1);
+        one.add(1_700_000_000_000L, 116.397, 39.909, Double.NaN);
+        assertRoundTrip(one);
+    }
+
+    @Test
+    void regularlySampledTrack() {
+        Random rnd = new Random(42);
+        TrackSamples s = new TrackSamples(1024);
+        double lon = 116.3, lat = 39.9, alt = 50.0;
+        for (int i = 0; i < 1024; i++) {
+            lon += rnd.nextGaussian() * 1e-4;
+            lat += rnd.nextGaussian() * 1e-4;
+            alt += rnd.nextGaussian();
+            s.add(1_700_000_000_000L + i * 1000L, lon, lat, alt);
+        }
+        byte[] encoded = assertRoundTrip(s);
+        // the point of the codec: well under the 32 raw bytes per sample
+        assertThat(encoded.length).isLessThan(1024 * 20);
+    }
+
+    @Test
+    void everyTimestampBucket() {
+        // delta-of-deltas of 0, the edges of the 7 / 9 / 12 bit buckets, and the 64 bit escape in both directions
+        long[] dods = { 0, 63, -64, 64, -65, 255, -256, 256, -257, 2047, -2048, 2048, -2049,
+                Long.MAX_VALUE / 4, -(Long.MAX_VALUE / 4) };
+        TrackSamples s = new TrackSamples(dods.length + 2);
+        long t = 0;
+        long delta = 0;
+        s.add(t, 0.0, 0.0, 0.0);
+        for (long dod : dods) {
+            delta += dod;
+            t += delta;
+            s.add(t, 0.0, 0.0, 0.0);
+        }
+        assertRoundTrip(s);
+    }
+
+    @Test
+    void extremeTimestamps() {
+        TrackSamples s = new TrackSamples(3);
+        s.add(Long.MIN_VALUE, 1.0, 1.0, 1.0);
+        s.add(-1L, 1.0, 1.0, 1.0);
+        s.add(Long.MAX_VALUE, 1.0, 1.0, 1.0);
+        assertRoundTrip(s);
+    }
+
+    @Test
+    void specialAndArbitraryDoubles() {
+        double[] values = { 0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, -Double.MAX_VALUE, 180.0, -180.0, 179.99999999, 1e-300, 0.1 };
+        TrackSamples s = new TrackSamples(values.length);
+        for (int i = 0; i < values.length; i++) {
+            s.add(i, values[i], values[values.length - 1 - i], values[(i * 5) % values.length]);
+        }
+        assertRoundTrip(s);
+
+        Random rnd = new Random(7);
+        TrackSamples noise = new TrackSamples(4096);
+        for (int i = 0; i < 4096; i++) {
+            noise.add(rnd.nextLong(), Double.longBitsToDouble(rnd.nextLong()), Double.longBitsToDouble(rnd.nextLong()),
+                    Double.longBitsToDouble(rnd.nextLong()));
+        }
+        noise.sortByTime();
+        assertRoundTrip(noise);
+    }
+
+    @Test
+    void repeatedValuesAndTimes() {
+        TrackSamples s = new TrackSamples(100);
+        for (int i = 0; i < 100; i++) {
+            s.add(1000L + i / 10, 12.5, -33.25, Double.NaN);
+        }
+        assertRoundTrip(s);
+    }
+
+    private static byte[] assertRoundTrip(TrackSamples s) {
+        byte[] encoded = TrackBlockCodec.encode(s);
+        TrackSamples d = TrackBlockCodec.decode(encoded);
+        assertThat(d.size()).isEqualTo(s.size());
+        for (int i = 0; i < s.size(); i++) {
+            assertThat(d.time(i)).as("time %d", i).isEqualTo(s.time(i));
+            // bit-exact, so NaN payloads and -0.0 survive too
+            assertThat(Double.doubleToRawLongBits(d.lon(i))).as("lon %d", i)
+                    .isEqualTo(Double.doubleToRawLongBits(s.lon(i)));
+            assertThat(Double.doubleToRawLongBits(d.lat(i))).as("lat %d", i)
+                    .isEqualTo(Double.doubleToRawLongBits(s.lat(i)));
+            assertThat(Double.doubleToRawLongBits(d.alt(i))).as("alt %d", i)
+                    .isEqualTo(Double.doubleToRawLongBits(s.alt(i)));
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,94 @@
+package com.project.gis.trajectory;
+
+import com.project.gis.entity.JpaTrackBlock;
+import com.project.gis.repository.TrackBlockRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrajectoryServiceTest {
+    private final List<JpaTrackBlock> saved = new ArrayList<>();
+    private TrackBlockRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(TrackBlockRepository.class);
+        when(repository.save(any(JpaTrackBlock.class))).thenAnswer(inv -> {
+            JpaTrackBlock b = inv.getArgument(0);
+            b.setId((long) saved.size() + 1);
+            saved.add(b);
+            return b;
+        });
+        when(repository.findFirstByMarkerIdOrderByEndTimeDesc(anyLong())).thenAnswer(inv -> saved.stream()
+                .filter(b -> b.getMarkerId().equals(inv.getArgument(0)))
+                .max(Comparator.comparing(JpaTrackBlock::getEndTime)));
+    }
+
+    @Test
+    void idleBuffersAreSealedThenDropped() {
+        TrajectoryService service = new TrajectoryService(repository, 1024, 0, 1.0, 16);
+        service.append(1L, samples(1, 2, 3));
+        service.append(2L, samples(1, 2));
+        assertThat(service.bufferCount()).isEqualTo(2);
+
+        service.flushIdle();
+
+        assertThat(saved).hasSize(2);
+        assertThat(service.bufferCount()).isZero();
+    }
+
+    @Test
+    void bufferWithPendingSamplesIsKept() {
+        TrajectoryService service = new TrajectoryService(repository, 1024, 60_000, 1.0, 16);
+        service.append(1L, samples(1, 2, 3));
+
+        service.flushIdle();
+
+        assertThat(saved).isEmpty();
+        assertThat(service.bufferCount()).isEqualTo(1);
+    }
+
+    @Test
+    void appendAfterDropReloadsThePersistedEnd() {
+        TrajectoryService service = new TrajectoryService(repository, 1024, 0, 1.0, 16);
+        service.append(1L, samples(1, 2, 3));
+        service.flushIdle();
+        assertThat(service.bufferCount()).isZero();
+
+        // 2 and 3 are already in the sealed block
+        assertThat(service.append(1L, samples(2, 3, 4, 5))).isEqualTo(2);
+        assertThat(service.bufferCount()).isEqualTo(1);
+    }
+
+    @Test
+    void fullBlocksAreSealedOnAppend() {
+        when(repository.findByMarkerIdAndStartTimeLessThanEqualAndEndTimeGreaterThanEqualOrderByStartTimeAsc(
+                anyLong(), anyLong(), anyLong())).thenAnswer(inv -> saved);
+        TrajectoryService service = new TrajectoryService(repository, 4, 60_000, 1.0, 16);
+        service.append(1L, samples(1, 2, 3, 4, 5, 6));
+
+        assertThat(saved).hasSize(1);
+        assertThat(saved.get(0).getSampleCount()).isEqualTo(4);
+        TrackSamples all = service.slice(1L, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertThat(all.size()).isEqualTo(6);
+        assertThat(all.time(5)).isEqualTo(6);
+    }
+
+    private static TrackSamples samples(long... times) {
+        TrackSamples s = new TrackSamples(times.length);
+        for (long t : times) {
+            s.add(t, 10.0 + t * 1e-3, 20.0, Double.NaN);
+        }
+        return s;
+    }
+}
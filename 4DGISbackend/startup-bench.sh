@@ -0,0 +1,76 @@
+#!/bin/sh
+# Startup-time benchmark: starts the app RUNS times per variant and records the "Started Application in" time of
+# each start, then stops it. Needs the build from cds.sh (target/cds: plain jar, dependencies, AppCDS archive).
+#
+#   ./startup-bench.sh [runs] [extra application args]
+#       e.g. PROFILES=h2-replicas ./startup-bench.sh 5
+#            ./startup-bench.sh 3 --spring.datasource.url=jdbc:mysql://db:3306/gis
+#
+# Variants, each adding one step to the previous:
+#   plain     jar class path, normal eager startup
+#   fast      --spring.profiles.active=fast-startup (lazy beans, no JDBC metadata lookup)
+#   aot       + the AOT-processed bean definitions (-Dspring.aot.enabled=true)
+#   aot-cds   + the AppCDS archive (-XX:SharedArchiveFile=app.jsa)
+#
+# PROFILES is added to every variant's active profiles. The AOT variants use the bean definitions fixed when cds.sh
+# built them (fast-startup only), so PROFILES and extra args may change properties but not which beans exist.
+# Times are printed and appended to target/cds/startup-times.txt with the date, so runs on different machines or
+# commits can be compared.
+set -e
+cd "$(dirname "$0")/target/cds"
+[ -f app.jar ] && [ -f app.jsa ] || { echo "run ./cds.sh first" >&2; exit 1; }
+
+RUNS=${1:-3}
+[ $# -gt 0 ] && shift
+CP="app.jar:$(ls lib/*.jar | sort | tr '\n' ':')"
+OUT=startup-times.txt
+WORK=$(mktemp -d)
+trap 'rm -rf "$WORK"' EXIT
+
+# profiles for a variant: its own plus $PROFILES, comma separated
+profiles() {
+    echo "$1${PROFILES:+,$PROFILES}" | sed 's/^,//'
+}
+
+# one start: prints the seconds from "Started Application in", or "failed"
+start_once() {
+    log="$WORK/app.log"
+    # index snapshots and revision logs of an earlier start would make this one cheaper
+    rm -rf data
+    java "$@" > "$log" 2>&1 &
+    pid=$!
+    i=0
+    while [ $i -lt 600 ] && kill -0 $pid 2>/dev/null && ! grep -q "Started Application in" "$log"; do
+        sleep 0.2
+        i=$((i + 1))
+    done
+    kill $pid 2>/dev/null || true
+    wait $pid 2>/dev/null || true
+    sed -n 's/.*Started Application in \([0-9.]*\) seconds.*/\1/p' "$log" | head -n 1 | grep . || echo failed
+}
+
+run_variant() {
+    name=$1
+    shift
+    times=""
+    for r in $(seq "$RUNS"); do
+        times="$times $(start_once "$@")"
+    done
+    mean=$(echo "$times" | tr ' ' '\n' | awk '/^[0-9.]+$/ { s += $1; n++ } END { if (n) printf "%.2f", s / n; else print "-" }')
+    line=$(printf "%-8s mean %6s s   runs:%s" "$name" "$mean" "$times")
+    echo "$line"
+    echo "$(date -u +%Y-%m-%dT%H:%M:%SZ) $line" >> "$OUT"
+}
+
+# same working directory and class path string as the training run, or the JVM refuses the archive
+APP="com.project.gis.Application --server.port=0"
+
+echo "startup times over $RUNS runs${PROFILES:+ (profiles: $PROFILES)}"
+run_variant plain -Dspring.config.name=Application -cp "$CP" $APP \
+    ${PROFILES:+--spring.profiles.active=$PROFILES} "$@"
+run_variant fast -Dspring.config.name=Application -cp "$CP" $APP \
+    --spring.profiles.active="$(profiles fast-startup)" "$@"
+run_variant aot -Dspring.aot.enabled=true -Dspring.config.name=Application -cp "$CP" $APP \
+    --spring.profiles.active="$(profiles fast-startup)" "$@"
+run_variant aot-cds -XX:SharedArchiveFile=app.jsa -Dspring.aot.enabled=true \
+    -Dspring.config.name=Application -cp "$CP" $APP --spring.profiles.active="$(profiles fast-startup)" "$@"